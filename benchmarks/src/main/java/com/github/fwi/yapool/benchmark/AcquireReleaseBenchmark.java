@@ -0,0 +1,86 @@
+package com.github.fwi.yapool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.yapool.Pool;
+
+/**
+ * Acquire/release throughput and latency (sample time percentiles) of {@link Pool}, 
+ * {@link com.github.fwi.yapool.BoundPool}, {@link com.github.fwi.yapool.PrunedPool} 
+ * and {@link com.github.fwi.yapool.object.ObjectPool} without pool listeners.
+ * <br>The pool is unsaturated when the amount of threads is less than or equal to the pool size
+ * and saturated (threads wait for a resource) when there are more threads than resources, 
+ * e.g. size 4 with 16 threads.
+ * <br>Run a selection with for example 
+ * {@code java -jar benchmarks.jar AcquireReleaseBenchmark.threads16 -p type=bound -p fair=false -bm thrpt}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class AcquireReleaseBenchmark {
+
+	@Param({ "pool", "bound", "pruned", "object", "slot" })
+	public String type;
+
+	/** Pool size, see the saturated/unsaturated remark above. */
+	@Param({ "4", "64" })
+	public int size;
+
+	@Param({ "false", "true" })
+	public boolean fair;
+
+	Pool<Object> pool;
+
+	@Setup
+	public void setup() {
+		pool = BenchmarkPools.create(type, size, fair);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkPools.close(pool);
+	}
+
+	protected Object acquireRelease() {
+
+		Object r = pool.acquire(BenchmarkPools.ACQUIRE_TIMEOUT_MS);
+		pool.release(r);
+		return r;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Object threads1() {
+		return acquireRelease();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object threads4() {
+		return acquireRelease();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Object threads16() {
+		return acquireRelease();
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.github.fwi.yapool.benchmark;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolFactory;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PrunedPool;
+import com.github.fwi.yapool.SlotPool;
+import com.github.fwi.yapool.object.ObjectPool;
+
+/**
+ * Creates the pools used in the benchmarks.
+ */
+class BenchmarkPools {
+
+	/** Acquire time-out for benchmarks with a saturated pool, long enough to never time out. */
+	static final long ACQUIRE_TIMEOUT_MS = 60_000L;
+
+	static class ObjectFactory implements IPoolFactory<Object> {
+
+		@Override
+		public Object create() {
+			return new Object();
+		}
+	}
+
+	private BenchmarkPools() {}
+
+	/**
+	 * @param type one of "pool", "bound", "pruned", "object" or "slot".
+	 * @param size the (maximum) size of the pool, for "pool" this amount of resources is created up-front. 
+	 * @param fair ignored for "slot", a slot pool cannot be fair.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Pool<Object> create(String type, int size, boolean fair) {
+
+		Pool<Object> pool;
+		switch (type) {
+		case "pool":
+			pool = new Pool<Object>();
+			break;
+		case "bound":
+			pool = new BoundPool<Object>();
+			break;
+		case "pruned":
+			PrunedPool<Object> pp = new PrunedPool<Object>();
+			pp.setMaxLeaseTimeMs(0L);
+			pool = pp;
+			break;
+		case "object":
+			pool = (Pool) new ObjectPool<StringBuilder>(StringBuilder.class);
+			break;
+		case "slot":
+			SlotPool<Object> sp = new SlotPool<Object>();
+			sp.setMaxLeaseTimeMs(0L);
+			pool = sp;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown pool type " + type);
+		}
+		pool.setPoolName(type);
+		if (!(pool instanceof SlotPool)) {
+			pool.setFair(fair);
+		}
+		if (!(pool instanceof ObjectPool)) {
+			pool.setFactory(new ObjectFactory());
+		}
+		if (pool instanceof BoundPool) {
+			BoundPool<Object> bp = (BoundPool<Object>) pool;
+			bp.setMaxSize(size);
+			bp.open(size);
+		} else if (pool instanceof SlotPool) {
+			SlotPool<Object> sp = (SlotPool<Object>) pool;
+			sp.setMaxSize(size);
+			sp.open(size);
+		} else {
+			Object[] resources = new Object[size];
+			for (int i = 0; i < size; i++) {
+				resources[i] = pool.acquire();
+			}
+			for (Object r : resources) {
+				pool.release(r);
+			}
+		}
+		return pool;
+	}
+
+	static void close(Pool<?> pool) {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.github.fwi.yapool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PoolEvent;
+import com.github.fwi.yapool.PoolEvents;
+import com.github.fwi.yapool.listener.PoolListener;
+
+/**
+ * Cost of firing one pool event versus the amount of pool listeners,
+ * where only one pool listener wants the fired event (the other listeners want other events).
+ * <br>"objects" fires {@link PoolEvent} objects to {@link PoolListener}s,
+ * "codes" fires event codes to {@link IPoolCodeListener}s.
+ * Run with {@code java -jar benchmarks.jar EventDispatchBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+	@Param({ "1", "4", "8", "16" })
+	public int listeners;
+
+	@Param({ "objects", "codes" })
+	public String type;
+
+	PoolEvents events;
+	Pool<Object> pool;
+	Object resource = new Object();
+	/** The event that is wanted by one listener. */
+	PoolEvent acquired;
+
+	static class ActionListener extends PoolListener {
+
+		long count;
+
+		ActionListener(String action) {
+			super();
+			addWantEvent(action);
+		}
+
+		@Override
+		public void onPoolEvent(PoolEvent poolEvent) {
+			count++;
+		}
+	}
+
+	static class CodeListener implements IPoolCodeListener {
+
+		final int wantEventCodes;
+		long count;
+
+		CodeListener(int code) {
+			this.wantEventCodes = PoolEvent.mask(code);
+		}
+
+		@Override
+		public int getWantEventCodes() {
+			return wantEventCodes;
+		}
+
+		@Override
+		public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+			count++;
+		}
+	}
+
+	@Setup
+	public void setup() {
+
+		pool = new Pool<Object>();
+		events = new PoolEvents();
+		for (int i = 0; i < listeners; i++) {
+			// the first listener wants the fired event, the others want other events.
+			int code = (i == 0 ? PoolEvent.CODE_ACQUIRED : (PoolEvent.CODE_ACQUIRED + i) % PoolEvent.CODE_COUNT);
+			if ("codes".equals(type)) {
+				events.addCodeListener(new CodeListener(code));
+			} else {
+				events.addPoolListener(new ActionListener(PoolEvent.actionOf(code)));
+			}
+		}
+		acquired = new PoolEvent(pool, PoolEvent.ACQUIRED, resource);
+	}
+
+	@Benchmark
+	public void fire() {
+
+		if ("codes".equals(type)) {
+			events.firePoolEvent(pool, PoolEvent.CODE_ACQUIRED, resource, 0L);
+		} else {
+			events.firePoolEvent(acquired);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.github.fwi.yapool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.yapool.DequeIdleStore;
+import com.github.fwi.yapool.IIdleStore;
+import com.github.fwi.yapool.LockFreeIdleStore;
+
+/**
+ * Take/put throughput of the idle store engines.
+ * Run with different thread counts, e.g. {@code java -jar benchmarks.jar IdleStoreBenchmark -t 32}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdleStoreBenchmark {
+
+	@Param({ "deque", "lockfree" })
+	public String engine;
+
+	/** Amount of idle resources in the store. */
+	@Param({ "16" })
+	public int size;
+
+	IIdleStore<Object> store;
+
+	@Setup
+	public void setup() {
+
+		store = ("lockfree".equals(engine) ? new LockFreeIdleStore<Object>() : new DequeIdleStore<Object>());
+		for (int i = 0; i < size; i++) {
+			store.addFirst(new Object());
+		}
+	}
+
+	@Benchmark
+	public Object takePut() throws InterruptedException {
+
+		Object o = store.poll(1L, TimeUnit.SECONDS);
+		if (o != null) {
+			store.addFirst(o);
+		}
+		return o;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.github.fwi.yapool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.LeaserTraceSampler;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.listener.LeaseProfiler;
+import com.github.fwi.yapool.listener.LeaserAcquiredTrace;
+import com.github.fwi.yapool.listener.PoolPerformance;
+
+/**
+ * Acquire/release throughput of an unsaturated {@link com.github.fwi.yapool.PrunedPool} (size 16, 4 threads)
+ * with and without pool listeners.
+ * <br>"trace" takes a stack-trace for every lease, "trace-sampled" for one in 100 leases with a maximum depth of 16.
+ * Run with {@code java -jar benchmarks.jar ListenerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(4)
+public class ListenerBenchmark {
+
+	@Param({ "none", "performance", "trace", "trace-sampled", "profiler" })
+	public String listener;
+
+	Pool<Object> pool;
+
+	@Setup
+	public void setup() {
+
+		pool = BenchmarkPools.create("pruned", 16, false);
+		BoundPool<Object> bp = (BoundPool<Object>) pool;
+		switch (listener) {
+		case "performance":
+			pool.getEvents().addPoolListener(new PoolPerformance(pool));
+			break;
+		case "trace":
+			pool.getEvents().addPoolListener(new LeaserAcquiredTrace(bp));
+			break;
+		case "trace-sampled":
+			pool.getEvents().addPoolListener(new LeaserAcquiredTrace(bp, new LeaserTraceSampler(100, 16)));
+			break;
+		case "profiler":
+			pool.getEvents().addPoolListener(new LeaseProfiler(pool, new LeaserTraceSampler(100, LeaseProfiler.DEFAULT_MAX_DEPTH)));
+			break;
+		default:
+			// none
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkPools.close(pool);
+	}
+
+	@Benchmark
+	public Object acquireRelease() {
+
+		Object r = pool.acquire(BenchmarkPools.ACQUIRE_TIMEOUT_MS);
+		pool.release(r);
+		return r;
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.github.fwi.yapool.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fwi.yapool.IPoolsMapFactory;
+import com.github.fwi.yapool.PoolPruner;
+import com.github.fwi.yapool.PoolsMap;
+import com.github.fwi.yapool.PrunedPool;
+
+/**
+ * Acquire/release throughput of a {@link PoolsMap} where each operation uses a random key.
+ * All pools are created before measuring, pools are not pruned or cleaned during the benchmark.
+ * Run with {@code java -jar benchmarks.jar PoolsMapBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(4)
+public class PoolsMapBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	public int keys;
+
+	PoolsMap<Object, String> pools;
+	String[] poolKeys;
+
+	static class PoolsFactory implements IPoolsMapFactory<Object, String> {
+
+		@Override
+		public PrunedPool<Object> create(String poolKey, PoolPruner poolPruner) {
+
+			PrunedPool<Object> p = new PrunedPool<Object>();
+			p.setPoolName(poolKey);
+			p.setFactory(new BenchmarkPools.ObjectFactory());
+			p.setMaxLeaseTimeMs(0L);
+			p.setMaxSize(8);
+			p.open(0);
+			return p;
+		}
+
+		@Override
+		public void destroy(String poolKey, Object t) {
+			// NO-OP
+		}
+	}
+
+	@Setup
+	public void setup() {
+
+		pools = new PoolsMap<Object, String>(new PoolsFactory());
+		pools.setCleanIntervalMs(TimeUnit.HOURS.toMillis(1L));
+		pools.open();
+		poolKeys = new String[keys];
+		for (int i = 0; i < keys; i++) {
+			poolKeys[i] = "key" + i;
+			pools.release(poolKeys[i], pools.acquire(poolKeys[i]));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		pools.close();
+	}
+
+	@Benchmark
+	public Object acquireRelease() {
+
+		String key = poolKeys[ThreadLocalRandom.current().nextInt(poolKeys.length)];
+		Object r = pools.acquire(key, BenchmarkPools.ACQUIRE_TIMEOUT_MS);
+		pools.release(key, r);
+		return r;
+	}
+
+}
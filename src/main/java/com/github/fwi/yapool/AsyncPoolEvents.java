@@ -0,0 +1,449 @@
+package com.github.fwi.yapool;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool-events handler that delivers pool events to pool listeners via one or more consumer threads,
+ * so that slow pool listeners do not add to the time it takes to acquire or release a resource.
+ * <br>Pool events are stored in a pre-allocated ring buffer. The thread firing a pool event only claims a slot
+ * in the ring buffer (compare-and-set) and copies the event data into the slot,
+ * a pool-event object (if needed by a pool listener) is created by the consumer thread.
+ * When the ring buffer is full, the {@link OverflowPolicy} determines what happens,
+ * dropped events are counted (see {@link #getDroppedCount()}).
+ * <br>Pool listeners that implement {@link IPoolSyncListener} receive pool events synchronously.
+ * <p>
+ * Usage: <code>pool.setEvents(new AsyncPoolEvents().start())</code>,
+ * consumer threads are stopped via {@link #close()} after pending events were delivered.
+ * <br>With more than one consumer thread, pool listeners can receive pool events concurrently and out of order.
+ * <br>Note that a slot in the ring buffer keeps a reference to the resource of a delivered event until the slot is re-used.
+ * @author FWiers
+ *
+ */
+public class AsyncPoolEvents implements IPoolEvents, Closeable {
+
+	/** How consumer threads wait for pool events. */
+	public enum WaitStrategy {
+		/** Wait on a lock-condition that is signalled when an event is added. Lowest CPU usage. */
+		BLOCKING,
+		/** Sleep for {@link AsyncPoolEvents#SLEEP_NANOS}. */
+		SLEEPING,
+		/** Call {@link Thread#yield()}. */
+		YIELDING,
+		/** Keep checking for events. Lowest latency but occupies a CPU per consumer thread. */
+		BUSY_SPIN
+	}
+
+	/** What to do when the ring buffer is full. */
+	public enum OverflowPolicy {
+		/** The thread firing the event waits until there is room in the ring buffer. */
+		BLOCK,
+		/** The oldest event in the ring buffer is dropped. */
+		DROP_OLDEST,
+		/** The event that is fired is dropped. */
+		DROP_NEWEST
+	}
+
+	/** 1024 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * 0.1 milliseconds, the time a consumer thread sleeps (see {@link WaitStrategy#SLEEPING})
+	 * or a thread firing an event waits for room in the ring buffer (see {@link OverflowPolicy#BLOCK}).
+	 */
+	public static final long SLEEP_NANOS = 100_000L;
+
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	/** A pool event in the ring buffer. */
+	protected static class Slot {
+
+		/** The sequence of the event in this slot, set after the event data was set. */
+		volatile long sequence = -1L;
+		Pool<?> pool;
+		int code;
+		Object resource;
+		long nanoTime;
+		/** Only set for pool events without an event code. */
+		PoolEvent poolEvent;
+	}
+
+	protected Logger log = LoggerFactory.getLogger(getClass());
+
+	private final PoolEvents syncEvents = new PoolEvents();
+	private final PoolEvents asyncEvents = new PoolEvents();
+
+	private final Slot[] slots;
+	private final int mask;
+	/** The next sequence to claim by a thread firing an event. */
+	private final AtomicLong head = new AtomicLong();
+	/** The next sequence to deliver by a consumer thread. */
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final int consumers;
+	private final WaitStrategy waitStrategy;
+	private final OverflowPolicy overflowPolicy;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final AtomicInteger waitingConsumers = new AtomicInteger();
+	private volatile boolean running;
+	private Thread[] threads;
+
+	/**
+	 * A handler with {@link #DEFAULT_CAPACITY}, one consumer thread, {@link WaitStrategy#BLOCKING}
+	 * and {@link OverflowPolicy#BLOCK} (no events are dropped).
+	 */
+	public AsyncPoolEvents() {
+		this(DEFAULT_CAPACITY, 1, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * @param capacity the size of the ring buffer, rounded up to a power of 2.
+	 * @param consumers the amount of consumer threads.
+	 */
+	public AsyncPoolEvents(int capacity, int consumers, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+		super();
+		if (capacity < 1 || consumers < 1) {
+			throw new IllegalArgumentException("Capacity and amount of consumers must be larger than 0.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		mask = size - 1;
+		this.consumers = consumers;
+		this.waitStrategy = waitStrategy;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Starts the consumer threads (daemon threads).
+	 * Events fired before this handler is started are kept in the ring buffer.
+	 */
+	public synchronized AsyncPoolEvents start() {
+
+		if (threads == null) {
+			running = true;
+			threads = new Thread[consumers];
+			for (int i = 0; i < consumers; i++) {
+				threads[i] = new Thread(this::consume, "yapool-events-" + threadNumber.incrementAndGet());
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Stops the consumer threads after pending pool events were delivered.
+	 * Pool events fired after this handler is closed are only delivered to synchronous listeners,
+	 * unless this handler is started again.
+	 * <br>If the calling thread is interrupted while waiting for the consumer threads to stop,
+	 * this method returns with the interrupt flag set, the consumer threads still deliver the pending events and stop.
+	 */
+	@Override
+	public synchronized void close() {
+
+		if (threads == null) {
+			return;
+		}
+		running = false;
+		signalConsumers(true);
+		try {
+			for (Thread t : threads) {
+				t.join();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted while waiting for pool events consumer threads to stop, pending events: " + getPendingCount());
+		} finally {
+			threads = null;
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/* *** IPoolEvents *** */
+
+	@Override
+	public boolean wantEventAction(String poolEvent) {
+		return (syncEvents.wantEventAction(poolEvent) || asyncEvents.wantEventAction(poolEvent));
+	}
+
+	@Override
+	public boolean wantEvent(int code) {
+		return (syncEvents.wantEvent(code) || asyncEvents.wantEvent(code));
+	}
+
+	/**
+	 * Only synchronous listeners get pool-event objects from the pool,
+	 * pool-event objects for other listeners are created by the consumer threads.
+	 */
+	@Override
+	public boolean wantPoolEvent(int code) {
+		return syncEvents.wantPoolEvent(code);
+	}
+
+	/**
+	 * Adds the listener, a listener that implements {@link IPoolSyncListener} receives pool events synchronously.
+	 */
+	@Override
+	public void addPoolListener(IPoolListener listener) {
+		(listener instanceof IPoolSyncListener ? syncEvents : asyncEvents).addPoolListener(listener);
+	}
+
+	@Override
+	public void removePoolListener(IPoolListener listener) {
+
+		syncEvents.removePoolListener(listener);
+		asyncEvents.removePoolListener(listener);
+	}
+
+	/**
+	 * Adds the listener, a listener that implements {@link IPoolSyncListener} receives pool events synchronously.
+	 */
+	@Override
+	public void addCodeListener(IPoolCodeListener listener) {
+		(listener instanceof IPoolSyncListener ? syncEvents : asyncEvents).addCodeListener(listener);
+	}
+
+	@Override
+	public void removeCodeListener(IPoolCodeListener listener) {
+
+		syncEvents.removeCodeListener(listener);
+		asyncEvents.removeCodeListener(listener);
+	}
+
+	@Override
+	public void clearListeners() {
+
+		syncEvents.clearListeners();
+		asyncEvents.clearListeners();
+	}
+
+	/**
+	 * Delivers the pool-event to synchronous listeners.
+	 * A pool-event without an event code (a custom action) is also added to the ring buffer,
+	 * asynchronous listeners receive pool events with an event code via {@link #firePoolEvent(Pool, int, Object, long)}.
+	 */
+	@Override
+	public void firePoolEvent(PoolEvent poolEvent) {
+
+		syncEvents.firePoolEvent(poolEvent);
+		if (poolEvent.getCode() < 0 && asyncEvents.wantEventAction(poolEvent.getAction())) {
+			publish(null, -1, null, 0L, poolEvent);
+		}
+	}
+
+	@Override
+	public void firePoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+		syncEvents.firePoolEvent(pool, code, resource, nanoTime);
+		if (asyncEvents.wantEvent(code)) {
+			publish(pool, code, resource, nanoTime, null);
+		}
+	}
+
+	/**
+	 * Delivers the acquired event with the acquire start time to synchronous listeners,
+	 * asynchronous listeners receive the event via {@link IPoolCodeListener#onPoolEvent(Pool, int, Object, long)}.
+	 */
+	@Override
+	public void fireAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+
+		syncEvents.fireAcquired(pool, resource, acquireStartNanos, nanoTime);
+		if (asyncEvents.wantEvent(PoolEvent.CODE_ACQUIRED)) {
+			publish(pool, PoolEvent.CODE_ACQUIRED, resource, nanoTime, null);
+		}
+	}
+
+	/* *** ring buffer *** */
+
+	/**
+	 * Adds an event to the ring buffer.
+	 */
+	protected void publish(Pool<?> pool, int code, Object resource, long nanoTime, PoolEvent poolEvent) {
+
+		long seq;
+		for (;;) {
+			seq = head.get();
+			if (seq - tail.get() > mask) {
+				if (!overflow()) {
+					droppedCount.incrementAndGet();
+					return;
+				}
+			} else if (head.compareAndSet(seq, seq + 1L)) {
+				break;
+			}
+		}
+		Slot s = slots[(int) (seq & mask)];
+		s.pool = pool;
+		s.code = code;
+		s.resource = resource;
+		s.nanoTime = nanoTime;
+		s.poolEvent = poolEvent;
+		s.sequence = seq;
+		if (waitingConsumers.get() > 0) {
+			signalConsumers(false);
+		}
+	}
+
+	/**
+	 * Called when the ring buffer is full.
+	 * @return false if the event must be dropped, true to try again.
+	 */
+	protected boolean overflow() {
+
+		switch (overflowPolicy) {
+		case DROP_NEWEST:
+			return false;
+		case DROP_OLDEST:
+			long t = tail.get();
+			// Only drop an event that was completely added to the ring buffer.
+			if (slots[(int) (t & mask)].sequence == t && tail.compareAndSet(t, t + 1L)) {
+				droppedCount.incrementAndGet();
+			} else {
+				Thread.yield();
+			}
+			return true;
+		default:
+			if (!running) {
+				// nobody to wait for
+				return false;
+			}
+			LockSupport.parkNanos(this, SLEEP_NANOS);
+			return true;
+		}
+	}
+
+	protected void signalConsumers(boolean all) {
+
+		lock.lock();
+		try {
+			if (all) {
+				available.signalAll();
+			} else {
+				available.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs in the consumer threads: delivers events from the ring buffer to the asynchronous listeners
+	 * until this handler is closed and all pending events are delivered.
+	 */
+	protected void consume() {
+
+		for (;;) {
+			long t = tail.get();
+			Slot s = slots[(int) (t & mask)];
+			if (s.sequence == t) {
+				Pool<?> pool = s.pool;
+				int code = s.code;
+				Object resource = s.resource;
+				long nanoTime = s.nanoTime;
+				PoolEvent poolEvent = s.poolEvent;
+				// The slot is not re-used until the tail is moved.
+				if (tail.compareAndSet(t, t + 1L)) {
+					deliver(pool, code, resource, nanoTime, poolEvent);
+				}
+			} else if (!running && head.get() == t) {
+				break;
+			} else {
+				waitForEvent(t);
+			}
+		}
+	}
+
+	protected void waitForEvent(long t) {
+
+		switch (waitStrategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELDING:
+			Thread.yield();
+			break;
+		case SLEEPING:
+			LockSupport.parkNanos(this, SLEEP_NANOS);
+			break;
+		default:
+			lock.lock();
+			try {
+				// Register as waiting before checking the ring buffer, see publish.
+				waitingConsumers.incrementAndGet();
+				if (running && slots[(int) (t & mask)].sequence != t) {
+					available.awaitNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+				}
+			} catch (InterruptedException ie) {
+				// consumer threads stop via close only.
+				log.debug("Pool events consumer thread interrupted.");
+			} finally {
+				waitingConsumers.decrementAndGet();
+				lock.unlock();
+			}
+		}
+	}
+
+	protected void deliver(Pool<?> pool, int code, Object resource, long nanoTime, PoolEvent poolEvent) {
+
+		try {
+			if (poolEvent != null) {
+				asyncEvents.firePoolEvent(poolEvent);
+				return;
+			}
+			asyncEvents.firePoolEvent(pool, code, resource, nanoTime);
+			if (asyncEvents.wantPoolEvent(code)) {
+				long timeStamp = pool.getClock().currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime);
+				asyncEvents.firePoolEvent(new PoolEvent(pool, PoolEvent.actionOf(code), resource, timeStamp));
+			}
+		} catch (RuntimeException e) {
+			log.error("Failed to deliver pool event " + (poolEvent == null ? PoolEvent.actionOf(code) : poolEvent), e);
+		}
+	}
+
+	/* *** bean methods *** */
+
+	/** The amount of events that were dropped because the ring buffer was full (see {@link OverflowPolicy}). */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/** The amount of events in the ring buffer that were not yet delivered. */
+	public int getPendingCount() {
+		return (int) (head.get() - tail.get());
+	}
+
+	/** The size of the ring buffer. */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	public int getConsumers() {
+		return consumers;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+}
@@ -1,13 +1,18 @@
 package com.github.fwi.yapool;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * A LIFO pool that respects a minimum and maximum size.
@@ -22,8 +27,11 @@ public class BoundPool<T> extends Pool<T> {
 	
 	//private static final long serialVersionUID = -6944749838095746860L;
 
-	/** A concurrent set created via a concurrent hashmap. */
-	private Set<T> leased = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+	/** 
+	 * The entries of all resources in the pool (idle and leased), 
+	 * the state of an entry shows if the resource is leased.
+	 */
+	protected final PoolEntryMap<T> entries = new PoolEntryMap<T>();
 	
 	private AtomicInteger leasedSize = new AtomicInteger();
 	/** 
@@ -33,19 +41,36 @@ public class BoundPool<T> extends Pool<T> {
 	 */
 	private AtomicInteger resCount = new AtomicInteger();
 	
-	private volatile boolean syncCreation;
+	/** Maximum amount of resources created at the same time, 0 for no limit. */
+	private volatile int createPermits;
+	/** Limits concurrent resource creation, null when there is no limit. */
+	private volatile Semaphore createLock;
+	private volatile boolean createCoalescing;
+	private volatile boolean hedgedCreate;
+	/** Amount of resources being created in the background for waiting acquirers (see {@link #requestCreate()}). */
+	private final AtomicInteger createPending = new AtomicInteger();
 	private volatile int minSize = 0;
 	private volatile int maxSize = 4;
+	private volatile int minIdle = 0;
 	private volatile boolean opened;
-	
-	private final Semaphore createLock = new Semaphore(1, true);
+	private volatile Executor createExecutor;
+	private volatile int openParallelism = 1;
+	private volatile int openReadyAmount = 0;
+	private volatile IPoolRegistrar registrar;
+	/** Removes the registration of this pool by the {@link #registrar}, null if this pool is not registered. */
+	private final AtomicReference<Runnable> registration = new AtomicReference<Runnable>();
+	/** True while a background task is creating idle resources (see {@link #fillIdle()}). */
+	private final AtomicBoolean filling = new AtomicBoolean();
 
 	/** Opens the pool with {@link #getMinSize()} resources. */ 
 	public void open() {
 		open(minSize);
 	}
 	
-	/** Opens the pool with the given amount of resources. */ 
+	/** 
+	 * Opens the pool with the given amount of resources. 
+	 * Resources can be created in parallel, see {@link #setOpenParallelism(int)} and {@link #setOpenReadyAmount(int)}.
+	 */ 
 	public void open(int amount) {
 		
 		if (isClosed()) {
@@ -56,15 +81,29 @@ public class BoundPool<T> extends Pool<T> {
 		}
 		createdCount.set(0);
 		int toCreate = (amount > maxSize ? maxSize : amount < minSize ? minSize : amount);
-		try {
-			for (int i = 0; i < toCreate; i++) {
-				addIdle(create());
+		int parallel = Math.min(openParallelism, toCreate);
+		int ready = (openReadyAmount < 1 || openReadyAmount > toCreate ? toCreate : openReadyAmount);
+		if (parallel > 1 || ready < toCreate) {
+			openParallel(toCreate, Math.max(1, parallel), ready);
+		} else {
+			try {
+				for (int i = 0; i < toCreate; i++) {
+					PoolEntry<T> e = create(false, true);
+					if (e != null) {
+						addIdle(e);
+					}
+				}
+			} catch (Exception e) {
+				log.error("Could not create " + toCreate + " resource(s) while opening pool " + getPoolName() + ", created " + getIdleSize() + " resource(s).", e);
 			}
-		} catch (Exception e) {
-			log.error("Could not create " + toCreate + " resource(s) while opening pool " + getPoolName() + ", created " + getIdleSize() + " resource(s).", e);
 		}
 		opened = true;
-		fireEvent(PoolEvent.OPENED);
+		IPoolRegistrar registrar = getRegistrar();
+		if (registrar != null) {
+			register(registrar);
+		}
+		fireEvent(PoolEvent.CODE_OPENED);
+		fillIdle();
 	}
 	
 	@Override
@@ -72,33 +111,153 @@ public class BoundPool<T> extends Pool<T> {
 		
 		super.close();
 		flush();
+		unregister();
+	}
+
+	/**
+	 * Registers this (opened) pool, the registration is removed when this pool is closed.
+	 * A previous registration is removed first.
+	 */
+	protected void register(IPoolRegistrar registrar) {
+		register(registrar.register(this));
+	}
+
+	/**
+	 * Keeps the task that removes the registration of this pool, the task runs when this pool is closed.
+	 * A previous registration is removed first.
+	 * @param unregister the task returned by a {@link IPoolRegistrar}, can be null.
+	 */
+	protected void register(Runnable unregister) {
+
+		Runnable previous = registration.getAndSet(unregister);
+		if (previous != null) {
+			previous.run();
+		}
+		if (unregister != null && isClosed()) {
+			unregister();
+		}
+	}
+
+	/**
+	 * Removes the registration of this pool, if any.
+	 */
+	protected void unregister() {
+
+		Runnable unregister = registration.getAndSet(null);
+		if (unregister != null) {
+			try {
+				unregister.run();
+			} catch (Exception e) {
+				log.warn(getPoolName() + " could not remove pool registration.", e);
+			}
+		}
 	}
 	
 	/**
-	 * Creates a resource (in a synchronized manner if {@link #isSyncCreation()} is true), but only if pool is not full.
-	 * @return null or a new resource 
+	 * Creates the initial resources for {@link #open(int)} using tasks that run on {@link #getCreateExecutor()}.
+	 * Returns when the given amount of resources is ready, creation of remaining resources continues in the background.
+	 * When creating a resource fails, no more resources are created (the error is logged).
+	 * @param toCreate the total amount of resources to create.
+	 * @param parallel the amount of tasks creating resources at the same time.
+	 * @param ready the amount of resources to wait for.
+	 */
+	protected void openParallel(final int toCreate, final int parallel, final int ready) {
+		
+		final AtomicInteger remaining = new AtomicInteger(toCreate);
+		final AtomicInteger tasks = new AtomicInteger(parallel);
+		final CountDownLatch readyLatch = new CountDownLatch(ready);
+		Runnable openTask = () -> {
+			try {
+				while (remaining.getAndDecrement() > 0) {
+					PoolEntry<T> e = create(false, true);
+					if (e == null) {
+						// pool is full
+						break;
+					}
+					addIdle(e);
+					if (isClosed()) {
+						// resources in a closed pool must be destroyed.
+						drainIdle();
+						break;
+					}
+					readyLatch.countDown();
+				}
+			} catch (Exception e) {
+				log.error("Could not create " + toCreate + " resource(s) while opening pool " + getPoolName() + ", created " + getIdleSize() + " resource(s).", e);
+				// stop the other tasks
+				remaining.set(0);
+			} finally {
+				if (tasks.decrementAndGet() == 0) {
+					// no more resources will become ready, do not let open wait for them.
+					while (readyLatch.getCount() > 0) {
+						readyLatch.countDown();
+					}
+				}
+			}
+		};
+		Executor executor = getCreateExecutor();
+		for (int i = 0; i < parallel; i++) {
+			try {
+				executor.execute(openTask);
+			} catch (RejectedExecutionException ree) {
+				log.warn(getPoolName() + " could not start a task to create resources, creating resources via the calling thread: " + ree);
+				openTask.run();
+			}
+		}
+		try {
+			readyLatch.await();
+		} catch (InterruptedException ie) {
+			throw new RuntimeException(ie);
+		}
+	}
+	
+	/**
+	 * Creates a leased resource (respecting {@link #getCreatePermits()}), but only if pool is not full.
+	 * @return null or a new leased resource 
 	 */
 	@Override 
 	protected T create() {
 
-		return create(false, true);
+		PoolEntry<T> e = create(true, true);
+		return (e == null ? null : e.resource);
 	}
 	
 	/**
-	 * Creates a resource (in a synchronized manner if {@link #isSyncCreation()} is true), but only if pool is not full.
-	 * @param inLeasedState if true, registers the created resource as leased
+	 * Creates a resource (respecting {@link #getCreatePermits()}), but only if pool is not full.
+	 * Waits for a create permit without a deadline.
+	 * @param inLeasedState if true, registers the created resource as leased, else as idle 
+	 * (an idle resource must be added to the pool via {@link #addIdle(PoolEntry)}). 
 	 * @param rethrowRuntimeException if true, any factory-create RuntimeExcepions are re-thrown
-	 * @return null or a new (leased) resource.
+	 * @return null or the entry for a new (leased) resource.
 	 */
-	protected T create(boolean inLeasedState, boolean rethrowRuntimeException) {
+	protected PoolEntry<T> create(boolean inLeasedState, boolean rethrowRuntimeException) {
+		return create(inLeasedState, rethrowRuntimeException, deadlineNanos(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Creates a resource (respecting {@link #getCreatePermits()}), but only if pool is not full.
+	 * @param inLeasedState if true, registers the created resource as leased, else as idle 
+	 * (an idle resource must be added to the pool via {@link #addIdle(PoolEntry)}). 
+	 * @param rethrowRuntimeException if true, any factory-create RuntimeExcepions are re-thrown
+	 * @param deadlineNanos the deadline for waiting on a create permit, see {@link #deadlineNanos(long)}.
+	 * @return null or the entry for a new (leased) resource, null when no create permit was available before the deadline.
+	 */
+	protected PoolEntry<T> create(boolean inLeasedState, boolean rethrowRuntimeException, long deadlineNanos) {
 
 		T t = null;
-		// Use local boolean in case syncCreation value changes halfway this method.
-		boolean useLock = syncCreation;
-		try {
-			if (useLock) {
-				createLock.acquire();
+		PoolEntry<T> e = null;
+		// Use local reference in case createPermits value changes halfway this method.
+		Semaphore lock = createLock;
+		if (lock != null) {
+			try {
+				if (!lock.tryAcquire(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)) {
+					return null;
+				}
+			} catch (InterruptedException ie) {
+				throw new RuntimeException(ie);
 			}
+		}
+		try {
 			// check if pool is not already full
 			int size = resCount.incrementAndGet();
 			if (size > getMaxSize()) {
@@ -109,31 +268,31 @@ public class BoundPool<T> extends Pool<T> {
 			if (t == null) {
 				throwFactoryCreateFailed();
 			}
+			e = new PoolEntry<T>(t, (inLeasedState ? PoolEntry.LEASED : PoolEntry.IDLE));
+			e.created = getClock().currentTimeMillis();
+			entries.put(e);
 			if (inLeasedState) {
-				leased.add(t);
 				leasedSize.incrementAndGet();
 			}
-		} catch (InterruptedException ie) {
-			throw new RuntimeException(ie);
-		} catch (RuntimeException e) {
+		} catch (RuntimeException re) {
 			if (rethrowRuntimeException) {
-				throw e;
+				throw re;
 			} else {
-				log.error("Failed to create a new resource for pool " + getPoolName(), e);
+				log.error("Failed to create a new resource for pool " + getPoolName(), re);
 			}
 		} finally {
-			if (t == null) {
+			if (e == null) {
 				resCount.decrementAndGet();
 			}
-			if (useLock) {
-				createLock.release();
+			if (lock != null) {
+				lock.release();
 			}
 		}
-		if (t != null) {
+		if (e != null) {
 			createdCount.incrementAndGet();
-			fireEvent(PoolEvent.CREATED, t);
+			fireEvent(PoolEvent.CODE_CREATED, t);
 		}
-		return t;
+		return e;
 	}
 
 	/**
@@ -148,70 +307,422 @@ public class BoundPool<T> extends Pool<T> {
 	 * (e.g. connection to database is lost for a small period). At the same time, if resources can
 	 * be created again within the acquire-time, the caller will not notice that the resources were unavailable
 	 * for a small period.
+	 * <br>All steps share the deadline: time spent on creating a resource is not available for waiting
+	 * and waiting for a create permit (see {@link #setCreatePermits(int)}) stops at the deadline.
 	 */
 	@Override
-	public T acquire(long acquireTimeOutMs) {
+	public T acquireUntil(long deadlineNanos) {
+		return acquireEntryUntil(deadlineNanos).resource;
+	}
+	
+	/**
+	 * See {@link #acquire(long)}.
+	 * @return the entry of the acquired resource, never null.
+	 */
+	protected PoolEntry<T> acquireEntry(long acquireTimeOutMs) {
+		return acquireEntryUntil(deadlineNanos(acquireTimeOutMs));
+	}
+	
+	/**
+	 * See {@link #acquireUntil(long)}.
+	 * @return the entry of the acquired resource, never null.
+	 */
+	protected PoolEntry<T> acquireEntryUntil(long deadlineNanos) {
 		
+		final long acquireStart = System.nanoTime();
 		if (isClosed()) {
 			throw new IllegalStateException(getPoolName() + " pool is closed.");
 		}
-		fireEvent(PoolEvent.ACQUIRING);
-		T t = null;
+		fireEvent(PoolEvent.CODE_ACQUIRING);
+		PoolEntry<T> t = null;
 		try {
 			// See if one is available.
 			t = acquireIdle(0L);
 			if (t == null) {
 				// Check if a resource should be created.
-				if (getSize() < getMinSize() || !isFull()) {
-					// Create may take a long time if something is wrong, register start time.
-					final long createStart = System.currentTimeMillis();
+				if (isCreateCoalescing() && getSize() >= getMinSize() && !isFull()) {
+					t = acquireCoalesced(deadlineNanos);
+				} else if (isHedgedCreate() && getSize() >= getMinSize() && !isFull()) {
+					t = acquireHedged(deadlineNanos);
+				} else if (getSize() < getMinSize() || !isFull()) {
 					// Create without throwing error, will try acquire/create again below.
-					t = create(true, false);
+					t = create(true, false, deadlineNanos);
 					if (t == null) {
 						// Could not create resource, wait for one to become available.
-						// Substract the time it took to try to create a resource.
-						final long idleAcquireTime = acquireTimeOutMs - (System.currentTimeMillis() - createStart); 
-						t = acquireIdle(idleAcquireTime);
-						if (t == null && idleAcquireTime > 0L && !isFull()) {
+						// Create may have taken a long time if something is wrong, the deadline might have passed.
+						final boolean timeLeft = (remainingNanos(deadlineNanos) > 0L);
+						t = acquireIdleUntil(deadlineNanos);
+						if (t == null && timeLeft && !isFull()) {
 							// Try to create a resource again - resources might have been evicted while waiting for idle resource.
 							// Last time create is tried, throw an error if it fails.
-							t = create(true, true);
+							t = create(true, true, deadlineNanos);
 						}
 						// if t is still null, an error will be thrown, see below.
 					}
 				} else {
 					// Cannot create resource, wait for one to become available.
-					t = acquireIdle(acquireTimeOutMs);
+					t = acquireIdleUntil(deadlineNanos);
 					if (t == null && !isFull()) {
 						// Try to create a resource - resources might have been evicted while waiting for idle resource.
 						// Throw an error if create fails.
-						t = create(true, true);
+						t = create(true, true, deadlineNanos);
 					}
 				}
 				// Tried everything to acquire and/or create a resource within acquire-time.
 				if (t == null) {
-					throwAcquireTimeOut(acquireTimeOutMs);
+					throwAcquireTimeOut(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - acquireStart));
 				}
 			}
 			// at this point, t is not null or an error was thrown
 		} finally {
 			// Acquired event with t==null indicates acquired failed.
-			fireEvent(PoolEvent.ACQUIRED, t);
+			fireAcquired(t, acquireStart);
 		}
+		fillIdle();
 		return t;
 	}
 	
-	@Override
-	protected T acquireIdle(long acquireTimeOutMs) {
+	/**
+	 * Waits for a resource to be handed off while a resource is created in the background (see {@link #requestCreate()}).
+	 * If no resource was acquired before the deadline and the pool is not full, 
+	 * a resource is created via the calling thread (factory-create RuntimeExceptions are thrown).
+	 * @return null or the entry of the acquired resource.
+	 */
+	protected PoolEntry<T> acquireCoalesced(long deadlineNanos) {
+		return acquireHandedOff(deadlineNanos, w -> requestCreate());
+	}
+	
+	/**
+	 * Waits for a resource to be handed off while a resource is created in the background for the current thread 
+	 * (see {@link #createHedged(PoolWaiters.Waiter)}).
+	 * If no resource was acquired before the deadline and the pool is not full, 
+	 * a resource is created via the calling thread (factory-create RuntimeExceptions are thrown).
+	 * @return null or the entry of the acquired resource.
+	 */
+	protected PoolEntry<T> acquireHedged(long deadlineNanos) {
+		return acquireHandedOff(deadlineNanos, this::createHedged);
+	}
+	
+	/**
+	 * Waits in hand-off mode for a resource, created resources are handed off to waiters.
+	 * @param deadlineNanos the deadline for waiting, see {@link #deadlineNanos(long)}.
+	 * @param waiting called when the current thread is going to wait.
+	 * @return null or the entry of the acquired resource.
+	 */
+	protected PoolEntry<T> acquireHandedOff(long deadlineNanos, Consumer<? super PoolWaiter> waiting) {
 		
-		T t = super.acquireIdle(acquireTimeOutMs);
+		PoolEntry<T> t = acquireIdleHandOffUntil(deadlineNanos, waiting);
 		if (t != null) {
-			leasedSize.incrementAndGet();
-			leased.add(t);
+			registerLeased(t);
+		} else if (!isFull()) {
+			// Background creation might have failed, last try.
+			t = create(true, true, deadlineNanos);
 		}
 		return t;
 	}
 	
+	/**
+	 * Starts a background task (via {@link #getCreateExecutor()}) that creates an idle resource,
+	 * but only if there are more acquirers waiting (see {@link #waiters}) than there are resources being created.
+	 * The created resource is handed off to the oldest waiting acquirer.
+	 * A resource released in the meantime is also handed off to a waiting acquirer, 
+	 * in that case a created resource is handed off to the next waiting acquirer or becomes idle.
+	 * <br>The amount of resources being created in the background is limited by {@link #getCreatePermits()}.
+	 */
+	protected void requestCreate() {
+		
+		while (true) {
+			int pending = createPending.get();
+			int permits = createPermits;
+			if (pending >= waiters.size() || (permits > 0 && pending >= permits) || isFull() || isClosed()) {
+				return;
+			}
+			if (createPending.compareAndSet(pending, pending + 1)) {
+				break;
+			}
+		}
+		try {
+			getCreateExecutor().execute(this::requestedCreateTask);
+		} catch (RejectedExecutionException ree) {
+			createPending.decrementAndGet();
+			log.warn(getPoolName() + " could not start a task to create a resource: " + ree);
+		}
+	}
+	
+	/**
+	 * Creates a resource requested via {@link #requestCreate()} and adds it to the idle resources. 
+	 * Any errors are catched and logged.
+	 */
+	protected void requestedCreateTask() {
+		
+		PoolEntry<T> e = null;
+		try {
+			e = create(false, false);
+			if (e != null) {
+				addIdle(e);
+				if (isClosed()) {
+					// resources in a closed pool must be destroyed.
+					drainIdle();
+				}
+			}
+		} catch (Exception ex) {
+			log.error(getPoolName() + " failed to create a requested resource.", ex);
+		} finally {
+			createPending.decrementAndGet();
+		}
+		if (e != null) {
+			// More acquirers might be waiting for a resource (e.g. when the amount of create permits was reached).
+			requestCreate();
+		}
+	}
+	
+	/**
+	 * Starts a background task (via {@link #getCreateExecutor()}) that creates a resource for the given waiter.
+	 * If the waiter got a released resource first (or timed out), the created resource is added to the idle resources.
+	 * If the task cannot be started, the waiter keeps waiting for a released resource.
+	 */
+	protected void createHedged(PoolWaiters.Waiter<PoolEntry<T>> w) {
+		
+		if (isFull()) {
+			return;
+		}
+		Runnable createTask = () -> {
+			PoolEntry<T> e = null;
+			try {
+				e = create(false, false);
+			} catch (Exception ex) {
+				log.error(getPoolName() + " failed to create a resource for a waiting acquirer.", ex);
+			}
+			if (e == null) {
+				// Waiter keeps waiting for a released resource.
+				return;
+			}
+			if (w.handOff(e)) {
+				waiters.remove(w);
+			} else {
+				addIdle(e);
+				if (isClosed()) {
+					// resources in a closed pool must be destroyed.
+					drainIdle();
+				}
+			}
+		};
+		try {
+			getCreateExecutor().execute(createTask);
+		} catch (RejectedExecutionException ree) {
+			log.warn(getPoolName() + " could not start a task to create a resource: " + ree);
+		}
+	}
+	
+	/**
+	 * Acquires a resource without blocking the calling thread while waiting for an idle resource,
+	 * see also {@link #acquire(long)}.
+	 * <br>An idle resource is acquired via the calling thread, a new resource is created via {@link #getCreateExecutor()}.
+	 * If the pool is full, an asynchronous waiter is registered and the first released resource
+	 * is handed to the oldest waiter (see {@link #acquireIdleAsync(long)}).
+	 * When no resource was handed off within the time-out, the future completes exceptionally 
+	 * with a {@link NoSuchElementException} (unless resources were removed from the pool in the meantime,
+	 * in that case a resource is created via {@link #getCreateExecutor()}).
+	 */
+	@Override
+	public CompletableFuture<T> acquireAsync(long acquireTimeOutMs) {
+		return toResourceFuture(acquireEntryAsync(acquireTimeOutMs));
+	}
+	
+	/**
+	 * @return a future that completes with the resource of the entry.
+	 * If the returned future is cancelled before the resource is acquired, the resource is released to the pool.
+	 */
+	protected CompletableFuture<T> toResourceFuture(CompletableFuture<PoolEntry<T>> entryFuture) {
+		
+		CompletableFuture<T> f = new CompletableFuture<T>();
+		entryFuture.whenComplete((e, error) -> {
+			if (error != null) {
+				f.completeExceptionally(error);
+			} else if (!f.complete(e.resource)) {
+				// future was cancelled, prevent resource leakage.
+				release(e.resource);
+			}
+		});
+		return f;
+	}
+	
+	/**
+	 * See {@link #acquireAsync(long)}.
+	 * @return a future that completes with the entry of the acquired resource.
+	 */
+	protected CompletableFuture<PoolEntry<T>> acquireEntryAsync(long acquireTimeOutMs) {
+		
+		if (isClosed()) {
+			return failedFuture(new IllegalStateException(getPoolName() + " pool is closed."));
+		}
+		final long acquireStart = System.nanoTime();
+		fireEvent(PoolEvent.CODE_ACQUIRING);
+		final long deadlineNanos = deadlineNanos(acquireTimeOutMs);
+		CompletableFuture<PoolEntry<T>> f = null;
+		try {
+			PoolEntry<T> t = acquireIdle(0L);
+			boolean createInBackground = (t == null && (isCreateCoalescing() || isHedgedCreate()) 
+					&& acquireTimeOutMs > 0L && getSize() >= getMinSize());
+			if (t != null) {
+				f = CompletableFuture.completedFuture(t);
+			} else if (createInBackground) {
+				Consumer<PoolWaiter> waiting = (isCreateCoalescing() ? w -> requestCreate() : this::createHedged);
+				f = acquireIdleAsync(acquireTimeOutMs, waiting)
+						.thenCompose(e -> (e == null ? createAfterTimeOut(acquireTimeOutMs, deadlineNanos) : CompletableFuture.completedFuture(e)));
+			} else if (!isFull()) {
+				// Create without throwing error, wait for an idle resource if the pool became full in the meantime.
+				f = createAsync(false, deadlineNanos)
+						.thenCompose(e -> (e == null ? acquireIdleAsyncUntil(acquireTimeOutMs, deadlineNanos) : CompletableFuture.completedFuture(e)));
+			} else if (acquireTimeOutMs > 0L) {
+				f = acquireIdleAsyncUntil(acquireTimeOutMs, deadlineNanos);
+			} else {
+				throwAcquireTimeOut(acquireTimeOutMs);
+			}
+		} catch (RuntimeException re) {
+			f = failedFuture(re);
+		}
+		// Acquired event with resource null indicates acquired failed.
+		return f.whenComplete((e, error) -> {
+			fireAcquired(e, acquireStart);
+			fillIdle();
+		});
+	}
+
+	/**
+	 * Fires the acquired event, the event's resource is null when the acquire failed.
+	 * Registers the lease start time when a pool listener wants the release event (see {@link #getLeaseStartNanos(Object)}).
+	 */
+	protected void fireAcquired(PoolEntry<T> e, long acquireStartNanos) {
+
+		if (e != null && getEvents().wantEvent(PoolEvent.CODE_RELEASING)) {
+			e.leaseStart = System.nanoTime();
+		}
+		fireAcquired((e == null ? null : e.resource), acquireStartNanos);
+	}
+	
+	/**
+	 * Starts a background task (via {@link #getCreateExecutor()}) that creates idle resources 
+	 * when the amount of idle resources is below {@link #getMinIdle()} and the pool is not full.
+	 * Only one background task per pool is active at any time.
+	 */
+	protected void fillIdle() {
+		
+		// Idle store size is a cheap check, thread cache size is not.
+		if (minIdle < 1 || idleStore.size() >= minIdle || isFull() || isClosed() 
+				|| !filling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			getCreateExecutor().execute(this::fillIdleTask);
+		} catch (RejectedExecutionException ree) {
+			filling.set(false);
+			log.warn(getPoolName() + " could not start a task to create idle resources: " + ree);
+		}
+	}
+	
+	/**
+	 * Creates idle resources until {@link #getMinIdle()} is reached or the pool is full.
+	 * Any errors are catched and logged.
+	 */
+	protected void fillIdleTask() {
+		
+		boolean created = true;
+		try {
+			while (!isClosed() && !isFull() && getIdleSize() < getMinIdle()) {
+				PoolEntry<T> e = create(false, false);
+				if (e == null) {
+					// Pool is full or factory failed (error is logged), do not try again until next acquire.
+					created = false;
+					break;
+				}
+				addIdle(e);
+				if (isClosed()) {
+					// resources in a closed pool must be destroyed.
+					drainIdle();
+				}
+			}
+		} catch (Exception e) {
+			created = false;
+			log.error(getPoolName() + " failed to create idle resources.", e);
+		} finally {
+			filling.set(false);
+		}
+		if (created) {
+			// Resources may have been acquired after the last check.
+			fillIdle();
+		}
+	}
+	
+	/**
+	 * Waits for an idle resource until the deadline of an asynchronous acquire,
+	 * tries to create a resource (see {@link #createAfterTimeOut(long, long)}) when none was handed off.
+	 */
+	protected CompletableFuture<PoolEntry<T>> acquireIdleAsyncUntil(long acquireTimeOutMs, long deadlineNanos) {
+		
+		long remainingMs = TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadlineNanos) + TimeUnit.MILLISECONDS.toNanos(1L) - 1L);
+		if (remainingMs <= 0L) {
+			return createAfterTimeOut(acquireTimeOutMs, deadlineNanos);
+		}
+		return acquireIdleAsync(remainingMs)
+				.thenCompose(e -> (e == null ? createAfterTimeOut(acquireTimeOutMs, deadlineNanos) : CompletableFuture.completedFuture(e)));
+	}
+
+	/**
+	 * Called when an asynchronous acquire timed out, 
+	 * tries to create a resource if resources were removed from the pool while waiting for an idle resource.
+	 * @param deadlineNanos the deadline of the acquire, a create permit is only used when it is available right away.
+	 */
+	protected CompletableFuture<PoolEntry<T>> createAfterTimeOut(long acquireTimeOutMs, long deadlineNanos) {
+		
+		if (isFull() || isClosed()) {
+			try {
+				throwAcquireTimeOut(acquireTimeOutMs);
+			} catch (RuntimeException re) {
+				return failedFuture(re);
+			}
+		}
+		return createAsync(true, deadlineNanos).thenApply(e -> {
+			if (e == null) {
+				throwAcquireTimeOut(acquireTimeOutMs);
+			}
+			return e;
+		});
+	}
+
+	/**
+	 * Creates a leased resource via {@link #getCreateExecutor()}, 
+	 * the calling thread (e.g. a scheduler's thread) does not wait for the (possibly slow) factory.
+	 * @param rethrowRuntimeException if false, the future completes with null when the pool is full or the factory failed.
+	 * @param deadlineNanos the deadline for waiting on a create permit, see {@link #create(boolean, boolean, long)}.
+	 */
+	protected CompletableFuture<PoolEntry<T>> createAsync(boolean rethrowRuntimeException, long deadlineNanos) {
+		
+		try {
+			return CompletableFuture.supplyAsync(() -> create(true, rethrowRuntimeException, deadlineNanos), getCreateExecutor());
+		} catch (RejectedExecutionException ree) {
+			return failedFuture(new IllegalStateException(getPoolName() + " could not start a task to create a resource: " + ree));
+		}
+	}
+	
+	@Override
+	protected PoolEntry<T> acquireIdleUntil(long deadlineNanos) {
+		
+		PoolEntry<T> e = super.acquireIdleUntil(deadlineNanos);
+		if (e != null) {
+			registerLeased(e);
+		}
+		return e;
+	}
+	
+	@Override
+	protected void registerLeased(PoolEntry<T> e) {
+		
+		// Entries in the idle store are always idle, the idle store hands out an entry only once.
+		e.compareAndSetState(PoolEntry.IDLE, PoolEntry.LEASED);
+		leasedSize.incrementAndGet();
+	}
+	
 	/**
 	 * Puts the resource back in the pool so that it can be re-used.
 	 * If the resource was evicted or not leased (i.e. a foreign resource), 
@@ -222,10 +733,12 @@ public class BoundPool<T> extends Pool<T> {
 	@Override
 	public T release(T t) {
 		
-		boolean removed = leased.remove(t); 
+		PoolEntry<T> e = entries.get(t);
+		boolean removed = (e != null && e.compareAndSetState(PoolEntry.LEASED, PoolEntry.IDLE));
 		if (removed) {
-			super.release(t);
 			leasedSize.decrementAndGet();
+			fireEvent(PoolEvent.CODE_RELEASING, t);
+			releaseIdle(e);
 		} else {
 			if (log.isDebugEnabled()) {
 				log.debug("Released resource is not part of pool " + getPoolName() + ": " + t);
@@ -247,51 +760,73 @@ public class BoundPool<T> extends Pool<T> {
 	}
 	
 	/**
-	 * Tries to remove the given resource from the idle-queue.
+	 * Tries to remove the given resource from the thread cache or idle-queue.
 	 * On success, destroys the resource.
-	 * @param t the resource to remove from the idle-queue. 
+	 * @param e the entry of the resource to remove from the thread cache or idle-queue. 
 	 * If null, last resource in queue is removed (which is longest in the idle-queue). 
-	 * @return null if the resource could not be removed from the idle-queue, else the given resource.
+	 * @return null if the resource could not be removed from the idle-queue, else the removed resource.
 	 */
-	protected T removeIdle(T t, boolean fireIdledEvent) {
+	protected T removeIdle(PoolEntry<T> e, boolean fireIdledEvent) {
 		
-		try {
-			if (!idle.tryAcquire(0, TimeUnit.SECONDS)) {
-				// idle-queue is empty
-				return null;
-			}
-		} catch (InterruptedException ie) {
-			throw new RuntimeException(ie);
-		}
-		// we now have a permit to remove a resouce from the idle-queue 
-		T removed = null;
-		if (t == null) {
-			// remove resource longest in queue
-			removed = idleQueue.pollLast();
+		PoolEntry<T> removed = null;
+		if (e == null) {
+			// resources in the idle-queue have been idle the longest.
+			removed = removeQueued(null);
 			if (removed == null) {
-				// we have a permit but no resource in the queue --> something is very wrong.
-				log.error("Pool " + getPoolName() + " out of sync, idle count: " + getIdleSize() + ", idle in queue: " + idleQueue.size());
+				removed = removeCached(null);
 			}
 		} else {
-			if (idleQueue.remove(t)) {
-				removed = t;
-			} else {
-				// resource was no longer in the queue (was probably acquired)
-				// nothing removed from idle-queue so release the permit we got earlier.
-				idle.release();
+			removed = removeCached(e);
+			if (removed == null) {
+				removed = removeQueued(e);
 			}
 		}
-		if (removed != null) {
-			resCount.decrementAndGet();
-			if (log.isDebugEnabled()) {
-				log.debug("Removed idle resource from pool " + getPoolName() + ": " + removed);
-			}
-			if (fireIdledEvent) {
-				fireEvent(PoolEvent.IDLE_EXPIRED, removed);
-			}
-			destroy(removed);
+		if (removed == null || !removed.compareAndSetState(PoolEntry.IDLE, PoolEntry.REMOVED)) {
+			return null;
+		}
+		entries.remove(removed);
+		resCount.decrementAndGet();
+		removed(removed);
+		T t = removed.resource;
+		if (log.isDebugEnabled()) {
+			log.debug("Removed idle resource from pool " + getPoolName() + ": " + t);
+		}
+		if (fireIdledEvent) {
+			fireEvent(PoolEvent.CODE_IDLE_EXPIRED, t);
 		}
-		return removed;
+		destroy(t);
+		return t;
+	}
+	
+	/**
+	 * Removes the given entry from the thread cache, if a thread cache is used.
+	 * @param e if null, any entry in the thread cache is removed.
+	 * @return null if the entry could not be removed from the thread cache, else the removed entry.
+	 */
+	protected PoolEntry<T> removeCached(PoolEntry<T> e) {
+		
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		if (cache == null) {
+			return null;
+		}
+		if (e == null) {
+			return cache.steal();
+		}
+		return (cache.remove(e) ? e : null);
+	}
+	
+	/**
+	 * Tries to remove the given entry from the idle-queue (the idle store).
+	 * @param e if null, last entry in queue is removed.
+	 * @return null if the entry could not be removed from the idle-queue, else the removed entry.
+	 */
+	protected PoolEntry<T> removeQueued(PoolEntry<T> e) {
+		
+		if (e == null) {
+			// remove resource longest in queue
+			return idleStore.pollLast();
+		}
+		return (idleStore.remove(e) ? e : null);
 	}
 	
 	/**
@@ -315,7 +850,9 @@ public class BoundPool<T> extends Pool<T> {
 	 * @return true if the resource was found in the idle resources list and evicted.
 	 */
 	public boolean evictIdle(T t) {
-		return (removeIdle(t, false) != null);
+		
+		PoolEntry<T> e = entries.get(t);
+		return (e != null && removeIdle(e, false) != null);
 	}
 
 	/**
@@ -327,15 +864,31 @@ public class BoundPool<T> extends Pool<T> {
 	 */
 	protected T removeLeased(T t, boolean destroyEvicted, boolean fireLeaseExpiredEvent) {
 		
-		boolean removed = leased.remove(t); 
+		PoolEntry<T> e = entries.get(t);
+		return (e == null ? null : removeLeased(e, destroyEvicted, fireLeaseExpiredEvent));
+	}
+
+	/**
+	 * Removes a leased resource from the pool.
+	 * @param e The entry of the leased resource to remove
+	 * @param destroyEvicted If true, the removed resource is also destroyed.
+	 * @param fireLeaseExpiredEvent If true, a {@link PoolEvent#LEASE_EXPIRED} is fired.
+	 * @return null if the leased resource could not be removed from the pool, else the removed resource. 
+	 */
+	protected T removeLeased(PoolEntry<T> e, boolean destroyEvicted, boolean fireLeaseExpiredEvent) {
+		
+		boolean removed = e.compareAndSetState(PoolEntry.LEASED, PoolEntry.REMOVED); 
+		T t = e.resource;
 		if (removed) {
+			entries.remove(e);
 			resCount.decrementAndGet();
 			leasedSize.decrementAndGet();
+			removed(e);
 			if (log.isDebugEnabled()) {
 				log.debug("Evicted resource from pool " + getPoolName() + ": " + t);
 			}
 			if (fireLeaseExpiredEvent) {
-				fireEvent(PoolEvent.LEASE_EXPIRED, t);
+				fireEvent(PoolEvent.CODE_LEASE_EXPIRED, t);
 			}
 			if (destroyEvicted) {
 				destroy(t);
@@ -344,13 +897,19 @@ public class BoundPool<T> extends Pool<T> {
 		return (removed ? t : null);
 	}
 	
+	/**
+	 * Called when the entry of a resource was removed from the pool (the entry has state {@link PoolEntry#REMOVED}).
+	 * Does nothing by default.
+	 */
+	protected void removed(PoolEntry<T> e) {}
+	
 	/** 
 	 * Calls the factory to destroy the resource and fires a destroy-event.
 	 * Method is called when resource is removed from pool. 
 	 */
 	protected void destroy(T t) {
 		
-		fireEvent(PoolEvent.DESTROYING, t);
+		fireEvent(PoolEvent.CODE_DESTROYING, t);
 		try {
 			getFactory().destroy(t);
 		} catch (Exception e) {
@@ -374,8 +933,9 @@ public class BoundPool<T> extends Pool<T> {
 	protected Set<T> evictAll(boolean destroyEvicted) {
 		
 		HashSet<T> s = new HashSet<T>();
-		for (T t : leased) {
-			if (removeLeased(t, destroyEvicted, false) != null) {
+		for (PoolEntry<T> e : entries.getEntries()) {
+			T t = removeLeased(e, destroyEvicted, false);
+			if (t != null) {
 				s.add(t);
 			}
 		}
@@ -424,6 +984,86 @@ public class BoundPool<T> extends Pool<T> {
 		}
 	}
 
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * The amount of idle resources to keep ready for leasing.
+	 * When the amount of idle resources drops below this value (e.g. after an acquire), 
+	 * resources are created in the background (via {@link #getCreateExecutor()}) 
+	 * so that acquiring threads do not have to wait for a resource to be created.
+	 * The maximum size of the pool is always respected.
+	 * <br>Unlike {@link #setMinSize(int)}, this setting grows the pool ahead of demand.
+	 * Default 0 (no idle resources are created in the background).
+	 */
+	public void setMinIdle(int minIdle) {
+		
+		if (minIdle >= 0) {
+			this.minIdle = minIdle;
+			if (isOpen()) {
+				fillIdle();
+			}
+		}
+	}
+
+	/**
+	 * The executor used to create idle resources in the background, see {@link #setMinIdle(int)}.
+	 * Default the shared {@link PoolScheduler#getCreateExecutor()}.
+	 */
+	public Executor getCreateExecutor() {
+		
+		Executor e = createExecutor;
+		return (e == null ? PoolScheduler.getCreateExecutor() : e);
+	}
+
+	public void setCreateExecutor(Executor createExecutor) {
+		this.createExecutor = createExecutor;
+	}
+
+	public int getOpenParallelism() {
+		return openParallelism;
+	}
+
+	/**
+	 * The amount of resources created at the same time when the pool is opened (see {@link #open(int)}).
+	 * When larger than 1, resources are created by tasks running on {@link #getCreateExecutor()}.
+	 * Default 1 (resources are created one by one by the thread opening the pool).
+	 */
+	public void setOpenParallelism(int openParallelism) {
+		
+		if (openParallelism > 0) {
+			this.openParallelism = openParallelism;
+		}
+	}
+
+	public int getOpenReadyAmount() {
+		return openReadyAmount;
+	}
+
+	/**
+	 * The amount of resources that must be ready before {@link #open(int)} returns.
+	 * Remaining resources are created in the background by tasks running on {@link #getCreateExecutor()}.
+	 * Default 0 (open returns when all resources are created).
+	 */
+	public void setOpenReadyAmount(int openReadyAmount) {
+		
+		if (openReadyAmount >= 0) {
+			this.openReadyAmount = openReadyAmount;
+		}
+	}
+
+	/**
+	 * The {@link System#nanoTime()} a resource was leased, also available while the resource's release event is fired.
+	 * The lease start time is only registered when a pool listener wants the {@link PoolEvent#RELEASING} event.
+	 * @return 0 if the resource is not part of this pool or the lease start time is unknown.
+	 */
+	public long getLeaseStartNanos(Object t) {
+
+		PoolEntry<T> e = entries.get(t);
+		return (e == null ? 0L : e.leaseStart);
+	}
+
 	public int getLeasedSize() {
 		return leasedSize.get();
 	}
@@ -444,17 +1084,83 @@ public class BoundPool<T> extends Pool<T> {
 		return opened; 
 	}  
 
+	/** True if {@link #getCreatePermits()} is 1. */
 	public boolean isSyncCreation() {
-		return syncCreation;
+		return (createPermits == 1);
 	}
 
 	/**
-	 * If true, new pool resources are created one by one.
-	 * If false, multiple pool resources can be created at the same time.
+	 * If true, new pool resources are created one by one (same as {@link #setCreatePermits(int)} with value 1).
+	 * If false, multiple pool resources can be created at the same time (same as {@link #setCreatePermits(int)} with value 0).
 	 * Default is false.
 	 */
 	public void setSyncCreation(boolean syncCreation) {
-		this.syncCreation = syncCreation;
+		setCreatePermits(syncCreation ? 1 : 0);
 	}
-	
+
+	public int getCreatePermits() {
+		return createPermits;
+	}
+
+	/**
+	 * The maximum amount of resources that can be created at the same time.
+	 * Threads that want to create a resource when this maximum is reached, wait for a permit (in order of arrival).
+	 * <br>When changed while resources are being created, the new maximum applies to resources created after the change.
+	 * Default 0 (no limit).
+	 */
+	public void setCreatePermits(int createPermits) {
+		
+		if (createPermits >= 0) {
+			this.createLock = (createPermits > 0 ? new Semaphore(createPermits, true) : null);
+			this.createPermits = createPermits;
+		}
+	}
+
+	public boolean isCreateCoalescing() {
+		return createCoalescing;
+	}
+
+	/**
+	 * If true, acquirers do not create a resource themselves when there is no idle resource.
+	 * Instead, acquirers wait for a resource to be handed off (see {@link #isHandOff()}) while resources are created in the background
+	 * (via {@link #getCreateExecutor()}). The amount of resources being created is at most the amount of waiting acquirers,
+	 * so that a burst of acquirers does not trigger a create for each acquirer
+	 * when resources that are being created or released can serve them.
+	 * <br>An acquirer that did not get a resource within the acquire time-out tries to create a resource itself.
+	 * Default false.
+	 */
+	public void setCreateCoalescing(boolean createCoalescing) {
+		this.createCoalescing = createCoalescing;
+	}
+
+	public boolean isHedgedCreate() {
+		return hedgedCreate;
+	}
+
+	/**
+	 * If true, an acquirer that finds no idle resource starts creating a resource in the background 
+	 * (via {@link #getCreateExecutor()}) and takes whichever resource becomes available first:
+	 * a resource released by another thread or the created resource.
+	 * A created resource that was not needed by the acquirer is handed off to another waiting acquirer or becomes idle.
+	 * This removes the time it takes to create a resource from the acquire time when resources are released frequently.
+	 * <br>{@link #setCreateCoalescing(boolean)} takes precedence over this setting.
+	 * Default false.
+	 */
+	public void setHedgedCreate(boolean hedgedCreate) {
+		this.hedgedCreate = hedgedCreate;
+	}
+
+	public IPoolRegistrar getRegistrar() {
+		return registrar;
+	}
+
+	/**
+	 * If set, the pool is registered when the pool is opened (e.g. as MBean, see {@code com.github.fwi.yapool.jmx.JmxRegistrar}).
+	 * The registration is removed when the pool is closed.
+	 * Default null.
+	 */
+	public void setRegistrar(IPoolRegistrar registrar) {
+		this.registrar = registrar;
+	}
+
 }
@@ -0,0 +1,81 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that caches the system time, the cached time is updated by a task running on the {@link PoolScheduler}.
+ * Reading the time is as cheap as reading a volatile field,
+ * but the time is behind the system time by at most the tick time (and any scheduling delay).
+ * <br>A shared instance that ticks every {@link #DEFAULT_TICK_MS} is available via {@link #getInstance()}.
+ * @author FWiers
+ *
+ */
+public class CachedClock implements IPoolClock {
+
+	/** 10 milliseconds */
+	public static final long DEFAULT_TICK_MS = 10L;
+
+	private static class SingletonHolder {
+		public static final CachedClock INSTANCE = new CachedClock(DEFAULT_TICK_MS).start();
+	}
+
+	/** The shared cached clock, started on first use and never stopped. */
+	public static CachedClock getInstance() {
+		return SingletonHolder.INSTANCE;
+	}
+
+	private final long tickMs;
+	private volatile long now = System.currentTimeMillis();
+	private ScheduledFuture<?> ticker;
+
+	/**
+	 * Creates a clock that must be started, see {@link #start()}.
+	 * @param tickMs the interval at which the cached time is updated.
+	 */
+	public CachedClock(long tickMs) {
+		super();
+		if (tickMs < 1L) {
+			throw new IllegalArgumentException("Tick time must be larger than 0.");
+		}
+		this.tickMs = tickMs;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return now;
+	}
+
+	/** Updates the cached time. */
+	public void tick() {
+		now = System.currentTimeMillis();
+	}
+
+	/** Starts updating the cached time regularly. */
+	public synchronized CachedClock start() {
+
+		if (ticker == null) {
+			tick();
+			ticker = PoolScheduler.getInstance().scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+		}
+		return this;
+	}
+
+	/** Stops updating the cached time. */
+	public synchronized void stop() {
+
+		if (ticker != null) {
+			ticker.cancel(false);
+			ticker = null;
+		}
+	}
+
+	public synchronized boolean isStarted() {
+		return (ticker != null);
+	}
+
+	public long getTickMs() {
+		return tickMs;
+	}
+
+}
@@ -0,0 +1,240 @@
+package com.github.fwi.yapool;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The default idle store: an {@link ArrayDeque} for the resources guarded by a {@link ReentrantLock}.
+ * <br>The deque is the only bookkeeping: the amount of idle resources is the size of the deque
+ * and both are only updated while holding the lock, so that they cannot drift apart.
+ * Unlike a linked deque, an array deque does not allocate a node for each added resource: 
+ * adding and taking resources does not allocate memory unless the deque grows or a thread has to wait for a resource.
+ * <br>A store that is not fair lets waiting threads compete for an added resource (a thread that does not wait can overtake).
+ * A fair store hands an added resource directly to the thread waiting the longest.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class DequeIdleStore<T> implements IIdleStore<T> {
+
+	/** A thread waiting for a resource in a fair store. */
+	protected static final class Waiter<T> {
+
+		final Condition handedOff;
+		T item;
+
+		Waiter(Condition handedOff) {
+			this.handedOff = handedOff;
+		}
+	}
+
+	/** Guards the idle queue and the waiting threads. */
+	protected final ReentrantLock lock = new ReentrantLock();
+
+	/** Signalled when a resource is added to a store that is not fair. */
+	protected final Condition notEmpty = lock.newCondition();
+
+	/** A LIFO queue containing resources ready to be leased, access must be guarded by the {@link #lock}. */
+	protected final ArrayDeque<T> idleQueue = new ArrayDeque<T>();
+
+	/** Threads waiting for a resource in a fair store (longest waiting first), access must be guarded by the {@link #lock}. */
+	protected final ArrayDeque<Waiter<T>> fairWaiters = new ArrayDeque<Waiter<T>>();
+
+	protected volatile boolean fair;
+
+	/** The size of the idle queue, updated while holding the lock so that it can be read without the lock. */
+	private volatile int size;
+
+	/** The amount of waiting threads, updated while holding the lock. */
+	private volatile int waiting;
+
+	/** A store that gives resources in a fast manner. */
+	public DequeIdleStore() {
+		this(false);
+	}
+
+	/**
+	 * @param fair see {@link #isFair()}
+	 */
+	public DequeIdleStore(boolean fair) {
+		super();
+		this.fair = fair;
+	}
+
+	@Override
+	public void addFirst(T t) {
+
+		lock.lock();
+		try {
+			if (fair) {
+				Waiter<T> w = fairWaiters.pollFirst();
+				if (w != null) {
+					w.item = t;
+					w.handedOff.signal();
+					return;
+				}
+			}
+			idleQueue.addFirst(t);
+			size = idleQueue.size();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll() {
+
+		try {
+			return poll(0L, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			throw new RuntimeException(ie);
+		}
+	}
+
+	@Override
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+		long waitNanos = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			// In a fair store, resources are handed off to waiting threads: the queue is empty while threads are waiting.
+			T t = pollFirst();
+			if (t != null || waitNanos <= 0L) {
+				return t;
+			}
+			waiting = waiting + 1;
+			try {
+				if (fair) {
+					return awaitHandOff(waitNanos);
+				}
+				while ((t = pollFirst()) == null && waitNanos > 0L) {
+					waitNanos = notEmpty.awaitNanos(waitNanos);
+				}
+				return t;
+			} finally {
+				waiting = waiting - 1;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits in line for a resource that is handed off by {@link #addFirst(Object)}, lock must be held.
+	 * @return the handed off resource or null on time-out.
+	 */
+	protected T awaitHandOff(long waitNanos) throws InterruptedException {
+
+		Waiter<T> w = new Waiter<T>(lock.newCondition());
+		fairWaiters.addLast(w);
+		try {
+			while (w.item == null && waitNanos > 0L) {
+				waitNanos = w.handedOff.awaitNanos(waitNanos);
+			}
+		} catch (InterruptedException ie) {
+			if (w.item == null) {
+				throw ie;
+			}
+			// resource was handed off before the interrupt, do not lose it.
+			Thread.currentThread().interrupt();
+		} finally {
+			if (w.item == null) {
+				fairWaiters.remove(w);
+			}
+		}
+		return w.item;
+	}
+
+	/** Takes a resource from the head of the queue, lock must be held. */
+	private T pollFirst() {
+
+		T t = idleQueue.pollFirst();
+		if (t != null) {
+			size = idleQueue.size();
+		}
+		return t;
+	}
+
+	@Override
+	public T pollLast() {
+
+		lock.lock();
+		try {
+			T t = idleQueue.pollLast();
+			if (t != null) {
+				size = idleQueue.size();
+			}
+			return t;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T peekLast() {
+		
+		lock.lock();
+		try {
+			return idleQueue.peekLast();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(T t) {
+
+		lock.lock();
+		try {
+			boolean removed = idleQueue.remove(t);
+			if (removed) {
+				size = idleQueue.size();
+			}
+			return removed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getWaitingSize() {
+		return waiting;
+	}
+
+	@Override
+	public boolean isFair() {
+		return fair;
+	}
+
+	/**
+	 * Preferably use {@link #DequeIdleStore(boolean)} instead.
+	 * Resources in the store are kept.
+	 * @throws IllegalStateException when threads are waiting for a resource 
+	 * (these threads wait in the manner of the current setting).
+	 */
+	@Override
+	public void setFair(boolean fair) {
+
+		lock.lock();
+		try {
+			if (fair == this.fair) {
+				return;
+			}
+			if (waiting > 0) {
+				throw new IllegalStateException("Cannot change fairness while threads are waiting for a resource.");
+			}
+			this.fair = fair;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
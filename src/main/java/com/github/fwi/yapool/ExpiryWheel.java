@@ -0,0 +1,201 @@
+package com.github.fwi.yapool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A hashed timing wheel that keeps track of deadlines (e.g. the lease end of a resource, see {@link PrunedPool}).
+ * Finding the items for which the deadline passed ({@link #expire(long)}) only touches the wheel-slots
+ * for the time passed since the previous call, and the items in these slots.
+ * The cost of finding expired items is not related to the total amount of items in the wheel.
+ * <br>Items with a deadline beyond one rotation of the wheel ({@link #getTickMs()} times the amount of slots)
+ * are visited once per rotation.
+ * <p>
+ * Implementation notes.
+ * Each slot contains a lock-free stack of {@link Expiry} nodes (nodes are pushed via compare-and-set).
+ * {@link #expire(long)} takes all nodes from a slot at once and pushes nodes that are not yet due back into the wheel.
+ * Threads adding nodes share a read-lock, {@link #expire(long)} uses the write-lock
+ * so that no node is added to a slot that was just emptied.
+ * <br>An expiry can be cancelled without removing the node from the wheel (the node forgets the item),
+ * the cancelled node is removed when the slot is visited.
+ * @author FWiers
+ *
+ * @param <E> The type of item with a deadline.
+ */
+public class ExpiryWheel<E> {
+
+	/** 10 milliseconds */
+	public static final long DEFAULT_TICK_MS = 10L;
+	/** 2048 slots (about 20 seconds per rotation with the default tick) */
+	public static final int DEFAULT_SLOTS = 2048;
+
+	/** The deadline of an item in the wheel. */
+	public static class Expiry<E> {
+
+		private volatile E item;
+		private final long deadline;
+		private Expiry<E> next;
+
+		public Expiry(E item, long deadline) {
+			super();
+			this.item = item;
+			this.deadline = deadline;
+		}
+
+		/** @return the item, or null if this expiry was cancelled. */
+		public E getItem() {
+			return item;
+		}
+
+		public long getDeadline() {
+			return deadline;
+		}
+
+		/** Cancels this expiry, the wheel no longer references the item. */
+		public void cancel() {
+			item = null;
+		}
+
+		public boolean isCancelled() {
+			return (item == null);
+		}
+	}
+
+	private final long tickMs;
+	private final int mask;
+	private final AtomicReferenceArray<Expiry<E>> slots;
+	private final AtomicInteger size = new AtomicInteger();
+	private final StampedLock lock = new StampedLock();
+	/** The last tick for which all due items were returned by {@link #expire(long)}. */
+	private long lastTick;
+
+	/** A wheel with {@link #DEFAULT_TICK_MS} and {@link #DEFAULT_SLOTS}, starting at the current time. */
+	public ExpiryWheel() {
+		this(DEFAULT_TICK_MS, DEFAULT_SLOTS, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param tickMs the time-span of one slot.
+	 * @param slots the amount of slots, rounded up to a power of 2.
+	 * @param now the current time, items with a deadline before this time are expired on the first {@link #expire(long)}.
+	 */
+	public ExpiryWheel(long tickMs, int slots, long now) {
+		super();
+		if (tickMs < 1L || slots < 1) {
+			throw new IllegalArgumentException("Tick time and amount of slots must be larger than 0.");
+		}
+		this.tickMs = tickMs;
+		int capacity = Integer.highestOneBit(slots);
+		if (capacity < slots) {
+			capacity <<= 1;
+		}
+		mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<Expiry<E>>(capacity);
+		lastTick = now / tickMs - 1L;
+	}
+
+	/**
+	 * Adds an item with a deadline to the wheel.
+	 * @return the expiry which can be used to cancel the expiry of the item.
+	 */
+	public Expiry<E> add(E item, long deadline) {
+
+		Expiry<E> x = new Expiry<E>(item, deadline);
+		add(x);
+		return x;
+	}
+
+	/**
+	 * Adds an expiry to the wheel.
+	 * An expiry returned by {@link #expire(long)} can be added to the wheel again,
+	 * an expiry must not be added to the wheel more than once.
+	 */
+	public void add(Expiry<E> x) {
+
+		size.incrementAndGet();
+		long stamp = lock.readLock();
+		try {
+			// Slots up to and including the last tick are visited by expire only after a rotation.
+			push(Math.max(x.deadline / tickMs, lastTick + 1L), x);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	protected void push(long tick, Expiry<E> x) {
+
+		int slot = (int) (tick & mask);
+		Expiry<E> head;
+		do {
+			head = slots.get(slot);
+			x.next = head;
+		} while (!slots.compareAndSet(slot, head, x));
+	}
+
+	/**
+	 * Removes all expiries from the wheel for which the deadline is before the given time.
+	 * Cancelled expiries are removed from the wheel and are not returned.
+	 * @param now the current time.
+	 * @return the expiries of which the deadline passed, in no particular order.
+	 */
+	public List<Expiry<E>> expire(long now) {
+
+		List<Expiry<E>> expired = new ArrayList<Expiry<E>>();
+		long stamp = lock.writeLock();
+		try {
+			expire(now, expired);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		return expired;
+	}
+
+	protected void expire(long now, List<Expiry<E>> expired) {
+
+		long nowTick = now / tickMs;
+		long fromTick = lastTick + 1L;
+		if (nowTick - fromTick > mask) {
+			// visit each slot only once.
+			fromTick = nowTick - mask;
+		}
+		for (long tick = fromTick; tick <= nowTick; tick++) {
+			Expiry<E> x = slots.getAndSet((int) (tick & mask), null);
+			while (x != null) {
+				Expiry<E> next = x.next;
+				x.next = null;
+				if (x.isCancelled()) {
+					size.decrementAndGet();
+				} else if (x.deadline < now) {
+					size.decrementAndGet();
+					expired.add(x);
+				} else {
+					// deadline is in a next rotation or later in the current tick.
+					push(Math.max(x.deadline / tickMs, nowTick), x);
+				}
+				x = next;
+			}
+		}
+		// The slot for the current tick can still receive items that expire in the current tick.
+		if (nowTick - 1L > lastTick) {
+			lastTick = nowTick - 1L;
+		}
+	}
+
+	/** The amount of (possibly cancelled) expiries in the wheel. */
+	public int size() {
+		return size.get();
+	}
+
+	public long getTickMs() {
+		return tickMs;
+	}
+
+	/** The amount of slots in the wheel. */
+	public int getSlots() {
+		return mask + 1;
+	}
+
+}
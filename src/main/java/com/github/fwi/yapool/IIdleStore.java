@@ -0,0 +1,61 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine that stores the idle resources of a {@link Pool} and lets threads wait for an idle resource.
+ * The store keeps the amount of idle resources in sync with the stored resources,
+ * the pool does not have to do any bookkeeping.
+ * <br>Resources are added to and taken from the head of the store (LIFO),
+ * resources that have been idle the longest are at the tail of the store.
+ * <br>Available implementations: {@link DequeIdleStore} (default) and {@link LockFreeIdleStore}.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public interface IIdleStore<T> {
+
+	/** Adds the resource to the head of the store. */
+	void addFirst(T t);
+
+	/**
+	 * @return the resource at the head of the store (added last) or null if the store is empty.
+	 */
+	T poll();
+
+	/**
+	 * Waits for a resource to become available.
+	 * @param timeout if less than or equal to zero, does not wait at all.
+	 * @return the resource at the head of the store or null if none became available within the time-out.
+	 */
+	T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * @return the resource at the tail of the store (idle the longest) or null if the store is empty.
+	 */
+	T pollLast();
+
+	/**
+	 * @return the resource at the tail of the store (idle the longest) without removing it, or null if the store is empty.
+	 */
+	T peekLast();
+
+	/**
+	 * @return true if the resource was in the store and is now removed.
+	 */
+	boolean remove(T t);
+
+	/** Amount of resources in the store. */
+	int size();
+
+	/** The number of threads waiting to acquire a resource from the store. */
+	int getWaitingSize();
+
+	/**
+	 * If true, the thread waiting the longest for a resource will get the first available resource.
+	 */
+	boolean isFair();
+
+	void setFair(boolean fair);
+
+}
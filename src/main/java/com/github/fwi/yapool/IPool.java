@@ -1,6 +1,8 @@
 package com.github.fwi.yapool;
 
+import java.time.Duration;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main interface for all pool implementations.
@@ -31,6 +33,30 @@ public interface IPool<T> {
 	 */
 	T acquire(long acquireTimeOutMs);
 	
+	/**
+	 * Same as {@link #acquire()} but uses the given acquireTimeOut as maximum acquire time.
+	 * The default implementation calls {@link #acquireUntil(long)}.
+	 * @param acquireTimeOut acquire time, a zero or negative duration means "do not wait at all".
+	 */
+	default T acquire(Duration acquireTimeOut) {
+		return acquireUntil(Pool.deadlineNanos(acquireTimeOut));
+	}
+	
+	/**
+	 * Same as {@link #acquire()} but acquires a resource before the given deadline.
+	 * The deadline is not influenced by changes to the system time and is used as-is 
+	 * for validating, creating and waiting for resources.
+	 * @param deadlineNanos deadline in {@link System#nanoTime()}, e.g. {@code System.nanoTime() + budgetNanos}.
+	 * If the deadline has passed, the pool does not wait at all.
+	 * <br>The default implementation calls {@link #acquire(long)} with the time left until the deadline
+	 * (rounded up to whole milliseconds), {@link Pool} uses the deadline as-is.
+	 */
+	default T acquireUntil(long deadlineNanos) {
+
+		long remaining = Pool.remainingNanos(deadlineNanos);
+		return acquire(remaining > 0L ? TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1L) - 1L) : 0L);
+	}
+	
 	/** Closes the pool. */
 	void close();
 	
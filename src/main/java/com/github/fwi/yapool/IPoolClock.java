@@ -0,0 +1,24 @@
+package com.github.fwi.yapool;
+
+/**
+ * The source of time for a pool (see {@link Pool#setClock(IPoolClock)}).
+ * All pool time-stamps (creation time, lease end, idle start, event time-stamps, etc.) are taken from the pool's clock.
+ * <br>Available clocks:
+ * <br> - {@link #SYSTEM}: the system time, the default.
+ * <br> - {@link CachedClock}: the system time updated by a ticker, cheap to read but coarse.
+ * <br> - {@link MonotonicClock}: based on {@link System#nanoTime()}, not affected by changes to the system time.
+ * <br> - {@link VirtualClock}: advanced manually, for testing time-outs without sleeping.
+ * <p>
+ * Note that threads waiting for a resource always use the system timer to wait (e.g. an acquire time-out is never virtual). 
+ * @author FWiers
+ *
+ */
+public interface IPoolClock {
+
+	/** The system clock ({@link System#currentTimeMillis()}). */
+	IPoolClock SYSTEM = System::currentTimeMillis;
+
+	/** The current time in milliseconds. */
+	long currentTimeMillis();
+
+}
@@ -0,0 +1,47 @@
+package com.github.fwi.yapool;
+
+import java.util.EventListener;
+
+/**
+ * Listener that receives pool events as event codes (see {@link PoolEvent#CODE_CREATED} etc.).
+ * No {@link PoolEvent} objects are created for this type of listener,
+ * which makes it suitable for listening to pools that are used very often.
+ * <br>A listener can be registered via {@link IPoolEvents#addPoolListener(IPoolListener)} 
+ * when it also implements {@link IPoolListener}, 
+ * in which case the listener only receives pool events via {@link #onPoolEvent(Pool, int, Object, long)}.
+ * Custom pool-event actions (that have no event code) are not delivered to this type of listener.
+ * @author FWiers
+ *
+ */
+public interface IPoolCodeListener extends EventListener {
+
+	/**
+	 * @return the bitmask of event codes this listener wants to receive (see {@link PoolEvent#mask(int...)}),
+	 * {@link PoolEvent#MASK_ALL} to receive all events.
+	 */
+	int getWantEventCodes();
+	
+	/**
+	 * Called by the pool when a pool event occurs.
+	 * @param pool the pool that fired the event.
+	 * @param code the event code of the action.
+	 * @param resource the resource to which the action applies, can be null (see {@link PoolEvent#getResource()}).
+	 * @param nanoTime the moment the event occurred in {@link System#nanoTime()}.
+	 */
+	void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime);
+
+	/**
+	 * Called by the pool when an acquire completed (the {@link PoolEvent#CODE_ACQUIRED} event).
+	 * An acquire can complete on another thread than the thread that fired the {@link PoolEvent#CODE_ACQUIRING} event
+	 * (e.g. an {@link IPool#acquireAsync(long)} that is completed by a releasing thread),
+	 * the start time of the acquire is therefore delivered with the event.
+	 * <br>The default implementation calls {@link #onPoolEvent(Pool, int, Object, long)} with {@link PoolEvent#CODE_ACQUIRED}.
+	 * @param resource the acquired resource, null when the acquire failed.
+	 * @param acquireStartNanos the moment the acquire started in {@link System#nanoTime()}.
+	 * @param nanoTime the moment the acquire completed in {@link System#nanoTime()}.
+	 */
+	default void onAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+		onPoolEvent(pool, PoolEvent.CODE_ACQUIRED, resource, nanoTime);
+	}
+
+}
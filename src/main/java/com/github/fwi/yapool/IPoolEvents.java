@@ -15,6 +15,52 @@ public interface IPoolEvents {
 	void firePoolEvent(PoolEvent poolEvent);
 	public void clearListeners();
 	
+	/** 
+	 * @return true if a pool listener listens for the event code (see {@link PoolEvent#CODE_CREATED} etc.).
+	 */
+	default boolean wantEvent(int code) {
+		return wantEventAction(PoolEvent.actionOf(code));
+	}
+
+	/** 
+	 * @return true if a pool listener listens for the event code and wants a {@link PoolEvent} object
+	 * (i.e. the pool listener is not an {@link IPoolCodeListener}).
+	 */
+	default boolean wantPoolEvent(int code) {
+		return wantEventAction(PoolEvent.actionOf(code));
+	}
+	
+	/**
+	 * Fires a pool event for an event code to the {@link IPoolCodeListener}s,
+	 * pool listeners that want a {@link PoolEvent} object only receive events via {@link #firePoolEvent(PoolEvent)}.
+	 * The default implementation does nothing, code listeners added via the default {@link #addCodeListener(IPoolCodeListener)}
+	 * receive the event via {@link #firePoolEvent(PoolEvent)}.
+	 */
+	default void firePoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {}
+
+	/**
+	 * Fires the {@link PoolEvent#CODE_ACQUIRED} event to the {@link IPoolCodeListener}s 
+	 * via {@link IPoolCodeListener#onAcquired(Pool, Object, long, long)}.
+	 * The default implementation calls {@link #firePoolEvent(Pool, int, Object, long)} (the acquire start time is not delivered).
+	 */
+	default void fireAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+		firePoolEvent(pool, PoolEvent.CODE_ACQUIRED, resource, nanoTime);
+	}
+	
+	/**
+	 * Adds a listener for event codes.
+	 * The default implementation adapts the listener to a pool listener that receives {@link PoolEvent} objects
+	 * (filtered on {@link IPoolCodeListener#getWantEventCodes()}) and adds it via {@link #addPoolListener(IPoolListener)}.
+	 */
+	default void addCodeListener(IPoolCodeListener listener) {
+		addPoolListener(new PoolCodeListenerAdapter(listener));
+	}
+
+	/** Removes a listener added via {@link #addCodeListener(IPoolCodeListener)}. */
+	default void removeCodeListener(IPoolCodeListener listener) {
+		removePoolListener(new PoolCodeListenerAdapter(listener));
+	}
+	
 	/* See IPoolListener, this could be usefull:
 	 	void resetAll();
 		void disableAll();
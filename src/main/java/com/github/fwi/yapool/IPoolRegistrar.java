@@ -0,0 +1,37 @@
+package com.github.fwi.yapool;
+
+/**
+ * Registers pools and pools-maps when they are opened, for example as MBeans
+ * (see {@code com.github.fwi.yapool.jmx.JmxRegistrar}).
+ * <br>A register method returns the task that removes the registration,
+ * the task is run when the pool or pools-map is closed.
+ * @author FWiers
+ *
+ */
+public interface IPoolRegistrar {
+
+	/**
+	 * Registers an opened pool (see {@link BoundPool#setRegistrar(IPoolRegistrar)}).
+	 * @return the task that unregisters the pool, null if the pool was not registered.
+	 */
+	Runnable register(Pool<?> pool);
+
+	/**
+	 * Registers an opened pools-map (see {@link PoolsMap#setRegistrar(IPoolRegistrar)}).
+	 * The default implementation does not register the pools-map.
+	 * @return the task that unregisters the pools-map, null if the pools-map was not registered.
+	 */
+	default Runnable register(PoolsMap<?, ?> poolsMap) {
+		return null;
+	}
+
+	/**
+	 * Registers a pool created by a pools-map.
+	 * The default implementation registers the pool like any other pool.
+	 * @return the task that unregisters the pool, null if the pool was not registered.
+	 */
+	default Runnable register(PoolsMap<?, ?> poolsMap, Object poolKey, Pool<?> pool) {
+		return register(pool);
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.github.fwi.yapool;
+
+/**
+ * Marker interface for pool listeners that must receive pool events on the thread that fires the event,
+ * e.g. because the listener uses {@link Thread#currentThread()} or reads the state of the pool at the time of the event.
+ * <br>{@link AsyncPoolEvents} delivers pool events to these listeners synchronously.
+ * @author FWiers
+ *
+ */
+public interface IPoolSyncListener {
+
+}
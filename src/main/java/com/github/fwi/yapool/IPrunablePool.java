@@ -0,0 +1,32 @@
+package com.github.fwi.yapool;
+
+/**
+ * A pool that can be pruned at regular intervals by a {@link PruneTask} (see {@link PoolPruner#add(IPrunablePool)}).
+ * Implemented by {@link PrunedPool} and {@link SlotPool}.
+ * @author FWiers
+ *
+ */
+public interface IPrunablePool {
+
+	/** Short description of the pool, used in log statements. */
+	String getPoolName();
+
+	boolean isOpen();
+
+	boolean isClosed();
+
+	/** Prune interval in milliseconds, if less than 1 the pool is not pruned by a {@link PoolPruner}. */
+	long getPruneIntervalMs();
+
+	/** Removes idled and expired resources from the pool. */
+	void prune();
+
+	PruneTask getPruneTask();
+
+	/**
+	 * Sets the task that prunes this pool.
+	 * The pool starts the task when it is opened and stops the task when it is closed.
+	 */
+	void setPruneTask(PruneTask pruneTask);
+
+}
@@ -0,0 +1,161 @@
+package com.github.fwi.yapool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A per-thread cache of idle resources that sits in front of the shared idle queue of a {@link Pool}
+ * (see {@link Pool#setThreadCache(boolean)}).
+ * <br>Each thread has one slot: a released resource is put in the slot of the releasing thread
+ * so that the same thread gets the same resource back on the next acquire
+ * without touching the shared idle queue.
+ * Other threads can steal resources from slots when the shared idle queue is empty.
+ * <br>Resources are never cached when threads are waiting for an idle resource,
+ * in that case the pool puts the resource in the shared idle queue.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class IdleThreadCache<T> {
+
+	/** A slot containing the idle resource cached for one thread. */
+	protected static class Slot<T> extends AtomicReference<T> {
+
+		private static final long serialVersionUID = 2502866287599224620L;
+
+		final WeakReference<Thread> owner;
+
+		Slot(Thread owner) {
+			super();
+			this.owner = new WeakReference<Thread>(owner);
+		}
+
+		boolean isOwnerAlive() {
+			Thread t = owner.get();
+			return (t != null && t.isAlive());
+		}
+	}
+
+	/** All slots, used for stealing cached resources. */
+	private final CopyOnWriteArrayList<Slot<T>> slots = new CopyOnWriteArrayList<Slot<T>>();
+
+	private final ThreadLocal<Slot<T>> localSlot = new ThreadLocal<Slot<T>>() {
+		@Override
+		protected Slot<T> initialValue() {
+			Slot<T> s = new Slot<T>(Thread.currentThread());
+			slots.add(s);
+			return s;
+		}
+	};
+
+	/** Amount of threads looking for an idle resource outside of their own slot. */
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * Caches the resource in the slot of the current thread.
+	 * @return false if the resource was not cached and must be put in the shared idle queue
+	 * (slot was occupied or other threads are waiting for an idle resource).
+	 */
+	public boolean offer(T t) {
+
+		Slot<T> s = localSlot.get();
+		if (!s.compareAndSet(null, t)) {
+			return false;
+		}
+		// Set slot first, then check waiting. Threads that wait register first and then steal.
+		// This order ensures that either this thread sees the waiter, or the waiter sees the cached resource.
+		if (waiting.get() > 0 && s.compareAndSet(t, null)) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the resource cached for the current thread or null.
+	 */
+	public T poll() {
+
+		Slot<T> s = localSlot.get();
+		T t = s.get();
+		return (t != null && s.compareAndSet(t, null) ? t : null);
+	}
+
+	/**
+	 * Takes a cached resource from any slot. Slots from threads that are no longer alive are removed.
+	 * @return a cached resource or null.
+	 */
+	public T steal() {
+
+		for (Slot<T> s : slots) {
+			T t = s.get();
+			if (t != null && s.compareAndSet(t, null)) {
+				return t;
+			}
+			if (t == null && !s.isOwnerAlive()) {
+				slots.remove(s);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the given resource from the cache.
+	 * @return true if the resource was cached and is now removed.
+	 */
+	public boolean remove(T t) {
+
+		for (Slot<T> s : slots) {
+			if (s.get() == t && s.compareAndSet(t, null)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Registers the current thread as waiting for a resource.
+	 * Must always be followed by {@link #endWait()}.
+	 */
+	public void beginWait() {
+		waiting.incrementAndGet();
+	}
+
+	public void endWait() {
+		waiting.decrementAndGet();
+	}
+
+	/**
+	 * Amount of resources in the cache. This is an expensive method, do not call this in a loop.
+	 */
+	public int size() {
+
+		int size = 0;
+		for (Slot<T> s : slots) {
+			if (s.get() != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * A snapshot of the resources in the cache.
+	 * This is an expensive method, do not call this in a loop.
+	 */
+	public List<T> getCached() {
+
+		List<T> cached = new ArrayList<T>();
+		for (Slot<T> s : slots) {
+			T t = s.get();
+			if (t != null) {
+				cached.add(t);
+			}
+		}
+		return cached;
+	}
+
+}
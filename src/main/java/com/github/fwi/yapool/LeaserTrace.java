@@ -0,0 +1,223 @@
+package com.github.fwi.yapool;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * The stack-trace of a leaser, captured at the time a resource was acquired (see {@link LeaserTraceSampler}).
+ * <br>Capturing is kept cheap and the stack-trace is only rendered when it is needed (e.g. when a lease expired):
+ * <br>- on Java 9 and later, {@code java.lang.StackWalker} is used (via reflection) to walk only the top frames of the stack
+ * (see {@link LeaserTraceSampler#setMaxDepth(int)}). Stack trace elements are created from the frames when the trace is rendered.
+ * <br>- on Java 8, a {@link Throwable} is created: filling in the stack-trace is a native operation,
+ * stack trace elements are only created when the trace is rendered (and then limited to the maximum depth).
+ * @author FWiers
+ *
+ */
+public class LeaserTrace {
+
+	/** Unlimited stack depth. */
+	public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+	private static final Object STACK_WALKER;
+	private static final Method WALK;
+	private static final Method TO_STACK_TRACE_ELEMENT;
+	private static final Method GET_CLASS_NAME;
+
+	static {
+		Object walker = null;
+		Method walk = null;
+		Method toStackTraceElement = null;
+		Method getClassName = null;
+		try {
+			Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+			Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+			walk = walkerClass.getMethod("walk", Function.class);
+			toStackTraceElement = frameClass.getMethod("toStackTraceElement");
+			getClassName = frameClass.getMethod("getClassName");
+			walker = walkerClass.getMethod("getInstance").invoke(null);
+		} catch (Exception e) {
+			// Java 8, use Throwable.
+			walker = null;
+		}
+		STACK_WALKER = walker;
+		WALK = walk;
+		TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+		GET_CLASS_NAME = getClassName;
+	}
+
+	/**
+	 * True if {@code java.lang.StackWalker} is used to capture stack-traces (Java 9 and later).
+	 */
+	public static boolean isStackWalker() {
+		return (STACK_WALKER != null);
+	}
+
+	private final String leaser;
+	private final int maxDepth;
+	/** Stack walker frames (Java 9+) */
+	private final Object[] frames;
+	/** Java 8 */
+	private final Throwable throwable;
+	private final int skipFrames;
+	/** Java 8: the leading frames of these classes are skipped when the trace is rendered. */
+	private final Predicate<String> skipClasses;
+	private volatile StackTraceElement[] stackTrace;
+
+	/**
+	 * Captures the stack trace of the current thread, starting with the method that called this method.
+	 * @param maxDepth the maximum amount of stack trace elements to capture.
+	 */
+	public static LeaserTrace capture(int maxDepth) {
+		return capture(1, maxDepth);
+	}
+
+	/**
+	 * Captures the stack trace of the current thread.
+	 * @param skipFrames the amount of frames to skip, 0 starts with the method that called this method.
+	 */
+	static LeaserTrace capture(int skipFrames, int maxDepth) {
+		// frame 0 is this method.
+		return new LeaserTrace(Thread.currentThread().toString(), skipFrames + 1, Math.max(1, maxDepth), null);
+	}
+
+	/**
+	 * Captures the stack trace of the current thread.
+	 * @param skipFrames the amount of frames to skip, 0 starts with the method that called this method.
+	 * @param skipClasses after skipping frames, the leading frames of classes that match are skipped
+	 * before the maximum depth is applied (e.g. the frames of the pool that fires the acquired event).
+	 */
+	static LeaserTrace capture(int skipFrames, int maxDepth, Predicate<String> skipClasses) {
+		// frame 0 is this method.
+		return new LeaserTrace(Thread.currentThread().toString(), skipFrames + 1, Math.max(1, maxDepth), skipClasses);
+	}
+
+	private LeaserTrace(String leaser, int skipFrames, int maxDepth, Predicate<String> skipClasses) {
+		super();
+		this.leaser = leaser;
+		this.maxDepth = maxDepth;
+		// constructor is the first frame, skip it.
+		skipFrames++;
+		if (STACK_WALKER == null) {
+			frames = null;
+			throwable = new Throwable();
+			this.skipFrames = skipFrames;
+			this.skipClasses = skipClasses;
+		} else {
+			frames = walk(skipFrames + 1, maxDepth, skipClasses);
+			throwable = null;
+			this.skipFrames = 0;
+			this.skipClasses = null;
+		}
+	}
+
+	private static Object[] walk(final int skipFrames, final int maxDepth, final Predicate<String> skipClasses) {
+
+		Function<Stream<?>, Object[]> top = s -> {
+			Stream<?> frames = s.skip(skipFrames);
+			if (skipClasses != null) {
+				frames = frames.filter(new SkipLeadingFrames(skipClasses));
+			}
+			return frames.limit(maxDepth).toArray();
+		};
+		try {
+			return (Object[]) WALK.invoke(STACK_WALKER, top);
+		} catch (Exception e) {
+			throw new RuntimeException("Unable to walk stack of leaser.", e);
+		}
+	}
+
+	/**
+	 * Filters the leading stack walker frames of the classes to skip (the stack is walked by one thread).
+	 */
+	private static class SkipLeadingFrames implements Predicate<Object> {
+
+		private final Predicate<String> skipClasses;
+		private boolean skipping = true;
+
+		SkipLeadingFrames(Predicate<String> skipClasses) {
+			this.skipClasses = skipClasses;
+		}
+
+		@Override
+		public boolean test(Object frame) {
+
+			if (skipping) {
+				try {
+					skipping = skipClasses.test((String) GET_CLASS_NAME.invoke(frame));
+				} catch (Exception e) {
+					throw new RuntimeException("Unable to get class of stack frame.", e);
+				}
+			}
+			return !skipping;
+		}
+	}
+
+	/**
+	 * The leaser (thread) that acquired the resource.
+	 */
+	public String getLeaser() {
+		return leaser;
+	}
+
+	/**
+	 * The stack-trace of the leaser, rendered on first call.
+	 */
+	public StackTraceElement[] getStackTrace() {
+
+		StackTraceElement[] st = stackTrace;
+		if (st == null) {
+			if (frames == null) {
+				StackTraceElement[] full = throwable.getStackTrace();
+				int start = Math.min(skipFrames, full.length);
+				if (skipClasses != null) {
+					while (start < full.length && skipClasses.test(full[start].getClassName())) {
+						start++;
+					}
+				}
+				st = Arrays.copyOfRange(full, start, (int) Math.min((long) start + maxDepth, full.length));
+			} else {
+				st = new StackTraceElement[frames.length];
+				try {
+					for (int i = 0; i < frames.length; i++) {
+						st[i] = (StackTraceElement) TO_STACK_TRACE_ELEMENT.invoke(frames[i]);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException("Unable to get stack trace of leaser.", e);
+				}
+			}
+			stackTrace = st;
+		}
+		return st;
+	}
+
+	/**
+	 * Appends the stack trace elements, one per line.
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		return appendTo(sb, getStackTrace(), maxDepth);
+	}
+
+	/**
+	 * Appends at most maxDepth stack trace elements, one per line.
+	 */
+	public static StringBuilder appendTo(StringBuilder sb, StackTraceElement[] stackTrace, int maxDepth) {
+
+		int depth = Math.min(stackTrace.length, maxDepth);
+		for (int i = 0; i < depth; i++) {
+			sb.append("\n\t").append(stackTrace[i].toString());
+		}
+		if (depth < stackTrace.length) {
+			sb.append("\n\t... ").append(stackTrace.length - depth).append(" more");
+		}
+		return sb;
+	}
+
+	@Override
+	public String toString() {
+		return appendTo(new StringBuilder("Stack trace from leaser ").append(leaser).append(':')).toString();
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Decides for which leases the stack-trace of the leaser is captured (see {@link LeaserTrace}).
+ * Capturing a stack-trace for every lease is expensive for pools with a high lease rate,
+ * sampling leases keeps leak tracing affordable so that it can remain enabled in production.
+ * <br>A lease is sampled every {@link #getSampleInterval()} leases, or at random with a probability of
+ * {@link #getSampleProbability()} when the probability is set.
+ * <br>By default, all leases are sampled with an unlimited stack depth.
+ * <br>Used by {@link PrunedPool#setLeaserTraceSampler(LeaserTraceSampler)}
+ * and {@link com.github.fwi.yapool.listener.LeaserAcquiredTrace}.
+ * @author FWiers
+ *
+ */
+public class LeaserTraceSampler {
+
+	private final AtomicLong leaseCount = new AtomicLong();
+	private volatile int sampleInterval = 1;
+	private volatile double sampleProbability;
+	private volatile int maxDepth = LeaserTrace.UNLIMITED_DEPTH;
+
+	public LeaserTraceSampler() {
+		super();
+	}
+
+	/**
+	 * @param sampleInterval see {@link #setSampleInterval(int)}
+	 * @param maxDepth see {@link #setMaxDepth(int)}
+	 */
+	public LeaserTraceSampler(int sampleInterval, int maxDepth) {
+		super();
+		setSampleInterval(sampleInterval);
+		setMaxDepth(maxDepth);
+	}
+
+	/**
+	 * Returns the stack-trace of the current thread if the lease is sampled, null otherwise.
+	 * The returned stack-trace starts with the method that called this method.
+	 */
+	public LeaserTrace sample() {
+		return (isSampled() ? LeaserTrace.capture(1, getMaxDepth()) : null);
+	}
+
+	/**
+	 * Returns the stack-trace of the current thread if the lease is sampled, null otherwise.
+	 * The returned stack-trace starts with the first method (after the method that called this method)
+	 * of a class that is not skipped, the maximum depth applies to the frames that are not skipped.
+	 * @param skipClasses tests the class names of the frames to skip, e.g. the classes of the pool
+	 * (see {@link com.github.fwi.yapool.listener.PoolClasses}).
+	 */
+	public LeaserTrace sample(Predicate<String> skipClasses) {
+		return (isSampled() ? LeaserTrace.capture(1, getMaxDepth(), skipClasses) : null);
+	}
+
+	/**
+	 * Counts a lease and returns true if the lease should be sampled.
+	 */
+	public boolean isSampled() {
+
+		double probability = sampleProbability;
+		if (probability > 0.0) {
+			return (probability >= 1.0 || ThreadLocalRandom.current().nextDouble() < probability);
+		}
+		int interval = sampleInterval;
+		return (interval < 2 || leaseCount.getAndIncrement() % interval == 0L);
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Sample every N-th lease, default 1 (every lease). Not used when a sample probability is set.
+	 */
+	public void setSampleInterval(int sampleInterval) {
+
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("Sample interval must be 1 or more.");
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	public double getSampleProbability() {
+		return sampleProbability;
+	}
+
+	/**
+	 * Sample leases at random with the given probability (between 0 and 1, e.g. 0.01 for 1 out of 100 leases).
+	 * Default 0, the sample interval is used.
+	 */
+	public void setSampleProbability(double sampleProbability) {
+
+		if (sampleProbability < 0.0 || sampleProbability > 1.0) {
+			throw new IllegalArgumentException("Sample probability must be between 0 and 1.");
+		}
+		this.sampleProbability = sampleProbability;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * The maximum amount of stack trace elements to capture, default unlimited.
+	 * A low maximum depth (e.g. 16) makes capturing cheaper on Java 9 and later (see {@link LeaserTrace}).
+	 */
+	public void setMaxDepth(int maxDepth) {
+
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Maximum stack depth must be 1 or more.");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + (sampleProbability > 0.0 ? " probability " + sampleProbability : " interval " + sampleInterval)
+				+ (maxDepth == LeaserTrace.UNLIMITED_DEPTH ? "" : ", max. depth " + maxDepth);
+	}
+
+}
@@ -0,0 +1,291 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free idle store: a LIFO stack updated via compare-and-set operations
+ * and a list of parked threads waiting for a resource.
+ * <p>
+ * Implementation notes.
+ * A resource is taken from the stack by clearing the item of its node via compare-and-set,
+ * so that each resource is taken exactly once.
+ * Nodes without an item are unlinked from the head of the stack when polling,
+ * and from the middle of the stack when traversing the stack (tail operations).
+ * New nodes are only added at the head of the stack, so unlinking nodes without an item
+ * never unlinks nodes that still have an item.
+ * <br>Adding a resource wakes up one waiting thread, the waiting thread then takes a resource from the stack.
+ * Waiting threads register themselves before checking the stack,
+ * adding threads add a resource before checking for waiting threads, so that no wake-up is lost.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class LockFreeIdleStore<T> implements IIdleStore<T> {
+
+	protected static final class Node<T> {
+
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Object> ITEM =
+				AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "item");
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+				AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+		volatile Object item;
+		volatile Node<T> next;
+
+		Node(T item) {
+			this.item = item;
+		}
+
+		@SuppressWarnings("unchecked")
+		T getItem() {
+			return (T) item;
+		}
+
+		boolean claim(T t) {
+			return ITEM.compareAndSet(this, t, null);
+		}
+
+		boolean casNext(Node<T> expect, Node<T> update) {
+			return NEXT.compareAndSet(this, expect, update);
+		}
+	}
+
+	/** A thread waiting for a resource. */
+	protected static final class Waiter {
+
+		static final int WAITING = 0;
+		static final int SIGNALLED = 1;
+		static final int CANCELLED = 2;
+
+		final Thread thread;
+		final AtomicInteger state = new AtomicInteger(WAITING);
+
+		Waiter(Thread thread) {
+			this.thread = thread;
+		}
+
+		boolean signal() {
+
+			if (state.compareAndSet(WAITING, SIGNALLED)) {
+				LockSupport.unpark(thread);
+				return true;
+			}
+			return false;
+		}
+
+		boolean cancel() {
+			return state.compareAndSet(WAITING, CANCELLED);
+		}
+
+		boolean isSignalled() {
+			return (state.get() == SIGNALLED);
+		}
+	}
+
+	private final AtomicReference<Node<T>> head = new AtomicReference<Node<T>>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<Waiter>();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	@Override
+	public void addFirst(T t) {
+
+		Node<T> n = new Node<T>(t);
+		// Increase size first so that size never drops below zero.
+		size.incrementAndGet();
+		Node<T> h;
+		do {
+			h = head.get();
+			n.next = h;
+		} while (!head.compareAndSet(h, n));
+		signalWaiter();
+	}
+
+	/**
+	 * Wakes up one waiting thread, if any.
+	 */
+	protected void signalWaiter() {
+
+		if (waiters.isEmpty()) {
+			return;
+		}
+		Waiter w;
+		while ((w = waiters.poll()) != null) {
+			if (w.signal()) {
+				break;
+			}
+		}
+	}
+
+	@Override
+	public T poll() {
+
+		Node<T> h;
+		while ((h = head.get()) != null) {
+			T t = h.getItem();
+			if (t != null && h.claim(t)) {
+				head.compareAndSet(h, h.next);
+				size.decrementAndGet();
+				return t;
+			}
+			// item was taken, unlink node
+			head.compareAndSet(h, h.next);
+		}
+		return null;
+	}
+
+	@Override
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+		T t = poll();
+		if (t != null || timeout <= 0L) {
+			return t;
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		Waiter w = null;
+		boolean interrupted = false;
+		waiting.incrementAndGet();
+		try {
+			for (;;) {
+				if (w == null) {
+					w = new Waiter(Thread.currentThread());
+					waiters.add(w);
+				}
+				// Check after registering as waiter, a resource might have been added in the meantime.
+				if ((t = poll()) != null) {
+					break;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0L) {
+					break;
+				}
+				LockSupport.parkNanos(this, remaining);
+				if (Thread.interrupted()) {
+					interrupted = true;
+					break;
+				}
+				if (w.isSignalled()) {
+					// waiter was removed from waiters-list by signalling thread, register again.
+					w = null;
+				}
+			}
+		} finally {
+			waiting.decrementAndGet();
+			if (w != null) {
+				if (w.cancel()) {
+					waiters.remove(w);
+				} else if (size.get() > 0) {
+					// Signal was not used, pass it on so that an added resource is not missed by another waiter.
+					signalWaiter();
+				}
+			}
+		}
+		if (interrupted) {
+			if (t != null) {
+				addFirst(t);
+			}
+			throw new InterruptedException();
+		}
+		return t;
+	}
+
+	@Override
+	public T pollLast() {
+
+		Node<T> last;
+		while ((last = findLast()) != null) {
+			T t = last.getItem();
+			if (t != null && last.claim(t)) {
+				size.decrementAndGet();
+				return t;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public T peekLast() {
+
+		Node<T> last = findLast();
+		return (last == null ? null : last.getItem());
+	}
+
+	/**
+	 * Traverses the stack and unlinks nodes without an item.
+	 * @return the last node with an item or null.
+	 */
+	protected Node<T> findLast() {
+
+		Node<T> last = null;
+		Node<T> p = head.get();
+		while (p != null) {
+			Node<T> next = p.next;
+			if (p.item != null) {
+				last = p;
+			} else if (last != null) {
+				last.casNext(p, next);
+			}
+			p = next;
+		}
+		return last;
+	}
+
+	@Override
+	public boolean remove(T t) {
+
+		Node<T> pred = null;
+		Node<T> p = head.get();
+		while (p != null) {
+			Node<T> next = p.next;
+			T item = p.getItem();
+			if (item != null && (item == t || item.equals(t)) && p.claim(item)) {
+				size.decrementAndGet();
+				if (pred != null) {
+					pred.casNext(p, next);
+				}
+				return true;
+			}
+			if (p.item != null) {
+				pred = p;
+			}
+			p = next;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public int getWaitingSize() {
+		return waiting.get();
+	}
+
+	/** Always false, waiting threads are woken up in FIFO order but a resource can be taken by any thread. */
+	@Override
+	public boolean isFair() {
+		return false;
+	}
+
+	/**
+	 * This store cannot be fair, use a {@link DequeIdleStore} for a fair store.
+	 * @throws UnsupportedOperationException when set to true.
+	 */
+	@Override
+	public void setFair(boolean fair) {
+
+		if (fair) {
+			throw new UnsupportedOperationException("Lock-free idle store cannot be fair, use a deque idle store instead.");
+		}
+	}
+
+}
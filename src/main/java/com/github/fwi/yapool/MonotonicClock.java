@@ -0,0 +1,38 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock based on {@link System#nanoTime()}: time never goes backwards, 
+ * also not when the system time is adjusted. 
+ * Use this clock when expiry times (lease end, idle time, life time) must not be affected by changes to the system time.
+ * <br>The time starts at the system time when this clock was created and drifts from the system time afterwards. 
+ * @author FWiers
+ *
+ */
+public class MonotonicClock implements IPoolClock {
+
+	private static class SingletonHolder {
+		public static final MonotonicClock INSTANCE = new MonotonicClock();
+	}
+
+	/** A shared monotonic clock. */
+	public static MonotonicClock getInstance() {
+		return SingletonHolder.INSTANCE;
+	}
+
+	private final long startMillis;
+	private final long startNanos;
+
+	public MonotonicClock() {
+		super();
+		startMillis = System.currentTimeMillis();
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return startMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+}
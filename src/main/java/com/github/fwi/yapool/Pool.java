@@ -1,11 +1,15 @@
 package com.github.fwi.yapool;
 
+import java.time.Duration;
 import java.util.NoSuchElementException;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,20 +28,51 @@ public class Pool<T> implements IPool<T> {
 	private String poolName = getClass().getSimpleName() + "[" + hashCode() + "]";
 
 	/** 
-	 * Manages permits for leasing resources. 
-	 * Determines if permits are given in a fair manner or fast manner
-	 * (see {@link #isFair()}. 
+	 * Contains the entries of resources ready to be leased (LIFO) and manages threads waiting for a resource
+	 * (unless {@link #isHandOff()}). 
 	 */ 
-	protected Semaphore idle = new Semaphore(0, false);
+	protected volatile IIdleStore<PoolEntry<T>> idleStore = new DequeIdleStore<PoolEntry<T>>();
 	
-	/** A LIFO queue containing resources ready to be leased. */
-	protected LinkedBlockingDeque<T> idleQueue = new LinkedBlockingDeque<T>();
+	/** 
+	 * Optional per-thread cache of idle resources in front of the idle queue,
+	 * null when not used (see {@link #setThreadCache(boolean)}).
+	 */
+	protected volatile IdleThreadCache<PoolEntry<T>> threadCache;
+	
+	/** 
+	 * Asynchronous acquirers (see {@link #acquireAsync(long)}) and, in hand-off mode (see {@link #isHandOff()}),
+	 * threads waiting for an idle resource.
+	 */
+	protected final PoolWaiters<PoolEntry<T>> waiters = new PoolWaiters<PoolEntry<T>>();
+	
+	private volatile ScheduledExecutorService scheduler;
+	private volatile IPoolClock clock = IPoolClock.SYSTEM;
+	private volatile boolean handOff;
+	private volatile boolean fair;
 	
 	private AtomicReference<IPoolEvents> events = new  AtomicReference<IPoolEvents>();
 	private AtomicReference<IPoolFactory<T>> factory = new AtomicReference<IPoolFactory<T>>();
 	private AtomicLong maxAcquireTimeMs = new AtomicLong();
 	private volatile boolean closed;
 	protected AtomicLong createdCount = new AtomicLong();
+
+	private static final AtomicLong POOL_IDS = new AtomicLong();
+
+	/** 
+	 * Per thread, the entry of the last resource acquired from the idle store by {@link #acquireUntil(long)}.
+	 * The entry is re-used by {@link #release(Object)} so that releasing a resource does not create a new entry.
+	 * <br>One spare entry is shared by all pools (a thread keeps at most one entry, whatever the amount of pools),
+	 * the spare entry is only re-used by the pool that set it (see {@link #poolId}).
+	 */
+	private static final ThreadLocal<SpareEntry> SPARE_ENTRY = ThreadLocal.withInitial(SpareEntry::new);
+
+	protected static class SpareEntry {
+		long poolId;
+		PoolEntry<?> entry;
+	}
+
+	/** Identifies the pool that owns a spare entry, an ID instead of a reference so that a spare entry does not keep a pool in memory. */
+	private final long poolId = POOL_IDS.incrementAndGet();
 	
 	public Pool() {
 		super();
@@ -51,7 +86,7 @@ public class Pool<T> implements IPool<T> {
 			throwFactoryCreateFailed();
 		}
 		createdCount.incrementAndGet();
-		fireEvent(PoolEvent.CREATED, t);
+		fireEvent(PoolEvent.CODE_CREATED, t);
 		return t;
 	}
 
@@ -60,58 +95,500 @@ public class Pool<T> implements IPool<T> {
 		return acquire(getMaxAcquireTimeMs());
 	}
 
+	/**
+	 * Calls {@link #acquireUntil(long)} with a deadline of now plus the given time-out.
+	 */
 	@Override
 	public T acquire(long acquireTimeOutMs) {
+		return acquireUntil(deadlineNanos(acquireTimeOutMs));
+	}
+
+	/**
+	 * Calls {@link #acquireUntil(long)} with a deadline of now plus the given time-out.
+	 */
+	@Override
+	public T acquire(Duration acquireTimeOut) {
+		return acquireUntil(deadlineNanos(acquireTimeOut));
+	}
+
+	@Override
+	public T acquireUntil(long deadlineNanos) {
 		
 		if (isClosed()) {
 			throw new IllegalStateException("Pool is closed.");
 		}
-		fireEvent(PoolEvent.ACQUIRING);
+		final long acquireStart = System.nanoTime();
+		fireEvent(PoolEvent.CODE_ACQUIRING);
 		T t = null;
 		try {
-			t = acquireIdle(acquireTimeOutMs);
-			if (t == null) {
+			PoolEntry<T> e = acquireIdleUntil(deadlineNanos);
+			if (e == null) {
 				t = create();
+			} else {
+				t = e.resource;
+				// this pool does not keep track of leased resources, the entry is no longer used.
+				e.resource = null;
+				SpareEntry spare = SPARE_ENTRY.get();
+				spare.poolId = poolId;
+				spare.entry = e;
 			}
 		} finally {
-			fireEvent(PoolEvent.ACQUIRED, t);
+			fireAcquired(t, acquireStart);
 		}
 		return t;
 	}
+
+	/**
+	 * The maximum time-out for acquiring a resource (about 146 years), 
+	 * longer time-outs are shortened so that a deadline (see {@link #deadlineNanos(long)}) does not overflow.
+	 */
+	public static final long MAX_TIME_OUT_NANOS = Long.MAX_VALUE >> 1;
 	
 	/**
-	 * 
-	 * @param acquireTimeOutMs If the time is less than or equal to zero, the method will not wait at all.
-	 * @return the idle resource from the pool, or null if none could be acquired
+	 * @param timeOutMs the time-out, any value smaller than 1 results in a deadline that has passed.
+	 * @return the deadline for the time-out in {@link System#nanoTime()}.
+	 */
+	public static long deadlineNanos(long timeOutMs) {
+		return deadlineNanos(timeOutMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param timeOut the time-out, a zero or negative duration results in a deadline that has passed.
+	 * @return the deadline for the time-out in {@link System#nanoTime()}.
 	 */
-	protected T acquireIdle(long acquireTimeOutMs) {
+	public static long deadlineNanos(Duration timeOut) {
 		
-		T t = null;
+		if (timeOut.isNegative()) {
+			return System.nanoTime();
+		}
+		// Duration.toNanos throws an ArithmeticException on overflow. 
+		return deadlineNanos(timeOut.getSeconds() > TimeUnit.NANOSECONDS.toSeconds(MAX_TIME_OUT_NANOS) 
+				? MAX_TIME_OUT_NANOS : timeOut.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the deadline for the time-out in {@link System#nanoTime()}.
+	 */
+	public static long deadlineNanos(long timeOut, TimeUnit unit) {
+		return System.nanoTime() + Math.min(MAX_TIME_OUT_NANOS, Math.max(0L, unit.toNanos(timeOut)));
+	}
+	
+	/**
+	 * @param deadlineNanos a deadline in {@link System#nanoTime()}.
+	 * @return the time left until the deadline, zero or less when the deadline has passed.
+	 */
+	public static long remainingNanos(long deadlineNanos) {
+		return deadlineNanos - System.nanoTime();
+	}
+	
+	/**
+	 * Calls {@link #acquireAsync(long)} with {@link #getMaxAcquireTimeMs()}.
+	 */
+	public CompletableFuture<T> acquireAsync() {
+		return acquireAsync(getMaxAcquireTimeMs());
+	}
+	
+	/**
+	 * Acquires a resource without blocking the calling thread while waiting for an idle resource.
+	 * The returned future completes with a resource that must be {@link #release(Object)}d after usage,
+	 * or completes exceptionally with the same errors as {@link #acquire(long)}.
+	 * <br>This pool creates a resource when none is idle, so there is never a need to wait
+	 * and the returned future is always completed.
+	 */
+	public CompletableFuture<T> acquireAsync(long acquireTimeOutMs) {
+		
+		CompletableFuture<T> f = new CompletableFuture<T>();
 		try {
-			if (idle.tryAcquire(acquireTimeOutMs, TimeUnit.MILLISECONDS)) {
-				t = idleQueue.poll();
+			f.complete(acquire(0L));
+		} catch (RuntimeException re) {
+			f.completeExceptionally(re);
+		}
+		return f;
+	}
+	
+	/**
+	 * Acquires an idle resource in hand-off mode (see {@link #isHandOff()}):
+	 * if no resource is idle, the current thread is registered in {@link #waiters} and parked
+	 * until a resource is handed off or the time-out expires.
+	 * A fair pool does not let the current thread overtake threads that are already waiting.
+	 * @param acquireTimeOutMs If the time is less than or equal to zero, the method will not wait at all.
+	 * @return the entry of the idle resource from the pool, or null if none could be acquired
+	 */
+	protected PoolEntry<T> acquireIdleHandOff(long acquireTimeOutMs) {
+		return acquireIdleHandOffUntil(deadlineNanos(acquireTimeOutMs), null);
+	}
+	
+	/**
+	 * See {@link #acquireIdleHandOff(long)}.
+	 * @param deadlineNanos If the deadline (see {@link #deadlineNanos(long)}) has passed, the method will not wait at all.
+	 * @param waiting if not null, called with the registered waiter when the current thread is going to wait
+	 * (e.g. to start creating a resource for the waiter).
+	 */
+	protected PoolEntry<T> acquireIdleHandOffUntil(long deadlineNanos, Consumer<? super PoolWaiter> waiting) {
+		
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		PoolEntry<T> e = null;
+		if (!fair || waiters.size() < 1) {
+			e = (cache == null ? null : cache.poll());
+			if (e == null) {
+				e = pollIdle(0L);
+			}
+			if (e == null && cache != null && remainingNanos(deadlineNanos) <= 0L) {
+				e = cache.steal();
+			}
+		}
+		if (e != null || remainingNanos(deadlineNanos) <= 0L) {
+			return e;
+		}
+		ThreadWaiter w = new ThreadWaiter(cache);
+		waiters.add(w);
+		// Check after registering as waiter, a resource might have been added in the meantime.
+		e = pollIdle(0L);
+		if (e == null && cache != null) {
+			e = cache.steal();
+		}
+		if (e != null) {
+			if (w.cancel()) {
+				waiters.remove(w);
+				w.done();
+				return e;
+			}
+			// Waiter got a resource handed off in the meantime.
+			addIdle(e);
+		} else if (waiting != null) {
+			waiting.accept(w);
+		}
+		return w.awaitUntil(deadlineNanos);
+	}
+	
+	/**
+	 * An acquirer waiting for an idle resource, 
+	 * registered in {@link #waiters} and with the {@link #threadCache} (if used).
+	 */
+	protected abstract class PoolWaiter extends PoolWaiters.Waiter<PoolEntry<T>> {
+		
+		protected final IdleThreadCache<PoolEntry<T>> cache;
+		
+		protected PoolWaiter(IdleThreadCache<PoolEntry<T>> cache) {
+			super();
+			this.cache = cache;
+			if (cache != null) {
+				cache.beginWait();
+			}
+		}
+		
+		/** Called once, after this waiter was claimed. */
+		protected void done() {
+			
+			if (cache != null) {
+				cache.endWait();
+			}
+		}
+		
+		/** Called after this waiter was cancelled because the pool closed. */
+		protected abstract void closed();
+	}
+	
+	/** A thread waiting for an idle resource. */
+	protected class ThreadWaiter extends PoolWaiter {
+		
+		protected final Thread thread = Thread.currentThread();
+		protected volatile PoolEntry<T> entry;
+		
+		protected ThreadWaiter(IdleThreadCache<PoolEntry<T>> cache) {
+			super(cache);
+		}
+		
+		@Override
+		protected void deliver(PoolEntry<T> e) {
+			
+			entry = e;
+			LockSupport.unpark(thread);
+		}
+		
+		@Override
+		protected void closed() {
+			LockSupport.unpark(thread);
+		}
+		
+		/**
+		 * Parks the current thread until a resource is handed off, the time-out expires or the pool is closed
+		 * (throws an {@link IllegalStateException}).
+		 * @return null or the entry of the resource handed off.
+		 */
+		protected PoolEntry<T> awaitUntil(long deadlineNanos) {
+			
+			boolean interrupted = false;
+			try {
+				for (;;) {
+					if (!isWaiting()) {
+						// The pool was closed or a resource was handed off.
+						if (isCancelled()) {
+							throw new IllegalStateException(getPoolName() + " pool is closed.");
+						}
+						PoolEntry<T> e;
+						while ((e = entry) == null) {
+							// handing-off thread claimed this waiter but did not yet set the resource.
+							Thread.yield();
+						}
+						if (interrupted) {
+							// keep interrupt status for the caller.
+							thread.interrupt();
+						}
+						return e;
+					}
+					long remaining = remainingNanos(deadlineNanos);
+					if (interrupted || remaining <= 0L) {
+						if (cancel()) {
+							waiters.remove(this);
+							if (interrupted) {
+								throw new RuntimeException(new InterruptedException());
+							}
+							return null;
+						}
+						// else: claimed by handing-off thread
+					} else {
+						LockSupport.parkNanos(this, remaining);
+						if (Thread.interrupted()) {
+							interrupted = true;
+						}
+					}
+				}
+			} finally {
+				done();
 			}
+		}
+	}
+	
+	/** An asynchronous acquirer waiting for an idle resource. */
+	protected class AsyncWaiter extends PoolWaiter {
+		
+		protected final CompletableFuture<PoolEntry<T>> future = new CompletableFuture<PoolEntry<T>>();
+		protected volatile ScheduledFuture<?> timeOutTask;
+		
+		protected AsyncWaiter(IdleThreadCache<PoolEntry<T>> cache) {
+			super(cache);
+		}
+		
+		@Override
+		protected void deliver(PoolEntry<T> e) {
+			
+			done();
+			registerLeased(e);
+			future.complete(e);
+		}
+		
+		@Override
+		protected void done() {
+			
+			ScheduledFuture<?> task = timeOutTask;
+			if (task != null) {
+				task.cancel(false);
+			}
+			super.done();
+		}
+		
+		@Override
+		protected void closed() {
+			
+			done();
+			future.completeExceptionally(new IllegalStateException(getPoolName() + " pool is closed."));
+		}
+		
+		protected void timeOut() {
+			
+			if (cancel()) {
+				waiters.remove(this);
+				done();
+				future.complete(null);
+			}
+		}
+	}
+	
+	/**
+	 * Waits for an idle resource without blocking the calling thread.
+	 * An idle resource is handed to the oldest waiter directly (see {@link PoolWaiters}),
+	 * the time-out is scheduled with the {@link #getScheduler()}.
+	 * <br>Note that the returned future is completed by the thread that makes a resource available
+	 * (usually the releasing thread) or by the scheduler's thread (on time-out).
+	 * @param acquireTimeOutMs The maximum time to wait, must be larger than zero.
+	 * @return A future that completes with the entry of the idle resource from the pool, or with null on time-out.
+	 */
+	protected CompletableFuture<PoolEntry<T>> acquireIdleAsync(long acquireTimeOutMs) {
+		return acquireIdleAsync(acquireTimeOutMs, null);
+	}
+	
+	/**
+	 * See {@link #acquireIdleAsync(long)}.
+	 * @param waiting if not null, called with the registered waiter when no idle resource is available
+	 * (e.g. to start creating a resource for the waiter).
+	 */
+	protected CompletableFuture<PoolEntry<T>> acquireIdleAsync(long acquireTimeOutMs, Consumer<? super PoolWaiter> waiting) {
+		
+		AsyncWaiter w = new AsyncWaiter(threadCache);
+		waiters.add(w);
+		// Check after registering as waiter, a resource might have been added in the meantime.
+		PoolEntry<T> e = pollIdle(0L);
+		if (e == null && w.cache != null) {
+			e = w.cache.steal();
+		}
+		if (e != null) {
+			if (w.cancel()) {
+				waiters.remove(w);
+				w.done();
+				registerLeased(e);
+				w.future.complete(e);
+			} else {
+				// Waiter got a resource handed off in the meantime.
+				addIdle(e);
+			}
+		} else {
+			w.timeOutTask = getScheduler().schedule(w::timeOut, acquireTimeOutMs, TimeUnit.MILLISECONDS);
+			if (!w.isWaiting()) {
+				// resource was handed off before the time-out task was registered.
+				w.timeOutTask.cancel(false);
+			} else if (waiting != null) {
+				waiting.accept(w);
+			}
+		}
+		return w.future;
+	}
+	
+	/**
+	 * Called when an entry from the pool is leased outside of {@link #acquireIdle(long)}, 
+	 * e.g. when it is handed off to a waiter. 
+	 * This pool does not keep track of leased resources, this method does nothing.
+	 */
+	protected void registerLeased(PoolEntry<T> e) {}
+	
+	/**
+	 * @return a future completed exceptionally with the given error.
+	 */
+	protected static <R> CompletableFuture<R> failedFuture(Throwable t) {
+		
+		CompletableFuture<R> f = new CompletableFuture<R>();
+		f.completeExceptionally(t);
+		return f;
+	}
+	
+	/**
+	 * Acquires an idle resource from the thread cache (if used), the idle store or the cache of other threads,
+	 * in that order.
+	 * @param acquireTimeOutMs If the time is less than or equal to zero, the method will not wait at all.
+	 * @return the entry of the idle resource from the pool, or null if none could be acquired
+	 */
+	protected PoolEntry<T> acquireIdle(long acquireTimeOutMs) {
+		return acquireIdleUntil(deadlineNanos(acquireTimeOutMs));
+	}
+	
+	/**
+	 * See {@link #acquireIdle(long)}.
+	 * @param deadlineNanos If the deadline (see {@link #deadlineNanos(long)}) has passed, the method will not wait at all.
+	 */
+	protected PoolEntry<T> acquireIdleUntil(long deadlineNanos) {
+		
+		if (isHandOff()) {
+			return acquireIdleHandOffUntil(deadlineNanos, null);
+		}
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		if (cache == null) {
+			return pollIdleUntil(deadlineNanos);
+		}
+		PoolEntry<T> t = cache.poll();
+		if (t == null) {
+			t = pollIdle(0L);
+		}
+		if (t == null) {
+			// Register as waiting before stealing so that released resources are not cached meanwhile.
+			cache.beginWait();
+			try {
+				t = cache.steal();
+				if (t == null && remainingNanos(deadlineNanos) > 0L) {
+					t = pollIdleUntil(deadlineNanos);
+				}
+			} finally {
+				cache.endWait();
+			}
+		}
+		return t;
+	}
+	
+	/**
+	 * Acquires an idle resource from the idle store.
+	 * @param acquireTimeOutMs If the time is less than or equal to zero, the method will not wait at all.
+	 * @return the entry of the idle resource from the idle store, or null if none could be acquired
+	 */
+	protected PoolEntry<T> pollIdle(long acquireTimeOutMs) {
+		return pollIdle(acquireTimeOutMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * See {@link #pollIdle(long)}.
+	 * @param deadlineNanos If the deadline (see {@link #deadlineNanos(long)}) has passed, the method will not wait at all.
+	 */
+	protected PoolEntry<T> pollIdleUntil(long deadlineNanos) {
+		return pollIdle(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+	}
+
+	protected PoolEntry<T> pollIdle(long timeOut, TimeUnit unit) {
+		
+		PoolEntry<T> t = null;
+		try {
+			t = idleStore.poll(timeOut, unit);
 		} catch (InterruptedException ie) {
 			throw new RuntimeException(ie);
 		}
-		//log.warn("Time-out: " + acquireTimeOutMs + ", acquired: " + (t != null));
+		//log.warn("Time-out: " + timeOut + ", acquired: " + (t != null));
 		return t;
 	}
 	
 	/**
-	 * Adds a resource to the head of the idle queue.
+	 * Hands off the entry of a resource to the oldest asynchronous waiter, if any.
+	 * Else adds the entry to the head of the idle store.
 	 */
-	protected void addIdle(T t) {
+	protected void addIdle(PoolEntry<T> e) {
 		
-		idleQueue.addFirst(t);
-		idle.release();
+		while (!waiters.handOff(e)) {
+			idleStore.addFirst(e);
+			// A waiter may have registered in the meantime without seeing the added resource.
+			if (waiters.size() < 1 || (e = pollIdle(0L)) == null) {
+				break;
+			}
+		}
 	}
 
+	/**
+	 * Makes a released resource available for leasing: 
+	 * puts the entry of the resource in the thread cache (if used and there are no asynchronous waiters) 
+	 * or hands it off / puts it in the idle store (see {@link #addIdle(PoolEntry)}).
+	 */
+	protected void releaseIdle(PoolEntry<T> e) {
+		
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		if (cache == null || waiters.size() > 0 || !cache.offer(e)) {
+			addIdle(e);
+		}
+	}
+
+	/**
+	 * Puts the resource back in the pool.
+	 * This pool does not keep track of leased resources, an entry is created for the resource
+	 * unless the current thread acquired a resource before (the entry of that resource is re-used).
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public T release(T t) {
 		
-		fireEvent(PoolEvent.RELEASING, t);
-		addIdle(t);
+		fireEvent(PoolEvent.CODE_RELEASING, t);
+		SpareEntry spare = SPARE_ENTRY.get();
+		PoolEntry<T> e = (spare.poolId == poolId ? (PoolEntry<T>) spare.entry : null);
+		if (e == null) {
+			e = new PoolEntry<T>(t);
+		} else {
+			spare.entry = null;
+			e.resource = t;
+		}
+		releaseIdle(e);
 		return t;
 	}
 	
@@ -123,7 +600,14 @@ public class Pool<T> implements IPool<T> {
 	public void close() {
 		
 		closed = true;
-		fireEvent(PoolEvent.CLOSED);
+		SpareEntry spare = SPARE_ENTRY.get();
+		if (spare.poolId == poolId) {
+			spare.entry = null;
+		}
+		for (PoolWaiters.Waiter<PoolEntry<T>> w : waiters.cancelAll()) {
+			((PoolWaiter) w).closed();
+		}
+		fireEvent(PoolEvent.CODE_CLOSED);
 	}
 
 	protected void fireEvent(String action) {
@@ -131,11 +615,54 @@ public class Pool<T> implements IPool<T> {
 	}
 
 	protected void fireEvent(String action, T t) {
-		if (events.get().wantEventAction(action)) {
+		
+		int code = PoolEvent.codeOf(action);
+		if (code > -1) {
+			fireEvent(code, t);
+		} else if (events.get().wantEventAction(action)) {
 			fireEvent(new PoolEvent(this, action, t));
 		}
 	}
 
+	protected void fireEvent(int code) {
+		fireEvent(code, null);
+	}
+
+	/**
+	 * Fires a pool event for an event code (see {@link PoolEvent#CODE_CREATED} etc.) if a pool listener wants the event.
+	 * Code listeners (see {@link IPoolCodeListener}) receive the event without a {@link PoolEvent} object being created,
+	 * a pool-event object is only created for the other pool listeners (see {@link #fireEvent(PoolEvent)}).
+	 */
+	protected void fireEvent(int code, T t) {
+		
+		final IPoolEvents pe = events.get();
+		if (pe.wantEvent(code)) {
+			pe.firePoolEvent(this, code, t, System.nanoTime());
+			if (pe.wantPoolEvent(code)) {
+				fireEvent(new PoolEvent(this, PoolEvent.actionOf(code), t));
+			}
+		}
+	}
+
+	/**
+	 * Fires the acquired event (the resource is null when the acquire failed) with the start time of the acquire,
+	 * see {@link IPoolCodeListener#onAcquired(Pool, Object, long, long)}.
+	 * @param acquireStartNanos the moment the acquire started in {@link System#nanoTime()}.
+	 */
+	protected void fireAcquired(T t, long acquireStartNanos) {
+		
+		final IPoolEvents pe = events.get();
+		if (pe.wantEvent(PoolEvent.CODE_ACQUIRED)) {
+			pe.fireAcquired(this, t, acquireStartNanos, System.nanoTime());
+			if (pe.wantPoolEvent(PoolEvent.CODE_ACQUIRED)) {
+				fireEvent(new PoolEvent(this, PoolEvent.ACQUIRED, t));
+			}
+		}
+	}
+
+	/**
+	 * Fires the pool-event to the pool listeners that receive {@link PoolEvent} objects.
+	 */
 	protected void fireEvent(PoolEvent pe) {
 		events.get().firePoolEvent(pe);
 	}
@@ -206,31 +733,132 @@ public class Pool<T> implements IPool<T> {
 	}
 	
 	/**
-	 * If true, the thread waiting the longest for a resource will get the first available resource.
+	 * If true, the thread waiting the longest for a resource will get the first available resource
+	 * and threads that start to acquire a resource do not overtake threads that are waiting.
 	 * If false, whichever thread is fastest to give the first avialable resource to will get the resource.
 	 */
 	public boolean isFair() {
-		return idle.isFair();
+		return fair;
 	}
 
+	/**
+	 * A fair pool always uses hand-off mode (see {@link #setHandOff(boolean)})
+	 * which gives resources to waiting threads in FIFO order.
+	 * Default false.
+	 */
 	public void setFair(boolean fair) {
+		this.fair = fair;
+	}
+	
+	/**
+	 * True if hand-off mode was set or the pool is fair.
+	 */
+	public boolean isHandOff() {
+		return (handOff || fair);
+	}
+	
+	/**
+	 * If true, threads that wait for an idle resource are registered in a FIFO queue and parked,
+	 * a released resource is handed directly to the thread waiting the longest and skips the idle store.
+	 * This prevents threads that did not wait from taking the resource before the woken up thread can
+	 * (which can result in long waiting times for some threads when the pool is exhausted).
+	 * <br>If false, waiting threads wait via the idle store (see {@link IIdleStore#poll(long, TimeUnit)}).
+	 * Default false.
+	 */
+	public void setHandOff(boolean handOff) {
+		this.handOff = handOff;
+	}
+	
+	public IIdleStore<PoolEntry<T>> getIdleStore() {
+		return idleStore;
+	}
+	
+	/**
+	 * The engine that stores idle resources and manages threads waiting for a resource.
+	 * Default a {@link DequeIdleStore}, a lock-free alternative is the {@link LockFreeIdleStore}.
+	 * <br>Must be set before the pool is used (i.e. before the pool is opened).
+	 */
+	public void setIdleStore(IIdleStore<PoolEntry<T>> idleStore) {
 		
-		if (fair != isFair()) {
-			idle = new Semaphore(0, fair);
+		if (idleStore == null) {
+			throw new IllegalArgumentException("Idle store cannot be null.");
 		}
+		this.idleStore = idleStore;
+	}
+	
+	/**
+	 * The scheduler for time-outs of asynchronous acquires.
+	 * Default the shared {@link PoolScheduler#getInstance()}.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		
+		ScheduledExecutorService s = scheduler;
+		return (s == null ? PoolScheduler.getInstance() : s);
+	}
+	
+	/**
+	 * Sets the scheduler for time-outs of asynchronous acquires (see {@link #acquireAsync(long)}).
+	 * Scheduled tasks are short and do not block.
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	public IPoolClock getClock() {
+		return clock;
 	}
 	
+	/**
+	 * Sets the source of time for all time-stamps of the pool and pool-events, see {@link IPoolClock}.
+	 * The clock should be set before the pool is opened.
+	 * Default {@link IPoolClock#SYSTEM}.
+	 */
+	public void setClock(IPoolClock clock) {
+		this.clock = (clock == null ? IPoolClock.SYSTEM : clock);
+	}
+	
+	public boolean isThreadCache() {
+		return (threadCache != null);
+	}
+
+	/**
+	 * If true, a released resource is cached for the releasing thread so that the same thread
+	 * gets the same resource on the next acquire without using the (shared) idle queue.
+	 * Other threads can still use cached resources when there are no resources in the idle store.
+	 * <br>This reduces contention on the idle store when many threads acquire and release resources.
+	 * Default is false. When set to false, cached resources are moved to the idle store.
+	 * <br>Preferably set before the pool is used.
+	 */
+	public void setThreadCache(boolean useThreadCache) {
+		
+		if (useThreadCache) {
+			if (threadCache == null) {
+				threadCache = new IdleThreadCache<PoolEntry<T>>();
+			}
+		} else {
+			IdleThreadCache<PoolEntry<T>> cache = threadCache;
+			threadCache = null;
+			if (cache != null) {
+				PoolEntry<T> t;
+				while ((t = cache.steal()) != null) {
+					addIdle(t);
+				}
+			}
+		}
+	}
+
 	public long getCreatedCount() {
 		return createdCount.get();
 	}
 
 	public int getIdleSize() { 
-		return idle.availablePermits(); 
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		return idleStore.size() + (cache == null ? 0 : cache.size()); 
 	}
 	
-	/** The number of threads waiting to acquire a resource from the pool. */
+	/** The number of threads and asynchronous acquirers waiting to acquire a resource from the pool. */
 	public int getWaitingSize() {
-		return idle.getQueueLength();
+		return idleStore.getWaitingSize() + waiters.size();
 	}
 
 	/**
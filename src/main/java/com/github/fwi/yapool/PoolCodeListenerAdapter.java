@@ -0,0 +1,74 @@
+package com.github.fwi.yapool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Adapts a {@link IPoolCodeListener} to a {@link IPoolListener},
+ * used by {@link IPoolEvents#addCodeListener(IPoolCodeListener)} for pool events
+ * that do not dispatch event codes themselves.
+ * <br>Two adapters are equal when they adapt the same code listener,
+ * so that a new adapter can be used to remove the pool listener.
+ * @author FWiers
+ *
+ */
+class PoolCodeListenerAdapter implements IPoolListener {
+
+	private final IPoolCodeListener listener;
+	private final int wantEventCodes;
+
+	PoolCodeListenerAdapter(IPoolCodeListener listener) {
+		this.listener = listener;
+		this.wantEventCodes = (listener.getWantEventCodes() & PoolEvent.MASK_ALL);
+	}
+
+	@Override
+	public boolean wantAllEventActions() {
+		return false;
+	}
+
+	@Override
+	public Collection<String> getWantEventActions() {
+
+		List<String> actions = new ArrayList<String>();
+		for (int code = 0; code < PoolEvent.CODE_COUNT; code++) {
+			if ((wantEventCodes & PoolEvent.bit(code)) != 0) {
+				actions.add(PoolEvent.actionOf(code));
+			}
+		}
+		return actions;
+	}
+
+	@Override
+	public boolean wantsEventAction(String poolEventAction) {
+
+		int code = PoolEvent.codeOf(poolEventAction);
+		return (code > -1 && (wantEventCodes & PoolEvent.bit(code)) != 0);
+	}
+
+	@Override
+	public void onPoolEvent(PoolEvent poolEvent) {
+
+		int code = poolEvent.getCode();
+		if (code > -1 && (wantEventCodes & PoolEvent.bit(code)) != 0) {
+			listener.onPoolEvent(poolEvent.getPool(), code, poolEvent.getResource(), System.nanoTime());
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return listener.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return (other instanceof PoolCodeListenerAdapter && ((PoolCodeListenerAdapter) other).listener.equals(listener));
+	}
+
+	@Override
+	public String toString() {
+		return listener.toString();
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The administration of one pooled resource.
+ * An entry travels with the resource through the idle store and the leased state,
+ * so that the pool does not have to look up the resource's administration in maps
+ * (at most one lookup is needed when a resource is released, see {@link PoolEntryMap}).
+ * <br>Entries are identified by resource identity, the resource's {@link Object#hashCode()} and
+ * {@link Object#equals(Object)} methods are never used.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class PoolEntry<T> {
+
+	/** Resource is in the idle store (or thread cache). */
+	public static final int IDLE = 0;
+	/** Resource is leased. */
+	public static final int LEASED = 1;
+	/** Resource is no longer part of the pool. */
+	public static final int REMOVED = 2;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<PoolEntry> STATE =
+			AtomicIntegerFieldUpdater.newUpdater(PoolEntry.class, "state");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<PoolEntry, ExpiryWheel.Expiry> LEASE_EXPIRY =
+			AtomicReferenceFieldUpdater.newUpdater(PoolEntry.class, ExpiryWheel.Expiry.class, "leaseExpiry");
+
+	/** Never changes, except for entries re-used by {@link Pool#release(Object)}. */
+	T resource;
+	private volatile int state;
+	volatile long created;
+	volatile long lifeEnd;
+	volatile long idleStart;
+	volatile long leaseEnd;
+	/** {@link System#nanoTime()} when the resource was leased, see {@link BoundPool#getLeaseStartNanos(Object)}. */
+	volatile long leaseStart;
+	volatile Thread leaser;
+	/** The sampled stack-trace of the leaser, see {@link PrunedPool#setLeaserTraceSampler(LeaserTraceSampler)}. */
+	volatile LeaserTrace leaserTrace;
+	/** The scheduled check of the lease end, see {@link PrunedPool#checkLeaseTime()}. */
+	volatile ExpiryWheel.Expiry<PoolEntry<T>> leaseExpiry;
+	/** The scheduled end of life, see {@link PrunedPool#checkLifeTime()}. */
+	volatile ExpiryWheel.Expiry<PoolEntry<T>> lifeExpiry;
+
+	public PoolEntry(T resource) {
+		this(resource, IDLE);
+	}
+
+	public PoolEntry(T resource, int state) {
+		super();
+		this.resource = resource;
+		this.state = state;
+	}
+
+	public T getResource() {
+		return resource;
+	}
+
+	/** One of {@link #IDLE}, {@link #LEASED} or {@link #REMOVED}. */
+	public int getState() {
+		return state;
+	}
+
+	boolean compareAndSetState(int expect, int update) {
+		return STATE.compareAndSet(this, expect, update);
+	}
+
+	boolean compareAndSetLeaseExpiry(ExpiryWheel.Expiry<PoolEntry<T>> expect, ExpiryWheel.Expiry<PoolEntry<T>> update) {
+		return LEASE_EXPIRY.compareAndSet(this, expect, update);
+	}
+
+	/** Time the resource was created. */
+	public long getCreated() {
+		return created;
+	}
+
+	/** Time the resource's life ends, 0 for never. */
+	public long getLifeEnd() {
+		return lifeEnd;
+	}
+
+	/** Time the resource was last made idle. */
+	public long getIdleStart() {
+		return idleStart;
+	}
+
+	/** Time the lease of the resource ends, 0 for never. */
+	public long getLeaseEnd() {
+		return leaseEnd;
+	}
+
+	/** 
+	 * The {@link System#nanoTime()} the resource was leased,
+	 * only registered when a pool listener wants the {@link PoolEvent#RELEASING} event (else 0).
+	 */
+	public long getLeaseStart() {
+		return leaseStart;
+	}
+
+	/** The thread that leased the resource, only registered when lease expired traces are logged. */
+	public Thread getLeaser() {
+		return leaser;
+	}
+
+	/** The stack-trace of the leaser when the resource was acquired, only registered when the lease was sampled. */
+	public LeaserTrace getLeaserTrace() {
+		return leaserTrace;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + ":" + state + ":" + resource;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.github.fwi.yapool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps resources to their {@link PoolEntry} using resource identity.
+ * <p>
+ * Implementation notes.
+ * Entries are stored in an open addressing table (linear probing) using the identity hash-code of the resource.
+ * Lookups do not lock and do not allocate memory.
+ * Entries are only added when a resource is created and removed when a resource leaves the pool,
+ * these (relatively rare) updates are synchronized.
+ * When the table is resized, a new table is filled and then published:
+ * a lookup using the old table can still find a removed entry,
+ * which is why the state of an entry must always be checked (see {@link PoolEntry#getState()}).
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class PoolEntryMap<T> {
+
+	/** Marks a removed entry in the table. */
+	private static final PoolEntry<Object> TOMBSTONE = new PoolEntry<Object>(null, PoolEntry.REMOVED);
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private volatile AtomicReferenceArray<PoolEntry<T>> table = new AtomicReferenceArray<PoolEntry<T>>(INITIAL_CAPACITY);
+	private volatile int size;
+	private int tombstones;
+
+	static int indexFor(Object resource, int mask) {
+
+		int h = System.identityHashCode(resource);
+		// spread bits, identity hash-codes are not evenly distributed over the lower bits.
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h & mask;
+	}
+
+	/**
+	 * @return the entry for the resource or null if the resource is not in this map.
+	 */
+	public PoolEntry<T> get(Object resource) {
+
+		AtomicReferenceArray<PoolEntry<T>> tab = table;
+		int mask = tab.length() - 1;
+		int i = indexFor(resource, mask);
+		PoolEntry<T> e;
+		while ((e = tab.get(i)) != null) {
+			if (e.resource == resource && e != TOMBSTONE) {
+				return e;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the entry (replaces any entry for the same resource).
+	 */
+	public synchronized void put(PoolEntry<T> entry) {
+
+		if ((size + tombstones + 1) * 2 > table.length()) {
+			resize();
+		}
+		AtomicReferenceArray<PoolEntry<T>> tab = table;
+		int mask = tab.length() - 1;
+		int i = indexFor(entry.resource, mask);
+		int free = -1;
+		PoolEntry<T> e;
+		while ((e = tab.get(i)) != null) {
+			if (e.resource == entry.resource && e != TOMBSTONE) {
+				tab.set(i, entry);
+				return;
+			}
+			if (free < 0 && e == TOMBSTONE) {
+				free = i;
+			}
+			i = (i + 1) & mask;
+		}
+		if (free < 0) {
+			free = i;
+		} else {
+			tombstones--;
+		}
+		tab.set(free, entry);
+		size++;
+	}
+
+	/**
+	 * Removes the entry.
+	 * @return true if the entry was in this map and is now removed.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized boolean remove(PoolEntry<T> entry) {
+
+		AtomicReferenceArray<PoolEntry<T>> tab = table;
+		int mask = tab.length() - 1;
+		int i = indexFor(entry.resource, mask);
+		PoolEntry<T> e;
+		while ((e = tab.get(i)) != null) {
+			if (e == entry) {
+				tab.set(i, (PoolEntry<T>) (PoolEntry<?>) TOMBSTONE);
+				size--;
+				tombstones++;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	private void resize() {
+
+		AtomicReferenceArray<PoolEntry<T>> old = table;
+		int capacity = old.length();
+		// only grow when the table is filled with entries, not with tombstones.
+		while ((size + 1) * 2 > capacity) {
+			capacity <<= 1;
+		}
+		AtomicReferenceArray<PoolEntry<T>> tab = new AtomicReferenceArray<PoolEntry<T>>(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < old.length(); j++) {
+			PoolEntry<T> e = old.get(j);
+			if (e != null && e != TOMBSTONE) {
+				int i = indexFor(e.resource, mask);
+				while (tab.get(i) != null) {
+					i = (i + 1) & mask;
+				}
+				tab.set(i, e);
+			}
+		}
+		tombstones = 0;
+		table = tab;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * A snapshot of all entries. This is an expensive method, do not call this in a loop.
+	 */
+	public List<PoolEntry<T>> getEntries() {
+
+		AtomicReferenceArray<PoolEntry<T>> tab = table;
+		List<PoolEntry<T>> entries = new ArrayList<PoolEntry<T>>(size);
+		for (int i = 0; i < tab.length(); i++) {
+			PoolEntry<T> e = tab.get(i);
+			if (e != null && e != TOMBSTONE) {
+				entries.add(e);
+			}
+		}
+		return entries;
+	}
+
+}
@@ -35,6 +35,86 @@ public class PoolEvent extends EventObject {
 	/** Resource removed from the pool because it was invalid according to {@link IPoolFactory#isValid(Object)}. */
 	public static final String INVALID = "INVALID";
 
+	/* 
+	 * Event codes for the pool-event actions above, 
+	 * used to dispatch pool events without creating pool-event objects (see {@link IPoolCodeListener}).
+	 * Custom actions do not have an event code.
+	 */
+	
+	public static final int CODE_CREATED = 0;
+	public static final int CODE_DESTROYING = 1;
+	public static final int CODE_ACQUIRING = 2;
+	public static final int CODE_ACQUIRED = 3;
+	public static final int CODE_RELEASING = 4;
+	public static final int CODE_OPENED = 5;
+	public static final int CODE_CLOSED = 6;
+	public static final int CODE_LEASE_EXPIRED = 7;
+	public static final int CODE_IDLE_EXPIRED = 8;
+	public static final int CODE_INVALID = 9;
+	/** The amount of event codes. */
+	public static final int CODE_COUNT = 10;
+	/** Bitmask for all event codes. */
+	public static final int MASK_ALL = (1 << CODE_COUNT) - 1;
+	
+	private static final String[] ACTIONS = new String[] { CREATED, DESTROYING, ACQUIRING, ACQUIRED, RELEASING,
+			OPENED, CLOSED, LEASE_EXPIRED, IDLE_EXPIRED, INVALID };
+	
+	/**
+	 * @return the event code for the action, or -1 for a custom action.
+	 */
+	public static int codeOf(String action) {
+		
+		if (action != null) {
+			for (int i = 0; i < ACTIONS.length; i++) {
+				// actions are usually the constants in this class
+				if (ACTIONS[i] == action || ACTIONS[i].equals(action)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the action for the event code.
+	 */
+	public static String actionOf(int code) {
+		return ACTIONS[code];
+	}
+	
+	/**
+	 * @return the bit for the event code in a bitmask of event codes, 0 for a custom action (code -1).
+	 */
+	public static int bit(int code) {
+		return (code < 0 ? 0 : 1 << code);
+	}
+	
+	/**
+	 * @return the bitmask for the given event codes.
+	 */
+	public static int mask(int... codes) {
+		
+		int mask = 0;
+		for (int code : codes) {
+			mask |= bit(code);
+		}
+		return mask;
+	}
+	
+	/**
+	 * @return the bitmask for the given actions, custom actions are ignored.
+	 */
+	public static int mask(Iterable<String> actions) {
+		
+		int mask = 0;
+		if (actions != null) {
+			for (String action : actions) {
+				mask |= bit(codeOf(action));
+			}
+		}
+		return mask;
+	}
+
     private transient Object resource;
     private transient String action;
     private transient long timeStamp;
@@ -71,13 +151,24 @@ public class PoolEvent extends EventObject {
 		return action;
 	}
 	
+	/**
+	 * The event code of the action (see {@link #CODE_CREATED} etc.), -1 for a custom action.
+	 */
+	public int getCode() {
+		return codeOf(action);
+	}
+	
 	/**
 	 * If time-stamp was not set during construction,
-	 * this method will return the moment this method was first called. 
+	 * this method will return the moment this method was first called
+	 * (using the clock of the pool, see {@link Pool#getClock()}). 
 	 */
 	public long getTimeStamp() {
 
-		if (timeStamp == 0L) timeStamp = System.currentTimeMillis();
+		if (timeStamp == 0L) {
+			Object source = getSource();
+			timeStamp = (source instanceof Pool ? ((Pool<?>) source).getClock() : IPoolClock.SYSTEM).currentTimeMillis();
+		}
 		return timeStamp;
 	}
 	
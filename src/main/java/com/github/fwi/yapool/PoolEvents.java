@@ -1,92 +1,263 @@
 package com.github.fwi.yapool;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Generic class for handling pool-events.
+ * <br>Pool listeners that implement {@link IPoolCodeListener} receive pool events as event codes,
+ * other pool listeners receive {@link PoolEvent} objects.
+ * <br>When pool listeners are added or removed, a dispatch table is calculated that contains
+ * the pool listeners per event action, so that firing a pool event only touches the pool listeners that want the event.
+ * The events wanted by a pool listener should therefor not change after the pool listener is added.
  * @author Fred
  */
 public class PoolEvents implements IPoolEvents {
 
 	protected Logger log = LoggerFactory.getLogger(getClass());
 
+	private static final IPoolListener[] NO_LISTENERS = new IPoolListener[0];
+	private static final IPoolCodeListener[] NO_CODE_LISTENERS = new IPoolCodeListener[0];
+
+	/**
+	 * The pool listeners per event action, calculated by {@link PoolEvents#updateWantEvents()}.
+	 * A new dispatch table replaces the old one when pool listeners are added or removed (copy on write).
+	 */
+	protected static class DispatchTable {
+
+		/** Listeners for pool-event objects per event code. */
+		final IPoolListener[][] listeners = new IPoolListener[PoolEvent.CODE_COUNT][];
+		/** Listeners for event codes per event code. */
+		final IPoolCodeListener[][] codeListeners = new IPoolCodeListener[PoolEvent.CODE_COUNT][];
+		/** Listeners for custom actions (actions without an event code). */
+		final Map<String, IPoolListener[]> customListeners = new HashMap<String, IPoolListener[]>();
+		/** Listeners for custom actions not in {@link #customListeners}. */
+		IPoolListener[] allListeners = NO_LISTENERS;
+		/** Bitmask of event codes wanted by all listeners. */
+		int wantEventCodes;
+		/** Bitmask of event codes wanted by listeners that receive {@link PoolEvent} objects. */
+		int wantPoolEventCodes;
+
+		DispatchTable() {
+
+			for (int i = 0; i < PoolEvent.CODE_COUNT; i++) {
+				listeners[i] = NO_LISTENERS;
+				codeListeners[i] = NO_CODE_LISTENERS;
+			}
+		}
+
+		IPoolListener[] getListeners(String action) {
+
+			int code = PoolEvent.codeOf(action);
+			if (code > -1) {
+				return listeners[code];
+			}
+			IPoolListener[] custom = customListeners.get(action);
+			return (custom == null ? allListeners : custom);
+		}
+	}
+
 	/** Thread safe list containing the listeners. */
 	private List<IPoolListener> poolListeners = new CopyOnWriteArrayList<IPoolListener>();
-	private AtomicReference<Set<String>> wantEventActions = new AtomicReference<Set<String>>();
-	private volatile boolean wantAllEventActions = true;
-	
+	/** The listeners for event codes, the array is replaced when listeners are added or removed. */
+	private volatile IPoolCodeListener[] codeListeners = NO_CODE_LISTENERS;
+	private volatile DispatchTable dispatch = new DispatchTable();
+
 	@Override
 	public boolean wantEventAction(String poolEvent) {
-		return (haveListeners() ? (wantAllEventActions ? true : wantEventActions.get().contains(poolEvent)) : false);
+
+		int code = PoolEvent.codeOf(poolEvent);
+		if (code > -1) {
+			return wantEvent(code);
+		}
+		return (dispatch.getListeners(poolEvent).length > 0);
+	}
+
+	@Override
+	public boolean wantEvent(int code) {
+		return ((dispatch.wantEventCodes & (1 << code)) != 0);
+	}
+
+	@Override
+	public boolean wantPoolEvent(int code) {
+		return ((dispatch.wantPoolEventCodes & (1 << code)) != 0);
 	}
 
 	public boolean haveListeners() {
-		return poolListeners.size() > 0;
+		return poolListeners.size() > 0 || codeListeners.length > 0;
 	}
 
+	/**
+	 * Adds the listener, a listener that implements {@link IPoolCodeListener}
+	 * only receives pool events via {@link IPoolCodeListener#onPoolEvent(Pool, int, Object, long)}.
+	 */
 	@Override
-	public void addPoolListener(IPoolListener listener) {
-		
-		if (!poolListeners.contains(listener)) {
+	public synchronized void addPoolListener(IPoolListener listener) {
+
+		if (listener instanceof IPoolCodeListener) {
+			addCodeListener((IPoolCodeListener) listener);
+		} else if (!poolListeners.contains(listener)) {
 			poolListeners.add(listener);
 			updateWantEvents();
 		}
 	}
 
+	/**
+	 * Adds a listener for event codes.
+	 */
 	@Override
-	public void removePoolListener(IPoolListener listener) {
-		poolListeners.remove(listener);
+	public synchronized void addCodeListener(IPoolCodeListener listener) {
+
+		IPoolCodeListener[] current = codeListeners;
+		for (IPoolCodeListener l : current) {
+			if (l.equals(listener)) {
+				return;
+			}
+		}
+		IPoolCodeListener[] updated = new IPoolCodeListener[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, current.length);
+		updated[current.length] = listener;
+		codeListeners = updated;
 		updateWantEvents();
 	}
-	
+
+	@Override
+	public synchronized void removePoolListener(IPoolListener listener) {
+
+		if (listener instanceof IPoolCodeListener) {
+			removeCodeListener((IPoolCodeListener) listener);
+		} else {
+			poolListeners.remove(listener);
+			updateWantEvents();
+		}
+	}
+
 	@Override
-	public void clearListeners() {
+	public synchronized void removeCodeListener(IPoolCodeListener listener) {
+
+		IPoolCodeListener[] current = codeListeners;
+		int count = 0;
+		IPoolCodeListener[] updated = new IPoolCodeListener[current.length];
+		for (IPoolCodeListener l : current) {
+			if (!l.equals(listener)) {
+				updated[count++] = l;
+			}
+		}
+		if (count < current.length) {
+			IPoolCodeListener[] remaining = new IPoolCodeListener[count];
+			System.arraycopy(updated, 0, remaining, 0, count);
+			codeListeners = remaining;
+			updateWantEvents();
+		}
+	}
+
+	@Override
+	public synchronized void clearListeners() {
+
 		poolListeners.clear();
+		codeListeners = NO_CODE_LISTENERS;
 		updateWantEvents();
 	}
 
 	@Override
 	public void firePoolEvent(PoolEvent poolEvent) {
-		
-		for (IPoolListener l : poolListeners) {
-			if (l.wantsEventAction(poolEvent.getAction())) {
-				try {
-					l.onPoolEvent(poolEvent);
-				} catch (Exception e) {
-					log.error("Pool listener " + l + " could not handle pool-event " + poolEvent, e);
-				}
+
+		for (IPoolListener l : dispatch.getListeners(poolEvent.getAction())) {
+			try {
+				l.onPoolEvent(poolEvent);
+			} catch (Exception e) {
+				log.error("Pool listener " + l + " could not handle pool-event " + poolEvent, e);
+			}
+		}
+	}
+
+	@Override
+	public void firePoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+		for (IPoolCodeListener l : dispatch.codeListeners[code]) {
+			try {
+				l.onPoolEvent(pool, code, resource, nanoTime);
+			} catch (Exception e) {
+				log.error("Pool listener " + l + " could not handle pool-event " + PoolEvent.actionOf(code) + " for resource " + resource, e);
+			}
+		}
+	}
+
+	@Override
+	public void fireAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+
+		for (IPoolCodeListener l : dispatch.codeListeners[PoolEvent.CODE_ACQUIRED]) {
+			try {
+				l.onAcquired(pool, resource, acquireStartNanos, nanoTime);
+			} catch (Exception e) {
+				log.error("Pool listener " + l + " could not handle pool-event " + PoolEvent.ACQUIRED + " for resource " + resource, e);
 			}
 		}
 	}
-	
+
+	/**
+	 * Calculates a new dispatch table for the current pool listeners.
+	 */
 	protected void updateWantEvents() {
-		
-		Set<String> events = new HashSet<String>();
-		boolean all = false;
+
+		DispatchTable table = new DispatchTable();
+		List<IPoolListener> all = new ArrayList<IPoolListener>();
+		Set<String> customActions = new HashSet<String>();
 		for (IPoolListener l : poolListeners) {
 			if (l.wantAllEventActions()) {
-				all = true;
-				break;
+				all.add(l);
+			} else if (l.getWantEventActions() != null) {
+				for (String action : l.getWantEventActions()) {
+					if (PoolEvent.codeOf(action) < 0) {
+						customActions.add(action);
+					}
+				}
 			}
-			events.addAll(l.getWantEventActions());
 		}
-		if (all) {
-			wantAllEventActions = true;
-			events.clear();
-			wantEventActions.set(events);
-		} else {
-			wantEventActions.set(events);
-			// custom events might be added, so we are never sure when all Pool Events are in the events-set.
-			// therefor set the wantAllEvents always to false
-			wantAllEventActions = false;
+		table.allListeners = all.toArray(NO_LISTENERS);
+		for (int code = 0; code < PoolEvent.CODE_COUNT; code++) {
+			table.listeners[code] = getListeners(PoolEvent.actionOf(code));
+			if (table.listeners[code].length > 0) {
+				table.wantPoolEventCodes |= (1 << code);
+			}
+			List<IPoolCodeListener> cl = new ArrayList<IPoolCodeListener>();
+			for (IPoolCodeListener l : codeListeners) {
+				if ((l.getWantEventCodes() & (1 << code)) != 0) {
+					cl.add(l);
+				}
+			}
+			table.codeListeners[code] = cl.toArray(NO_CODE_LISTENERS);
 		}
+		for (String action : customActions) {
+			table.customListeners.put(action, getListeners(action));
+		}
+		table.wantEventCodes = table.wantPoolEventCodes;
+		for (IPoolCodeListener l : codeListeners) {
+			table.wantEventCodes |= (l.getWantEventCodes() & PoolEvent.MASK_ALL);
+		}
+		dispatch = table;
 	}
-	
+
+	/**
+	 * @return the pool listeners that want the action, in the order the pool listeners were added.
+	 */
+	protected IPoolListener[] getListeners(String action) {
+
+		List<IPoolListener> listeners = new ArrayList<IPoolListener>();
+		for (IPoolListener l : poolListeners) {
+			if (l.wantsEventAction(action)) {
+				listeners.add(l);
+			}
+		}
+		return listeners.toArray(NO_LISTENERS);
+	}
+
 }
@@ -36,7 +36,7 @@ public class PoolPruner {
 	protected Logger log = LoggerFactory.getLogger(getClass());
 
     private ScheduledExecutorService executor;
-    private CopyOnWriteArrayList<PrunedPool<?>> pools = new CopyOnWriteArrayList<PrunedPool<?>>();
+    private CopyOnWriteArrayList<IPrunablePool> pools = new CopyOnWriteArrayList<IPrunablePool>();
     private volatile boolean started;
     private boolean shutdownExecutor;
     
@@ -52,6 +52,19 @@ public class PoolPruner {
      * @return true when pool is pruned, false otherwise (prune interval is less than 1, pool is null or pool is closed).
      */
     public boolean add(PrunedPool<?> pool) {
+    	return addPool(pool);
+    }
+
+    /**
+     * Starts pruning the given pool (e.g. a {@link SlotPool}), a {@link PrunedPool} is added via {@link #add(PrunedPool)}.
+     * If this is the first pruned pool, this pool pruner is started. 
+     * @return true when pool is pruned, false otherwise (prune interval is less than 1, pool is null or pool is closed).
+     */
+    public boolean add(IPrunablePool pool) {
+    	return (pool instanceof PrunedPool ? add((PrunedPool<?>) pool) : addPool(pool));
+    }
+
+    protected boolean addPool(IPrunablePool pool) {
     	
     	if (pool == null || pool.isClosed()) {
     		return false;
@@ -88,7 +101,11 @@ public class PoolPruner {
     	return true;
     }
     
-    /* Separate method to facilitate unit testing. */
+    /* Separate methods to facilitate unit testing. */
+    protected PruneTask createPruneTask(ScheduledExecutorService executor, IPrunablePool pool) {
+    	return (pool instanceof PrunedPool ? createPruneTask(executor, (PrunedPool<?>) pool) : new PruneTask(executor, pool));
+    }
+
     protected PruneTask createPruneTask(ScheduledExecutorService executor, PrunedPool<?> pool) {
 		return new PruneTask(executor, pool);
     }
@@ -98,6 +115,18 @@ public class PoolPruner {
      * If this was the last pruned pool, this pool pruner is stopped.
      */
     public boolean remove(PrunedPool<?> pool) {
+    	return removePool(pool);
+    }
+
+    /**
+     * Stops pruning the given pool, a {@link PrunedPool} is removed via {@link #remove(PrunedPool)}.
+     * If this was the last pruned pool, this pool pruner is stopped.
+     */
+    public boolean remove(IPrunablePool pool) {
+    	return (pool instanceof PrunedPool ? remove((PrunedPool<?>) pool) : removePool(pool));
+    }
+
+    protected boolean removePool(IPrunablePool pool) {
     	
     	if (pools.contains(pool)) {
        		pools.remove(pool);
@@ -127,8 +156,8 @@ public class PoolPruner {
         	started = false;
            	log.trace("Pool pruner stopping.");
         	// Create a copy since pools are removed from the set when prune-task is stopped.
-        	Set<PrunedPool<?>> poolsCopy = new HashSet<PrunedPool<?>>(pools);
-        	for (PrunedPool<?> p : poolsCopy) {
+        	Set<IPrunablePool> poolsCopy = new HashSet<IPrunablePool>(pools);
+        	for (IPrunablePool p : poolsCopy) {
         		p.getPruneTask().stop();
         	}
         	pools.clear();
@@ -0,0 +1,76 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A singleton scheduler for short pool tasks, e.g. time-outs of asynchronous acquires
+ * (see {@link Pool#acquireAsync(long)}).
+ * The scheduler uses daemon threads and is never shut down.
+ * Tasks that run on this scheduler must not block.
+ * <br>Tasks that do block, like creating resources in the background (see {@link BoundPool#setMinIdle(int)}),
+ * run on the shared {@link #getCreateExecutor()}.
+ * <p>
+ * The singleton-pattern from Bill Pugh is used as described on
+ * <a href="http://en.wikipedia.org/wiki/Singleton_pattern#Initialization_On_Demand_Holder_Idiom">WikiPedia</a>
+ * @author FWiers
+ *
+ */
+public class PoolScheduler {
+
+	private static class SingletonHolder {
+		public static final ScheduledExecutorService INSTANCE = createScheduler();
+	}
+
+	private static class CreateExecutorHolder {
+		public static final ExecutorService INSTANCE = createCreateExecutor();
+	}
+
+	/** The shared scheduler. */
+	public static ScheduledExecutorService getInstance() {
+		return SingletonHolder.INSTANCE;
+	}
+
+	/** 
+	 * The shared executor for tasks that create resources. 
+	 * Threads are created as needed and stop after one minute of inactivity.
+	 */
+	public static ExecutorService getCreateExecutor() {
+		return CreateExecutorHolder.INSTANCE;
+	}
+
+	/** This class should not be instantiated, use {@link #getInstance()} instead. */
+	protected PoolScheduler() {}
+
+	protected static ScheduledExecutorService createScheduler() {
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory tf = r -> {
+			Thread t = new Thread(r, "yapool-scheduler-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		ScheduledThreadPoolExecutor stp = new ScheduledThreadPoolExecutor(1, tf);
+		// time-outs are cancelled most of the time, do not keep them in the queue.
+		stp.setRemoveOnCancelPolicy(true);
+		return stp;
+	}
+
+	protected static ExecutorService createCreateExecutor() {
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory tf = r -> {
+			Thread t = new Thread(r, "yapool-creator-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), tf);
+	}
+
+}
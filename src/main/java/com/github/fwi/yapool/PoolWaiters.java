@@ -0,0 +1,132 @@
+package com.github.fwi.yapool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A FIFO queue of acquirers (threads or futures) waiting for an idle resource.
+ * A resource that becomes available is handed to the oldest waiter directly,
+ * the resource does not pass through the idle store.
+ * <p>
+ * Implementation notes.
+ * A waiter is claimed exactly once via a compare-and-set on its state:
+ * either by a thread handing off a resource, or by the waiter itself when it cancels (e.g. after a time-out).
+ * Waiters register themselves before checking the idle store once more,
+ * threads making a resource available check for waiters after adding the resource to the idle store
+ * (see {@link Pool#addIdle(PoolEntry)}), so that no resource is missed by a waiter.
+ * @author FWiers
+ *
+ * @param <E> The type of item handed off to waiters.
+ */
+public class PoolWaiters<E> {
+
+	/** An acquirer waiting for an item. */
+	public static abstract class Waiter<E> {
+
+		static final int WAITING = 0;
+		static final int DONE = 1;
+		static final int CANCELLED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+
+		/**
+		 * Claims this waiter and gives it the item.
+		 * @return false if this waiter was already claimed (the item must be given to another waiter).
+		 */
+		public boolean handOff(E e) {
+
+			if (state.compareAndSet(WAITING, DONE)) {
+				deliver(e);
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Claims this waiter without giving it an item.
+		 * @return false if this waiter was already claimed.
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(WAITING, CANCELLED);
+		}
+
+		public boolean isWaiting() {
+			return (state.get() == WAITING);
+		}
+
+		public boolean isCancelled() {
+			return (state.get() == CANCELLED);
+		}
+
+		/** Called once, by the thread handing off the item. */
+		protected abstract void deliver(E e);
+	}
+
+	private final ConcurrentLinkedQueue<Waiter<E>> waiters = new ConcurrentLinkedQueue<Waiter<E>>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** Adds the waiter to the tail of the queue. */
+	public void add(Waiter<E> w) {
+
+		// Increase size first so that threads handing off see the waiter as soon as possible.
+		size.incrementAndGet();
+		waiters.add(w);
+	}
+
+	/**
+	 * Gives the item to the oldest waiter, if any.
+	 * @return true if the item was handed off, false if there are no waiters.
+	 */
+	public boolean handOff(E e) {
+
+		if (size.get() < 1) {
+			return false;
+		}
+		Waiter<E> w;
+		while ((w = waiters.poll()) != null) {
+			size.decrementAndGet();
+			if (w.handOff(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the (cancelled) waiter from the queue.
+	 * @return true if the waiter was in the queue and is now removed.
+	 */
+	public boolean remove(Waiter<E> w) {
+
+		if (waiters.remove(w)) {
+			size.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all waiters from the queue.
+	 * @return the removed waiters that were still waiting and are now cancelled.
+	 */
+	public List<Waiter<E>> cancelAll() {
+
+		List<Waiter<E>> cancelled = new ArrayList<Waiter<E>>();
+		Waiter<E> w;
+		while ((w = waiters.poll()) != null) {
+			size.decrementAndGet();
+			if (w.cancel()) {
+				cancelled.add(w);
+			}
+		}
+		return cancelled;
+	}
+
+	/** Amount of waiters in the queue. */
+	public int size() {
+		return size.get();
+	}
+
+}
@@ -1,9 +1,11 @@
 package com.github.fwi.yapool;
 
+import java.time.Duration;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -60,6 +62,9 @@ public class PoolsMap<T, K> {
     private ScheduledExecutorService executor;
     private boolean shutdownExecutor;
     private PoolsMapCleanTask cleanTask;
+    private volatile IPoolRegistrar registrar;
+    /** Removes the registration of this pools-map, null if this pools-map is not registered. */
+    private volatile Runnable registration;
 
 	/*
 	 * Implementation notes.
@@ -116,6 +121,10 @@ public class PoolsMap<T, K> {
 		poolsMap.clear();
 		cleanTask = new PoolsMapCleanTask(this);
 		cleanTask.schedule();
+		IPoolRegistrar registrar = getRegistrar();
+		if (registrar != null) {
+			registration = registrar.register(this);
+		}
 		log.debug("[{}] Pools map opened.", getPoolsName());
 		return this;
 	}
@@ -137,6 +146,87 @@ public class PoolsMap<T, K> {
 
 	public T acquire(K poolKey, long acquireTimeOutMs, long maxLeasedTimeMs) {
 		
+		PoolsMapPool<T> lockPool = getUsedPool(poolKey);
+		T t = null;
+		try {
+			if (acquireTimeOutMs < 0L) {
+				acquireTimeOutMs = lockPool.getPool().getMaxAcquireTimeMs();
+			}
+			if (maxLeasedTimeMs < 0L) {
+				maxLeasedTimeMs = lockPool.getPool().getMaxLeaseTimeMs();
+			}
+			t = lockPool.getPool().acquire(acquireTimeOutMs, maxLeasedTimeMs);
+		} finally {
+			lockPool.getUseLock().readLock().unlock();
+		}
+		return t;
+	}
+
+	public T acquire(K poolKey, Duration acquireTimeOut) {
+		return acquireUntil(poolKey, Pool.deadlineNanos(acquireTimeOut), -1L);
+	}
+
+	public T acquireUntil(K poolKey, long deadlineNanos) {
+		return acquireUntil(poolKey, deadlineNanos, -1L);
+	}
+
+	/**
+	 * Acquires a resource from the pool before the deadline, see {@link PrunedPool#acquireUntil(long, long)}.
+	 * <br>Time spent on getting or creating the pool for the key counts towards the deadline.
+	 * @param deadlineNanos deadline in {@link System#nanoTime()}.
+	 */
+	public T acquireUntil(K poolKey, long deadlineNanos, long maxLeasedTimeMs) {
+		
+		PoolsMapPool<T> lockPool = getUsedPool(poolKey);
+		T t = null;
+		try {
+			if (maxLeasedTimeMs < 0L) {
+				maxLeasedTimeMs = lockPool.getPool().getMaxLeaseTimeMs();
+			}
+			t = lockPool.getPool().acquireUntil(deadlineNanos, maxLeasedTimeMs);
+		} finally {
+			lockPool.getUseLock().readLock().unlock();
+		}
+		return t;
+	}
+	
+	/** 
+	 * Acquires a resource from the pool without blocking the calling thread while waiting for an idle resource,
+	 * see {@link PrunedPool#acquireAsync(long, long)}.
+	 * @return A future that completes with a resource for usage. This resource should be released after usage (see {@link #release(Object, Object)}).
+	 */
+	public CompletableFuture<T> acquireAsync(K poolKey) {
+		return acquireAsync(poolKey, -1L);
+	}
+
+	public CompletableFuture<T> acquireAsync(K poolKey, long acquireTimeOutMs) {
+		return acquireAsync(poolKey, acquireTimeOutMs, -1L);
+	}
+
+	public CompletableFuture<T> acquireAsync(K poolKey, long acquireTimeOutMs, long maxLeasedTimeMs) {
+		
+		PoolsMapPool<T> lockPool = getUsedPool(poolKey);
+		// The read-lock is only needed while registering the acquire:
+		// a pool with a pending acquire is not empty and will not be removed (when the pool is closed, the acquire fails).
+		try {
+			if (acquireTimeOutMs < 0L) {
+				acquireTimeOutMs = lockPool.getPool().getMaxAcquireTimeMs();
+			}
+			if (maxLeasedTimeMs < 0L) {
+				maxLeasedTimeMs = lockPool.getPool().getMaxLeaseTimeMs();
+			}
+			return lockPool.getPool().acquireAsync(acquireTimeOutMs, maxLeasedTimeMs);
+		} finally {
+			lockPool.getUseLock().readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Gets or creates the pool for the pool-key.
+	 * @return the pool with a read-lock that must be unlocked after usage.
+	 */
+	protected PoolsMapPool<T> getUsedPool(K poolKey) {
+		
 		ensureNotClosed();
 		PoolsMapPool<T> lockPool = null;
 		while (lockPool == null) {
@@ -165,19 +255,7 @@ public class PoolsMap<T, K> {
 				// else pool is open and we keep the read-lock.
 			}
 		} // while lockpool null
-		T t = null;
-		try {
-			if (acquireTimeOutMs < 0L) {
-				acquireTimeOutMs = lockPool.getPool().getMaxAcquireTimeMs();
-			}
-			if (maxLeasedTimeMs < 0L) {
-				maxLeasedTimeMs = lockPool.getPool().getMaxLeaseTimeMs();
-			}
-			t = lockPool.getPool().acquire(acquireTimeOutMs, maxLeasedTimeMs);
-		} finally {
-			lockPool.getUseLock().readLock().unlock();
-		}
-		return t;
+		return lockPool;
 	}
 	
 	/**
@@ -204,6 +282,10 @@ public class PoolsMap<T, K> {
 				if (pool == null) {
 					throw new RuntimeException("Pool factory failed to create a pool for key " + poolKey);
 				}
+				IPoolRegistrar registrar = getRegistrar();
+				if (registrar != null) {
+					pool.register(registrar.register(this, poolKey, pool));
+				}
 				lockPool = new PoolsMapPool<>(pool);
 				// first get the read-lock
 				lockPool.getUseLock().readLock().lock();
@@ -289,6 +371,11 @@ public class PoolsMap<T, K> {
 			poolCreateLock.unlock();
 		}
 		pools.forEach(p -> p.getPool().close());
+		Runnable unregister = registration;
+		registration = null;
+		if (unregister != null) {
+			unregister.run();
+		}
 		log.debug("[{}] Pools map closed.", getPoolsName());
 		opened = false;
 	}
@@ -410,4 +497,18 @@ public class PoolsMap<T, K> {
     	}
 	}
 
+	public IPoolRegistrar getRegistrar() {
+		return registrar;
+	}
+
+	/**
+	 * If set, this pools-map and its pools are registered (e.g. as MBeans, see {@code com.github.fwi.yapool.jmx.JmxRegistrar}).
+	 * The registrations are removed when this pools-map (or a pool) is closed.
+	 * Must be set before this pools-map is opened.
+	 * Default null.
+	 */
+	public void setRegistrar(IPoolRegistrar registrar) {
+		this.registrar = registrar;
+	}
+
 }
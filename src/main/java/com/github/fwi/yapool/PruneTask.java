@@ -4,25 +4,35 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * A default prune task that prunes a pool at regular intervals (uses {@link PrunedPool#getPruneIntervalMs()}).
- * This runnable is also used when {@link PoolPruner#add(PrunedPool)} is called.
- * The shared pruner will also call {@link PrunedPool#setPruneTask(PruneTask)} to register this prune task.
+ * A default prune task that prunes a pool at regular intervals (uses {@link IPrunablePool#getPruneIntervalMs()}).
+ * This runnable is also used when {@link PoolPruner#add(IPrunablePool)} is called.
+ * The shared pruner will also call {@link IPrunablePool#setPruneTask(PruneTask)} to register this prune task.
  * @author fwiers
  *
  */
 public class PruneTask implements Runnable {
 
-	private final PrunedPool<?> pool;
+	private final IPrunablePool pool;
+	/** The logger of the pool, so that pruning can be traced per pool. */
+	private final Logger log;
 	private final ScheduledExecutorService executor;
 	private volatile ScheduledFuture<?> scheduledTask;
 	private volatile boolean stop;
 	private volatile boolean started;
 	private PoolPruner pruner;
 	
-	public PruneTask(ScheduledExecutorService executor, PrunedPool<?> pool) {
+	public PruneTask(ScheduledExecutorService executor, PrunedPool<?> pool) {
+		this(executor, (IPrunablePool) pool);
+	}
+
+	public PruneTask(ScheduledExecutorService executor, IPrunablePool pool) {
 		this.executor = executor;
 		this.pool = pool;
+		this.log = (pool instanceof Pool ? ((Pool<?>) pool).log : LoggerFactory.getLogger(getClass()));
 	}
 	
 	/**
@@ -39,8 +49,8 @@ public class PruneTask implements Runnable {
 		
 		stop = false;
 		if (started) {
-			if (pool.log.isTraceEnabled()) {
-				pool.log.trace(pool.getPoolName() + " pool pruner task already started.");
+			if (log.isTraceEnabled()) {
+				log.trace(pool.getPoolName() + " pool pruner task already started.");
 			}
 		} else {
 			started = true;
@@ -50,7 +60,7 @@ public class PruneTask implements Runnable {
 
 	/**
 	 * Stops pruning the pool.
-	 * This method is called via {@link PrunedPool#close()}.
+	 * This method is called when the pool is closed (e.g. via {@link PrunedPool#close()}).
 	 * If a shared pruner was set, this prune task and pool is removed from the shared pruner.
 	 */
 	public void stop() {
@@ -65,8 +75,8 @@ public class PruneTask implements Runnable {
 		if (pruner != null) {
 			pruner.remove(pool);
 		}
-		if (pool.log.isTraceEnabled()) {
-			pool.log.trace(pool.getPoolName() + " pool pruner task stopped.");
+		if (log.isTraceEnabled()) {
+			log.trace(pool.getPoolName() + " pool pruner task stopped.");
 		}
 	}
 	
@@ -74,8 +84,8 @@ public class PruneTask implements Runnable {
 		
 		if (!stop) {
 			scheduledTask = executor.schedule(this, pool.getPruneIntervalMs(), TimeUnit.MILLISECONDS);
-			if (pool.log.isTraceEnabled()) {
-				pool.log.trace(pool.getPoolName() + " new pool pruner task scheduled.");
+			if (log.isTraceEnabled()) {
+				log.trace(pool.getPoolName() + " new pool pruner task scheduled.");
 			}
 		}
 	}
@@ -1,11 +1,13 @@
 package com.github.fwi.yapool;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link BoundPool} that can actively remove idled and expired resources from the pool (see {@link #prune()}).
- * To prune this pool regularly, register this pool using {@link PoolPruner#add(PrunedPool)}
+ * To prune this pool regularly, register this pool using {@link PoolPruner#add(IPrunablePool)}
  * (an instance of {@link PoolPruner} is available via {@link PoolPruner#getInstance()}). 
  * <br>Various actions can be taken when a resource idled/expired, see the various set-methods of this class.
  * For additional debugging, consider the use of the {@link com.github.fwi.yapool.listener.LeaserAcquiredTrace} listener.
@@ -13,7 +15,7 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * @param <T>
  */
-public class PrunedPool<T> extends BoundPool<T> {
+public class PrunedPool<T> extends BoundPool<T> implements IPrunablePool {
 
 	/** 1000 milliseconds (1 second) */
 	public static final long DEFAULT_PRUNE_INTERVAL = 1_000L;
@@ -34,16 +36,17 @@ public class PrunedPool<T> extends BoundPool<T> {
 	protected AtomicLong invalidCount = new AtomicLong();
 	protected AtomicLong lifeEndCount = new AtomicLong();
 
-	protected ConcurrentHashMap<T, Long> lifeTimeEnd = new ConcurrentHashMap<T, Long>();
-	protected ConcurrentHashMap<T, Long> idleTimeStart = new ConcurrentHashMap<T, Long>();
-	protected ConcurrentHashMap<T, Long> leaseTimeEnd = new ConcurrentHashMap<T, Long>();
-	protected ConcurrentHashMap<T, Thread> leasers = new ConcurrentHashMap<T, Thread>();
-	
 	private volatile boolean logLeaseExpiredTrace;
 	private volatile boolean logLeaseExpiredTraceAsWarn;
 	private volatile boolean logLeaseExpiredTraceAsError;
 	private volatile boolean interruptLeaser;
 	private volatile boolean destroyOnExpiredLease;
+	private volatile LeaserTraceSampler leaserTraceSampler;
+
+	/** Lease ends of leased resources, see {@link #checkLeaseTime()}. Re-created when the pool opens. */
+	protected volatile ExpiryWheel<PoolEntry<T>> leaseWheel = new ExpiryWheel<PoolEntry<T>>();
+	/** Life ends of resources, see {@link #checkLifeTime()}. Re-created when the pool opens. */
+	protected volatile ExpiryWheel<PoolEntry<T>> lifeWheel = new ExpiryWheel<PoolEntry<T>>();
 
 	@Override
 	public void open(int amount) {
@@ -60,6 +63,10 @@ public class PrunedPool<T> extends BoundPool<T> {
 				setMaxLifeTimeMs(2 * getMaxLeaseTimeMs());
 			}
 		}
+		// The wheels must start at the time of the pool's clock.
+		long now = getClock().currentTimeMillis();
+		leaseWheel = new ExpiryWheel<PoolEntry<T>>(ExpiryWheel.DEFAULT_TICK_MS, ExpiryWheel.DEFAULT_SLOTS, now);
+		lifeWheel = new ExpiryWheel<PoolEntry<T>>(ExpiryWheel.DEFAULT_TICK_MS, ExpiryWheel.DEFAULT_SLOTS, now);
 		super.open(amount);
 		idledCount.set(0);
 		expiredCount.set(0);
@@ -71,13 +78,14 @@ public class PrunedPool<T> extends BoundPool<T> {
 	}
 
 	@Override 
-	protected T create(boolean inLeasedState, boolean rethrowRuntimeException) {
+	protected PoolEntry<T> create(boolean inLeasedState, boolean rethrowRuntimeException, long deadlineNanos) {
 		
-		T t = super.create(inLeasedState, rethrowRuntimeException);
-		if (t != null && getMaxLifeTimeMs() > 0L) {
-			lifeTimeEnd.put(t, System.currentTimeMillis() + getMaxLifeTimeMs());
+		PoolEntry<T> e = super.create(inLeasedState, rethrowRuntimeException, deadlineNanos);
+		if (e != null && getMaxLifeTimeMs() > 0L) {
+			e.lifeEnd = e.created + getMaxLifeTimeMs();
+			e.lifeExpiry = lifeWheel.add(e, e.lifeEnd);
 		}
-		return t;
+		return e;
 	}
 
 	/**
@@ -89,31 +97,121 @@ public class PrunedPool<T> extends BoundPool<T> {
 	}
 
 	/**
-	 * Calls {@link BoundPool#acquire(long)} but also validates the returned resource.
-	 * If validation fails, the resource is evicted from the pool 
-	 * and {@link BoundPool#acquire(long)} is called again, if there is any acquire-time left. 
+	 * Calls {@link #acquireUntil(long, long)} with {@link #getMaxLeaseTimeMs()}.
+	 */
+	@Override
+	public T acquireUntil(long deadlineNanos) {
+		return acquireUntil(deadlineNanos, getMaxLeaseTimeMs());
+	}
+
+	/**
+	 * Calls {@link #acquireUntil(long, long)} with a deadline of now plus the given time-out.
 	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
 	 */
 	public T acquire(long acquireTimeOutMs, long maxLeasedTimeMs) {
+		return acquireUntil(deadlineNanos(acquireTimeOutMs), maxLeasedTimeMs);
+	}
+
+	/**
+	 * Calls {@link #acquireUntil(long, long)} with a deadline of now plus the given time-out.
+	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
+	 */
+	public T acquire(Duration acquireTimeOut, long maxLeasedTimeMs) {
+		return acquireUntil(deadlineNanos(acquireTimeOut), maxLeasedTimeMs);
+	}
+
+	/**
+	 * Calls {@link BoundPool#acquireUntil(long)} but also validates the returned resource.
+	 * If validation fails, the resource is evicted from the pool 
+	 * and {@link BoundPool#acquireUntil(long)} is called again with the same deadline. 
+	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
+	 */
+	public T acquireUntil(long deadlineNanos, long maxLeasedTimeMs) {
 		
-		long timeout = acquireTimeOutMs;
-		long tend = System.currentTimeMillis() + timeout;
-		T t = null;
+		PoolEntry<T> e = null;
 		do {
-			t = super.acquire(timeout); // will throw NoSuchElementException when none is available within timeout.
-			if (!isValid(t)) {
+			e = super.acquireEntryUntil(deadlineNanos); // will throw NoSuchElementException when none is available before the deadline.
+			if (!isValid(e.resource)) {
 				invalidCount.incrementAndGet();
-				fireEvent(PoolEvent.INVALID, t);
-				removeLeased(t, true, false);
-				t = null;
-				timeout = tend - System.currentTimeMillis();
+				fireEvent(PoolEvent.CODE_INVALID, e.resource);
+				removeLeased(e, true, false);
+				e = null;
 			}
-		} while (t == null);
+		} while (e == null);
 		if (logLeaseExpiredTrace) {
-			leasers.put(t, Thread.currentThread());
+			e.leaser = Thread.currentThread();
+			LeaserTraceSampler sampler = leaserTraceSampler;
+			if (sampler != null) {
+				e.leaserTrace = sampler.sample();
+			}
+		}
+		e.leaseEnd = (maxLeasedTimeMs < 1L ? 0L : getClock().currentTimeMillis() + maxLeasedTimeMs);
+		scheduleLeaseEnd(e);
+		return e.resource;
+	}
+	
+	/**
+	 * Calls {@link #acquireAsync(long, long)} with {@link #getMaxLeaseTimeMs()}.
+	 */
+	@Override
+	public CompletableFuture<T> acquireAsync(long acquireTimeOutMs) {
+		return acquireAsync(acquireTimeOutMs, getMaxLeaseTimeMs());
+	}
+
+	/**
+	 * Asynchronous version of {@link #acquire(long, long)}, see also {@link BoundPool#acquireAsync(long)}.
+	 * <br>Note that a resource handed off to a waiter is validated by the thread that released the resource.
+	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
+	 */
+	public CompletableFuture<T> acquireAsync(long acquireTimeOutMs, long maxLeasedTimeMs) {
+		return toResourceFuture(acquireEntryAsync(acquireTimeOutMs, deadlineNanos(acquireTimeOutMs), maxLeasedTimeMs));
+	}
+
+	/**
+	 * @param deadlineNanos the deadline for acquiring a valid resource (see {@link #deadlineNanos(long)}), 
+	 * used to calculate the time-out after a resource was found invalid.
+	 */
+	protected CompletableFuture<PoolEntry<T>> acquireEntryAsync(long acquireTimeOutMs, long deadlineNanos, long maxLeasedTimeMs) {
+		
+		return super.acquireEntryAsync(acquireTimeOutMs).thenCompose(e -> {
+			if (!isValid(e.resource)) {
+				invalidCount.incrementAndGet();
+				fireEvent(PoolEvent.CODE_INVALID, e.resource);
+				removeLeased(e, true, false);
+				return acquireEntryAsync(TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadlineNanos)), deadlineNanos, maxLeasedTimeMs);
+			}
+			// The leaser is unknown, the thread that acquired the resource does not have to be the thread that uses it.
+			e.leaseEnd = (maxLeasedTimeMs < 1L ? 0L : getClock().currentTimeMillis() + maxLeasedTimeMs);
+			scheduleLeaseEnd(e);
+			return CompletableFuture.completedFuture(e);
+		});
+	}
+
+	/**
+	 * Adds the lease end of a leased resource to the {@link #leaseWheel}, 
+	 * unless a lease end of the resource that is not later than the current lease end is already in the wheel.
+	 * A resource is in the wheel at most once: the lease end in the wheel can be from a previous lease,
+	 * in that case a later current lease end is added to the wheel when the previous lease end is checked
+	 * and an earlier current lease end replaces the previous lease end in the wheel
+	 * (so that a shorter lease is enforced on time).
+	 */
+	protected void scheduleLeaseEnd(PoolEntry<T> e) {
+		
+		long leaseEnd = e.leaseEnd;
+		if (leaseEnd < 1L || e.getState() != PoolEntry.LEASED) {
+			return;
+		}
+		ExpiryWheel.Expiry<PoolEntry<T>> current = e.leaseExpiry;
+		if (current != null && current.getDeadline() <= leaseEnd) {
+			return;
+		}
+		ExpiryWheel.Expiry<PoolEntry<T>> x = new ExpiryWheel.Expiry<PoolEntry<T>>(e, leaseEnd);
+		if (e.compareAndSetLeaseExpiry(current, x)) {
+			if (current != null) {
+				current.cancel();
+			}
+			leaseWheel.add(x);
 		}
-		leaseTimeEnd.put(t, (maxLeasedTimeMs < 1L ? 0L : System.currentTimeMillis() + maxLeasedTimeMs));
-		return t;
 	}
 	
 	/** Call factory isValid method within a try-catch block. */
@@ -129,58 +227,34 @@ public class PrunedPool<T> extends BoundPool<T> {
 	}
 	
 	@Override
-	protected void addIdle(T t) {
+	protected void addIdle(PoolEntry<T> e) {
 	
-		if (t != null) {
-			idleTimeStart.put(t, System.currentTimeMillis());
-			super.addIdle(t);
-		}
+		e.idleStart = getClock().currentTimeMillis();
+		super.addIdle(e);
 	}
 
 	@Override
-	public T release(T t) {
+	protected void releaseIdle(PoolEntry<T> e) {
 		
-		T released = super.release(t);
-		if (released != null) {
-			leaseTimeEnd.remove(t);
-			leasers.remove(t);
-			idleTimeStart.put(t, System.currentTimeMillis());
-		}
-		return released;
-	}
-	
-	@Override
-	public boolean evictLeased(T t, boolean destroy) {
-		
-		boolean evicted = false;
-		if (super.evictLeased(t, destroy)) {
-			evicted = true;
-			// If the resource was not destroyed, there is a chance of memory leakage.
-			// Therefor, remove all references to the resource now.
-			if (!destroy) {
-				removeReferences(t);
-			}
-		}
-		return evicted;
+		e.leaseEnd = 0L;
+		e.leaser = null;
+		e.leaserTrace = null;
+		e.idleStart = getClock().currentTimeMillis();
+		super.releaseIdle(e);
 	}
 
+	/** Removes the entry of a resource that is no longer part of the pool from the expiry wheels. */
 	@Override
-	protected void destroy(T t) {
-		
-		removeReferences(t);
-		super.destroy(t);
-	}
-	
-	/**
-	 * Removes all references to the resource in maps that keep track of the resource.
-	 * @param t The resource to remove from prune administration.
-	 */
-	protected void removeReferences(T t) {
+	protected void removed(PoolEntry<T> e) {
 		
-		idleTimeStart.remove(t);
-		leaseTimeEnd.remove(t);
-		leasers.remove(t);
-		lifeTimeEnd.remove(t);
+		ExpiryWheel.Expiry<PoolEntry<T>> x = e.leaseExpiry;
+		if (x != null) {
+			x.cancel();
+		}
+		x = e.lifeExpiry;
+		if (x != null) {
+			x.cancel();
+		}
 	}
 
 	@Override
@@ -196,6 +270,7 @@ public class PrunedPool<T> extends BoundPool<T> {
 	 * Removes resources from the pool that idled for {@link #getMaxIdleTimeMs()} 
 	 * or are leased for {@link #getMaxLeaseTimeMs()} or have passed the life time ({@link #getMaxLifeTimeMs()}).
 	 */
+	@Override
 	public void prune() {
 		
 		if (log.isTraceEnabled()) {
@@ -214,6 +289,7 @@ public class PrunedPool<T> extends BoundPool<T> {
 				// Only ensure minimum size when prune-task has removed connections.
 				ensureMinSize();
 			}
+			fillIdle();
 		} catch (Exception e) {
 			log.error("Pruning pool " + getPoolName() + " failed.", e);
 		}
@@ -223,63 +299,92 @@ public class PrunedPool<T> extends BoundPool<T> {
 	}
 	
 	/**
-	 * Removes resources from the pool that idled for {@link #getMaxIdleTimeMs()},
-	 * but only if pool size is larger than minimum pool size.
+	 * Removes resources from the pool (idle-queue and thread cache) that idled for {@link #getMaxIdleTimeMs()},
+	 * but only if pool size is larger than minimum pool size
+	 * and the amount of idle resources is larger than {@link #getMinIdle()}.
 	 * @return amount of an idle resources removed
 	 */
 	protected int checkIdleTime() {
 		
-		if (getMaxIdleTimeMs() < 1L || getSize() <= getMinSize()) {
+		if (getMaxIdleTimeMs() < 1L || !isIdleRemovable()) {
 			return 0;
 		}
-		long now = System.currentTimeMillis();
-		T t = null;
+		long now = getClock().currentTimeMillis();
+		PoolEntry<T> e = null;
 		boolean done = false;
 		int removedCount = 0;
-		while (!done && (t = idleQueue.peekLast()) != null) {
+		while (!done && (e = idleStore.peekLast()) != null) {
 			done = true;
-			Long idleStart = idleTimeStart.get(t);
-			if (idleStart != null 
-					&& now - idleStart > getMaxIdleTimeMs()
-					&& getSize() > getMinSize()) {
-				t = removeIdle(true);
-				if (t != null) {
+			if (now - e.idleStart > getMaxIdleTimeMs()
+					&& isIdleRemovable()) {
+				if (removeIdle(true) != null) {
 					removedCount++;
 					idledCount.incrementAndGet();
 					done = false;
-					// no need for further cleanup, destroy() is called for removed idle resource,
-					// which in turn removes all references (calls removeReferences).
+				}
+			}
+		}
+		IdleThreadCache<PoolEntry<T>> cache = threadCache;
+		if (cache != null) {
+			for (PoolEntry<T> cached : cache.getCached()) {
+				if (now - cached.idleStart > getMaxIdleTimeMs()
+						&& isIdleRemovable()
+						&& removeIdle(cached, true) != null) {
+					removedCount++;
+					idledCount.incrementAndGet();
 				}
 			}
 		}
 		return removedCount;
 	}
 
+	/**
+	 * @return true if the pool is larger than the minimum size and has more than the minimum amount of idle resources.
+	 */
+	protected boolean isIdleRemovable() {
+		return (getSize() > getMinSize() && (getMinIdle() < 1 || getIdleSize() > getMinIdle()));
+	}
+
 	/**
 	 * Removes resources from the pool that are leased for {@link #getMaxLeaseTimeMs()}.
 	 * A leaser may be interrupted (see {@link #isInterruptLeaser()})
 	 * and a stack trace may be logged (see {@link PrunedPool#isLogLeaseExpiredTrace()}).
 	 * <br>The removed resource is destroyed if {@link #isDestroyOnExpiredLease()} is true.
+	 * <br>Only resources for which the lease end in the {@link #leaseWheel} has passed are checked.
 	 * @return amount of evicted resources
 	 */
 	protected int checkLeaseTime() {
 		
-		long now = System.currentTimeMillis();
+		long now = getClock().currentTimeMillis();
 		int evictedResourcesCount = 0;
-		for (T t : leaseTimeEnd.keySet()) {
-			Long leaseEnd = leaseTimeEnd.get(t);
-			if (leaseEnd == null || leaseEnd < 1L || now <= leaseEnd) {
+		for (ExpiryWheel.Expiry<PoolEntry<T>> x : leaseWheel.expire(now)) {
+			PoolEntry<T> e = x.getItem();
+			if (e == null) {
+				continue;
+			}
+			long leaseEnd = e.leaseEnd;
+			if (e.getState() != PoolEntry.LEASED || leaseEnd < 1L || now <= leaseEnd) {
+				// resource was released (and possibly leased again), schedule the current lease end if any.
+				e.compareAndSetLeaseExpiry(x, null);
+				scheduleLeaseEnd(e);
 				continue;
 			}
-			Thread user = leasers.get(t);
+			T t = e.resource;
+			Thread user = e.leaser;
+			LeaserTrace acquiredTrace = e.leaserTrace;
 			// if user is interrupted, first get stack trace from user and log it.
 			if (isInterruptLeaser()) {
-				logExpiredTrace(t, user);
+				logExpiredTrace(t, user, acquiredTrace);
 			}
-			if (removeLeased(t, isDestroyOnExpiredLease(), true) == null) {
+			if (removeLeased(e, isDestroyOnExpiredLease(), true) == null) {
+				// resource was just released.
+				e.compareAndSetLeaseExpiry(x, null);
+				scheduleLeaseEnd(e);
 				continue;
 			}
-			removeReferences(t);
+			// prevent memory leaks, the entry is no longer part of the pool.
+			e.leaser = null;
+			e.leaserTrace = null;
 			evictedResourcesCount++;
 			expiredCount.incrementAndGet();
 			if (isInterruptLeaser()) {
@@ -289,19 +394,20 @@ public class PrunedPool<T> extends BoundPool<T> {
 						if (!user.isInterrupted()) {
 							user.interrupt();
 						}
-					} catch (Exception e) {
+					} catch (Exception ex) {
 						log.warn(getPoolName() + " Failed to interrupt thread " + t + " for leasing resource [" + t + "] for too long.");
 					}
 				}
 			} else {
-				logExpiredTrace(t, user);
+				logExpiredTrace(t, user, acquiredTrace);
 			}
-		} // for leaseTimeEnd
+		} // for expiries
 		return evictedResourcesCount;
 	}
 	
 	/**
 	 * Tries to remove resources from the pool for which life time ended ({@link #getMaxLifeTimeMs()}).
+	 * <br>Only resources for which the life end in the {@link #lifeWheel} has passed are checked.
 	 * @return amount of removed resources
 	 */
 	protected int checkLifeTime() {
@@ -309,23 +415,24 @@ public class PrunedPool<T> extends BoundPool<T> {
 		if (getMaxLifeTimeMs() < 1L) {
 			return 0;
 		}
-		long now = System.currentTimeMillis();
+		long now = getClock().currentTimeMillis();
 		int evictedResourcesCount = 0;
-		for (T t : lifeTimeEnd.keySet()) {
-			Long lifeEnd = lifeTimeEnd.get(t);
-			if (lifeEnd == null || lifeEnd < 1L || now <= lifeEnd) {
+		for (ExpiryWheel.Expiry<PoolEntry<T>> x : lifeWheel.expire(now)) {
+			PoolEntry<T> e = x.getItem();
+			if (e == null || e.getState() == PoolEntry.REMOVED) {
 				continue;
 			}
+			T t = e.resource;
 			boolean wasLeased = false;
-			boolean wasIdle = (removeIdle(t, false) != null);
+			boolean wasIdle = (removeIdle(e, false) != null);
 			if (!wasIdle) {
-				wasLeased = (removeLeased(t, false, false) != null);
+				wasLeased = (removeLeased(e, false, false) != null);
 			}
 			if (wasIdle || wasLeased) {
 				if (wasLeased) {
-					// prevent memory leaks. 
-					// if resource was idle, removeReferences is called via destroy().
-					removeReferences(t);
+					// prevent memory leaks.
+					e.leaser = null;
+					e.leaserTrace = null;
 				}
 				evictedResourcesCount++;
 				lifeEndCount.incrementAndGet();
@@ -336,8 +443,11 @@ public class PrunedPool<T> extends BoundPool<T> {
 				if (log.isDebugEnabled()) {
 					log.debug("Failed to remove resource [" + t + "] from pool " + getPoolName() + " after life time ended, will retry on next prune cycle.");
 				}
+				if (e.getState() != PoolEntry.REMOVED) {
+					lifeWheel.add(x);
+				}
 			}
-		} // for lifeTimeEnd
+		} // for expiries
 		return evictedResourcesCount;
 	}
 
@@ -355,12 +465,12 @@ public class PrunedPool<T> extends BoundPool<T> {
 		
 		try {
 			while (getSize() < getMinSize()) {
-				T t = create();
-				if (t == null) {
+				PoolEntry<T> e = create(false, true);
+				if (e == null) {
 					// Should not happen, but to be safe.
 					break;
 				}
-				addIdle(t);
+				addIdle(e);
 				if (log.isTraceEnabled()) {
 					log.trace("Added new resource to pool " + getPoolName() + " to ensure minimum size (" + getMinSize() + "/" + getSize() + ")");
 				}
@@ -371,9 +481,39 @@ public class PrunedPool<T> extends BoundPool<T> {
 	}
 	
 	protected void logExpiredTrace(T t, Thread user) {
+		logExpiredTrace(t, user, null);
+	}
+
+	/**
+	 * Logs the current stack-trace of the leaser and, if available, the stack-trace of the leaser when the resource was acquired.
+	 * The stack-traces are limited to the maximum depth of the {@link #getLeaserTraceSampler()} (if any).
+	 * @param acquiredTrace null if the lease was not sampled.
+	 */
+	protected void logExpiredTrace(T t, Thread user, LeaserTrace acquiredTrace) {
 		
-		StringBuilder sb = new StringBuilder("Evicting resource from pool " + getPoolName() + " after lease time has expired");
-		if (user != null && isInterruptLeaser()) {
+		LeaserTraceSampler sampler = leaserTraceSampler;
+		String logMsg = expiredTraceMessage(getPoolName(), t, user, acquiredTrace, 
+				(sampler == null ? LeaserTrace.UNLIMITED_DEPTH : sampler.getMaxDepth()), isInterruptLeaser());
+		if (logLeaseExpiredTraceAsError) {
+			log.error(logMsg);
+		} else if (logLeaseExpiredTraceAsWarn) {
+			log.warn(logMsg);
+		} else if (isLogLeaseExpiredTrace()) {
+			log.info(logMsg);
+		} else {
+			log.debug(logMsg);
+		}
+	}
+
+	/**
+	 * The log message for an evicted resource of which the lease expired, 
+	 * see {@link #logExpiredTrace(Object, Thread, LeaserTrace)}.
+	 */
+	static String expiredTraceMessage(String poolName, Object t, Thread user, LeaserTrace acquiredTrace, 
+			int maxDepth, boolean interruptLeaser) {
+		
+		StringBuilder sb = new StringBuilder("Evicting resource from pool " + poolName + " after lease time has expired");
+		if (user != null && interruptLeaser) {
 			sb.append(", resource leaser will be interrupted.");
 		} else {
 			sb.append(".");
@@ -387,25 +527,19 @@ public class PrunedPool<T> extends BoundPool<T> {
 			if (tstack == null || tstack.length == 0) {
 				sb.append("\nNo stack trace from leaser available.");
 			} else {
-				for (StackTraceElement st : tstack) {
-					sb.append("\n\t").append(st.toString());
-				}
+				LeaserTrace.appendTo(sb, tstack, maxDepth);
 			}
 		}
-		String logMsg = sb.toString();
-		if (logLeaseExpiredTraceAsError) {
-			log.error(logMsg);
-		} else if (logLeaseExpiredTraceAsWarn) {
-			log.warn(logMsg);
-		} else if (isLogLeaseExpiredTrace()) {
-			log.info(logMsg);
-		} else {
-			log.debug(logMsg);
+		if (acquiredTrace != null) {
+			sb.append("\nStack trace from leaser ").append(acquiredTrace.getLeaser()).append(" when resource was acquired:");
+			acquiredTrace.appendTo(sb);
 		}
+		return sb.toString();
 	}
 
 	/* *** bean methods *** */
 
+	@Override
 	public long getPruneIntervalMs() {
 		return pruneIntervalMs.get();
 	}
@@ -418,6 +552,7 @@ public class PrunedPool<T> extends BoundPool<T> {
 		this.pruneIntervalMs.set(pruneIntervalMs);
 	}
 	
+	@Override
 	public void setPruneTask(PruneTask pruneTask) {
 		
 		if (this.pruneTask != null) {
@@ -426,6 +561,7 @@ public class PrunedPool<T> extends BoundPool<T> {
 		this.pruneTask = pruneTask;
 	}
 	
+	@Override
 	public PruneTask getPruneTask() {
 		return pruneTask;
 	}
@@ -493,6 +629,21 @@ public class PrunedPool<T> extends BoundPool<T> {
 		if (logLeaseExpiredTraceAsError) setLogLeaseExpiredTrace(true);
 	}
 
+	public LeaserTraceSampler getLeaserTraceSampler() {
+		return leaserTraceSampler;
+	}
+
+	/**
+	 * If set, the stack-trace of the leaser is captured when a resource is acquired for sampled leases
+	 * and logged together with the current stack-trace of the leaser when the lease expires.
+	 * Stack traces are limited to the sampler's maximum depth.
+	 * Only used when lease expired traces are logged (see {@link #setLogLeaseExpiredTrace(boolean)}).
+	 * Default null (no stack-traces captured when resources are acquired).
+	 */
+	public void setLeaserTraceSampler(LeaserTraceSampler leaserTraceSampler) {
+		this.leaserTraceSampler = leaserTraceSampler;
+	}
+
 	public boolean isInterruptLeaser() {
 		return interruptLeaser;
 	}
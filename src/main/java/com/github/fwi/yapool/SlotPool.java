@@ -0,0 +1,1317 @@
+package com.github.fwi.yapool;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool that keeps its resources in a fixed array of {@link #getMaxSize()} slots,
+ * an alternative for the {@link PrunedPool} with the same idle, lease and life time-outs.
+ * <br>Each slot has an atomic state (see {@link #EMPTY} etc.) and the time-stamps of the resource in the slot:
+ * acquiring, releasing, evicting and pruning a resource are compare-and-set operations on the state of one slot.
+ * There are no maps or shared counters: the size of the pool is the amount of slots that are not empty.
+ * <br>Threads scan the slots from the slot they used last (or a slot based on the thread ID),
+ * so that threads tend to use different slots and a thread tends to re-use the same resource.
+ * A released resource is found via the slot the releasing thread acquired last,
+ * other slots are only scanned when the resource was acquired by another thread.
+ * <br>Threads that wait for a resource are not served in FIFO order, this pool cannot be fair
+ * and does not use an idle store or thread cache: the fair, hand-off and thread cache settings are not supported
+ * (see {@link #setFair(boolean)}).
+ * Asynchronous acquirers (see {@link #acquireAsync(long)}) are handed a slot by the thread that makes the slot available.
+ * The maximum size must be set before the pool is opened, the amount of slots does not change while the pool is open.
+ * <br>To prune this pool regularly, register this pool using {@link PoolPruner#add(IPrunablePool)}.
+ * @author FWiers
+ *
+ * @param <T> The type of resource in the pool.
+ */
+public class SlotPool<T> extends Pool<T> implements IPrunablePool {
+
+	/** Slot has no resource. */
+	public static final int EMPTY = 0;
+	/** A resource is being created for the slot. */
+	public static final int CREATING = 1;
+	/** Slot has an idle resource. */
+	public static final int IDLE = 2;
+	/** Slot has a leased resource. */
+	public static final int LEASED = 3;
+	/** The leased resource in the slot is being released. */
+	public static final int RELEASING = 4;
+	/** The resource in the slot is being removed from the pool. */
+	public static final int EVICTING = 5;
+	/**
+	 * The idle or new resource in the slot is being handed to an acquirer,
+	 * the slot is not pruned or evicted until the acquirer moves it to the {@link #LEASED} state.
+	 */
+	public static final int ACQUIRING = 6;
+
+	/**
+	 * The administration of one resource in the pool.
+	 * Only the thread that moved the slot to the {@link #CREATING}, {@link #ACQUIRING}, {@link #RELEASING} or {@link #EVICTING} state
+	 * updates the resource and time-stamps of the slot.
+	 */
+	protected static class Slot<T> {
+
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<Slot> STATE = AtomicIntegerFieldUpdater.newUpdater(Slot.class, "state");
+
+		final int index;
+		volatile int state;
+		volatile T resource;
+		volatile long created;
+		volatile long lifeEnd;
+		volatile long idleStart;
+		volatile long leaseEnd;
+		volatile long leaseStart;
+		volatile Thread leaser;
+		volatile LeaserTrace leaserTrace;
+
+		Slot(int index) {
+			this.index = index;
+		}
+
+		boolean compareAndSetState(int expect, int update) {
+			return STATE.compareAndSet(this, expect, update);
+		}
+
+		@Override
+		public String toString() {
+			return "Slot" + index + ":" + state + ":" + resource;
+		}
+	}
+
+	/** The index of the slot the current thread used last, -1 if unknown. */
+	protected static class SlotHint {
+		int index = -1;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected volatile Slot<T>[] slots = new Slot[0];
+	private final ThreadLocal<SlotHint> slotHint = ThreadLocal.withInitial(SlotHint::new);
+
+	/** Threads waiting for a slot to become idle or empty, see {@link #signalWaiters()}. */
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition slotAvailable = waitLock.newCondition();
+	/** Asynchronous acquirers waiting for a slot, see {@link #handOffSlots()}. */
+	protected final PoolWaiters<Slot<T>> slotWaiters = new PoolWaiters<Slot<T>>();
+
+	private volatile int minSize = 0;
+	private volatile int maxSize = 4;
+	private volatile boolean opened;
+
+	private PruneTask pruneTask;
+	private AtomicLong pruneIntervalMs = new AtomicLong(PrunedPool.DEFAULT_PRUNE_INTERVAL);
+	private AtomicLong maxIdleTimeMs = new AtomicLong(PrunedPool.DEFAULT_MAX_IDLE_TIME);
+	private AtomicLong maxLeaseTimeMs = new AtomicLong(PrunedPool.DEFAULT_MAX_LEASE_TIME);
+	private AtomicLong maxLifeTimeMs = new AtomicLong(PrunedPool.DEFAULT_MAX_LIFE_TIME);
+	protected AtomicLong idledCount = new AtomicLong();
+	protected AtomicLong expiredCount = new AtomicLong();
+	protected AtomicLong invalidCount = new AtomicLong();
+	protected AtomicLong lifeEndCount = new AtomicLong();
+
+	private volatile boolean logLeaseExpiredTrace;
+	private volatile boolean logLeaseExpiredTraceAsWarn;
+	private volatile boolean logLeaseExpiredTraceAsError;
+	private volatile boolean interruptLeaser;
+	private volatile boolean destroyOnExpiredLease;
+	private volatile LeaserTraceSampler leaserTraceSampler;
+
+	/** Opens the pool with {@link #getMinSize()} resources. */
+	public void open() {
+		open(minSize);
+	}
+
+	/** Opens the pool with the given amount of resources (at least {@link #getMinSize()}, at most {@link #getMaxSize()}). */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void open(int amount) {
+
+		if (isClosed()) {
+			throw new IllegalStateException(getPoolName() + " pool is closed.");
+		}
+		if (getFactory() == null) {
+			throw new IllegalStateException(getPoolName() + " pool factory is required.");
+		}
+		if (getMaxLifeTimeMs() > 0L) {
+			long maxTimeMs = Math.max(getMaxIdleTimeMs(), getMaxLeaseTimeMs());
+			if (maxTimeMs > getMaxLifeTimeMs()) {
+				log.warn(getPoolName() + " Max. life time (" + getMaxLifeTimeMs() + " ms.) must be greater than max. idle and lease time ("
+						+ maxTimeMs + " ms.), setting max. life time to two times " + maxTimeMs + " ms.");
+				setMaxLifeTimeMs(2 * maxTimeMs);
+			}
+		}
+		Slot<T>[] a = new Slot[maxSize];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = new Slot<T>(i);
+		}
+		slots = a;
+		createdCount.set(0);
+		idledCount.set(0);
+		expiredCount.set(0);
+		invalidCount.set(0);
+		lifeEndCount.set(0);
+		int toCreate = (amount > maxSize ? maxSize : amount < minSize ? minSize : amount);
+		try {
+			for (int i = 0; i < toCreate; i++) {
+				createIdle();
+			}
+		} catch (Exception e) {
+			log.error("Could not create " + toCreate + " resource(s) while opening pool " + getPoolName() + ", created " + getIdleSize() + " resource(s).", e);
+		}
+		opened = true;
+		fireEvent(PoolEvent.CODE_OPENED);
+		if (pruneTask != null) {
+			pruneTask.start();
+		}
+	}
+
+	/**
+	 * Calls {@link #acquire(long, long)} with {@link #getMaxLeaseTimeMs()}.
+	 */
+	@Override
+	public T acquire(long acquireTimeOutMs) {
+		return acquire(acquireTimeOutMs, getMaxLeaseTimeMs());
+	}
+
+	/**
+	 * Calls {@link #acquireUntil(long, long)} with {@link #getMaxLeaseTimeMs()}.
+	 */
+	@Override
+	public T acquireUntil(long deadlineNanos) {
+		return acquireUntil(deadlineNanos, getMaxLeaseTimeMs());
+	}
+
+	/**
+	 * Calls {@link #acquireUntil(long, long)} with a deadline of now plus the given time-out.
+	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
+	 */
+	public T acquire(long acquireTimeOutMs, long maxLeasedTimeMs) {
+		return acquireUntil(deadlineNanos(acquireTimeOutMs), maxLeasedTimeMs);
+	}
+
+	/**
+	 * Acquires an idle resource or, if there is none, creates a resource in an empty slot.
+	 * If all slots are in use, waits for a resource to be released or evicted.
+	 * <br>Idle resources are validated, an invalid resource is evicted from the pool.
+	 * Same as the {@link BoundPool#acquireUntil(long)}, a RuntimeException from the factory creating a resource
+	 * is logged and the caller waits for a resource until the deadline.
+	 * After the deadline, if a slot is empty, a resource is created one last time and a factory-create RuntimeException is thrown as-is.
+	 * @param maxLeasedTimeMs if 0 or less, lease time never exprires.
+	 */
+	public T acquireUntil(long deadlineNanos, long maxLeasedTimeMs) {
+
+		final long acquireStart = System.nanoTime();
+		if (isClosed()) {
+			throw new IllegalStateException(getPoolName() + " pool is closed.");
+		}
+		fireEvent(PoolEvent.CODE_ACQUIRING);
+		LeaserTraceSampler sampler = leaserTraceSampler;
+		final LeaserTrace trace = (logLeaseExpiredTrace && sampler != null ? sampler.sample() : null);
+		T t = null;
+		try {
+			Slot<T> s = acquireSlotUntil(deadlineNanos);
+			if (s == null) {
+				throwAcquireTimeOut(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - acquireStart));
+			}
+			t = lease(s, maxLeasedTimeMs, (logLeaseExpiredTrace ? Thread.currentThread() : null), trace);
+		} finally {
+			// Acquired event with resource null indicates acquired failed.
+			fireAcquired(t, acquireStart);
+		}
+		return t;
+	}
+
+	/**
+	 * Registers the lease of the resource in a slot in the {@link #ACQUIRING} state and moves the slot to the {@link #LEASED} state.
+	 * The resource is read from the slot before the slot is leased:
+	 * once leased, the slot can be emptied (e.g. by the pruner) and re-used for another resource.
+	 * <br>Registers the lease start time when a pool listener wants the release event (see {@link #getLeaseStartNanos(Object)}).
+	 * @param leaser the leasing thread, null if not known.
+	 * @param trace the leaser's trace, null if not sampled.
+	 * @return the leased resource.
+	 */
+	protected T lease(Slot<T> s, long maxLeasedTimeMs, Thread leaser, LeaserTrace trace) {
+
+		T t = s.resource;
+		s.leaser = leaser;
+		s.leaserTrace = trace;
+		s.leaseEnd = (maxLeasedTimeMs < 1L ? 0L : getClock().currentTimeMillis() + maxLeasedTimeMs);
+		if (getEvents().wantEvent(PoolEvent.CODE_RELEASING)) {
+			s.leaseStart = System.nanoTime();
+		}
+		s.state = LEASED;
+		return t;
+	}
+
+	/**
+	 * Claims a slot, waits for a slot to become idle or empty if needed.
+	 * A factory-create RuntimeException is logged, after a failed create the current thread waits for an idle slot
+	 * or a signal before it tries to create a resource again.
+	 * When the deadline passes, a resource is created one last time if a slot is empty (a factory-create RuntimeException is thrown as-is).
+	 * @return null if no slot was claimed before the deadline,
+	 * else a slot in the {@link #ACQUIRING} state (see {@link #lease(Slot, long, Thread, LeaserTrace)}).
+	 */
+	protected Slot<T> acquireSlotUntil(long deadlineNanos) {
+
+		Slot<T> s = claimSlot();
+		boolean createFailed = false;
+		if (s != null && s.state == CREATING && create(s, true, false) == null) {
+			s = null;
+			createFailed = true;
+		}
+		// Create may have taken a long time if something is wrong, the deadline might have passed.
+		if (s != null || remainingNanos(deadlineNanos) <= 0L) {
+			return s;
+		}
+		// Register as waiting before checking the slots, see signalWaiters.
+		waiting.incrementAndGet();
+		try {
+			for (;;) {
+				if (isClosed()) {
+					throw new IllegalStateException(getPoolName() + " pool is closed.");
+				}
+				long remaining = remainingNanos(deadlineNanos);
+				if (remaining <= 0L) {
+					break;
+				}
+				waitLock.lock();
+				try {
+					if (!isClosed() && !isSlotAvailable(createFailed)) {
+						slotAvailable.awaitNanos(remaining);
+					}
+				} finally {
+					waitLock.unlock();
+				}
+				createFailed = false;
+				if ((s = claimSlot()) != null) {
+					if (s.state != CREATING || create(s, true, false) != null) {
+						break;
+					}
+					s = null;
+					createFailed = true;
+				}
+			}
+		} catch (InterruptedException ie) {
+			throw new RuntimeException(ie);
+		} finally {
+			waiting.decrementAndGet();
+			if (s == null && !isClosed() && isSlotAvailable(false)) {
+				// this thread might have been signalled, pass the signal on to another waiting thread.
+				signalWaiters();
+			}
+		}
+		if (s == null && !isClosed() && (s = claimSlot()) != null && s.state == CREATING) {
+			// Last try, slots might have been emptied while waiting. Throw an error if create fails.
+			create(s, true, true);
+		}
+		return s;
+	}
+
+	/**
+	 * Claims an idle resource, scanning from the slot the current thread used last.
+	 * If there is no idle resource, creates a resource in an empty slot (a factory-create RuntimeException is thrown as-is).
+	 * @return null if all slots are in use, else a slot in the {@link #ACQUIRING} state.
+	 */
+	protected Slot<T> leaseSlot() {
+
+		Slot<T> s = claimSlot();
+		if (s != null && s.state == CREATING) {
+			create(s, true, true);
+		}
+		return s;
+	}
+
+	/**
+	 * Calls {@link #claimSlot(boolean)} and validates the idle resource.
+	 */
+	protected Slot<T> claimSlot() {
+		return claimSlot(true);
+	}
+
+	/**
+	 * Moves the slot of an idle resource to the {@link #ACQUIRING} state, scanning from the slot the current thread used last.
+	 * If there is no idle resource, moves an empty slot to the {@link #CREATING} state.
+	 * @param validate if true, only a valid idle resource is claimed: an invalid idle resource is evicted from the pool and destroyed.
+	 * If false, the claiming thread must validate the resource (see {@link SlotWaiter#deliver(Slot)}).
+	 * @return null if all slots are in use.
+	 */
+	protected Slot<T> claimSlot(boolean validate) {
+
+		Slot<T>[] a = slots;
+		int n = a.length;
+		if (n == 0) {
+			return null;
+		}
+		SlotHint hint = slotHint.get();
+		int start = startIndex(hint, n);
+		for (int i = 0; i < n; i++) {
+			Slot<T> s = a[(start + i) % n];
+			if (s.state == IDLE && s.compareAndSetState(IDLE, ACQUIRING)) {
+				// the pruner does not touch a slot in the acquiring state, the resource cannot change.
+				T t = s.resource;
+				if (!validate || isValid(t)) {
+					hint.index = s.index;
+					return s;
+				}
+				invalidCount.incrementAndGet();
+				fireEvent(PoolEvent.CODE_INVALID, t);
+				s.state = EVICTING;
+				remove(s, true);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			Slot<T> s = a[(start + i) % n];
+			if (s.state == EMPTY && s.compareAndSetState(EMPTY, CREATING)) {
+				hint.index = s.index;
+				return s;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The slot to start scanning from: the slot the current thread used last
+	 * or, for a thread new to this pool, a slot based on the thread ID.
+	 */
+	protected int startIndex(SlotHint hint, int slotCount) {
+
+		int i = hint.index;
+		if (i < 0 || i >= slotCount) {
+			i = (int) (Thread.currentThread().getId() % slotCount);
+		}
+		return i;
+	}
+
+	/**
+	 * True if a slot is idle or empty.
+	 * @param idleOnly if true, only a slot with an idle resource counts as available.
+	 */
+	protected boolean isSlotAvailable(boolean idleOnly) {
+
+		for (Slot<T> s : slots) {
+			int state = s.state;
+			if (state == IDLE || (state == EMPTY && !idleOnly)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Hands the slot to an asynchronous acquirer (see {@link #handOffSlots()}) or wakes up one waiting thread
+	 * after a slot became idle or empty.
+	 * Does nothing (and does not lock) when no threads are waiting:
+	 * a thread registers as waiting before it checks the slots,
+	 * so either the waiting thread sees the slot state change or this method sees the waiting thread.
+	 * <br>Only one thread is woken up per available slot. A woken up thread that stops waiting without a slot
+	 * (e.g. after a time-out) while a slot is available, calls this method again (see {@link #acquireSlotUntil(long)}).
+	 */
+	protected void signalWaiters() {
+
+		if (slotWaiters.size() > 0 && handOffSlots()) {
+			return;
+		}
+		if (waiting.get() < 1) {
+			return;
+		}
+		waitLock.lock();
+		try {
+			slotAvailable.signal();
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	/**
+	 * Hands available slots to asynchronous acquirers, oldest acquirer first.
+	 * A slot with an idle resource is handed off in the acquiring state (not validated),
+	 * an empty slot is handed off in the creating state (see {@link SlotWaiter#deliver(Slot)}).
+	 * Validating and creating resources is left to the create executor so that this method does not delay e.g. a release.
+	 * @return true if all available slots were handed off.
+	 */
+	protected boolean handOffSlots() {
+
+		while (slotWaiters.size() > 0 && !isClosed()) {
+			Slot<T> s = claimSlot(false);
+			if (s == null) {
+				return true;
+			}
+			if (!slotWaiters.handOff(s)) {
+				// all acquirers timed out in the meantime, put the slot back.
+				s.state = (s.state == CREATING ? EMPTY : IDLE);
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an idle resource in an empty slot, e.g. to ensure the minimum size.
+	 * @return null if there was no empty slot.
+	 */
+	protected Slot<T> createIdle() {
+
+		for (Slot<T> s : slots) {
+			if (s.state == EMPTY && s.compareAndSetState(EMPTY, CREATING)) {
+				return create(s, false, true);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a resource for a slot in the {@link #CREATING} state.
+	 * If the factory fails to create a resource, the slot is emptied.
+	 * @param leased if true, the slot state becomes {@link #ACQUIRING}, else {@link #IDLE}.
+	 * @param rethrowRuntimeException if true, any factory-create RuntimeExcepions are re-thrown, else they are logged.
+	 * @return null if the factory failed to create a resource.
+	 */
+	protected Slot<T> create(Slot<T> s, boolean leased, boolean rethrowRuntimeException) {
+
+		T t = null;
+		try {
+			t = getFactory().create();
+			if (t == null) {
+				throwFactoryCreateFailed();
+			}
+		} catch (RuntimeException re) {
+			s.state = EMPTY;
+			// a waiting thread can try to create a resource.
+			signalWaiters();
+			if (rethrowRuntimeException) {
+				throw re;
+			}
+			log.error("Failed to create a new resource for pool " + getPoolName(), re);
+			return null;
+		}
+		long now = getClock().currentTimeMillis();
+		s.resource = t;
+		s.created = now;
+		s.idleStart = now;
+		s.leaseEnd = 0L;
+		s.lifeEnd = (getMaxLifeTimeMs() > 0L ? now + getMaxLifeTimeMs() : 0L);
+		s.state = (leased ? ACQUIRING : IDLE);
+		createdCount.incrementAndGet();
+		fireEvent(PoolEvent.CODE_CREATED, t);
+		if (!leased) {
+			if (isClosed() && s.compareAndSetState(IDLE, EVICTING)) {
+				remove(s, true);
+			} else {
+				signalWaiters();
+			}
+		}
+		return s;
+	}
+
+	/** An asynchronous acquirer waiting for a slot, see {@link #acquireSlotAsync(long)}. */
+	protected class SlotWaiter extends PoolWaiters.Waiter<Slot<T>> {
+
+		protected final CompletableFuture<Slot<T>> future = new CompletableFuture<Slot<T>>();
+		protected volatile ScheduledFuture<?> timeOutTask;
+
+		/**
+		 * Completes the future with the claimed slot via the shared {@link PoolScheduler#getCreateExecutor()}
+		 * (or via the calling thread if the task cannot be started).
+		 * The idle resource in a slot in the acquiring state is validated first, an invalid resource is destroyed
+		 * and replaced by a new resource in the same slot. For a slot in the creating state, the resource is created.
+		 */
+		@Override
+		protected void deliver(Slot<T> s) {
+
+			done();
+			Runnable acquireTask = () -> {
+				try {
+					if (s.state == ACQUIRING && !isValid(s.resource)) {
+						// the slot stays claimed for this waiter.
+						T t = s.resource;
+						invalidCount.incrementAndGet();
+						fireEvent(PoolEvent.CODE_INVALID, t);
+						s.resource = null;
+						s.state = CREATING;
+						destroy(t);
+					}
+					future.complete(s.state == CREATING ? create(s, true, true) : s);
+				} catch (RuntimeException re) {
+					future.completeExceptionally(re);
+				}
+			};
+			try {
+				PoolScheduler.getCreateExecutor().execute(acquireTask);
+			} catch (RejectedExecutionException ree) {
+				log.warn(getPoolName() + " could not start a task to acquire a resource, acquiring resource via the calling thread: " + ree);
+				acquireTask.run();
+			}
+		}
+
+		protected void done() {
+
+			ScheduledFuture<?> task = timeOutTask;
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+
+		protected void closed() {
+
+			done();
+			future.completeExceptionally(new IllegalStateException(getPoolName() + " pool is closed."));
+		}
+
+		protected void timeOut() {
+
+			if (cancel()) {
+				slotWaiters.remove(this);
+				future.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * Acquires a resource without blocking the calling thread while waiting for a slot.
+	 * An idle resource or a new resource is acquired via the calling thread.
+	 * If all slots are in use, an asynchronous waiter is registered and the first slot that becomes available
+	 * is handed to the oldest waiter (see {@link #handOffSlots()}).
+	 * <br>Note that the returned future is completed by the calling thread (a resource was available),
+	 * by a thread of the shared {@link PoolScheduler#getCreateExecutor()} (a slot was handed off)
+	 * or by the scheduler's thread (on time-out).
+	 * When no slot was handed off within the time-out, the future completes exceptionally with a {@link NoSuchElementException}.
+	 * Unlike {@link #acquire(long)}, a factory-create RuntimeException completes the future exceptionally.
+	 * If the returned future is cancelled before the resource is acquired, the resource is released to the pool.
+	 */
+	@Override
+	public CompletableFuture<T> acquireAsync(long acquireTimeOutMs) {
+
+		if (isClosed()) {
+			return failedFuture(new IllegalStateException(getPoolName() + " pool is closed."));
+		}
+		final long acquireStart = System.nanoTime();
+		fireEvent(PoolEvent.CODE_ACQUIRING);
+		final long maxLeasedTimeMs = getMaxLeaseTimeMs();
+		LeaserTraceSampler sampler = leaserTraceSampler;
+		final LeaserTrace trace = (logLeaseExpiredTrace && sampler != null ? sampler.sample() : null);
+		CompletableFuture<Slot<T>> f = null;
+		try {
+			Slot<T> s = leaseSlot();
+			if (s != null) {
+				f = CompletableFuture.completedFuture(s);
+			} else if (acquireTimeOutMs > 0L) {
+				f = acquireSlotAsync(acquireTimeOutMs);
+			} else {
+				throwAcquireTimeOut(acquireTimeOutMs);
+			}
+		} catch (RuntimeException re) {
+			f = failedFuture(re);
+		}
+		CompletableFuture<T> rf = new CompletableFuture<T>();
+		f.whenComplete((s, error) -> {
+			T t = (s == null ? null : lease(s, maxLeasedTimeMs, null, trace));
+			// Acquired event with resource null indicates acquired failed.
+			fireAcquired(t, acquireStart);
+			if (error != null) {
+				rf.completeExceptionally(error);
+			} else if (t == null) {
+				rf.completeExceptionally(new NoSuchElementException("Could not acquire resource from pool " + getPoolName() + " within " + acquireTimeOutMs + " ms."));
+			} else if (!rf.complete(t)) {
+				// future was cancelled, prevent resource leakage.
+				release(t);
+			}
+		});
+		return rf;
+	}
+
+	/**
+	 * Registers an asynchronous waiter for a slot, the time-out is scheduled with the {@link #getScheduler()}.
+	 * @param acquireTimeOutMs The maximum time to wait, must be larger than zero.
+	 * @return A future that completes with the claimed slot (in the {@link #ACQUIRING} state), or with null on time-out.
+	 */
+	protected CompletableFuture<Slot<T>> acquireSlotAsync(long acquireTimeOutMs) {
+
+		SlotWaiter w = new SlotWaiter();
+		slotWaiters.add(w);
+		// Check after registering as waiter, a slot might have become available in the meantime.
+		Slot<T> s = null;
+		try {
+			s = leaseSlot();
+		} catch (RuntimeException re) {
+			if (w.cancel()) {
+				slotWaiters.remove(w);
+				throw re;
+			}
+			// waiter got a slot handed off in the meantime.
+			return w.future;
+		}
+		if (s != null) {
+			if (w.cancel()) {
+				slotWaiters.remove(w);
+				w.future.complete(s);
+			} else {
+				// waiter got a slot handed off in the meantime.
+				s.state = IDLE;
+				signalWaiters();
+			}
+		} else {
+			w.timeOutTask = getScheduler().schedule(w::timeOut, acquireTimeOutMs, TimeUnit.MILLISECONDS);
+			if (!w.isWaiting()) {
+				// slot was handed off before the time-out task was registered.
+				w.timeOutTask.cancel(false);
+			}
+		}
+		return w.future;
+	}
+
+	/**
+	 * Puts the resource back in the pool so that it can be re-used.
+	 * If the resource was evicted or not leased (i.e. a foreign resource),
+	 * the resource will be destroyed (and not put back into the pool).
+	 * @param t The leased resource to put back into the pool.
+	 * @return null if the resource was not put back in the pool.
+	 */
+	@Override
+	public T release(T t) {
+
+		Slot<T> s = claimRelease(t);
+		if (s == null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Released resource is not part of pool " + getPoolName() + ": " + t);
+			}
+			// Prevent resource leakage - always destroy resource.
+			destroy(t);
+			return null;
+		}
+		fireEvent(PoolEvent.CODE_RELEASING, t);
+		s.leaseEnd = 0L;
+		s.leaser = null;
+		s.leaserTrace = null;
+		s.idleStart = getClock().currentTimeMillis();
+		s.state = IDLE;
+		slotHint.get().index = s.index;
+		if (isClosed() && s.compareAndSetState(IDLE, EVICTING)) {
+			remove(s, true);
+		} else {
+			signalWaiters();
+		}
+		return t;
+	}
+
+	/**
+	 * Finds the slot of the leased resource (first checks the slot the current thread used last)
+	 * and moves it to the {@link #RELEASING} state.
+	 * @return null if the resource is not leased from this pool.
+	 */
+	protected Slot<T> claimRelease(T t) {
+
+		Slot<T>[] a = slots;
+		int i = slotHint.get().index;
+		if (i > -1 && i < a.length && claimRelease(a[i], t)) {
+			return a[i];
+		}
+		boolean retry;
+		do {
+			retry = false;
+			for (Slot<T> s : a) {
+				if (s.resource != t) {
+					continue;
+				}
+				int state = s.state;
+				if (state == LEASED && claimRelease(s, t)) {
+					return s;
+				}
+				if (state == EVICTING) {
+					// the pruner might put the slot back in the leased state, see revertEvicting.
+					retry = true;
+					Thread.yield();
+				}
+			}
+		} while (retry);
+		return null;
+	}
+
+	/**
+	 * Moves the slot to the {@link #RELEASING} state if the slot has the leased resource.
+	 * The resource is checked again after the state changed:
+	 * the slot might have been emptied and leased with another resource in the meantime.
+	 */
+	protected boolean claimRelease(Slot<T> s, T t) {
+
+		if (s.resource != t || !s.compareAndSetState(LEASED, RELEASING)) {
+			return false;
+		}
+		if (s.resource == t) {
+			return true;
+		}
+		s.state = LEASED;
+		return false;
+	}
+
+	/**
+	 * Removes the resource from a slot in the {@link #EVICTING} state and empties the slot.
+	 * @param destroy if true, the resource is destroyed.
+	 */
+	protected void remove(Slot<T> s, boolean destroy) {
+
+		T t = s.resource;
+		s.resource = null;
+		s.leaser = null;
+		s.leaserTrace = null;
+		s.leaseEnd = 0L;
+		s.state = EMPTY;
+		signalWaiters();
+		if (destroy) {
+			destroy(t);
+		}
+	}
+
+	/**
+	 * Puts a slot that was moved to the {@link #EVICTING} state back in its previous state,
+	 * used when the slot changed between checking the slot and moving the slot to the evicting state.
+	 */
+	protected void revertEvicting(Slot<T> s, int state) {
+
+		s.state = state;
+		if (state == IDLE) {
+			signalWaiters();
+		}
+	}
+
+	/**
+	 * Calls the factory to destroy the resource and fires a destroy-event.
+	 * Method is called when resource is removed from pool.
+	 */
+	protected void destroy(T t) {
+
+		fireEvent(PoolEvent.CODE_DESTROYING, t);
+		try {
+			getFactory().destroy(t);
+		} catch (Exception e) {
+			log.error(getPoolName() + " pool factory " + getFactory().getClass().getSimpleName() + " failed to destroy resource " + t, e);
+		}
+	}
+
+	/** Call factory isValid method within a try-catch block. */
+	protected boolean isValid(T t) {
+
+		boolean valid = false;
+		try {
+			valid = getFactory().isValid(t);
+		} catch (Exception e) {
+			log.error("Pool factory " + getFactory().getClass().getSimpleName() + " for pool " + getPoolName() + " failed to validate resource " + t, e);
+		}
+		return valid;
+	}
+
+	/**
+	 * Evicts the leased resource from the pool.
+	 * Does not fire an {@link PoolEvent#LEASE_EXPIRED} event.
+	 * @param destroy if true, the evicted resource is destroyed. If false,
+	 * make sure to destroy/close the resource yourself when appropriate.
+	 * Note that an evicted resource that is (eventually) released to the pool, is always detroyed by the pool.
+	 * @return true if the resource was leased and evicted.
+	 */
+	public boolean evictLeased(T t, boolean destroy) {
+		return evict(t, LEASED, destroy);
+	}
+
+	/**
+	 * Evicts the idle resource from the pool and destroys it.
+	 * Does not fire an {@link PoolEvent#IDLE_EXPIRED} event.
+	 * @return true if the resource was idle and evicted.
+	 */
+	public boolean evictIdle(T t) {
+		return evict(t, IDLE, true);
+	}
+
+	protected boolean evict(T t, int state, boolean destroy) {
+
+		for (Slot<T> s : slots) {
+			if (s.resource == t && s.compareAndSetState(state, EVICTING)) {
+				if (s.resource == t) {
+					remove(s, destroy);
+					return true;
+				}
+				revertEvicting(s, state);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void close() {
+
+		if (pruneTask != null) {
+			pruneTask.stop();
+		}
+		super.close();
+		for (PoolWaiters.Waiter<Slot<T>> w : slotWaiters.cancelAll()) {
+			((SlotWaiter) w).closed();
+		}
+		waitLock.lock();
+		try {
+			slotAvailable.signalAll();
+		} finally {
+			waitLock.unlock();
+		}
+		// Leased resources are destroyed when they are released.
+		for (Slot<T> s : slots) {
+			if (s.compareAndSetState(IDLE, EVICTING)) {
+				remove(s, true);
+			} else if (s.compareAndSetState(LEASED, EVICTING)) {
+				remove(s, false);
+			}
+		}
+	}
+
+	/**
+	 * Removes resources from the pool that idled for {@link #getMaxIdleTimeMs()}
+	 * or are leased for {@link #getMaxLeaseTimeMs()} or have passed the life time ({@link #getMaxLifeTimeMs()}).
+	 * All slots are checked in one pass,
+	 * idle resources are only removed while the pool is larger than the minimum size.
+	 */
+	@Override
+	public void prune() {
+
+		if (log.isTraceEnabled()) {
+			log.trace("Pruning pool " + getPoolName()
+					+ " (max. idle: " + getMaxIdleTimeMs()
+					+ ", max. lease: " + getMaxLeaseTimeMs()
+					+ ", max. life: " + getMaxLifeTimeMs() + ")");
+		}
+		try {
+			long now = getClock().currentTimeMillis();
+			long lifeEnds = lifeEndCount.get();
+			int size = getSize();
+			int removed = 0;
+			for (Slot<T> s : slots) {
+				int state = s.state;
+				if (state == IDLE) {
+					if (pruneIdle(s, now, size > getMinSize())) {
+						size--;
+					}
+				} else if (state == LEASED && pruneLeased(s, now)) {
+					size--;
+					removed++;
+				}
+			}
+			if (removed > 0 || lifeEndCount.get() != lifeEnds) {
+				// Same as PrunedPool: do not ensure minimum size after only idled resources were removed
+				// (if the factory cannot create resources, that will just show a lot of error messages).
+				ensureMinSize();
+			}
+		} catch (Exception e) {
+			log.error("Pruning pool " + getPoolName() + " failed.", e);
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Finished pruning pool " + getPoolName() + ".");
+		}
+	}
+
+	/**
+	 * Removes an idle resource when its life time ended or, if idle resources may be removed,
+	 * when it idled for {@link #getMaxIdleTimeMs()}.
+	 * @return true if the resource was removed.
+	 */
+	protected boolean pruneIdle(Slot<T> s, long now, boolean idleRemovable) {
+
+		T t = s.resource;
+		long idleStart = s.idleStart;
+		long lifeEnd = s.lifeEnd;
+		boolean lifeEnded = (lifeEnd > 0L && now >= lifeEnd);
+		boolean idled = (idleRemovable && getMaxIdleTimeMs() > 0L && now - idleStart > getMaxIdleTimeMs());
+		if (!(lifeEnded || idled) || !s.compareAndSetState(IDLE, EVICTING)) {
+			return false;
+		}
+		if (s.resource != t || s.idleStart != idleStart) {
+			// resource was leased and released in the meantime.
+			revertEvicting(s, IDLE);
+			return false;
+		}
+		if (lifeEnded) {
+			lifeEndCount.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug("Removed idle resource [" + t + "] from pool " + getPoolName() + " after life time ended.");
+			}
+		} else {
+			idledCount.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug("Removed idle resource from pool " + getPoolName() + ": " + t);
+			}
+			fireEvent(PoolEvent.CODE_IDLE_EXPIRED, t);
+		}
+		remove(s, true);
+		return true;
+	}
+
+	/**
+	 * Removes a leased resource when its lease expired or its life time ended.
+	 * A leaser may be interrupted (see {@link #isInterruptLeaser()})
+	 * and a stack trace may be logged (see {@link #isLogLeaseExpiredTrace()}).
+	 * <br>A resource removed after the lease expired is destroyed if {@link #isDestroyOnExpiredLease()} is true.
+	 * A resource removed after the life time ended is destroyed when it is released.
+	 * @return true if the resource was removed.
+	 */
+	protected boolean pruneLeased(Slot<T> s, long now) {
+
+		T t = s.resource;
+		long leaseEnd = s.leaseEnd;
+		long lifeEnd = s.lifeEnd;
+		Thread user = s.leaser;
+		LeaserTrace acquiredTrace = s.leaserTrace;
+		boolean expired = (leaseEnd > 0L && now > leaseEnd);
+		boolean lifeEnded = (lifeEnd > 0L && now >= lifeEnd);
+		if (!(expired || lifeEnded)) {
+			return false;
+		}
+		if (expired && isInterruptLeaser()) {
+			// if user is interrupted, first get stack trace from user and log it.
+			logExpiredTrace(t, user, acquiredTrace);
+		}
+		if (!s.compareAndSetState(LEASED, EVICTING)) {
+			// resource was just released.
+			return false;
+		}
+		if (s.resource != t || s.leaseEnd != leaseEnd) {
+			// resource was released and leased again in the meantime.
+			revertEvicting(s, LEASED);
+			return false;
+		}
+		if (!expired) {
+			lifeEndCount.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug("Removed leased resource [" + t + "] from pool " + getPoolName() + " after life time ended.");
+			}
+			remove(s, false);
+			return true;
+		}
+		expiredCount.incrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Evicted resource from pool " + getPoolName() + ": " + t);
+		}
+		fireEvent(PoolEvent.CODE_LEASE_EXPIRED, t);
+		remove(s, isDestroyOnExpiredLease());
+		if (isInterruptLeaser()) {
+			if (user != null) {
+				try {
+					if (!user.isInterrupted()) {
+						user.interrupt();
+					}
+				} catch (Exception ex) {
+					log.warn(getPoolName() + " Failed to interrupt thread " + user + " for leasing resource [" + t + "] for too long.");
+				}
+			}
+		} else {
+			logExpiredTrace(t, user, acquiredTrace);
+		}
+		return true;
+	}
+
+	/**
+	 * Try to create new idle resources until minimum size is reached.
+	 * Any errors are catched and logged.
+	 */
+	public void ensureMinSize() {
+
+		try {
+			while (getSize() < getMinSize() && !isClosed()) {
+				if (createIdle() == null) {
+					break;
+				}
+			}
+		} catch (Exception e) {
+			log.error("Failed to grow pool " + getPoolName() + " to minimum size " + getMinSize() + " (current size is " + getSize() + ")", e);
+		}
+	}
+
+	/**
+	 * Logs the current stack-trace of the leaser and, if available, the stack-trace of the leaser when the resource was acquired.
+	 * See also {@link PrunedPool#logExpiredTrace(Object, Thread, LeaserTrace)}.
+	 */
+	protected void logExpiredTrace(T t, Thread user, LeaserTrace acquiredTrace) {
+
+		LeaserTraceSampler sampler = leaserTraceSampler;
+		String logMsg = PrunedPool.expiredTraceMessage(getPoolName(), t, user, acquiredTrace,
+				(sampler == null ? LeaserTrace.UNLIMITED_DEPTH : sampler.getMaxDepth()), isInterruptLeaser());
+		if (logLeaseExpiredTraceAsError) {
+			log.error(logMsg);
+		} else if (logLeaseExpiredTraceAsWarn) {
+			log.warn(logMsg);
+		} else if (isLogLeaseExpiredTrace()) {
+			log.info(logMsg);
+		} else {
+			log.debug(logMsg);
+		}
+	}
+
+	/**
+	 * Throws a {@link NoSuchElementException} with message
+	 * "Could not acquire resource from pool poolName within time-out"
+	 */
+	public void throwAcquireTimeOut(long acquireTimeOutMs) {
+		throw new NoSuchElementException("Could not acquire resource from pool " + getPoolName() + " within " + acquireTimeOutMs + " ms.");
+	}
+
+	/** Counts the slots in the given states. */
+	protected int countSlots(int state, int otherState) {
+
+		int count = 0;
+		for (Slot<T> s : slots) {
+			int st = s.state;
+			if (st == state || st == otherState) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/* *** bean methods *** */
+
+	/**
+	 * Fair acquisition is not supported.
+	 * @throws UnsupportedOperationException when set to true.
+	 */
+	@Override
+	public void setFair(boolean fair) {
+
+		if (fair) {
+			throw new UnsupportedOperationException(getPoolName() + " slot pool cannot be fair.");
+		}
+	}
+
+	/**
+	 * Hand-off mode is not supported (only asynchronous acquirers are handed a slot).
+	 * @throws UnsupportedOperationException when set to true.
+	 */
+	@Override
+	public void setHandOff(boolean handOff) {
+
+		if (handOff) {
+			throw new UnsupportedOperationException(getPoolName() + " slot pool does not hand off resources to waiting threads.");
+		}
+	}
+
+	/**
+	 * A thread cache is not supported (threads already prefer the slot they used last).
+	 * @throws UnsupportedOperationException when set to true.
+	 */
+	@Override
+	public void setThreadCache(boolean useThreadCache) {
+
+		if (useThreadCache) {
+			throw new UnsupportedOperationException(getPoolName() + " slot pool does not use a thread cache.");
+		}
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		if (minSize >= 0) {
+			this.minSize = minSize;
+			if (maxSize < minSize) maxSize = minSize;
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** The amount of slots, must be set before the pool is opened. */
+	public void setMaxSize(int maxSize) {
+		if (maxSize > 0) {
+			this.maxSize = maxSize;
+			if (minSize > maxSize) minSize = maxSize;
+		}
+	}
+
+	/**
+	 * The {@link System#nanoTime()} a resource was leased, also available while the resource's release event is fired.
+	 * The lease start time is only registered when a pool listener wants the {@link PoolEvent#RELEASING} event.
+	 * @return 0 if the resource is not part of this pool or the lease start time is unknown.
+	 */
+	public long getLeaseStartNanos(Object t) {
+
+		for (Slot<T> s : slots) {
+			if (s.resource == t) {
+				return s.leaseStart;
+			}
+		}
+		return 0L;
+	}
+
+	/** The amount of slots with a resource (including resources being created). */
+	public int getSize() {
+		return slots.length - countSlots(EMPTY, EMPTY);
+	}
+
+	/** The amount of slots with a leased resource (including resources being acquired and released). */
+	public int getLeasedSize() {
+		return countSlots(LEASED, RELEASING) + countSlots(ACQUIRING, ACQUIRING);
+	}
+
+	@Override
+	public int getIdleSize() {
+		return countSlots(IDLE, IDLE);
+	}
+
+	/** The amount of threads and asynchronous acquirers waiting for a slot. */
+	@Override
+	public int getWaitingSize() {
+		return waiting.get() + slotWaiters.size();
+	}
+
+	public boolean isEmpty() {
+		return (getSize() < 1);
+	}
+
+	public boolean isFull() {
+		return (countSlots(EMPTY, EMPTY) < 1);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return opened;
+	}
+
+	@Override
+	public long getPruneIntervalMs() {
+		return pruneIntervalMs.get();
+	}
+
+	/**
+	 * Prune interval in milliseconds at witch prune tasks are scheduled.
+	 * @param pruneIntervalMs if less than zero, the pool will NOT be registered with the PoolPruner.
+	 */
+	public void setPruneIntervalMs(long pruneIntervalMs) {
+		this.pruneIntervalMs.set(pruneIntervalMs);
+	}
+
+	@Override
+	public void setPruneTask(PruneTask pruneTask) {
+
+		if (this.pruneTask != null) {
+			this.pruneTask.stop();
+		}
+		this.pruneTask = pruneTask;
+	}
+
+	@Override
+	public PruneTask getPruneTask() {
+		return pruneTask;
+	}
+
+	public long getMaxIdleTimeMs() {
+		return maxIdleTimeMs.get();
+	}
+
+	/**
+	 * A resource that has been idle for too long, is removed from the pool.
+	 * @param maxIdleTimeMs if 0 or less, idle time never expires.
+	 */
+	public void setMaxIdleTimeMs(long maxIdleTimeMs) {
+		this.maxIdleTimeMs.set(maxIdleTimeMs);
+	}
+
+	public long getMaxLeaseTimeMs() {
+		return maxLeaseTimeMs.get();
+	}
+
+	/**
+	 * A resource that has been leased for too long, is removed from the pool.
+	 * @param maxLeaseTimeMs if 0 or less, lease time never expires.
+	 */
+	public void setMaxLeaseTimeMs(long maxLeaseTimeMs) {
+		this.maxLeaseTimeMs.set(maxLeaseTimeMs);
+	}
+
+	public long getMaxLifeTimeMs() {
+		return maxLifeTimeMs.get();
+	}
+
+	/**
+	 * A resource that has been in use for too long, is removed from the pool.
+	 * @param maxLifeTimeMs if 0 or less, life time never expires.
+	 */
+	public void setMaxLifeTimeMs(long maxLifeTimeMs) {
+		this.maxLifeTimeMs.set(maxLifeTimeMs);
+	}
+
+	public boolean isLogLeaseExpiredTrace() {
+		return logLeaseExpiredTrace;
+	}
+
+	public void setLogLeaseExpiredTrace(boolean logLeaseExpiredTrace) {
+		this.logLeaseExpiredTrace = logLeaseExpiredTrace;
+	}
+
+	public boolean isLogLeaseExpiredTraceAsWarn() {
+		return logLeaseExpiredTraceAsWarn;
+	}
+
+	public void setLogLeaseExpiredTraceAsWarn(boolean logLeaseExpiredTraceAsWarn) {
+		this.logLeaseExpiredTraceAsWarn = logLeaseExpiredTraceAsWarn;
+		if (logLeaseExpiredTraceAsWarn) setLogLeaseExpiredTrace(true);
+	}
+
+	public boolean isLogLeaseExpiredTraceAsError() {
+		return logLeaseExpiredTraceAsError;
+	}
+
+	public void setLogLeaseExpiredTraceAsError(boolean logLeaseExpiredTraceAsError) {
+		this.logLeaseExpiredTraceAsError = logLeaseExpiredTraceAsError;
+		if (logLeaseExpiredTraceAsError) setLogLeaseExpiredTrace(true);
+	}
+
+	public LeaserTraceSampler getLeaserTraceSampler() {
+		return leaserTraceSampler;
+	}
+
+	/** See {@link PrunedPool#setLeaserTraceSampler(LeaserTraceSampler)}. */
+	public void setLeaserTraceSampler(LeaserTraceSampler leaserTraceSampler) {
+		this.leaserTraceSampler = leaserTraceSampler;
+	}
+
+	public boolean isInterruptLeaser() {
+		return interruptLeaser;
+	}
+
+	/**
+	 * If set to true, the thread that leased a resource for too long is interrupted.
+	 */
+	public void setInterruptLeaser(boolean interruptLeaser) {
+		this.interruptLeaser = interruptLeaser;
+		if (interruptLeaser) {
+			setLogLeaseExpiredTraceAsError(true);
+		}
+	}
+
+	public boolean isDestroyOnExpiredLease() {
+		return destroyOnExpiredLease;
+	}
+
+	/** See {@link PrunedPool#setDestroyOnExpiredLease(boolean)}. */
+	public void setDestroyOnExpiredLease(boolean destroyOnExpiredLease) {
+		this.destroyOnExpiredLease = destroyOnExpiredLease;
+	}
+
+	public long getIdledCount() {
+		return idledCount.get();
+	}
+
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	public long getInvalidCount() {
+		return invalidCount.get();
+	}
+
+	public long getLifeEndCount() {
+		return lifeEndCount.get();
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.github.fwi.yapool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when it is told to, see {@link #advance(long)}.
+ * Useful for testing idle, lease and life time-outs without sleeping, for example:
+ * <pre>
+ * VirtualClock clock = new VirtualClock();
+ * pool.setClock(clock);
+ * pool.open();
+ * ...
+ * clock.advance(pool.getMaxIdleTimeMs() + 1L);
+ * pool.prune();
+ * </pre>
+ * @author FWiers
+ *
+ */
+public class VirtualClock implements IPoolClock {
+
+	private final AtomicLong now;
+
+	/** A virtual clock starting at the current system time. */
+	public VirtualClock() {
+		this(System.currentTimeMillis());
+	}
+
+	/** 
+	 * A virtual clock starting at the given time.
+	 * @param startMillis should be larger than 0 (0 is used by pools as "no time set").
+	 */
+	public VirtualClock(long startMillis) {
+		super();
+		now = new AtomicLong(startMillis);
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return now.get();
+	}
+
+	/** Moves the time forward (or backward when negative). */
+	public long advance(long timeMs) {
+		return now.addAndGet(timeMs);
+	}
+
+	public void set(long timeMillis) {
+		now.set(timeMillis);
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.github.fwi.yapool.jmx;
+
+import static com.github.fwi.yapool.PoolEvent.*;
+
+import javax.management.StandardMBean;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * MBean for a {@link BoundPool}, measures lease times in addition to acquire wait times.
+ * @author FWiers
+ *
+ */
+public class BoundPoolJmx extends PoolJmx implements IBoundPoolMXBean {
+
+	protected final BoundPool<?> boundPool;
+	protected final TimeDeltaStats leaseTime = new TimeDeltaStats("Lease time (micros)");
+
+	public BoundPoolJmx(BoundPool<?> pool) {
+		super(pool);
+		this.boundPool = pool;
+	}
+
+	@Override
+	protected StandardMBean createMBean() {
+		return new StandardMBean(this, IBoundPoolMXBean.class, true);
+	}
+
+	@Override
+	public int getWantEventCodes() {
+		return (super.getWantEventCodes() | bit(CODE_RELEASING));
+	}
+
+	@Override
+	public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+		if (code == CODE_RELEASING) {
+			long leaseStart = boundPool.getLeaseStartNanos(resource);
+			if (leaseStart != 0L) {
+				leaseTime.add((nanoTime - leaseStart) / 1000L);
+			}
+		} else {
+			super.onPoolEvent(pool, code, resource, nanoTime);
+		}
+	}
+
+	@Override
+	public int getSize() {
+		return boundPool.getSize();
+	}
+
+	@Override
+	public int getLeasedSize() {
+		return boundPool.getLeasedSize();
+	}
+
+	@Override
+	public int getMinSize() {
+		return boundPool.getMinSize();
+	}
+
+	@Override
+	public void setMinSize(int minSize) {
+		boundPool.setMinSize(minSize);
+	}
+
+	@Override
+	public int getMaxSize() {
+		return boundPool.getMaxSize();
+	}
+
+	@Override
+	public void setMaxSize(int maxSize) {
+		boundPool.setMaxSize(maxSize);
+	}
+
+	@Override
+	public int getMinIdle() {
+		return boundPool.getMinIdle();
+	}
+
+	@Override
+	public void setMinIdle(int minIdle) {
+		boundPool.setMinIdle(minIdle);
+	}
+
+	@Override
+	public long getLeaseTimeMicrosP50() {
+		return leaseTime.getPercentile(50.0);
+	}
+
+	@Override
+	public long getLeaseTimeMicrosP90() {
+		return leaseTime.getPercentile(90.0);
+	}
+
+	@Override
+	public long getLeaseTimeMicrosP99() {
+		return leaseTime.getPercentile(99.0);
+	}
+
+	@Override
+	public long getLeaseTimeMicrosP999() {
+		return leaseTime.getPercentile(99.9);
+	}
+
+	@Override
+	public long getLeaseTimeMicrosMax() {
+		return leaseTime.getMax();
+	}
+
+	@Override
+	public int flush() {
+		return boundPool.flush().size();
+	}
+
+	@Override
+	public void resize(int minSize, int maxSize) {
+
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size: minimum " + minSize + ", maximum " + maxSize);
+		}
+		boundPool.setMaxSize(maxSize);
+		boundPool.setMinSize(minSize);
+	}
+
+	@Override
+	public void resetStats() {
+
+		super.resetStats();
+		leaseTime.reset();
+	}
+
+}
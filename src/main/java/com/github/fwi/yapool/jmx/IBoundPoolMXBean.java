@@ -0,0 +1,50 @@
+package com.github.fwi.yapool.jmx;
+
+/**
+ * Management interface for a {@link com.github.fwi.yapool.BoundPool}, see {@link BoundPoolJmx}.
+ * <br>Lease times are measured in microseconds by the MBean (from registration or the last {@link #resetStats()}).
+ * @author FWiers
+ *
+ */
+public interface IBoundPoolMXBean extends IPoolMXBean {
+
+	int getSize();
+
+	int getLeasedSize();
+
+	int getMinSize();
+
+	void setMinSize(int minSize);
+
+	int getMaxSize();
+
+	void setMaxSize(int maxSize);
+
+	int getMinIdle();
+
+	void setMinIdle(int minIdle);
+
+	long getLeaseTimeMicrosP50();
+
+	long getLeaseTimeMicrosP90();
+
+	long getLeaseTimeMicrosP99();
+
+	long getLeaseTimeMicrosP999();
+
+	long getLeaseTimeMicrosMax();
+
+	/**
+	 * Removes all idle and leased resources from the pool, see {@link com.github.fwi.yapool.BoundPool#flush()}.
+	 * @return the amount of resources removed.
+	 */
+	int flush();
+
+	/**
+	 * Sets the minimum and maximum size of the pool.
+	 * @throws IllegalArgumentException when minimum size is negative, maximum size is smaller than 1
+	 * or minimum size is larger than maximum size.
+	 */
+	void resize(int minSize, int maxSize);
+
+}
@@ -0,0 +1,45 @@
+package com.github.fwi.yapool.jmx;
+
+/**
+ * Management interface for a {@link com.github.fwi.yapool.Pool}, see {@link PoolJmx}.
+ * <br>Acquire wait times are measured in microseconds by the MBean (from registration or the last {@link #resetStats()}).
+ * @author FWiers
+ *
+ */
+public interface IPoolMXBean {
+
+	String getPoolName();
+
+	boolean isClosed();
+
+	int getIdleSize();
+
+	/** Amount of threads waiting for a resource. */
+	int getWaitingSize();
+
+	long getCreatedCount();
+
+	long getMaxAcquireTimeMs();
+
+	void setMaxAcquireTimeMs(long maxAcquireTimeMs);
+
+	/** Amount of successful acquires. */
+	long getAcquireCount();
+
+	/** Amount of failed acquires (e.g. acquire time-outs). */
+	long getAcquireFailedCount();
+
+	long getAcquireWaitMicrosP50();
+
+	long getAcquireWaitMicrosP90();
+
+	long getAcquireWaitMicrosP99();
+
+	long getAcquireWaitMicrosP999();
+
+	long getAcquireWaitMicrosMax();
+
+	/** Resets the acquire and lease statistics. */
+	void resetStats();
+
+}
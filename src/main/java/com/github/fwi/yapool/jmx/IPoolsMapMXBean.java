@@ -0,0 +1,30 @@
+package com.github.fwi.yapool.jmx;
+
+/**
+ * Management interface for a {@link com.github.fwi.yapool.PoolsMap}, see {@link PoolsMapJmx}.
+ * The pools in the pools-map are registered as child MBeans with a "key" property.
+ * @author FWiers
+ *
+ */
+public interface IPoolsMapMXBean {
+
+	String getPoolsName();
+
+	boolean isOpened();
+
+	boolean isClosed();
+
+	/** Amount of pools. */
+	int getSize();
+
+	/** The keys of the pools (via {@link Object#toString()}). */
+	String[] getPoolKeys();
+
+	long getCleanIntervalMs();
+
+	void setCleanIntervalMs(long cleanIntervalMs);
+
+	/** Removes empty and unused pools now, see {@link com.github.fwi.yapool.PoolsMap#clean()}. */
+	void clean();
+
+}
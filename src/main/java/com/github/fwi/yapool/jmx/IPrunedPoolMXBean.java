@@ -0,0 +1,33 @@
+package com.github.fwi.yapool.jmx;
+
+/**
+ * Management interface for a {@link com.github.fwi.yapool.PrunedPool}, see {@link PrunedPoolJmx}.
+ * @author FWiers
+ *
+ */
+public interface IPrunedPoolMXBean extends IBoundPoolMXBean {
+
+	long getIdledCount();
+
+	long getExpiredCount();
+
+	long getInvalidCount();
+
+	long getLifeEndCount();
+
+	long getMaxIdleTimeMs();
+
+	void setMaxIdleTimeMs(long maxIdleTimeMs);
+
+	long getMaxLeaseTimeMs();
+
+	void setMaxLeaseTimeMs(long maxLeaseTimeMs);
+
+	long getMaxLifeTimeMs();
+
+	void setMaxLifeTimeMs(long maxLifeTimeMs);
+
+	/** Prunes the pool now, see {@link com.github.fwi.yapool.PrunedPool#prune()}. */
+	void prune();
+
+}
@@ -0,0 +1,41 @@
+package com.github.fwi.yapool.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolRegistrar;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PoolsMap;
+
+/**
+ * Registers pools ({@link PoolJmx}) and pools-maps ({@link PoolsMapJmx}) as MBeans in the platform MBean server.
+ * <br>Use {@link BoundPool#setRegistrar(IPoolRegistrar)} or {@link PoolsMap#setRegistrar(IPoolRegistrar)}
+ * to register a pool or pools-map when it is opened, the MBean is unregistered when the pool or pools-map is closed.
+ * @author FWiers
+ *
+ */
+public class JmxRegistrar implements IPoolRegistrar {
+
+	@Override
+	public Runnable register(Pool<?> pool) {
+
+		PoolJmx jmx = PoolJmx.register(pool);
+		return (jmx.isRegistered() ? jmx::unregister : null);
+	}
+
+	@Override
+	public Runnable register(PoolsMap<?, ?> poolsMap) {
+
+		PoolsMapJmx jmx = PoolsMapJmx.register(poolsMap);
+		return (jmx.isRegistered() ? jmx::unregister : null);
+	}
+
+	@Override
+	public Runnable register(PoolsMap<?, ?> poolsMap, Object poolKey, Pool<?> pool) {
+
+		PoolJmx jmx = PoolJmx.create(pool);
+		jmx.register(ManagementFactory.getPlatformMBeanServer(), PoolsMapJmx.getObjectName(poolsMap, poolKey));
+		return (jmx.isRegistered() ? jmx::unregister : null);
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.github.fwi.yapool.jmx;
+
+import static com.github.fwi.yapool.PoolEvent.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.IPoolEvents;
+import com.github.fwi.yapool.IPoolSyncListener;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PoolEvent;
+import com.github.fwi.yapool.PrunedPool;
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * MBean for a pool, registered in the platform MBean server with object name
+ * {@code com.github.fwi.yapool:type=<pool class>,name=<pool name>} (see {@link #register(Pool)}).
+ * <br>The MBean listens to pool events (see {@link IPoolCodeListener}) to measure acquire wait times
+ * and unregisters itself when the pool is closed.
+ * Use {@link BoundPool#setRegistrar(com.github.fwi.yapool.IPoolRegistrar)} with a {@link JmxRegistrar}
+ * to register a bound or pruned pool when it is opened, the bound pool then also unregisters the MBean when it is closed.
+ * @author FWiers
+ *
+ */
+public class PoolJmx implements IPoolMXBean, IPoolCodeListener, IPoolSyncListener {
+
+	/** The domain of the object names of all yapool MBeans. */
+	public static final String DOMAIN = "com.github.fwi.yapool";
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	protected final Pool<?> pool;
+	protected final TimeDeltaStats acquireWait = new TimeDeltaStats("Acquire wait (micros)");
+	protected final LongAdder acquireFailed = new LongAdder();
+
+	private MBeanServer server;
+	private volatile ObjectName objectName;
+	/** The pool events this MBean listens to, the pool events of the pool can be replaced while this MBean is registered. */
+	private IPoolEvents events;
+
+	public PoolJmx(Pool<?> pool) {
+		super();
+		this.pool = pool;
+	}
+
+	/**
+	 * Creates an MBean for the pool and registers it under {@link #getObjectName(Pool)}.
+	 * @return the MBean, not registered if registration failed (see {@link #isRegistered()}).
+	 */
+	public static PoolJmx register(Pool<?> pool) {
+		return register(pool, getObjectName(pool));
+	}
+
+	/**
+	 * Creates an MBean for the pool and registers it under the given object name.
+	 * @return the MBean, not registered if registration failed (see {@link #isRegistered()}).
+	 */
+	public static PoolJmx register(Pool<?> pool, ObjectName objectName) {
+
+		PoolJmx jmx = create(pool);
+		jmx.register(ManagementFactory.getPlatformMBeanServer(), objectName);
+		return jmx;
+	}
+
+	/**
+	 * @return an (unregistered) MBean with a management interface that matches the type of pool.
+	 */
+	public static PoolJmx create(Pool<?> pool) {
+
+		if (pool instanceof PrunedPool) {
+			return new PrunedPoolJmx((PrunedPool<?>) pool);
+		}
+		if (pool instanceof BoundPool) {
+			return new BoundPoolJmx((BoundPool<?>) pool);
+		}
+		return new PoolJmx(pool);
+	}
+
+	/**
+	 * @return {@code com.github.fwi.yapool:type=<pool class>,name=<pool name>}
+	 */
+	public static ObjectName getObjectName(Pool<?> pool) {
+		return objectName("type=" + pool.getClass().getSimpleName() + ",name=" + ObjectName.quote(pool.getPoolName()));
+	}
+
+	/**
+	 * @param keyProperties the key properties for an object name in the {@link #DOMAIN}.
+	 */
+	public static ObjectName objectName(String keyProperties) {
+
+		try {
+			return new ObjectName(DOMAIN + ":" + keyProperties);
+		} catch (JMException e) {
+			throw new IllegalArgumentException("Invalid object name properties: " + keyProperties, e);
+		}
+	}
+
+	/**
+	 * The MBean that is registered: this instance with management interface {@link IPoolMXBean}.
+	 */
+	protected StandardMBean createMBean() {
+		return new StandardMBean(this, IPoolMXBean.class, true);
+	}
+
+	/**
+	 * Registers this MBean and starts listening to pool events.
+	 * Registration errors are logged, the pool can be used without MBean.
+	 * The MBean is unregistered again when it cannot listen to pool events.
+	 */
+	public synchronized void register(MBeanServer server, ObjectName objectName) {
+
+		if (isRegistered()) {
+			return;
+		}
+		try {
+			server.registerMBean(createMBean(), objectName);
+		} catch (JMException e) {
+			log.warn(pool.getPoolName() + " could not register MBean " + objectName, e);
+			return;
+		}
+		IPoolEvents events = pool.getEvents();
+		try {
+			events.addCodeListener(this);
+		} catch (RuntimeException e) {
+			log.warn(pool.getPoolName() + " could not listen to pool events, unregistering MBean " + objectName, e);
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException je) {
+				log.warn(pool.getPoolName() + " could not unregister MBean " + objectName, je);
+			}
+			return;
+		}
+		this.server = server;
+		this.objectName = objectName;
+		this.events = events;
+		if (log.isDebugEnabled()) {
+			log.debug(pool.getPoolName() + " registered MBean " + objectName);
+		}
+	}
+
+	/**
+	 * Unregisters this MBean and stops listening to pool events.
+	 * Called when the pool is closed.
+	 */
+	public synchronized void unregister() {
+
+		if (!isRegistered()) {
+			return;
+		}
+		events.removeCodeListener(this);
+		events = null;
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			log.warn(pool.getPoolName() + " could not unregister MBean " + objectName, e);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug(pool.getPoolName() + " unregistered MBean " + objectName);
+		}
+		objectName = null;
+		server = null;
+	}
+
+	public boolean isRegistered() {
+		return (objectName != null);
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	public Pool<?> getPool() {
+		return pool;
+	}
+
+	/* *** pool events *** */
+
+	@Override
+	public int getWantEventCodes() {
+		return PoolEvent.mask(CODE_ACQUIRED, CODE_CLOSED);
+	}
+
+	@Override
+	public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+		switch (code) {
+		case CODE_ACQUIRED:
+			// Acquired event without the acquire start time, the acquire wait time is unknown.
+			onAcquired(pool, resource, nanoTime, nanoTime);
+			break;
+		case CODE_CLOSED:
+			unregister();
+			break;
+		default:
+		}
+	}
+
+	@Override
+	public void onAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+
+		if (resource == null) {
+			acquireFailed.increment();
+		} else {
+			acquireWait.add((nanoTime - acquireStartNanos) / 1000L);
+		}
+	}
+
+	/* *** management interface *** */
+
+	@Override
+	public String getPoolName() {
+		return pool.getPoolName();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return pool.isClosed();
+	}
+
+	@Override
+	public int getIdleSize() {
+		return pool.getIdleSize();
+	}
+
+	@Override
+	public int getWaitingSize() {
+		return pool.getWaitingSize();
+	}
+
+	@Override
+	public long getCreatedCount() {
+		return pool.getCreatedCount();
+	}
+
+	@Override
+	public long getMaxAcquireTimeMs() {
+		return pool.getMaxAcquireTimeMs();
+	}
+
+	@Override
+	public void setMaxAcquireTimeMs(long maxAcquireTimeMs) {
+		pool.setMaxAcquireTimeMs(maxAcquireTimeMs);
+	}
+
+	@Override
+	public long getAcquireCount() {
+		return acquireWait.getTotalCount();
+	}
+
+	@Override
+	public long getAcquireFailedCount() {
+		return acquireFailed.sum();
+	}
+
+	@Override
+	public long getAcquireWaitMicrosP50() {
+		return acquireWait.getPercentile(50.0);
+	}
+
+	@Override
+	public long getAcquireWaitMicrosP90() {
+		return acquireWait.getPercentile(90.0);
+	}
+
+	@Override
+	public long getAcquireWaitMicrosP99() {
+		return acquireWait.getPercentile(99.0);
+	}
+
+	@Override
+	public long getAcquireWaitMicrosP999() {
+		return acquireWait.getPercentile(99.9);
+	}
+
+	@Override
+	public long getAcquireWaitMicrosMax() {
+		return acquireWait.getMax();
+	}
+
+	@Override
+	public void resetStats() {
+
+		acquireWait.reset();
+		acquireFailed.reset();
+	}
+
+}
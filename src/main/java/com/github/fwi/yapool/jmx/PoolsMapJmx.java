@@ -0,0 +1,156 @@
+package com.github.fwi.yapool.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.yapool.PoolsMap;
+
+/**
+ * MBean for a pools-map, registered in the platform MBean server with object name
+ * {@code com.github.fwi.yapool:type=PoolsMap,name=<pools name>}.
+ * <br>Each pool in the pools-map is registered as a {@link PrunedPoolJmx} with object name
+ * {@code com.github.fwi.yapool:type=PoolsMap,name=<pools name>,key=<pool key>}
+ * (see {@link #getObjectName(PoolsMap, Object)}, pool MBeans are unregistered when the pool is closed).
+ * Use {@link PoolsMap#setRegistrar(com.github.fwi.yapool.IPoolRegistrar)} with a {@link JmxRegistrar}
+ * to register the pools-map and its pools when the pools-map is opened.
+ * @author FWiers
+ *
+ */
+public class PoolsMapJmx implements IPoolsMapMXBean {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	protected final PoolsMap<?, ?> poolsMap;
+
+	private MBeanServer server;
+	private volatile ObjectName objectName;
+
+	public PoolsMapJmx(PoolsMap<?, ?> poolsMap) {
+		super();
+		this.poolsMap = poolsMap;
+	}
+
+	/**
+	 * Creates an MBean for the pools-map and registers it under {@link #getObjectName(PoolsMap)}.
+	 * @return the MBean, not registered if registration failed (see {@link #isRegistered()}).
+	 */
+	public static PoolsMapJmx register(PoolsMap<?, ?> poolsMap) {
+
+		PoolsMapJmx jmx = new PoolsMapJmx(poolsMap);
+		jmx.register(ManagementFactory.getPlatformMBeanServer(), getObjectName(poolsMap));
+		return jmx;
+	}
+
+	/**
+	 * @return {@code com.github.fwi.yapool:type=PoolsMap,name=<pools name>}
+	 */
+	public static ObjectName getObjectName(PoolsMap<?, ?> poolsMap) {
+		return PoolJmx.objectName(getKeyProperties(poolsMap));
+	}
+
+	/**
+	 * @return {@code com.github.fwi.yapool:type=PoolsMap,name=<pools name>,key=<pool key>}
+	 */
+	public static ObjectName getObjectName(PoolsMap<?, ?> poolsMap, Object poolKey) {
+		return PoolJmx.objectName(getKeyProperties(poolsMap) + ",key=" + ObjectName.quote(String.valueOf(poolKey)));
+	}
+
+	protected static String getKeyProperties(PoolsMap<?, ?> poolsMap) {
+		return "type=PoolsMap,name=" + ObjectName.quote(poolsMap.getPoolsName());
+	}
+
+	/**
+	 * Registers this MBean, registration errors are logged.
+	 */
+	public synchronized void register(MBeanServer server, ObjectName objectName) {
+
+		if (isRegistered()) {
+			return;
+		}
+		try {
+			server.registerMBean(new StandardMBean(this, IPoolsMapMXBean.class, true), objectName);
+		} catch (JMException e) {
+			log.warn("[{}] Could not register MBean {}", poolsMap.getPoolsName(), objectName, e);
+			return;
+		}
+		this.server = server;
+		this.objectName = objectName;
+		log.debug("[{}] Registered MBean {}", poolsMap.getPoolsName(), objectName);
+	}
+
+	/**
+	 * Unregisters this MBean, called when the pools-map is closed.
+	 */
+	public synchronized void unregister() {
+
+		if (!isRegistered()) {
+			return;
+		}
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			log.warn("[{}] Could not unregister MBean {}", poolsMap.getPoolsName(), objectName, e);
+		}
+		log.debug("[{}] Unregistered MBean {}", poolsMap.getPoolsName(), objectName);
+		objectName = null;
+		server = null;
+	}
+
+	public boolean isRegistered() {
+		return (objectName != null);
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	/* *** management interface *** */
+
+	@Override
+	public String getPoolsName() {
+		return poolsMap.getPoolsName();
+	}
+
+	@Override
+	public boolean isOpened() {
+		return poolsMap.isOpened();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return poolsMap.isClosed();
+	}
+
+	@Override
+	public int getSize() {
+		return poolsMap.getSize();
+	}
+
+	@Override
+	public String[] getPoolKeys() {
+		return poolsMap.getPoolKeys().stream().map(String::valueOf).sorted().toArray(String[]::new);
+	}
+
+	@Override
+	public long getCleanIntervalMs() {
+		return poolsMap.getCleanIntervalMs();
+	}
+
+	@Override
+	public void setCleanIntervalMs(long cleanIntervalMs) {
+		poolsMap.setCleanIntervalMs(cleanIntervalMs);
+	}
+
+	@Override
+	public void clean() {
+		poolsMap.clean();
+	}
+
+}
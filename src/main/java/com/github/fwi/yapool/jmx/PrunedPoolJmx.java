@@ -0,0 +1,93 @@
+package com.github.fwi.yapool.jmx;
+
+import javax.management.StandardMBean;
+
+import com.github.fwi.yapool.PrunedPool;
+
+/**
+ * MBean for a {@link PrunedPool}.
+ * @author FWiers
+ *
+ */
+public class PrunedPoolJmx extends BoundPoolJmx implements IPrunedPoolMXBean {
+
+	protected final PrunedPool<?> prunedPool;
+
+	public PrunedPoolJmx(PrunedPool<?> pool) {
+		super(pool);
+		this.prunedPool = pool;
+	}
+
+	@Override
+	protected StandardMBean createMBean() {
+		return new StandardMBean(this, IPrunedPoolMXBean.class, true);
+	}
+
+	@Override
+	public long getIdledCount() {
+		return prunedPool.getIdledCount();
+	}
+
+	@Override
+	public long getExpiredCount() {
+		return prunedPool.getExpiredCount();
+	}
+
+	@Override
+	public long getInvalidCount() {
+		return prunedPool.getInvalidCount();
+	}
+
+	@Override
+	public long getLifeEndCount() {
+		return prunedPool.getLifeEndCount();
+	}
+
+	@Override
+	public long getMaxIdleTimeMs() {
+		return prunedPool.getMaxIdleTimeMs();
+	}
+
+	@Override
+	public void setMaxIdleTimeMs(long maxIdleTimeMs) {
+		prunedPool.setMaxIdleTimeMs(maxIdleTimeMs);
+	}
+
+	@Override
+	public long getMaxLeaseTimeMs() {
+		return prunedPool.getMaxLeaseTimeMs();
+	}
+
+	@Override
+	public void setMaxLeaseTimeMs(long maxLeaseTimeMs) {
+		prunedPool.setMaxLeaseTimeMs(maxLeaseTimeMs);
+	}
+
+	@Override
+	public long getMaxLifeTimeMs() {
+		return prunedPool.getMaxLifeTimeMs();
+	}
+
+	@Override
+	public void setMaxLifeTimeMs(long maxLifeTimeMs) {
+		prunedPool.setMaxLifeTimeMs(maxLifeTimeMs);
+	}
+
+	@Override
+	public void prune() {
+		prunedPool.prune();
+	}
+
+	/**
+	 * Also creates resources when the pool is smaller than the new minimum size.
+	 */
+	@Override
+	public void resize(int minSize, int maxSize) {
+
+		super.resize(minSize, maxSize);
+		if (prunedPool.isOpen() && !prunedPool.isClosed()) {
+			prunedPool.ensureMinSize();
+		}
+	}
+
+}
@@ -0,0 +1,402 @@
+package com.github.fwi.yapool.listener;
+
+import static com.github.fwi.yapool.PoolEvent.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.IPoolSyncListener;
+import com.github.fwi.yapool.LeaserTrace;
+import com.github.fwi.yapool.LeaserTraceSampler;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PoolEvent;
+import com.github.fwi.yapool.PoolEvents;
+import com.github.fwi.yapool.PoolsMap;
+
+/**
+ * Groups (sampled) leases by the call site that acquired the resource and keeps per call site
+ * the amount of leases, the hold (lease) times and the amount of outstanding leases.
+ * Use {@link #getReport(int)} to find the code paths that hold resources the longest, e.g. when a pool runs dry.
+ * <br>A call site is identified by the top {@link #getCallSiteDepth()} stack trace elements of the acquiring thread
+ * below the pool's methods. Stack-traces are taken for leases sampled by the {@link LeaserTraceSampler}
+ * (by default every lease, with a maximum stack depth of {@link #DEFAULT_MAX_DEPTH}).
+ * <br>Memory use is bounded: at most {@link #getMaxCallSites()} call sites are registered,
+ * leases from other call sites are added to one "other" call site. Each call site keeps a {@link TimeDeltaStats} histogram (about 15 kB).
+ * <br>Pool events are received synchronously as event codes (see {@link IPoolCodeListener}).
+ * Note that a resource handed off to an asynchronous acquire (see {@link com.github.fwi.yapool.BoundPool#acquireAsync(long)})
+ * is registered with the call site of the releasing thread.
+ * @author FWiers
+ *
+ */
+public class LeaseProfiler extends PoolListener implements IPoolCodeListener, IPoolSyncListener {
+
+	protected static final int WANT_EVENT_CODES = PoolEvent.mask(CODE_ACQUIRED, CODE_RELEASING,
+			CODE_LEASE_EXPIRED, CODE_DESTROYING, CODE_CLOSED);
+
+	/** 32 stack trace elements, enough to capture the pool's methods and the call site. */
+	public static final int DEFAULT_MAX_DEPTH = 32;
+	public static final int DEFAULT_CALL_SITE_DEPTH = 2;
+	public static final int DEFAULT_MAX_CALL_SITES = 100;
+
+	/**
+	 * Sorts call sites by the amount of outstanding leases and then by total hold time (largest first).
+	 */
+	public static final Comparator<CallSite> BY_OUTSTANDING = (c1, c2) -> {
+		int c = Long.compare(c2.getOutstanding(), c1.getOutstanding());
+		return (c == 0 ? Long.compare(c2.holdTimes.getTotal(), c1.holdTimes.getTotal()) : c);
+	};
+	/** Sorts call sites by total hold time (largest first). */
+	public static final Comparator<CallSite> BY_TOTAL_HOLD_TIME = (c1, c2) -> Long.compare(c2.holdTimes.getTotal(), c1.holdTimes.getTotal());
+	/** Sorts call sites by the 99th percentile of hold times (largest first). */
+	public static final Comparator<CallSite> BY_P99_HOLD_TIME = (c1, c2) -> Long.compare(c2.getHoldTimeP99(), c1.getHoldTimeP99());
+
+	/**
+	 * Lease statistics for one call site. Hold times are in microseconds.
+	 */
+	public static class CallSite {
+
+		private final List<StackTraceElement> frames;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder expired = new LongAdder();
+		private final AtomicLong outstanding = new AtomicLong();
+		private final TimeDeltaStats holdTimes = new TimeDeltaStats("Hold time (micros)");
+
+		CallSite(List<StackTraceElement> frames) {
+			super();
+			this.frames = frames;
+		}
+
+		/** The stack trace elements identifying the call site, empty for the "other" call site. */
+		public List<StackTraceElement> getFrames() {
+			return frames;
+		}
+
+		/** The amount of (sampled) leases. */
+		public long getCount() {
+			return count.sum();
+		}
+
+		/** The amount of (sampled) leases that are not yet released. */
+		public long getOutstanding() {
+			return outstanding.get();
+		}
+
+		/** The amount of (sampled) leases that expired (see {@link com.github.fwi.yapool.PrunedPool#getMaxLeaseTimeMs()}). */
+		public long getExpired() {
+			return expired.sum();
+		}
+
+		/** Hold times of ended leases in microseconds. */
+		public TimeDeltaStats getHoldTimes() {
+			return holdTimes;
+		}
+
+		public long getHoldTimeP99() {
+			return holdTimes.getPercentile(99.0);
+		}
+
+		void leased() {
+			count.increment();
+			outstanding.incrementAndGet();
+		}
+
+		void reset() {
+
+			count.reset();
+			expired.reset();
+			outstanding.set(0L);
+			holdTimes.reset();
+		}
+
+		void ended(long holdMicros, boolean leaseExpired) {
+
+			outstanding.decrementAndGet();
+			holdTimes.add(holdMicros);
+			if (leaseExpired) {
+				expired.increment();
+			}
+		}
+
+		public String getName() {
+
+			if (frames.isEmpty()) {
+				return "other";
+			}
+			StringBuilder sb = new StringBuilder();
+			for (StackTraceElement st : frames) {
+				if (sb.length() > 0) {
+					sb.append(" <- ");
+				}
+				sb.append(st.toString());
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+
+			StringBuilder sb = new StringBuilder(getName());
+			sb.append("\n\tleases: ").append(getCount()).append(", outstanding: ").append(getOutstanding());
+			if (getExpired() > 0L) {
+				sb.append(", expired: ").append(getExpired());
+			}
+			sb.append(", total hold time: ").append(holdTimes.getTotal())
+			.append(", p99 hold time: ").append(getHoldTimeP99())
+			.append(", max hold time: ").append(holdTimes.getTotalCount() > 0L ? holdTimes.getMax() : 0L).append(" micros");
+			return sb.toString();
+		}
+	}
+
+	/** A sampled lease that has not yet ended. */
+	protected static class Lease {
+
+		final CallSite callSite;
+		final long start;
+
+		Lease(CallSite callSite, long start) {
+			this.callSite = callSite;
+			this.start = start;
+		}
+	}
+
+	protected final Pool<?> pool;
+	protected volatile LeaserTraceSampler sampler;
+	private volatile int callSiteDepth = DEFAULT_CALL_SITE_DEPTH;
+	private volatile int maxCallSites = DEFAULT_MAX_CALL_SITES;
+	/** Classes of which the frames are skipped to find the call site. */
+	private final PoolClasses poolClasses = new PoolClasses();
+
+	protected final ConcurrentHashMap<List<StackTraceElement>, CallSite> callSites = new ConcurrentHashMap<List<StackTraceElement>, CallSite>();
+	protected final CallSite otherCallSite = new CallSite(Collections.<StackTraceElement>emptyList());
+	/** Sampled leases per resource. */
+	protected final ConcurrentHashMap<Object, Lease> leases = new ConcurrentHashMap<Object, Lease>();
+
+	/**
+	 * Profiles every lease.
+	 */
+	public LeaseProfiler(Pool<?> pool) {
+		this(pool, new LeaserTraceSampler(1, DEFAULT_MAX_DEPTH));
+	}
+
+	/**
+	 * @param sampler the maximum depth of the sampler must be large enough to capture the pool's methods and the call site.
+	 */
+	public LeaseProfiler(Pool<?> pool, LeaserTraceSampler sampler) {
+		super();
+		this.pool = pool;
+		this.sampler = sampler;
+		addPoolClass(pool.getClass());
+		addPoolClass(pool.getEvents().getClass());
+		addPoolClass(PoolEvents.class);
+		addPoolClass(IPoolCodeListener.class);
+		addPoolClass(getClass());
+		addPoolClass(PoolsMap.class);
+	}
+
+	/**
+	 * Frames of the given class and its super-classes are skipped when looking for the call site.
+	 * Use this method for classes that wrap the pool (e.g. a data source).
+	 */
+	public void addPoolClass(Class<?> c) {
+
+		poolClasses.add(c);
+	}
+
+	public LeaserTraceSampler getSampler() {
+		return sampler;
+	}
+
+	public void setSampler(LeaserTraceSampler sampler) {
+		this.sampler = sampler;
+	}
+
+	public int getCallSiteDepth() {
+		return callSiteDepth;
+	}
+
+	/**
+	 * The amount of stack trace elements identifying a call site, default {@link #DEFAULT_CALL_SITE_DEPTH}.
+	 */
+	public void setCallSiteDepth(int callSiteDepth) {
+		this.callSiteDepth = Math.max(1, callSiteDepth);
+	}
+
+	public int getMaxCallSites() {
+		return maxCallSites;
+	}
+
+	/**
+	 * The maximum amount of call sites to register, default {@link #DEFAULT_MAX_CALL_SITES}.
+	 */
+	public void setMaxCallSites(int maxCallSites) {
+		this.maxCallSites = Math.max(1, maxCallSites);
+	}
+
+	@Override
+	public int getWantEventCodes() {
+		return WANT_EVENT_CODES;
+	}
+
+	@Override
+	public void onPoolEvent(PoolEvent poolEvent) {
+
+		int code = poolEvent.getCode();
+		if (code > -1) {
+			onPoolEvent(poolEvent.getPool(), code, poolEvent.getResource(), System.nanoTime());
+		}
+	}
+
+	@Override
+	public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+		switch (code) {
+		case CODE_ACQUIRED:
+			if (resource != null) {
+				acquired(resource, nanoTime);
+			}
+			break;
+		case CODE_RELEASING:
+		case CODE_DESTROYING:
+		case CODE_LEASE_EXPIRED:
+			Lease lease = (resource == null ? null : leases.remove(resource));
+			if (lease != null) {
+				lease.callSite.ended((nanoTime - lease.start) / 1000L, code == CODE_LEASE_EXPIRED);
+			}
+			break;
+		case CODE_CLOSED:
+			for (Lease l : leases.values()) {
+				l.callSite.outstanding.decrementAndGet();
+			}
+			leases.clear();
+			break;
+		default:
+		}
+	}
+
+	protected void acquired(Object resource, long nanoTime) {
+
+		LeaserTrace trace = sampler.sample();
+		if (trace == null) {
+			return;
+		}
+		CallSite callSite = getCallSite(trace.getStackTrace());
+		callSite.leased();
+		Lease previous = leases.put(resource, new Lease(callSite, nanoTime));
+		if (previous != null) {
+			// should not happen, resource was not released.
+			previous.callSite.outstanding.decrementAndGet();
+		}
+	}
+
+	protected CallSite getCallSite(StackTraceElement[] stackTrace) {
+
+		int start = 0;
+		while (start < stackTrace.length && isPoolFrame(stackTrace[start])) {
+			start++;
+		}
+		if (start == stackTrace.length) {
+			// max. depth too small to find the call site.
+			return otherCallSite;
+		}
+		List<StackTraceElement> frames = Arrays.asList(Arrays.copyOfRange(stackTrace, start, Math.min(stackTrace.length, start + callSiteDepth)));
+		CallSite callSite = callSites.get(frames);
+		if (callSite == null) {
+			if (callSites.size() >= maxCallSites) {
+				return otherCallSite;
+			}
+			CallSite other = callSites.putIfAbsent(frames, callSite = new CallSite(frames));
+			if (other != null) {
+				callSite = other;
+			}
+		}
+		return callSite;
+	}
+
+	protected boolean isPoolFrame(StackTraceElement st) {
+		return poolClasses.isPoolFrame(st);
+	}
+
+	/**
+	 * All call sites, including the "other" call site if it has leases.
+	 */
+	public List<CallSite> getCallSites() {
+
+		List<CallSite> l = new ArrayList<CallSite>(callSites.values());
+		if (otherCallSite.getCount() > 0L) {
+			l.add(otherCallSite);
+		}
+		return l;
+	}
+
+	/**
+	 * The top call sites sorted by the amount of outstanding leases and total hold time.
+	 */
+	public List<CallSite> getTopCallSites(int n) {
+		return getTopCallSites(n, BY_OUTSTANDING);
+	}
+
+	/**
+	 * @param order for example {@link #BY_TOTAL_HOLD_TIME}
+	 */
+	public List<CallSite> getTopCallSites(int n, Comparator<CallSite> order) {
+
+		List<CallSite> l = getCallSites();
+		Collections.sort(l, order);
+		return (l.size() > n ? new ArrayList<CallSite>(l.subList(0, n)) : l);
+	}
+
+	/**
+	 * Removes all call site statistics, outstanding leases are no longer tracked.
+	 */
+	public void clear() {
+
+		leases.clear();
+		callSites.clear();
+		otherCallSite.reset();
+	}
+
+	/**
+	 * A report of the top call sites (see {@link #getTopCallSites(int)})
+	 * including the hold time of outstanding leases (in microseconds).
+	 */
+	public String getReport(int n) {
+
+		long now = System.nanoTime();
+		Map<CallSite, long[]> holding = new HashMap<CallSite, long[]>();
+		for (Lease l : leases.values()) {
+			long[] h = holding.get(l.callSite);
+			if (h == null) {
+				holding.put(l.callSite, h = new long[2]);
+			}
+			long holdMicros = (now - l.start) / 1000L;
+			h[0] += holdMicros;
+			h[1] = Math.max(h[1], holdMicros);
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("Lease profile for ").append(pool.getPoolName()).append(", call sites: ").append(callSites.size())
+		.append(", outstanding leases: ").append(leases.size());
+		for (CallSite c : getTopCallSites(n)) {
+			sb.append('\n').append(c);
+			long[] h = holding.get(c);
+			if (h != null) {
+				sb.append("\n\toutstanding hold time: ").append(h[0]).append(", longest outstanding hold time: ").append(h[1]).append(" micros");
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getReport(10);
+	}
+
+}
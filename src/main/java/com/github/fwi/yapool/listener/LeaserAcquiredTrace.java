@@ -7,7 +7,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolSyncListener;
+import com.github.fwi.yapool.LeaserTrace;
+import com.github.fwi.yapool.LeaserTraceSampler;
 import com.github.fwi.yapool.PoolEvent;
+import com.github.fwi.yapool.PoolEvents;
+import com.github.fwi.yapool.PoolsMap;
 
 /**
  * A listener that logs the thread's stack-trace of the leaser at the time the resource was acquired, when the resource is expired. 
@@ -15,21 +20,58 @@ import com.github.fwi.yapool.PoolEvent;
  * but that may be "too late" to determine where things went wrong (e.g. when some code path does not release a resource).
  * This listener can be used to get information where in the code the lease was acquired
  * (which may be "too early", but better than nothing).  
+ * <br>Pool events are received synchronously, the stack-trace is taken from the thread acquiring the resource.
+ * <br>Taking a stack-trace for every lease is expensive for pools with a high lease rate, 
+ * use a {@link LeaserTraceSampler} to sample leases and limit the stack depth.
+ * The frames of the pool (and of the pool events dispatching the acquired event) are skipped before the stack depth is applied,
+ * so that the stack-trace starts with the code that acquired the resource (see {@link #addPoolClass(Class)}).
+ * Stack-traces are only rendered when a lease expires (or when {@link #toString()} is called).
  */
-public class LeaserAcquiredTrace extends PoolListener {
+public class LeaserAcquiredTrace extends PoolListener implements IPoolSyncListener {
 
 	protected Logger log = LoggerFactory.getLogger(this.getClass());
 	
-	protected ConcurrentHashMap<Object, StackTraceElement[]> traces = new ConcurrentHashMap<Object, StackTraceElement[]>(); 
-	protected ConcurrentHashMap<Object, String> threads = new ConcurrentHashMap<Object, String>(); 
+	protected ConcurrentHashMap<Object, LeaserTrace> traces = new ConcurrentHashMap<Object, LeaserTrace>(); 
 	protected BoundPool<?> pool;
+	protected volatile LeaserTraceSampler sampler;
+	/** Classes of which the leading frames are skipped in a stack-trace. */
+	protected final PoolClasses poolClasses = new PoolClasses();
 	protected boolean logAsDebug;
 	protected boolean logAsWarn;
 	
+	/**
+	 * Takes a stack-trace for every lease.
+	 */
 	public LeaserAcquiredTrace(BoundPool<?> pool) {
+		this(pool, new LeaserTraceSampler());
+	}
+
+	public LeaserAcquiredTrace(BoundPool<?> pool, LeaserTraceSampler sampler) {
 		super();
 		this.pool = pool;
+		this.sampler = sampler;
 		addWantEvent(PoolEvent.ACQUIRED, PoolEvent.LEASE_EXPIRED, PoolEvent.DESTROYING, PoolEvent.CLOSED);
+		addPoolClass(pool.getClass());
+		addPoolClass(pool.getEvents().getClass());
+		addPoolClass(PoolEvents.class);
+		addPoolClass(getClass());
+		addPoolClass(PoolsMap.class);
+	}
+
+	/**
+	 * Frames of the given class and its super-classes are skipped at the start of a stack-trace.
+	 * Use this method for classes that wrap the pool (e.g. a data source).
+	 */
+	public void addPoolClass(Class<?> c) {
+		poolClasses.add(c);
+	}
+
+	public LeaserTraceSampler getSampler() {
+		return sampler;
+	}
+
+	public void setSampler(LeaserTraceSampler sampler) {
+		this.sampler = sampler;
 	}
 	
 	/**
@@ -53,35 +95,32 @@ public class LeaserAcquiredTrace extends PoolListener {
 		if (poolEvent.getResource() == null) {
 			if (poolEvent.getAction() == PoolEvent.CLOSED) {
 				traces.clear();
-				threads.clear();
 			}
 		} else if (poolEvent.getAction() == PoolEvent.ACQUIRED) {
-			Thread t = Thread.currentThread();
-			threads.put(poolEvent.getResource(), t.toString());
-			traces.put(poolEvent.getResource(), t.getStackTrace());
+			LeaserTrace trace = sampler.sample(poolClasses);
+			if (trace == null) {
+				// remove the trace from a previous lease.
+				traces.remove(poolEvent.getResource());
+			} else {
+				traces.put(poolEvent.getResource(), trace);
+			}
 		} else if (poolEvent.getAction() == PoolEvent.LEASE_EXPIRED) {
 			log(getLeaseTraceInfo(poolEvent.getResource(), traces.get(poolEvent.getResource())));
 		} else if (poolEvent.getAction() == PoolEvent.DESTROYING) {
 			traces.remove(poolEvent.getResource());
-			threads.remove(poolEvent.getResource());
 		}
 	}
 	
-	protected String getLeaseTraceInfo(Object resource, StackTraceElement[] stackTraceElements) {
+	protected String getLeaseTraceInfo(Object resource, LeaserTrace trace) {
 		
-		if (stackTraceElements == null) {
+		if (trace == null) {
 			return pool.getPoolName() + " No stack trace from leaser available for resource: " + resource;
 		}
 		// This looks a lot like PrunedPool.logExpiredTrace
-		StringBuilder sb = new StringBuilder(pool.getPoolName() + " Stack trace from leaser " + threads.get(resource) + " when resource was acquired.");
+		StringBuilder sb = new StringBuilder(pool.getPoolName() + " Stack trace from leaser " + trace.getLeaser() + " when resource was acquired.");
 		sb.append('\n').append("Resource: ").append(resource.toString());
 		sb.append('\n').append("Stack trace:");
-		for (final StackTraceElement st : stackTraceElements) {
-			sb.append('\n').append('\t').append(st.getClassName())
-			.append("(").append(st.getMethodName())
-			.append(":").append(st.getLineNumber()).append(")");
-		}
-		return sb.toString();
+		return trace.appendTo(sb).toString();
 	}
 	
 	protected void log(String msg) {
@@ -114,9 +153,9 @@ public class LeaserAcquiredTrace extends PoolListener {
 		Set<Object> resources = traces.keySet();
 		int amount = 0;
 		for (Object r : resources) {
-			StackTraceElement[] ste = traces.get(r);
-			if (ste != null) {
-				sb.append(getLeaseTraceInfo(r, ste));
+			LeaserTrace trace = traces.get(r);
+			if (trace != null) {
+				sb.append(getLeaseTraceInfo(r, trace));
 			}
 			amount++;
 		}
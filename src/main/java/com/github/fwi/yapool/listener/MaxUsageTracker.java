@@ -5,15 +5,21 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.IPoolSyncListener;
+import com.github.fwi.yapool.Pool;
 import com.github.fwi.yapool.PoolEvent;
 import static com.github.fwi.yapool.listener.PoolResourcePerformance.toDate;
 
 /**
  * Tracks the maximum amount of waiting threads and the maximum pool size for a BoundPool.
+ * <br>Receives pool events synchronously as event codes (see {@link IPoolCodeListener}). 
  * @author fwiers
  *
  */
-public class MaxUsageTracker extends PoolListener {
+public class MaxUsageTracker extends PoolListener implements IPoolCodeListener, IPoolSyncListener {
+
+	protected static final int WANT_EVENT_CODES = PoolEvent.mask(PoolEvent.CODE_ACQUIRING, PoolEvent.CODE_CREATED);
 
 	protected Map<Integer, Long> maxUsed;
 	protected Map<Integer, Long> maxWaiting;
@@ -26,7 +32,7 @@ public class MaxUsageTracker extends PoolListener {
 		addWantEvent(PoolEvent.ACQUIRING, PoolEvent.CREATED);
 		maxUsed = new ConcurrentHashMap<Integer, Long>();
 		maxWaiting = new ConcurrentHashMap<Integer, Long>();
-		startTime = System.currentTimeMillis();
+		startTime = pool.getClock().currentTimeMillis();
 	}
 	
 	@Override
@@ -42,8 +48,23 @@ public class MaxUsageTracker extends PoolListener {
 		}
 	}
 	
+	@Override
+	public int getWantEventCodes() {
+		return WANT_EVENT_CODES;
+	}
+	
+	@Override
+	public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+		
+		if (code == PoolEvent.CODE_ACQUIRING) {
+			maxWaiting.put(pool.getWaitingSize(), pool.getClock().currentTimeMillis());
+		} else if (code == PoolEvent.CODE_CREATED) {
+			maxUsed.put(this.pool.getSize(), pool.getClock().currentTimeMillis());
+		}
+	}
+	
 	public void reset() {
-		startTime = System.currentTimeMillis();
+		startTime = pool.getClock().currentTimeMillis();
 		maxUsed.clear();
 		maxWaiting.clear();
 	}
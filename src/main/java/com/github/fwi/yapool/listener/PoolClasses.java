@@ -0,0 +1,44 @@
+package com.github.fwi.yapool.listener;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * The classes of a pool, its pool events and the classes that wrap the pool.
+ * Tests class names (without inner class names) so that the pool's frames can be skipped
+ * in the stack-trace of a leaser (see {@link com.github.fwi.yapool.LeaserTraceSampler#sample(Predicate)}).
+ * @author FWiers
+ *
+ */
+public class PoolClasses implements Predicate<String> {
+
+	private final Set<String> classNames = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Adds the given class and its super-classes.
+	 */
+	public PoolClasses add(Class<?> c) {
+
+		while (c != null && c != Object.class) {
+			classNames.add(c.getName());
+			c = c.getSuperclass();
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the class (or the outer class of an inner class) was added.
+	 */
+	@Override
+	public boolean test(String className) {
+
+		int i = className.indexOf('$');
+		return classNames.contains(i < 0 ? className : className.substring(0, i));
+	}
+
+	public boolean isPoolFrame(StackTraceElement st) {
+		return test(st.getClassName());
+	}
+
+}
@@ -5,105 +5,207 @@ import static com.github.fwi.yapool.PoolEvent.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.IPoolSyncListener;
 import com.github.fwi.yapool.Pool;
 import com.github.fwi.yapool.PoolEvent;
 
 /**
  * Gather pool statistics that can be reported via {@link #toString()}.
- * <b>Not suitable for production.</b>
- * 
- * The underlying classes do not release memory / references regurarly.
+ * <br>Pool events are received synchronously as event codes (see {@link IPoolCodeListener}),
+ * acquire times are measured per acquire (using the acquire start time delivered with the acquired event,
+ * see {@link IPoolCodeListener#onAcquired(Pool, Object, long, long)}), also when the acquire completes on another thread.
+ * <br>Statistics are kept per resource until the resource is destroyed,
+ * the statistics of destroyed resources are then added to {@link #destroyedStats}.
+ * The statistics for all resources ({@link #poolStats}) contain histograms and use a fixed amount of memory,
+ * the statistics per resource only contain counters.
  *
  */
-public class PoolPerformance extends PoolListener {
+public class PoolPerformance extends PoolListener implements IPoolCodeListener, IPoolSyncListener {
 
-	public AtomicLong acquireCount = new AtomicLong();
-	public AtomicLong acquireFailed = new AtomicLong();
+	protected static final int WANT_EVENT_CODES = PoolEvent.mask(CODE_ACQUIRING, CODE_ACQUIRED, CODE_RELEASING,
+			CODE_CREATED, CODE_DESTROYING, CODE_INVALID, CODE_OPENED, CODE_CLOSED);
 
-	public AtomicLong created = new AtomicLong();
-	public AtomicLong destroyed = new AtomicLong();
+	public final LongAdder acquireCount = new LongAdder();
+	public final LongAdder acquireFailed = new LongAdder();
+	/** Amount of acquires that fired an acquiring event but not yet an acquired event. */
+	public final LongAdder acquiring = new LongAdder();
 
-	Object resource;
-	PoolResourcePerformance poolStats = new PoolResourcePerformance(null, System.currentTimeMillis());
-	
+	public final LongAdder created = new LongAdder();
+	public final LongAdder destroyed = new LongAdder();
+	public final LongAdder invalidated = new LongAdder();
+
+	/** Statistics for the pool and all resources. */
+	PoolResourcePerformance poolStats;
+	/** Statistics for all destroyed resources. */
+	PoolResourcePerformance destroyedStats;
+
+	/** Statistics per resource that is not yet destroyed. */
 	ConcurrentHashMap<Object, PoolResourcePerformance> m = new ConcurrentHashMap<Object, PoolResourcePerformance>();
-	ConcurrentHashMap<Thread, Long> acquire = new ConcurrentHashMap<Thread, Long>();
-	
+	/** Acquires that started before this listener was created are not measured. */
+	private final long startNanos = System.nanoTime();
+
 	private Pool<?> pool;
-	
+
 	public PoolPerformance(Pool<?> pool) {
+		super();
 		this.pool = pool;
+		long t = pool.getClock().currentTimeMillis();
+		poolStats = new PoolResourcePerformance(null, t, null, true);
+		destroyedStats = new PoolResourcePerformance(null, t);
 	}
-	
+
 	public void clear() {
 		m.clear();
 	}
-	
+
+	public PoolResourcePerformance getPoolStats() {
+		return poolStats;
+	}
+
+	public PoolResourcePerformance getDestroyedStats() {
+		return destroyedStats;
+	}
+
+	@Override
+	public int getWantEventCodes() {
+		return WANT_EVENT_CODES;
+	}
+
 	@Override
 	public void onPoolEvent(PoolEvent poolEvent) {
-		
-		final Object resource = poolEvent.getResource();
-		final long t = poolEvent.getTimeStamp();
-		PoolResourcePerformance prs = (resource  == null ? poolStats : m.get(poolEvent.getResource()));
-		if (prs == null) {
-			m.put(poolEvent.getResource(), prs = new PoolResourcePerformance(resource, t));
+
+		int code = poolEvent.getCode();
+		if (code > -1) {
+			onPoolEvent(poolEvent.getResource(), code, System.nanoTime());
 		}
-		if (poolEvent.getAction() == ACQUIRING) {
-			acquire.put(Thread.currentThread(), t);
-		} else if (poolEvent.getAction() == ACQUIRED) {
-			Long start = acquire.remove(Thread.currentThread());
-			if (start == null) return;
-			if (resource == null) {
-				acquireFailed.incrementAndGet();
-			} else {
-				acquireCount.incrementAndGet();
-				prs.setAcquired(t, t - start);
+	}
+
+	@Override
+	public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+		onPoolEvent(resource, code, nanoTime);
+	}
+
+	@Override
+	public void onAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+		onAcquired(resource, acquireStartNanos, nanoTime);
+	}
+
+	/**
+	 * @param acquireStartNanos the moment the acquire started in {@link System#nanoTime()}.
+	 * @param nanoTime the moment the acquire completed in {@link System#nanoTime()}.
+	 */
+	protected void onAcquired(Object resource, long acquireStartNanos, long nanoTime) {
+
+		if (acquireStartNanos - startNanos < 0L) return;
+		acquiring.decrement();
+		if (resource == null) {
+			acquireFailed.increment();
+		} else {
+			acquireCount.increment();
+			getStats(resource).setAcquired(nanoTime, (nanoTime - acquireStartNanos) / 1000L);
+		}
+	}
+
+	/**
+	 * @param nanoTime the moment the event occurred in {@link System#nanoTime()}.
+	 */
+	protected void onPoolEvent(Object resource, int code, long nanoTime) {
+
+		switch (code) {
+		case CODE_ACQUIRING:
+			if (nanoTime - startNanos < 0L) return;
+			acquiring.increment();
+			break;
+		case CODE_ACQUIRED:
+			// Acquired event without the acquire start time, the acquire time is unknown.
+			onAcquired(resource, nanoTime, nanoTime);
+			break;
+		case CODE_RELEASING:
+			if (pool.isClosed()) return;
+			if (resource != null) {
+				getStats(resource).setReleased(nanoTime, resource);
+			}
+			break;
+		case CODE_CREATED:
+			created.increment();
+			if (resource != null) {
+				getStats(resource);
+			}
+			break;
+		case CODE_DESTROYING:
+			destroyed.increment();
+			PoolResourcePerformance prs = (resource == null ? null : m.remove(resource));
+			if (prs != null) {
+				prs.destroyed = pool.getClock().currentTimeMillis();
+				destroyedStats.add(prs);
+			}
+			break;
+		case CODE_INVALID:
+			invalidated.increment();
+			if (resource != null) {
+				PoolResourcePerformance p = m.get(resource);
+				if (p != null) {
+					p.invalidated = true;
+				}
 			}
-		} else if (poolEvent.getAction() == RELEASING) {
-			if (pool.isClosed()) return; 
-			prs.setReleased(t, resource);
-		} else if (poolEvent.getAction() == CREATED) {
-			created.incrementAndGet();
-			// most work already done by contructor of PoolResourceStats, see above
-		} else if (poolEvent.getAction() == DESTROYING) {
-			prs.destroyed = t;
-			destroyed.incrementAndGet();
-		} else if (poolEvent.getAction() == INVALID) {
-			prs.invalidated = true;
-		} else if (poolEvent.getAction() == OPENED) {
-			// NO-OP use created field
-		} else if (poolEvent.getAction() == CLOSED) {
-			prs.destroyed = t;
+			break;
+		case CODE_CLOSED:
+			poolStats.destroyed = pool.getClock().currentTimeMillis();
+			break;
+		default:
+			// OPENED: NO-OP use created field of pool stats.
 		}
 	}
-	
+
+	protected PoolResourcePerformance getStats(Object resource) {
+
+		PoolResourcePerformance prs = m.get(resource);
+		if (prs == null) {
+			PoolResourcePerformance other = m.putIfAbsent(resource,
+					prs = new PoolResourcePerformance(resource, pool.getClock().currentTimeMillis(), poolStats, false));
+			if (other != null) {
+				prs = other;
+			}
+		}
+		return prs;
+	}
+
 	@Override
 	public String toString() {
 
-		ArrayList<PoolResourcePerformance> l = new ArrayList<PoolResourcePerformance>();
-		for (PoolResourcePerformance prr : m.values()) {
-			l.add(prr);
-		}
+		ArrayList<PoolResourcePerformance> l = new ArrayList<PoolResourcePerformance>(m.values());
 		Collections.sort(l);
 		StringBuilder sb = new StringBuilder();
 		sb.append("Pool statistics for ").append(pool.getPoolName());
 		sb.append('\n').append(poolStats);
-		sb.append("\nResources created: ").append(created.get()).append(", destroyed: ").append(destroyed.get());
-		if (acquireFailed.get() > 0L) {
-			sb.append("\nFailed acquires: ").append(acquireFailed.get());
+		sb.append("\nResources created: ").append(created.sum()).append(", destroyed: ").append(destroyed.sum());
+		if (invalidated.sum() > 0L) {
+			sb.append(", invalid: ").append(invalidated.sum());
+		}
+		if (acquireFailed.sum() > 0L) {
+			sb.append("\nFailed acquires: ").append(acquireFailed.sum());
+		}
+		if (acquiring.sum() > 0L) {
+			sb.append("\nAcquires stuck: ").append(acquiring.sum());
 		}
-		if (acquire.size() > 0) {
-			sb.append("\nAcquires stuck: ").append(acquire.size());
+		sb.append("\nAll resources:");
+		sb.append('\n').append(poolStats.acquireTimes);
+		sb.append('\n').append(poolStats.leaseTimes);
+		sb.append('\n').append(poolStats.idleTimes);
+		if (destroyedStats.acquireCount.sum() > 0L) {
+			sb.append("\nDestroyed resources:");
+			sb.append('\n').append(destroyedStats.acquired);
+			sb.append('\n').append(destroyedStats.leased);
+			sb.append('\n').append(destroyedStats.idle);
 		}
-		long leaseTotal = 0L;
 		for (PoolResourcePerformance prr : l) {
 			sb.append('\n').append(prr);
-			leaseTotal += prr.leased.getCount();
 		}
-		if (acquireCount.get() != leaseTotal) {
-			sb.append("\nTotal acquired: " + acquireCount.get() + ", leased: " + leaseTotal);
+		if (acquireCount.sum() != poolStats.leased.getCount()) {
+			sb.append("\nTotal acquired: " + acquireCount.sum() + ", leased: " + poolStats.leased.getCount());
 		}
 		return sb.toString();
 	}
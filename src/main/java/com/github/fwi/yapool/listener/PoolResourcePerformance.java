@@ -2,79 +2,167 @@ package com.github.fwi.yapool.listener;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Statistics for one resource, or for a group of resources (e.g. the pool or all destroyed resources).
+ * <br>Counters can be updated concurrently, a resource is expected to be leased by one thread at a time.
+ * <br>Acquire, lease and idle times are in microseconds. Per resource only the count, total and maximum
+ * of these times are kept (see {@link Deltas}), histograms (see {@link TimeDeltaStats}) are only kept
+ * for the pool statistics.
+ */
 public class PoolResourcePerformance implements Comparable<PoolResourcePerformance> {
 
 	public static SimpleDateFormat df = new SimpleDateFormat("dd/MM/yy HH:mm:ss:SSS");
-	
-	long created;
-	
-	public TimeDeltaStats acquired = new TimeDeltaStats("Acquired");
-	public TimeDeltaStats leased = new TimeDeltaStats("Leased  ");
-	public TimeDeltaStats idle = new TimeDeltaStats("Idled   ");
-	
-	public long releaseFailed;
-
-	public long acquireCount;
-	public long releaseCount;
-	/** Set to 1 when resource was invalidated. */
-	public boolean invalidated;
+
+	final long created;
+
+	public final Deltas acquired = new Deltas("Acquired (micros)");
+	public final Deltas leased = new Deltas("Leased   (micros)");
+	public final Deltas idle = new Deltas("Idled    (micros)");
+
+	/** Histogram of acquire times, null if no histograms are kept. */
+	public final TimeDeltaStats acquireTimes;
+	/** Histogram of lease times, null if no histograms are kept. */
+	public final TimeDeltaStats leaseTimes;
+	/** Histogram of idle times, null if no histograms are kept. */
+	public final TimeDeltaStats idleTimes;
+
+	public final LongAdder releaseFailed = new LongAdder();
+
+	public final LongAdder acquireCount = new LongAdder();
+	public final LongAdder releaseCount = new LongAdder();
+	/** Set to true when resource was invalidated. */
+	public volatile boolean invalidated;
 	/** Set to time-stamp when resource was destroyed. */
-	public long destroyed;
-	
-	private long leaseStart;
-	private long idleStart;
-	
-	/** Set to resource.class.name:resource.toString() by contructor, or {@link #POOL_STATS} */
+	public volatile long destroyed;
+
+	/** Start of the lease in {@link System#nanoTime()}, 0 when unknown. */
+	private volatile long leaseStart;
+	/** Start of the idle period in {@link System#nanoTime()}, 0 when unknown. */
+	private volatile long idleStart;
+
+	/** The resource, null for the pool statistics or an aggregate of resources. */
 	final Object resource;
-	
+	/** Statistics for all resources that are also updated by this resource, can be null. */
+	final PoolResourcePerformance total;
+
+	/**
+	 * @param t the creation time-stamp in milliseconds.
+	 */
 	public PoolResourcePerformance(Object resource, long t) {
+		this(resource, t, null, false);
+	}
+
+	/**
+	 * @param t the creation time-stamp in milliseconds.
+	 * @param total the statistics that are also updated by this resource, can be null.
+	 * @param histograms if true, histograms of acquire, lease and idle times are kept.
+	 */
+	public PoolResourcePerformance(Object resource, long t, PoolResourcePerformance total, boolean histograms) {
 		super();
 		this.resource = resource;
+		this.total = total;
 		created = t;
-		leaseStart =  t;
+		acquireTimes = (histograms ? new TimeDeltaStats("Acquired (micros)") : null);
+		leaseTimes = (histograms ? new TimeDeltaStats("Leased   (micros)") : null);
+		idleTimes = (histograms ? new TimeDeltaStats("Idled    (micros)") : null);
 	}
 
-	public void setAcquired(long t, long delta) {
-		
-		acquireCount++;
-		leaseStart = t;
+	/**
+	 * @param nanoTime the moment the resource was acquired in {@link System#nanoTime()}.
+	 * @param delta the time it took to acquire the resource in microseconds.
+	 */
+	public void setAcquired(long nanoTime, long delta) {
+
+		acquireCount.increment();
+		leaseStart = nanoTime;
+		addAcquired(delta);
+		if (total != null) {
+			total.acquireCount.increment();
+			total.addAcquired(delta);
+		}
+		long start = idleStart;
+		if (start != 0L) {
+			long idleDelta = (nanoTime - start) / 1000L;
+			addIdle(idleDelta);
+			if (total != null) {
+				total.addIdle(idleDelta);
+			}
+		}
+	}
+
+	/**
+	 * @param nanoTime the moment the resource was released in {@link System#nanoTime()}.
+	 */
+	public void setReleased(long nanoTime, Object resource) {
+
+		releaseCount.increment();
+		idleStart = nanoTime;
+		if (total != null) {
+			total.releaseCount.increment();
+		}
+		long start = leaseStart;
+		if (start != 0L) {
+			long leaseDelta = (nanoTime - start) / 1000L;
+			addLeased(leaseDelta);
+			if (total != null) {
+				total.addLeased(leaseDelta);
+			}
+		}
+	}
+
+	protected void addAcquired(long delta) {
+
 		acquired.add(delta);
-		if (idleStart != 0L) {
-			idle.add(t - idleStart);
-			//System.out.print(t - idleStart == 0L ? "idle delta 0 at count " + idle.getCount() + "\n" : "");
+		if (acquireTimes != null) {
+			acquireTimes.add(delta);
 		}
-		
-		//System.out.println("t: " + t + " i: " + idleStart);
+	}
+
+	protected void addLeased(long delta) {
 
+		leased.add(delta);
+		if (leaseTimes != null) {
+			leaseTimes.add(delta);
+		}
 	}
 
-	public void setReleased(long t, Object resource) {
+	protected void addIdle(long delta) {
 
-		releaseCount++;
-		idleStart = t;
-		
-		if (leaseStart != 0L) {
-			leased.add(t - leaseStart);
+		idle.add(delta);
+		if (idleTimes != null) {
+			idleTimes.add(delta);
 		}
-		//long oldMin = leaseTimeMin;
-		//if (oldMin != leaseTimeMin) System.out.println("Min lease: " + leaseTimeMin);
 	}
-	
+
+	/**
+	 * Adds the counters of the other (destroyed) resource to this aggregate.
+	 */
+	public void add(PoolResourcePerformance other) {
+
+		acquired.add(other.acquired);
+		leased.add(other.leased);
+		idle.add(other.idle);
+		releaseFailed.add(other.releaseFailed.sum());
+		acquireCount.add(other.acquireCount.sum());
+		releaseCount.add(other.releaseCount.sum());
+	}
+
 	/** Compares on {@link #created} */
 	@Override
 	public int compareTo(PoolResourcePerformance o) {
-		// Do not use Long.compare(l, l2) --> it does not exist in Java 6.
-		return Long.valueOf(created).compareTo(Long.valueOf(o.created)); 
+		return Long.compare(created, o.created);
 	}
 
 	public static String toDate(long t) {
 		return (t == 0L ? "0" : df.format(new Date(t)));
 	}
-	
+
 	@Override
 	public String toString() {
-		
+
 		StringBuilder sb = new StringBuilder();
 		if (resource == null) {
 			sb.append("Pool started: ").append(toDate(created)).append(", stopped: ").append(toDate(destroyed));
@@ -92,4 +180,58 @@ public class PoolResourcePerformance implements Comparable<PoolResourcePerforman
 		return sb.toString();
 	}
 
+	/**
+	 * Count, total and maximum of (time) deltas, uses less memory than a {@link TimeDeltaStats} histogram.
+	 */
+	public static class Deltas {
+
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+		public Deltas(String name) {
+			super();
+			this.name = name;
+		}
+
+		/**
+		 * Counts the delta, a negative delta is counted as 0.
+		 */
+		public void add(long delta) {
+
+			final long v = (delta < 0L ? 0L : delta);
+			count.increment();
+			total.add(v);
+			max.accumulate(v);
+		}
+
+		/**
+		 * Adds all deltas counted by the other deltas.
+		 */
+		public void add(Deltas other) {
+
+			count.add(other.count.sum());
+			total.add(other.total.sum());
+			max.accumulate(other.max.get());
+		}
+
+		public String getName() { return name; }
+		public long getCount() { return count.sum(); }
+		/** The sum of all added deltas. */
+		public long getTotal() { return total.sum(); }
+		public long getMax() { return max.get(); }
+
+		public long getAvg() {
+
+			long c = count.sum();
+			return (c < 1L ? 0L : total.sum() / c);
+		}
+
+		@Override
+		public String toString() {
+			return name + " - count / avg / max: " + getCount() + " / " + getAvg() + " / " + getMax();
+		}
+	}
+
 }
@@ -1,18 +1,87 @@
 package com.github.fwi.yapool.listener;
 
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Lock-free histogram of (time) deltas using a fixed amount of memory.
+ * <br>Deltas are counted in log-linear buckets (similar to HdrHistogram): deltas smaller than {@link #SUB_BUCKETS}
+ * are counted exactly, larger deltas are counted in one of {@link #SUB_BUCKETS} buckets per power of 2,
+ * so that percentiles are reported with a precision of about 3%.
+ * Count, minimum, maximum and mean are exact.
+ * <br>Use {@link #getSnapshot()} to report all values from one moment in time,
+ * snapshots of different statistics can be combined with {@link Snapshot#merge(Snapshot)}.
+ * Use {@link #getIntervalSnapshot()} to report and reset the statistics per interval:
+ * the deltas are counted in one of two sets of counters, an interval snapshot swaps the sets
+ * and waits for deltas that are still being added to the previous set (like the HdrHistogram {@code Recorder}),
+ * so that each delta is counted completely (bucket, count, total, min and max) in one interval.
+ * @author FWiers
+ *
+ */
 public class TimeDeltaStats implements Serializable {
 
 	private static final long serialVersionUID = -1855078416154479616L;
 
+	/** Amount of bits used for the linear part of a bucket. */
+	public static final int SUB_BUCKET_BITS = 5;
+	/** Amount of buckets per power of 2. */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Amount of buckets needed to count all positive long values. */
+	public static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
 	/**
-	 * Access must be synchronized, somehow TestBoundPool.singletonPool()
-	 * can throw a ConcurrentModificationException
+	 * One set of counters.
 	 */
-	private final List<Long> deltas = new LinkedList<Long>();
+	protected static class Counters implements Serializable {
+
+		private static final long serialVersionUID = 3406327009766418497L;
+
+		final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong total = new AtomicLong();
+		final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		final AtomicLong max = new AtomicLong();
+
+		void add(long v) {
+
+			counts.incrementAndGet(bucketIndex(v));
+			count.incrementAndGet();
+			total.addAndGet(v);
+			long current;
+			while (v < (current = min.get()) && !min.compareAndSet(current, v));
+			while (v > (current = max.get()) && !max.compareAndSet(current, v));
+		}
+
+		void clear() {
+
+			for (int i = 0; i < BUCKETS; i++) {
+				counts.set(i, 0L);
+			}
+			count.set(0L);
+			total.set(0L);
+			min.set(Long.MAX_VALUE);
+			max.set(0L);
+		}
+	}
+
+	/** The counters deltas are added to. */
+	private volatile Counters active = new Counters();
+	/** The counters of the previous interval, created by the first interval snapshot. Guarded by the {@link #phase} lock. */
+	private Counters inactive;
+
+	/*
+	 * Writer-reader phaser: writers increment the start epoch before adding and the end epoch of their phase after adding.
+	 * The phase is even when the start epoch is positive, odd when it is negative.
+	 * Flipping the phase resets the start epoch, the reader then waits until the end epoch of the previous phase
+	 * is equal to the start epoch at the flip: all writers of the previous phase are done.
+	 */
+	private final AtomicLong startEpoch = new AtomicLong();
+	private final AtomicLong evenEndEpoch = new AtomicLong();
+	private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+	/** Lock for taking interval snapshots, only one phase flip at a time. */
+	private final Object phase = new Object();
+
 	private String name;
 
 	public TimeDeltaStats() {
@@ -23,61 +92,335 @@ public class TimeDeltaStats implements Serializable {
 		super();
 		this.name = name;
 	}
-	
+
 	public void setName(String name) { this.name = name; }
 	public String getName() { return name; }
-	
+
+	/**
+	 * Counts the delta, a negative delta is counted as 0.
+	 */
 	public void add(long delta) {
-		
-		synchronized (deltas) {
-			deltas.add(delta);
+
+		final long v = (delta < 0L ? 0L : delta);
+		final long epoch = startEpoch.getAndIncrement();
+		try {
+			active.add(v);
+		} finally {
+			(epoch < 0L ? oddEndEpoch : evenEndEpoch).getAndIncrement();
 		}
 	}
-	
-	public long getMin() {
-		
-		long min = Long.MAX_VALUE;
-		synchronized (deltas) {
-			for (Long d : deltas) {
-				min = Math.min(min, d);
+
+	/**
+	 * Adds all deltas counted in the snapshot.
+	 */
+	public void add(Snapshot snapshot) {
+
+		if (snapshot.count < 1L) {
+			return;
+		}
+		final long epoch = startEpoch.getAndIncrement();
+		try {
+			final Counters c = active;
+			for (int i = 0; i < BUCKETS; i++) {
+				if (snapshot.counts[i] != 0L) {
+					c.counts.addAndGet(i, snapshot.counts[i]);
+				}
 			}
+			c.count.addAndGet(snapshot.count);
+			c.total.addAndGet(snapshot.total);
+			long current;
+			while (snapshot.min < (current = c.min.get()) && !c.min.compareAndSet(current, snapshot.min));
+			while (snapshot.max > (current = c.max.get()) && !c.max.compareAndSet(current, snapshot.max));
+		} finally {
+			(epoch < 0L ? oddEndEpoch : evenEndEpoch).getAndIncrement();
 		}
-		return (min == Long.MAX_VALUE ? 0 : min);
 	}
-	
+
+	public long getMin() {
+
+		long v = active.min.get();
+		return (v == Long.MAX_VALUE ? 0L : v);
+	}
+
 	public long getMax() {
-		
-		long max = 0L;
-		synchronized (deltas) {
-			for (Long d : deltas) {
-				max = Math.max(max, d);
-			}
-		}
-		return max;
+		return active.max.get();
 	}
-	
+
+	/**
+	 * @return the amount of added deltas, {@link Integer#MAX_VALUE} when more deltas were added
+	 * (see {@link #getTotalCount()}).
+	 */
 	public int getCount() {
-		return deltas.size();
+
+		long c = active.count.get();
+		return (c > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) c);
+	}
+
+	/** The amount of added deltas. */
+	public long getTotalCount() {
+		return active.count.get();
 	}
-	
+
+	/** The sum of all added deltas. */
+	public long getTotal() {
+		return active.total.get();
+	}
+
 	public long getAvg() {
-		
-		if (getCount() < 1) return 0L;
-		long total = 0L;
-		synchronized (deltas) {
-			for (Long d : deltas) {
-				total += d;
+
+		final Counters a = active;
+		long c = a.count.get();
+		return (c < 1L ? 0L : a.total.get() / c);
+	}
+
+	public double getMean() {
+
+		final Counters a = active;
+		long c = a.count.get();
+		return (c < 1L ? 0.0 : (double) a.total.get() / c);
+	}
+
+	/**
+	 * @param percentile a value between 0 and 100, e.g. 99.9
+	 * @return the (highest equivalent) value at or below which the given percentile of deltas was counted.
+	 */
+	public long getPercentile(double percentile) {
+
+		// Reads the counts directly instead of taking a snapshot: a snapshot copies all buckets.
+		// Buckets are counted before the total count, so the wanted amount is normally found in the buckets.
+		final Counters a = active;
+		long c = a.count.get();
+		if (c < 1L) {
+			return 0L;
+		}
+		long wanted = wantedCount(percentile, c);
+		long high = a.max.get();
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += a.counts.get(i);
+			if (seen >= wanted) {
+				return Math.max(getMin(), Math.min(high, highestValue(i)));
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * @return the current amount of deltas counted in the bucket with the given index, see {@link #bucketIndex(long)}.
+	 */
+	public long getBucketCount(int index) {
+		return active.counts.get(index);
+	}
+
+	/**
+	 * @return a copy of the current statistics.
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot(false);
+	}
+
+	/**
+	 * @return a copy of the current statistics, the statistics are reset.
+	 * A delta added while the snapshot is taken is counted completely in this snapshot or in the next one.
+	 */
+	public Snapshot getIntervalSnapshot() {
+		return snapshot(true);
+	}
+
+	/**
+	 * Removes all counted deltas.
+	 */
+	public void reset() {
+		snapshot(true);
+	}
+
+	protected Snapshot snapshot(boolean reset) {
+
+		if (!reset) {
+			return snapshot(active);
+		}
+		synchronized (phase) {
+			Counters next = inactive;
+			if (next == null) {
+				next = new Counters();
+			} else {
+				next.clear();
 			}
+			Counters previous = active;
+			active = next;
+			flipPhase();
+			// no more deltas are added to the previous counters.
+			inactive = previous;
+			return snapshot(previous);
+		}
+	}
+
+	/**
+	 * @return a copy of the counters, the count is the sum of the bucket counts.
+	 */
+	protected static Snapshot snapshot(Counters counters) {
+
+		long[] bucketCounts = new long[BUCKETS];
+		long c = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			c += (bucketCounts[i] = counters.counts.get(i));
+		}
+		return new Snapshot(bucketCounts, c, counters.total.get(), counters.min.get(), counters.max.get());
+	}
+
+	/**
+	 * Starts a new phase and waits until all deltas added in the previous phase are added completely.
+	 * Must be called while holding the {@link #phase} lock.
+	 */
+	private void flipPhase() {
+
+		final boolean nextPhaseIsEven = (startEpoch.get() < 0L);
+		final long initialStartValue = (nextPhaseIsEven ? 0L : Long.MIN_VALUE);
+		(nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+		final long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+		final AtomicLong previousEndEpoch = (nextPhaseIsEven ? oddEndEpoch : evenEndEpoch);
+		while (previousEndEpoch.get() != startValueAtFlip) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the amount of deltas at or below the given percentile of the count (at least 1).
+	 */
+	protected static long wantedCount(double percentile, long count) {
+
+		double p = Math.min(100.0, Math.max(0.0, percentile));
+		return Math.max(1L, (long) Math.ceil(p / 100.0 * count));
+	}
+
+	/**
+	 * @return the index of the bucket that counts the given (positive) value.
+	 */
+	public static int bucketIndex(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * @return the lowest value counted by the bucket with the given index.
+	 */
+	public static long lowestValue(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
 		}
-		return total / getCount();
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		return ((long) (index - (shift << SUB_BUCKET_BITS))) << shift;
 	}
-	
+
+	/**
+	 * @return the highest value counted by the bucket with the given index.
+	 */
+	public static long highestValue(int index) {
+
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		return lowestValue(index) + (1L << shift) - 1L;
+	}
+
 	@Override
 	public String toString() {
-		
-		StringBuilder sb = new StringBuilder(name);
-		sb.append(" - min / avg / max: ").append(getCount())
-		.append(" - ").append(getMin()).append(" / ").append(getAvg()).append(" / ").append(getMax());
-		return sb.toString();
+		return getSnapshot().toString(name);
+	}
+
+	/**
+	 * Immutable copy of time delta statistics.
+	 */
+	public static class Snapshot implements Serializable {
+
+		private static final long serialVersionUID = 5617617232475498461L;
+
+		private final long[] counts;
+		private final long count;
+		private final long total;
+		private final long min;
+		private final long max;
+
+		protected Snapshot(long[] counts, long count, long total, long min, long max) {
+			super();
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.min = min;
+			this.max = max;
+		}
+
+		public long getCount() { return count; }
+		public long getTotal() { return total; }
+		public long getMin() { return (count < 1L || min == Long.MAX_VALUE ? 0L : min); }
+		public long getMax() { return max; }
+		public long getAvg() { return (count < 1L ? 0L : total / count); }
+		public double getMean() { return (count < 1L ? 0.0 : (double) total / count); }
+
+		public long getP50() { return getPercentile(50.0); }
+		public long getP90() { return getPercentile(90.0); }
+		public long getP99() { return getPercentile(99.0); }
+		public long getP999() { return getPercentile(99.9); }
+
+		/**
+		 * @param percentile a value between 0 and 100, e.g. 99.9
+		 * @return the (highest equivalent) value at or below which the given percentile of deltas was counted.
+		 */
+		public long getPercentile(double percentile) {
+
+			if (count < 1L) {
+				return 0L;
+			}
+			long wanted = wantedCount(percentile, count);
+			long seen = 0L;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= wanted) {
+					return Math.max(getMin(), Math.min(max, highestValue(i)));
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * @return the amount of deltas counted in the bucket with the given index, see {@link TimeDeltaStats#bucketIndex(long)}.
+		 */
+		public long getBucketCount(int index) {
+			return counts[index];
+		}
+
+		/**
+		 * @return a new snapshot containing the deltas of this snapshot and the other snapshot.
+		 */
+		public Snapshot merge(Snapshot other) {
+
+			long[] merged = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				merged[i] = counts[i] + other.counts[i];
+			}
+			return new Snapshot(merged, count + other.count, total + other.total,
+					Math.min(min, other.min), Math.max(max, other.max));
+		}
+
+		public String toString(String name) {
+
+			StringBuilder sb = new StringBuilder(name);
+			sb.append(" - count / min / avg / max: ").append(getCount())
+			.append(" / ").append(getMin()).append(" / ").append(getAvg()).append(" / ").append(getMax());
+			sb.append(" - p50 / p90 / p99 / p999: ").append(getP50()).append(" / ").append(getP90())
+			.append(" / ").append(getP99()).append(" / ").append(getP999());
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+			return toString(getClass().getSimpleName());
+		}
 	}
 }
@@ -0,0 +1,88 @@
+package com.github.fwi.yapool.stats;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Memory fences for the sequence lock that guards a slot in a {@link PoolStatsFile}.
+ * <br>Loads and stores on a memory-mapped buffer are plain memory accesses that the compiler and the processor can re-order.
+ * A volatile field does not help: it only orders accesses that are seen by threads in the same JVM via the same field,
+ * the other process reading the file never accesses that field.
+ * The fences used here are the explicit fences of the JVM:
+ * {@code VarHandle.storeFence()} and {@code VarHandle.loadFence()} on Java 9 and later,
+ * {@code sun.misc.Unsafe.storeFence()} and {@code sun.misc.Unsafe.loadFence()} on Java 8.
+ * The fence methods are found at runtime and called via constant method handles, which the JIT compiler inlines.
+ * <br>The sequence numbers are aligned 8-byte words, loads and stores of these words are not torn on 64-bit JVMs.
+ * @author FWiers
+ *
+ */
+final class MemoryFences {
+
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle LOAD_FENCE;
+
+	static {
+		MethodHandle[] fences;
+		try {
+			fences = varHandleFences();
+		} catch (ReflectiveOperationException e) {
+			try {
+				fences = unsafeFences();
+			} catch (ReflectiveOperationException | RuntimeException e8) {
+				throw new ExceptionInInitializerError(e8);
+			}
+		}
+		STORE_FENCE = fences[0];
+		LOAD_FENCE = fences[1];
+	}
+
+	private MemoryFences() {}
+
+	/** Java 9 and later. */
+	private static MethodHandle[] varHandleFences() throws ReflectiveOperationException {
+
+		Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+		MethodType fence = MethodType.methodType(void.class);
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		return new MethodHandle[] {
+				lookup.findStatic(varHandle, "storeFence", fence),
+				lookup.findStatic(varHandle, "loadFence", fence) };
+	}
+
+	/** Java 8. */
+	private static MethodHandle[] unsafeFences() throws ReflectiveOperationException {
+
+		Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+		Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+		theUnsafe.setAccessible(true);
+		Object unsafe = theUnsafe.get(null);
+		MethodType fence = MethodType.methodType(void.class);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		return new MethodHandle[] {
+				lookup.findVirtual(unsafeClass, "storeFence", fence).bindTo(unsafe),
+				lookup.findVirtual(unsafeClass, "loadFence", fence).bindTo(unsafe) };
+	}
+
+	/** Loads and stores before the fence are not re-ordered with stores after the fence. */
+	static void storeFence() {
+
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (Throwable t) {
+			throw new IllegalStateException("Store fence failed.", t);
+		}
+	}
+
+	/** Loads before the fence are not re-ordered with loads and stores after the fence. */
+	static void loadFence() {
+
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (Throwable t) {
+			throw new IllegalStateException("Load fence failed.", t);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.github.fwi.yapool.stats;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * Layout of the memory-mapped pool statistics file written by {@link PoolStatsPublisher}
+ * and read by {@link PoolStatsReader}.
+ * <br>The file starts with a header followed by one slot per pool. All values are little-endian longs,
+ * except for the header ints and the pool name.
+ * A slot is guarded by a sequence number (seqlock): the publisher makes the sequence number odd before it updates the slot
+ * and even after the update, a reader retries when the sequence number was odd or changed while reading the slot.
+ * @author FWiers
+ *
+ */
+public class PoolStatsFile {
+
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** "YAPS" */
+	public static final int MAGIC = 0x59415053;
+	public static final int VERSION = 1;
+
+	/* header */
+	public static final int MAGIC_OFFSET = 0;
+	public static final int VERSION_OFFSET = 4;
+	public static final int SLOT_COUNT_OFFSET = 8;
+	public static final int SLOT_SIZE_OFFSET = 12;
+	/** Amount of buckets in the acquire wait histogram, see {@link TimeDeltaStats#BUCKETS}. */
+	public static final int BUCKETS_OFFSET = 16;
+	/** Amount of slots in use. */
+	public static final int POOL_COUNT_OFFSET = 20;
+	public static final int INTERVAL_OFFSET = 24;
+	public static final int UPDATED_OFFSET = 32;
+	public static final int HEADER_SIZE = 64;
+
+	/* slot */
+	public static final int SEQ = 0;
+	public static final int NAME_LENGTH = 8;
+	public static final int NAME = 10;
+	public static final int MAX_NAME_BYTES = 118;
+	public static final int TIMESTAMP = 128;
+	public static final int CLOSED = 136;
+	public static final int SIZE = 144;
+	public static final int MAX_SIZE = 152;
+	public static final int LEASED = 160;
+	public static final int IDLE = 168;
+	public static final int WAITING = 176;
+	public static final int CREATED = 184;
+	public static final int IDLED = 192;
+	public static final int EXPIRED = 200;
+	public static final int INVALID = 208;
+	public static final int LIFE_END = 216;
+	public static final int ACQUIRE_COUNT = 224;
+	public static final int ACQUIRE_FAILED = 232;
+	/** Acquire wait times are measured in microseconds. */
+	public static final int WAIT_TOTAL = 240;
+	public static final int WAIT_MIN = 248;
+	public static final int WAIT_MAX = 256;
+	public static final int WAIT_BUCKETS = 264;
+
+	/** The size of a slot, rounded up to a multiple of 4 kB. */
+	public static final int SLOT_SIZE = ((WAIT_BUCKETS + TimeDeltaStats.BUCKETS * 8 + 4095) / 4096) * 4096;
+
+	private PoolStatsFile() {}
+
+	public static int fileSize(int slots) {
+		return HEADER_SIZE + slots * SLOT_SIZE;
+	}
+
+	public static int slotOffset(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	static void putName(MappedByteBuffer buf, int offset, String name) {
+
+		byte[] b = name.getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(b.length, MAX_NAME_BYTES);
+		buf.putShort(offset + NAME_LENGTH, (short) length);
+		for (int i = 0; i < length; i++) {
+			buf.put(offset + NAME + i, b[i]);
+		}
+	}
+
+	static String getName(MappedByteBuffer buf, int offset) {
+
+		int length = Math.min(Math.max(0, buf.getShort(offset + NAME_LENGTH)), MAX_NAME_BYTES);
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) {
+			b[i] = buf.get(offset + NAME + i);
+		}
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,296 @@
+package com.github.fwi.yapool.stats;
+
+import static com.github.fwi.yapool.stats.PoolStatsFile.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolCodeListener;
+import com.github.fwi.yapool.IPoolSyncListener;
+import com.github.fwi.yapool.Pool;
+import com.github.fwi.yapool.PoolEvent;
+import com.github.fwi.yapool.PrunedPool;
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * Publishes the counters and sizes of pools at regular intervals in a memory-mapped file (see {@link PoolStatsFile})
+ * so that the pools can be monitored by another process (see {@link PoolStatsReader}).
+ * <br>Counters and sizes are read and written by the publisher's thread.
+ * Optionally, pool threads measure the acquire wait time (in microseconds, see {@link #setAcquireWaitStats(boolean)}).
+ * <br>Usage:
+ * <pre>{@code
+ * PoolStatsPublisher publisher = new PoolStatsPublisher(Paths.get("/tmp/pools.stats"), 4);
+ * publisher.addPool(pool);
+ * publisher.start(PoolPruner.getInstance().getExecutor());
+ * }</pre>
+ * @author FWiers
+ *
+ */
+public class PoolStatsPublisher implements Runnable, Closeable {
+
+	protected Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Path file;
+	private final int maxPools;
+	private final FileChannel channel;
+	private final MappedByteBuffer buf;
+	private final List<PoolSlot> slots = new CopyOnWriteArrayList<PoolSlot>();
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> scheduledTask;
+	private long publishIntervalMs = 1000L;
+	private boolean acquireWaitStats;
+	private volatile boolean stop;
+
+	/**
+	 * Acquire wait time statistics for one pool, updated by the pool threads.
+	 */
+	protected static class AcquireWait implements IPoolCodeListener, IPoolSyncListener {
+
+		final TimeDeltaStats waitMicros = new TimeDeltaStats("Acquire wait (micros)");
+		final LongAdder failed = new LongAdder();
+
+		@Override
+		public int getWantEventCodes() {
+			return PoolEvent.mask(PoolEvent.CODE_ACQUIRED);
+		}
+
+		@Override
+		public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+			// Acquired event without the acquire start time, the acquire wait time is unknown.
+			onAcquired(pool, resource, nanoTime, nanoTime);
+		}
+
+		@Override
+		public void onAcquired(Pool<?> pool, Object resource, long acquireStartNanos, long nanoTime) {
+
+			if (resource == null) {
+				failed.increment();
+			} else {
+				waitMicros.add((nanoTime - acquireStartNanos) / 1000L);
+			}
+		}
+	}
+
+	protected static class PoolSlot {
+
+		final Pool<?> pool;
+		final int offset;
+		final AcquireWait acquireWait;
+		long seq;
+
+		PoolSlot(Pool<?> pool, int offset, AcquireWait acquireWait) {
+			this.pool = pool;
+			this.offset = offset;
+			this.acquireWait = acquireWait;
+		}
+	}
+
+	/**
+	 * Creates (or overwrites) the statistics file.
+	 * @param maxPools the maximum amount of pools that can be added.
+	 */
+	public PoolStatsPublisher(Path file, int maxPools) {
+		super();
+		this.file = file;
+		this.maxPools = maxPools;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(maxPools));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not create pool statistics file " + file, e);
+		}
+		buf.order(BYTE_ORDER);
+		buf.putInt(VERSION_OFFSET, VERSION);
+		buf.putInt(SLOT_COUNT_OFFSET, maxPools);
+		buf.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+		buf.putInt(BUCKETS_OFFSET, TimeDeltaStats.BUCKETS);
+		buf.putInt(POOL_COUNT_OFFSET, 0);
+		buf.putLong(INTERVAL_OFFSET, publishIntervalMs);
+		MemoryFences.storeFence();
+		// magic is written last, a reader does not read a file without magic.
+		buf.putInt(MAGIC_OFFSET, MAGIC);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Adds a pool to publish statistics for, should be called before the publisher is started.
+	 * @throws IllegalStateException when the maximum amount of pools was already added.
+	 */
+	public synchronized void addPool(Pool<?> pool) {
+
+		if (slots.size() >= maxPools) {
+			throw new IllegalStateException("Pool statistics file " + file + " has no room for more than " + maxPools + " pools.");
+		}
+		AcquireWait acquireWait = null;
+		if (isAcquireWaitStats()) {
+			acquireWait = new AcquireWait();
+			pool.getEvents().addCodeListener(acquireWait);
+		}
+		PoolSlot slot = new PoolSlot(pool, slotOffset(slots.size()), acquireWait);
+		putName(buf, slot.offset, pool.getPoolName());
+		slots.add(slot);
+		publish(slot);
+		buf.putInt(POOL_COUNT_OFFSET, slots.size());
+	}
+
+	public long getPublishIntervalMs() {
+		return publishIntervalMs;
+	}
+
+	/** Default 1 second. */
+	public void setPublishIntervalMs(long publishIntervalMs) {
+
+		this.publishIntervalMs = publishIntervalMs;
+		buf.putLong(INTERVAL_OFFSET, publishIntervalMs);
+	}
+
+	public boolean isAcquireWaitStats() {
+		return acquireWaitStats;
+	}
+
+	/**
+	 * If true, acquire wait times of pools that are added are measured and published as histogram.
+	 * The acquire wait time is measured by a synchronous pool listener: this adds the cost of
+	 * two pool events and a histogram update to every acquire (in the thread that acquires).
+	 * Default false.
+	 */
+	public void setAcquireWaitStats(boolean acquireWaitStats) {
+		this.acquireWaitStats = acquireWaitStats;
+	}
+
+	public void start(ScheduledExecutorService executor) {
+
+		this.executor = executor;
+		stop = false;
+		scheduleTask();
+		if (log.isDebugEnabled()) {
+			log.debug("Pool statistics publisher started for file " + file);
+		}
+	}
+
+	protected void scheduleTask() {
+		scheduledTask = executor.schedule(this, getPublishIntervalMs(), TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+
+		stop = true;
+		if (scheduledTask != null) {
+			scheduledTask.cancel(false);
+			scheduledTask = null;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Pool statistics publisher stopped for file " + file);
+		}
+	}
+
+	@Override
+	public void run() {
+
+		if (stop) {
+			scheduledTask = null;
+		} else {
+			try {
+				publish();
+			} catch (Exception e) {
+				log.error("Could not publish pool statistics to " + file, e);
+			}
+			scheduleTask();
+		}
+	}
+
+	/**
+	 * Writes the current statistics of all pools to the file.
+	 */
+	public void publish() {
+
+		for (PoolSlot slot : slots) {
+			publish(slot);
+		}
+	}
+
+	protected synchronized void publish(PoolSlot slot) {
+
+		final int o = slot.offset;
+		final Pool<?> pool = slot.pool;
+		long now = pool.getClock().currentTimeMillis();
+		buf.putLong(o + SEQ, ++slot.seq);
+		// the odd sequence number is stored before the statistics.
+		MemoryFences.storeFence();
+		buf.putLong(o + TIMESTAMP, now);
+		buf.putLong(o + CLOSED, pool.isClosed() ? 1L : 0L);
+		buf.putLong(o + IDLE, pool.getIdleSize());
+		buf.putLong(o + WAITING, pool.getWaitingSize());
+		buf.putLong(o + CREATED, pool.getCreatedCount());
+		if (pool instanceof BoundPool) {
+			BoundPool<?> bp = (BoundPool<?>) pool;
+			buf.putLong(o + SIZE, bp.getSize());
+			buf.putLong(o + MAX_SIZE, bp.getMaxSize());
+			buf.putLong(o + LEASED, bp.getLeasedSize());
+		}
+		if (pool instanceof PrunedPool) {
+			PrunedPool<?> pp = (PrunedPool<?>) pool;
+			buf.putLong(o + IDLED, pp.getIdledCount());
+			buf.putLong(o + EXPIRED, pp.getExpiredCount());
+			buf.putLong(o + INVALID, pp.getInvalidCount());
+			buf.putLong(o + LIFE_END, pp.getLifeEndCount());
+		}
+		if (slot.acquireWait != null) {
+			// copied from the live statistics, the reader calculates percentiles from the bucket counts.
+			TimeDeltaStats wait = slot.acquireWait.waitMicros;
+			buf.putLong(o + ACQUIRE_COUNT, wait.getTotalCount());
+			buf.putLong(o + ACQUIRE_FAILED, slot.acquireWait.failed.sum());
+			buf.putLong(o + WAIT_TOTAL, wait.getTotal());
+			buf.putLong(o + WAIT_MIN, wait.getMin());
+			buf.putLong(o + WAIT_MAX, wait.getMax());
+			for (int i = 0; i < TimeDeltaStats.BUCKETS; i++) {
+				buf.putLong(o + WAIT_BUCKETS + i * 8, wait.getBucketCount(i));
+			}
+		}
+		// the statistics are stored before the even sequence number.
+		MemoryFences.storeFence();
+		buf.putLong(o + SEQ, ++slot.seq);
+		buf.putLong(UPDATED_OFFSET, now);
+	}
+
+	/**
+	 * Stops publishing, publishes the last statistics and stops measuring acquire wait times.
+	 */
+	@Override
+	public synchronized void close() {
+
+		stop();
+		publish();
+		for (PoolSlot slot : slots) {
+			if (slot.acquireWait != null) {
+				slot.pool.getEvents().removeCodeListener(slot.acquireWait);
+			}
+		}
+		buf.force();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.warn("Could not close pool statistics file " + file, e);
+		}
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.github.fwi.yapool.stats;
+
+import static com.github.fwi.yapool.stats.PoolStatsFile.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * Reads pool statistics from a file written by {@link PoolStatsPublisher}, can be used in another process.
+ * <br>Run {@code java -cp yapool.jar com.github.fwi.yapool.stats.PoolStatsReader <file> [intervalMs]}
+ * to print the statistics of all pools at regular intervals
+ * (in the same format as {@link com.github.fwi.yapool.PoolUsageLogger}).
+ * @author FWiers
+ *
+ */
+public class PoolStatsReader implements Closeable {
+
+	/** Maximum amount of attempts to read a slot while it is updated. */
+	public static final int MAX_READ_ATTEMPTS = 100;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buf;
+	private final int slotCount;
+	private final int buckets;
+
+	/**
+	 * Statistics of one pool at one moment in time.
+	 */
+	public static class PoolStats {
+
+		public String name;
+		public long timestamp;
+		public boolean closed;
+		public long size, maxSize, leased, idle, waiting;
+		public long created, idled, expired, invalid, lifeEnd;
+		public long acquireCount, acquireFailed;
+		public long waitTotal, waitMin, waitMax;
+		public long[] waitBuckets;
+
+		/**
+		 * @param percentile a value between 0 and 100, e.g. 99.9
+		 * @return the acquire wait time in microseconds at or below which the given percentile of acquires waited.
+		 */
+		public long getAcquireWaitPercentile(double percentile) {
+
+			long count = 0L;
+			for (long c : waitBuckets) {
+				count += c;
+			}
+			if (count < 1L) {
+				return 0L;
+			}
+			long wanted = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count));
+			long seen = 0L;
+			for (int i = 0; i < waitBuckets.length; i++) {
+				seen += waitBuckets[i];
+				if (seen >= wanted) {
+					return Math.max(waitMin, Math.min(waitMax, TimeDeltaStats.highestValue(i)));
+				}
+			}
+			return waitMax;
+		}
+
+		/**
+		 * A report like {@link com.github.fwi.yapool.PoolUsageLogger#getReport()},
+		 * counters are reported as the difference with the previous statistics (if any).
+		 */
+		public String getReport(PoolStats previous) {
+
+			StringBuilder sb = new StringBuilder(128);
+			sb.append(name).append(" size: ").append(size);
+			if (leased > 0L) {
+				sb.append(", leased: ").append(leased);
+			}
+			if (idle > 0L) {
+				sb.append(", idle: ").append(idle);
+			}
+			if (waiting > 0L) {
+				sb.append(", waiting: ").append(waiting);
+			}
+			appendDelta(sb, "EXPIRED", expired, previous == null ? 0L : previous.expired);
+			appendDelta(sb, "INVALID", invalid, previous == null ? 0L : previous.invalid);
+			appendDelta(sb, "created", created, previous == null ? 0L : previous.created);
+			appendDelta(sb, "idled", idled, previous == null ? 0L : previous.idled);
+			appendDelta(sb, "acquired", acquireCount, previous == null ? 0L : previous.acquireCount);
+			appendDelta(sb, "acquire failed", acquireFailed, previous == null ? 0L : previous.acquireFailed);
+			if (acquireCount > 0L) {
+				sb.append(", acquire wait p50 / p99 / max: ").append(getAcquireWaitPercentile(50.0))
+				.append(" / ").append(getAcquireWaitPercentile(99.0)).append(" / ").append(waitMax).append(" micros");
+			}
+			if (closed) {
+				sb.append(", closed");
+			}
+			return sb.toString();
+		}
+
+		protected static void appendDelta(StringBuilder sb, String name, long value, long previous) {
+
+			if (value != previous) {
+				sb.append(", ").append(name).append(": ").append(value - previous);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return getReport(null);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException when the file is not a pool statistics file.
+	 */
+	public PoolStatsReader(Path file) {
+		super();
+		this.file = file;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open pool statistics file " + file, e);
+		}
+		buf.order(BYTE_ORDER);
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(MAGIC_OFFSET) != MAGIC) {
+			close();
+			throw new IllegalArgumentException(file + " is not a pool statistics file (version " + VERSION + ").");
+		}
+		// the header is loaded after the magic that is stored last.
+		MemoryFences.loadFence();
+		if (buf.getInt(VERSION_OFFSET) != VERSION) {
+			close();
+			throw new IllegalArgumentException(file + " is not a pool statistics file (version " + VERSION + ").");
+		}
+		slotCount = buf.getInt(SLOT_COUNT_OFFSET);
+		buckets = buf.getInt(BUCKETS_OFFSET);
+		if (buf.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE || buckets != TimeDeltaStats.BUCKETS || buf.capacity() < fileSize(slotCount)) {
+			close();
+			throw new IllegalArgumentException(file + " has an unsupported pool statistics layout.");
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/** The amount of pools in the file. */
+	public int getPoolCount() {
+		return Math.min(slotCount, buf.getInt(POOL_COUNT_OFFSET));
+	}
+
+	/** The publish interval of the publisher. */
+	public long getPublishIntervalMs() {
+		return buf.getLong(INTERVAL_OFFSET);
+	}
+
+	/** The time the publisher last updated the file. */
+	public long getUpdated() {
+		return buf.getLong(UPDATED_OFFSET);
+	}
+
+	/**
+	 * Reads the statistics of one pool.
+	 * @param slot a value from 0 to {@link #getPoolCount()}
+	 * @return null if the statistics were updated during all read attempts (see {@link #MAX_READ_ATTEMPTS}).
+	 */
+	public PoolStats read(int slot) {
+
+		if (slot < 0 || slot >= getPoolCount()) {
+			throw new IndexOutOfBoundsException("No pool statistics for slot " + slot + ", pool count: " + getPoolCount());
+		}
+		final int o = slotOffset(slot);
+		PoolStats s = new PoolStats();
+		s.waitBuckets = new long[buckets];
+		for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+			long seq = buf.getLong(o + SEQ);
+			if ((seq & 1L) == 1L) {
+				Thread.yield();
+				continue;
+			}
+			// the sequence number is loaded before the statistics.
+			MemoryFences.loadFence();
+			s.name = getName(buf, o);
+			s.timestamp = buf.getLong(o + TIMESTAMP);
+			s.closed = (buf.getLong(o + CLOSED) != 0L);
+			s.size = buf.getLong(o + SIZE);
+			s.maxSize = buf.getLong(o + MAX_SIZE);
+			s.leased = buf.getLong(o + LEASED);
+			s.idle = buf.getLong(o + IDLE);
+			s.waiting = buf.getLong(o + WAITING);
+			s.created = buf.getLong(o + CREATED);
+			s.idled = buf.getLong(o + IDLED);
+			s.expired = buf.getLong(o + EXPIRED);
+			s.invalid = buf.getLong(o + INVALID);
+			s.lifeEnd = buf.getLong(o + LIFE_END);
+			s.acquireCount = buf.getLong(o + ACQUIRE_COUNT);
+			s.acquireFailed = buf.getLong(o + ACQUIRE_FAILED);
+			s.waitTotal = buf.getLong(o + WAIT_TOTAL);
+			s.waitMin = buf.getLong(o + WAIT_MIN);
+			s.waitMax = buf.getLong(o + WAIT_MAX);
+			for (int i = 0; i < buckets; i++) {
+				s.waitBuckets[i] = buf.getLong(o + WAIT_BUCKETS + i * 8);
+			}
+			// the statistics are loaded before the sequence number is loaded again.
+			MemoryFences.loadFence();
+			if (buf.getLong(o + SEQ) == seq) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() {
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not close pool statistics file " + file, e);
+		}
+	}
+
+	/**
+	 * Prints the statistics of all pools in the file at regular intervals.
+	 * <br>Arguments: {@code <file> [intervalMs]}, the interval defaults to the publish interval.
+	 */
+	public static void main(String[] args) {
+
+		if (args.length < 1) {
+			System.err.println("Usage: " + PoolStatsReader.class.getName() + " <file> [intervalMs]");
+			System.exit(1);
+		}
+		try (PoolStatsReader reader = new PoolStatsReader(Paths.get(args[0]))) {
+			long intervalMs = (args.length > 1 ? Long.parseLong(args[1]) : reader.getPublishIntervalMs());
+			PoolStats[] previous = new PoolStats[reader.slotCount];
+			while (true) {
+				for (int i = 0; i < reader.getPoolCount(); i++) {
+					PoolStats s = reader.read(i);
+					if (s != null) {
+						System.out.println(s.getReport(previous[i]));
+						previous[i] = s;
+					}
+				}
+				Thread.sleep(Math.max(1L, intervalMs));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -12,6 +12,8 @@ public class LongFactory implements IPoolFactory<Long> {
 	protected Logger log = LoggerFactory.getLogger(getClass());
 	
 	public AtomicLong createCount = new AtomicLong();
+	/** A resource that is no longer valid. */
+	public volatile Long invalid;
 	
 	public void setStartValue(long start) {
 		createCount.set(start);
@@ -28,7 +30,7 @@ public class LongFactory implements IPoolFactory<Long> {
 		if (log.isTraceEnabled()) {
 			log.trace("resource validated: " + resource);
 		}
-		return (resource != null); 
+		return (resource != null && !resource.equals(invalid)); 
 	}
 
 	@Override
@@ -0,0 +1,181 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestAcquireAsync {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void handOffInOrder() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(1);
+		p.open(0);
+		CompletableFuture<Long> f1 = p.acquireAsync(1000L);
+		// resource is created by the create executor
+		Long l = f1.get(1, TimeUnit.SECONDS);
+		CompletableFuture<Long> f2 = p.acquireAsync(1000L);
+		CompletableFuture<Long> f3 = p.acquireAsync(1000L);
+		assertFalse(f2.isDone());
+		assertEquals(2, p.getWaitingSize());
+		p.release(l);
+		// the oldest waiter gets the released resource directly
+		assertTrue(f2.isDone());
+		assertFalse(f3.isDone());
+		assertEquals(l, f2.get());
+		assertEquals(1, p.getLeasedSize());
+		assertEquals(0, p.getIdleSize());
+		p.release(f2.get());
+		assertEquals(l, f3.get(1, TimeUnit.SECONDS));
+		assertEquals(0, p.getWaitingSize());
+		p.release(l);
+		assertEquals(1, p.getIdleSize());
+		assertEquals(l, p.acquireAsync(0L).get());
+		p.close();
+	}
+
+	@Test
+	public void timeOutAndClose() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(1);
+		p.setThreadCache(true);
+		p.open(1);
+		Long l = p.acquire();
+		CompletableFuture<Long> f = p.acquireAsync(10L);
+		try {
+			f.get(1, TimeUnit.SECONDS);
+			fail("Acquire must time out.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof NoSuchElementException);
+		}
+		assertEquals(0, p.getWaitingSize());
+		// released resource is not cached for the releasing thread when there are waiters
+		f = p.acquireAsync(1000L);
+		p.release(l);
+		assertEquals(l, f.get());
+		// a cancelled acquire does not leak the resource
+		f = p.acquireAsync(1000L);
+		assertTrue(f.cancel(false));
+		p.release(l);
+		assertEquals(0, p.getLeasedSize());
+		assertEquals(1, p.getIdleSize());
+		l = p.acquire();
+		f = p.acquireAsync(1000L);
+		p.close();
+		try {
+			f.get(1, TimeUnit.SECONDS);
+			fail("Acquire must fail when pool is closed.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, p.getWaitingSize());
+	}
+
+	@Test
+	public void createOnCreateExecutor() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(1);
+		AtomicInteger tasks = new AtomicInteger();
+		p.setCreateExecutor(r -> {
+			tasks.incrementAndGet();
+			PoolScheduler.getCreateExecutor().execute(r);
+		});
+		p.open(0);
+		Long l = p.acquireAsync(1000L).get(1, TimeUnit.SECONDS);
+		assertEquals(1, tasks.get());
+		CompletableFuture<Long> f = p.acquireAsync(10L);
+		// a resource removed while waiting is re-created after the time-out on the create executor
+		p.removeLeased(p.entries.get(l), true, false);
+		l = f.get(1, TimeUnit.SECONDS);
+		assertEquals(2, tasks.get());
+		assertEquals(1, p.getLeasedSize());
+		// a rejected create fails the acquire instead of creating on the calling thread
+		p.release(l);
+		l = p.acquire();
+		p.removeLeased(p.entries.get(l), true, false);
+		p.setCreateExecutor(r -> { throw new RejectedExecutionException("test"); });
+		try {
+			p.acquireAsync(10L).get(1, TimeUnit.SECONDS);
+			fail("Acquire must fail when create executor rejects.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		p.close();
+	}
+
+	@Test
+	public void prunedPoolValidates() throws Exception {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setMaxSize(2);
+		p.setPruneIntervalMs(0L);
+		p.open(0);
+		Long l1 = p.acquireAsync(100L).get();
+		Long l2 = p.acquireAsync(100L).get();
+		CompletableFuture<Long> f = p.acquireAsync(1000L);
+		// evicted resource is invalid, but pool has room for a new one
+		((LongFactory) p.getFactory()).invalid = l1;
+		p.release(l1);
+		Long l3 = f.get(1, TimeUnit.SECONDS);
+		assertNotEquals(l1, l3);
+		assertEquals(1L, p.getInvalidCount());
+		assertEquals(2, p.getLeasedSize());
+		p.release(l2);
+		p.release(l3);
+		p.close();
+	}
+
+	@Test
+	public void concurrentAsync() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(2);
+		p.open();
+		final int rounds = 50;
+		Thread[] t = new Thread[4];
+		CountDownLatch latch = new CountDownLatch(t.length);
+		final int[] failed = new int[1];
+		for (int i = 0; i < t.length; i++) {
+			t[i] = TestUtil.start(() -> {
+				for (int j = 0; j < rounds; j++) {
+					p.acquireAsync(1000L).whenComplete((l, error) -> {
+						if (error == null) {
+							p.release(l);
+						} else {
+							synchronized (failed) { failed[0]++; }
+						}
+					});
+				}
+			}, latch);
+		}
+		for (Thread thread : t) {
+			thread.join();
+		}
+		long deadline = System.currentTimeMillis() + 2000L;
+		while ((p.getWaitingSize() > 0 || p.getLeasedSize() > 0) && System.currentTimeMillis() < deadline) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(0, failed[0]);
+		assertEquals(0, p.getWaitingSize());
+		assertEquals(0, p.getLeasedSize());
+		assertTrue(p.getFactory().createCount.get() <= 2L);
+		assertEquals(p.getFactory().createCount.get(), p.getIdleSize());
+		p.close();
+	}
+
+}
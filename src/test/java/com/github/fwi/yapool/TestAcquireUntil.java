@@ -0,0 +1,143 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestAcquireUntil {
+
+	@Test
+	public void subMillisecond() {
+
+		Bound p = TestUtil.createPool();
+		p.setMaxSize(1);
+		p.open(1);
+		Long l = p.acquire();
+		for (boolean handOff : new boolean[] { false, true }) {
+			p.setHandOff(handOff);
+			long start = System.nanoTime();
+			try {
+				p.acquire(Duration.ofNanos(500_000L));
+				fail("Pool is full.");
+			} catch (NoSuchElementException expected) {
+				// expected
+			}
+			long waited = System.nanoTime() - start;
+			assertTrue(waited >= 500_000L);
+			assertTrue(waited < TimeUnit.MILLISECONDS.toNanos(100L));
+		}
+		p.release(l);
+		p.close();
+	}
+
+	@Test
+	public void deadlinePassed() {
+
+		Bound p = TestUtil.createPool();
+		p.setMaxSize(1);
+		p.open(1);
+		// idle resource is available without waiting
+		Long l = p.acquireUntil(System.nanoTime() - 1L);
+		long start = System.nanoTime();
+		try {
+			p.acquireUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20L));
+			fail("Pool is full.");
+		} catch (NoSuchElementException expected) {
+			// expected
+		}
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20L));
+		p.release(l);
+		p.close();
+	}
+
+	@Test
+	public void createPermitDeadline() throws Exception {
+
+		final CountDownLatch creating = new CountDownLatch(1);
+		final CountDownLatch created = new CountDownLatch(1);
+		Bound p = TestUtil.createPool();
+		p.setFactory(new LongFactory() {
+			@Override
+			public Long create() {
+				creating.countDown();
+				TestUtil.await(created);
+				return super.create();
+			}
+		});
+		p.setMaxSize(2);
+		p.setCreatePermits(1);
+		p.open(0);
+		Thread slowCreate = new Thread(() -> p.release(p.acquire()));
+		slowCreate.start();
+		TestUtil.await(creating);
+		long start = System.nanoTime();
+		try {
+			p.acquire(Duration.ofMillis(20L));
+			fail("Create permit is in use.");
+		} catch (NoSuchElementException expected) {
+			// expected
+		}
+		assertTrue("Waiting for a create permit stops at the deadline.", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1L));
+		created.countDown();
+		slowCreate.join();
+		p.close();
+	}
+
+	@Test
+	public void defaultMethods() {
+
+		final AtomicLong timeOut = new AtomicLong(-1L);
+		IPool<Long> p = new IPool<Long>() {
+			@Override public void setFactory(IPoolFactory<Long> f) {}
+			@Override public IPoolFactory<Long> getFactory() { return null; }
+			@Override public Long acquire() { return acquire(0L); }
+			@Override public Long acquire(long acquireTimeOutMs) {
+				timeOut.set(acquireTimeOutMs);
+				return 1L;
+			}
+			@Override public void close() {}
+			@Override public Long release(Long r) { return r; }
+			@Override public IPoolEvents getEvents() { return null; }
+			@Override public void setEvents(IPoolEvents pe) {}
+		};
+		p.acquire(Duration.ofMillis(20L));
+		assertTrue(timeOut.get() > 0L && timeOut.get() <= 20L);
+		p.acquireUntil(System.nanoTime() + 1L);
+		assertTrue("A positive budget is rounded up to a millisecond.", timeOut.get() <= 1L);
+		p.acquireUntil(System.nanoTime() - 1L);
+		assertEquals(0L, timeOut.get());
+	}
+
+	@Test
+	public void longTimeOut() {
+
+		assertTrue(Pool.remainingNanos(Pool.deadlineNanos(ChronoUnit.FOREVER.getDuration())) > 0L);
+		assertTrue(Pool.remainingNanos(Pool.deadlineNanos(Long.MAX_VALUE)) > 0L);
+		assertTrue(Pool.remainingNanos(Pool.deadlineNanos(Duration.ofSeconds(-1L))) <= 0L);
+		assertTrue(Pool.remainingNanos(Pool.deadlineNanos(-1L)) <= 0L);
+	}
+
+	@Test
+	public void leaseTime() {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPruneIntervalMs(0L);
+		p.open(1);
+		Long l = p.acquire(Duration.ofMillis(10L), 0L);
+		// a lease time of 0 never expires
+		assertEquals(0L, p.entries.get(l).getLeaseEnd());
+		p.release(l);
+		l = p.acquire(Duration.ofMillis(10L));
+		assertTrue(p.entries.get(l).getLeaseEnd() > 0L);
+		p.release(l);
+		p.close();
+	}
+
+}
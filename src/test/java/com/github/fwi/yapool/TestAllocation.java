@@ -0,0 +1,84 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies that acquiring and releasing a resource does not create garbage once a pool is warmed up.
+ */
+public class TestAllocation {
+
+	private static final Logger log = LoggerFactory.getLogger(TestAllocation.class);
+
+	static final int WARMUP_CYCLES = 200_000;
+	static final int CYCLES = 1_000_000;
+	/** Allows for a few incidental allocations (e.g. by the JIT-compiler or class loading), not one per cycle. */
+	static final long MAX_ALLOCATED_BYTES = 64 * 1024L;
+
+	@Test
+	public void pool() {
+		assertNoAllocation(new Pool<Object>());
+	}
+
+	@Test
+	public void boundPool() {
+		assertNoAllocation(new BoundPool<Object>());
+	}
+
+	@Test
+	public void prunedPool() {
+		assertNoAllocation(new PrunedPool<Object>());
+	}
+
+	@Test
+	public void slotPool() {
+		assertNoAllocation(new SlotPool<Object>());
+	}
+
+	private static void assertNoAllocation(Pool<Object> p) {
+
+		com.sun.management.ThreadMXBean mx = getThreadMXBean();
+		final Object resource = new Object();
+		p.setFactory(() -> resource);
+		if (p instanceof BoundPool) {
+			((BoundPool<Object>) p).open(1);
+		} else if (p instanceof SlotPool) {
+			((SlotPool<Object>) p).open(1);
+		}
+		try {
+			for (int i = 0; i < WARMUP_CYCLES; i++) {
+				p.release(p.acquire());
+			}
+			long threadId = Thread.currentThread().getId();
+			long before = mx.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < CYCLES; i++) {
+				p.release(p.acquire());
+			}
+			long allocated = mx.getThreadAllocatedBytes(threadId) - before;
+			log.debug(p.getClass().getSimpleName() + " allocated " + allocated + " bytes in " + CYCLES + " acquire/release cycles.");
+			assertTrue(p.getClass().getSimpleName() + " allocated " + allocated + " bytes in " + CYCLES + " acquire/release cycles.",
+					allocated < MAX_ALLOCATED_BYTES);
+		} finally {
+			p.close();
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadMXBean() {
+
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("Thread allocation measurement not available.", mx instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean smx = (com.sun.management.ThreadMXBean) mx;
+		Assume.assumeTrue("Thread allocation measurement not supported.", smx.isThreadAllocatedMemorySupported());
+		if (!smx.isThreadAllocatedMemoryEnabled()) {
+			smx.setThreadAllocatedMemoryEnabled(true);
+		}
+		return smx;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.github.fwi.yapool;
+
+import static com.github.fwi.yapool.PoolEvent.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.AsyncPoolEvents.OverflowPolicy;
+import com.github.fwi.yapool.AsyncPoolEvents.WaitStrategy;
+import com.github.fwi.yapool.listener.PoolEventQueue;
+
+public class TestAsyncPoolEvents {
+
+	static class Recorder implements IPoolCodeListener {
+
+		final List<Object> resources = new CopyOnWriteArrayList<Object>();
+		final List<String> threads = new CopyOnWriteArrayList<String>();
+		volatile long sleepMs;
+
+		@Override
+		public int getWantEventCodes() {
+			return mask(CODE_ACQUIRED);
+		}
+
+		@Override
+		public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+
+			resources.add(resource);
+			threads.add(Thread.currentThread().getName());
+			if (sleepMs > 0L) {
+				TestUtil.sleep(sleepMs);
+			}
+		}
+	}
+
+	static class SyncRecorder extends Recorder implements IPoolSyncListener {}
+
+	@Test
+	public void delivery() {
+
+		for (WaitStrategy ws : WaitStrategy.values()) {
+			AsyncPoolEvents events = new AsyncPoolEvents(16, 2, ws, OverflowPolicy.BLOCK).start();
+			Bound p = TestUtil.createPool();
+			p.setEvents(events);
+			Recorder async = new Recorder();
+			SyncRecorder sync = new SyncRecorder();
+			PoolEventQueue queue = new PoolEventQueue() {{ addWantEvent(ACQUIRED, "CUSTOM"); register = true; }};
+			events.addCodeListener(async);
+			events.addCodeListener(sync);
+			events.addPoolListener(queue);
+			assertFalse(events.wantPoolEvent(CODE_ACQUIRED));
+			p.open();
+			for (int i = 0; i < 100; i++) {
+				p.release(p.acquire());
+			}
+			p.fireEvent("CUSTOM", null);
+			p.close();
+			events.close();
+			assertEquals(0, events.getPendingCount());
+			assertEquals(100, async.resources.size());
+			assertEquals(100, sync.resources.size());
+			assertEquals(101, queue.queue.size());
+			assertEquals(1, queue.getCount("CUSTOM"));
+			assertTrue(queue.queue.getFirst().getTimeStamp() > 0L);
+			for (String t : async.threads) {
+				assertTrue(t, t.startsWith("yapool-events-"));
+			}
+			for (String t : sync.threads) {
+				assertEquals(Thread.currentThread().getName(), t);
+			}
+			assertEquals(0L, events.getDroppedCount());
+		}
+	}
+
+	@Test
+	public void dropNewest() {
+
+		AsyncPoolEvents events = new AsyncPoolEvents(3, 1, WaitStrategy.SLEEPING, OverflowPolicy.DROP_NEWEST);
+		assertEquals(4, events.getCapacity());
+		Recorder r = fire(events);
+		assertEquals(6L, events.getDroppedCount());
+		assertEquals(4, r.resources.size());
+		assertEquals(1L, r.resources.get(0));
+		assertEquals(4L, r.resources.get(3));
+	}
+
+	@Test
+	public void dropOldest() {
+
+		AsyncPoolEvents events = new AsyncPoolEvents(4, 1, WaitStrategy.YIELDING, OverflowPolicy.DROP_OLDEST);
+		Recorder r = fire(events);
+		assertEquals(6L, events.getDroppedCount());
+		assertEquals(4, r.resources.size());
+		assertEquals(7L, r.resources.get(0));
+		assertEquals(10L, r.resources.get(3));
+	}
+
+	/** Fires 10 events before the consumer thread is started. */
+	protected Recorder fire(AsyncPoolEvents events) {
+
+		Bound p = TestUtil.createPool();
+		Recorder r = new Recorder();
+		events.addCodeListener(r);
+		for (long i = 1L; i <= 10L; i++) {
+			events.firePoolEvent(p, CODE_ACQUIRED, i, System.nanoTime());
+		}
+		assertEquals(4, events.getPendingCount());
+		events.start();
+		events.close();
+		return r;
+	}
+
+	@Test
+	public void block() {
+
+		AsyncPoolEvents events = new AsyncPoolEvents(2, 1, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK).start();
+		Bound p = TestUtil.createPool();
+		Recorder r = new Recorder();
+		r.sleepMs = 1L;
+		events.addCodeListener(r);
+		for (long i = 1L; i <= 20L; i++) {
+			events.firePoolEvent(p, CODE_ACQUIRED, i, System.nanoTime());
+		}
+		events.close();
+		assertEquals(0L, events.getDroppedCount());
+		assertEquals(20, r.resources.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i + 1L, r.resources.get(i));
+		}
+	}
+
+	@Test
+	public void closeInterrupted() {
+
+		AsyncPoolEvents events = new AsyncPoolEvents(16, 2, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK).start();
+		Bound p = TestUtil.createPool();
+		Recorder r = new Recorder();
+		r.sleepMs = 50L;
+		events.addCodeListener(r);
+		for (long i = 1L; i <= 4L; i++) {
+			events.firePoolEvent(p, CODE_ACQUIRED, i, System.nanoTime());
+		}
+		Thread.currentThread().interrupt();
+		events.close();
+		// close does not wait when interrupted, the interrupt is not lost.
+		assertTrue(Thread.interrupted());
+		assertFalse(events.isRunning());
+		long deadline = System.currentTimeMillis() + 2000L;
+		while (r.resources.size() < 4 && System.currentTimeMillis() < deadline) {
+			TestUtil.sleep(1L);
+		}
+		// consumer threads still deliver the pending events.
+		assertEquals(4, r.resources.size());
+		assertEquals(0, events.getPendingCount());
+	}
+
+}
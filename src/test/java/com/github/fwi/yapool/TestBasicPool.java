@@ -48,5 +48,27 @@ public class TestBasicPool {
 		// more event checking is done in TestBoundPool
 		//log.debug(events.toString());
 	}
+
+	/**
+	 * Checks that pools used by the same thread do not mix up their (spare) entries.
+	 */
+	@Test
+	public void interleavedPools() {
+		
+		BasicPool p1 = TestUtil.createBasicPool();
+		BasicPool p2 = TestUtil.createBasicPool();
+		p1.release(p1.acquire());
+		p2.release(p2.acquire());
+		Long l1 = p1.acquire();
+		Long l2 = p2.acquire();
+		p1.release(l1);
+		p2.release(l2);
+		assertEquals(1, p1.getIdleSize());
+		assertEquals(1, p2.getIdleSize());
+		assertSame(l1, p1.acquire());
+		assertSame(l2, p2.acquire());
+		p1.close();
+		p2.close();
+	}
 	
 }
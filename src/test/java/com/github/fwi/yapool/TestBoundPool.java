@@ -1,6 +1,10 @@
 package com.github.fwi.yapool;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.fwi.yapool.BoundPool;
 import com.github.fwi.yapool.PoolEvent;
@@ -102,6 +106,294 @@ public class TestBoundPool {
 		p.close();
 	}
 	
+	@Test
+	public void threadCache() throws Exception {
+		
+		Bound p = TestUtil.createPool(null);
+		p.setThreadCache(true);
+		p.open(0);
+		Long l1 = p.acquire();
+		Long l2 = p.acquire();
+		p.release(l1);
+		// released resource is cached for this thread, not put in the idle-queue
+		assertEquals(1, p.getIdleSize());
+		assertEquals(0, p.idleStore.size());
+		assertEquals(l1, p.acquire());
+		assertEquals(2, p.getLeasedSize());
+		p.release(l1);
+		// another thread steals the cached resource instead of creating a new one
+		final Long[] stolen = new Long[1];
+		Thread t = new Thread(() -> stolen[0] = p.acquire());
+		t.start();
+		t.join();
+		assertEquals(l1, stolen[0]);
+		assertEquals(2, p.getFactory().createCount.get());
+		p.release(stolen[0]);
+		p.release(l2);
+		assertEquals(2, p.getIdleSize());
+		assertEquals(0, p.getLeasedSize());
+		// evicting and flushing includes cached resources
+		assertTrue(p.evictIdle(l1));
+		assertEquals(1, p.getSize());
+		p.close();
+		assertEquals(0, p.getIdleSize());
+		assertTrue(p.isEmpty());
+	}
+
+	@Test
+	public void minIdle() {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMinIdle(2);
+		p.open(0);
+		// idle resources are created in the background
+		long tend = System.currentTimeMillis() + 1000L;
+		while (p.getIdleSize() < 2 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(2, p.getIdleSize());
+		p.close();
+
+		p = TestUtil.createPool(null);
+		// run background tasks directly
+		p.setCreateExecutor(Runnable::run);
+		p.setMinIdle(2);
+		p.open(0);
+		assertEquals(2, p.getSize());
+		p.acquire();
+		assertEquals(2, p.getIdleSize());
+		assertEquals(3, p.getSize());
+		p.acquire();
+		assertEquals(2, p.getIdleSize());
+		Long l = p.acquire();
+		// maximum size is respected
+		assertEquals(1, p.getIdleSize());
+		assertTrue(p.isFull());
+		assertEquals(4, p.getFactory().createCount.get());
+		p.evictLeased(l, true);
+		// evicted resources are replaced with idle resources
+		p.acquire(0L);
+		assertEquals(1, p.getIdleSize());
+		assertEquals(5, p.getFactory().createCount.get());
+		p.close();
+	}
+
+	@Test
+	public void parallelOpen() {
+
+		final CountDownLatch started = new CountDownLatch(3);
+		final AtomicInteger parallel = new AtomicInteger();
+		BoundPool<Integer> p = new BoundPool<Integer>();
+		p.setFactory(new IPoolFactory<Integer>() {
+			@Override public Integer create() {
+				started.countDown();
+				// all creates must run at the same time for this wait to succeed.
+				try {
+					if (started.await(1000L, TimeUnit.MILLISECONDS)) {
+						return parallel.incrementAndGet();
+					}
+				} catch (InterruptedException ie) {
+					throw new RuntimeException(ie);
+				}
+				return -1;
+			}
+		});
+		p.setOpenParallelism(3);
+		p.open(3);
+		assertEquals(3, p.getIdleSize());
+		assertEquals(3, parallel.get());
+		p.close();
+	}
+
+	@Test
+	public void openReadyAmount() throws Exception {
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger created = new AtomicInteger();
+		BoundPool<Integer> p = new BoundPool<Integer>();
+		p.setFactory(new IPoolFactory<Integer>() {
+			@Override public Integer create() {
+				int i = created.incrementAndGet();
+				if (i > 1) {
+					// only the first resource is created without delay
+					try { gate.await(); } catch (InterruptedException ie) { throw new RuntimeException(ie); }
+				}
+				return i;
+			}
+		});
+		p.setOpenParallelism(2);
+		p.setOpenReadyAmount(1);
+		p.open(4);
+		assertTrue(p.isOpen());
+		assertEquals(1, p.getIdleSize());
+		// remaining resources are created in the background
+		gate.countDown();
+		long tend = System.currentTimeMillis() + 1000L;
+		while (p.getIdleSize() < 4 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(4, p.getIdleSize());
+		assertEquals(4, created.get());
+		p.close();
+	}
+
+	@Test
+	public void createPermits() {
+
+		final AtomicInteger creating = new AtomicInteger();
+		final AtomicInteger maxCreating = new AtomicInteger();
+		BoundPool<Integer> p = new BoundPool<Integer>();
+		p.setFactory(new IPoolFactory<Integer>() {
+			@Override public Integer create() {
+				int c = creating.incrementAndGet();
+				maxCreating.accumulateAndGet(c, Math::max);
+				TestUtil.sleep(10L);
+				creating.decrementAndGet();
+				return c;
+			}
+		});
+		p.setMaxSize(6);
+		p.setCreatePermits(2);
+		assertFalse(p.isSyncCreation());
+		p.setOpenParallelism(6);
+		p.open(6);
+		assertEquals(6, p.getIdleSize());
+		assertTrue(maxCreating.get() <= 2);
+		p.close();
+	}
+
+	@Test
+	public void createCoalescing() throws Exception {
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger created = new AtomicInteger();
+		BoundPool<Integer> p = new BoundPool<Integer>();
+		p.setFactory(new IPoolFactory<Integer>() {
+			@Override public Integer create() {
+				int i = created.incrementAndGet();
+				if (i > 1) {
+					try { gate.await(); } catch (InterruptedException ie) { throw new RuntimeException(ie); }
+				}
+				return i;
+			}
+		});
+		p.setMaxSize(10);
+		p.setCreateCoalescing(true);
+		p.open(0);
+		Integer first = p.acquire(1000L);
+		final List<Integer> acquired = new CopyOnWriteArrayList<Integer>();
+		Thread[] t = new Thread[3];
+		for (int i = 0; i < t.length; i++) {
+			t[i] = new Thread(() -> acquired.add(p.acquire(1000L)));
+		}
+		t[0].start();
+		t[1].start();
+		// each waiting acquirer triggers a create
+		long tend = System.currentTimeMillis() + 1000L;
+		while (created.get() < 3 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(3, created.get());
+		// a released resource is taken by one of the waiting acquirers
+		p.release(first);
+		while (acquired.isEmpty() && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(first, acquired.get(0));
+		// a new acquirer waits for the resource that is already being created
+		t[2].start();
+		while (p.getWaitingSize() < 2 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		TestUtil.sleep(10L);
+		assertEquals(3, created.get());
+		gate.countDown();
+		for (Thread thread : t) {
+			thread.join();
+		}
+		assertEquals(3, acquired.size());
+		assertEquals(3, created.get());
+		assertEquals(3, p.getLeasedSize());
+		p.close();
+	}
+
+	@Test
+	public void hedgedCreate() throws Exception {
+
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger created = new AtomicInteger();
+		BoundPool<Integer> p = new BoundPool<Integer>();
+		p.setFactory(new IPoolFactory<Integer>() {
+			@Override public Integer create() {
+				int i = created.incrementAndGet();
+				if (i > 1) {
+					try { gate.await(); } catch (InterruptedException ie) { throw new RuntimeException(ie); }
+				}
+				return i;
+			}
+		});
+		p.setMaxSize(2);
+		p.setHedgedCreate(true);
+		p.open(1);
+		Integer first = p.acquire(1000L);
+		final Integer[] acquired = new Integer[1];
+		Thread t = new Thread(() -> acquired[0] = p.acquire(1000L));
+		t.start();
+		long tend = System.currentTimeMillis() + 1000L;
+		while (created.get() < 2 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		// a released resource is taken while the new resource is still being created
+		p.release(first);
+		t.join(1000L);
+		assertEquals(first, acquired[0]);
+		gate.countDown();
+		// the created resource is not needed and becomes idle
+		while (p.getIdleSize() < 1 && System.currentTimeMillis() < tend) {
+			TestUtil.sleep(1L);
+		}
+		assertEquals(1, p.getIdleSize());
+		assertEquals(1, p.getLeasedSize());
+		assertEquals(2, created.get());
+		// an asynchronous acquire gets the idle resource, a new resource is created in the background.
+		assertEquals(Integer.valueOf(2), p.acquireAsync(1000L).get());
+		p.release(acquired[0]);
+		p.setMaxSize(3);
+		Integer l = p.acquireAsync(1000L).get();
+		assertEquals(Integer.valueOf(1), l);
+		assertEquals(Integer.valueOf(3), p.acquireAsync(1000L).get(1, TimeUnit.SECONDS));
+		assertEquals(3, p.getLeasedSize());
+		p.close();
+	}
+
+	@Test
+	public void equalResources() {
+
+		// Resources are administrated by identity, equal resources are different resources.
+		BoundPool<String> p = new BoundPool<String>();
+		p.setFactory(new IPoolFactory<String>() {
+			@Override public String create() { return new String("equal"); }
+		});
+		p.setMaxSize(20);
+		p.open(0);
+		String[] s = new String[20];
+		for (int i = 0; i < s.length; i++) s[i] = p.acquire();
+		assertEquals(20, p.getLeasedSize());
+		// a foreign resource that is equal to a leased resource is not part of the pool
+		assertNull(p.release(new String("equal")));
+		assertEquals(20, p.getLeasedSize());
+		assertTrue(p.evictLeased(s[0], true));
+		assertFalse(p.evictLeased(s[0], true));
+		for (int i = 1; i < s.length; i++) assertTrue(s[i] == p.release(s[i]));
+		assertEquals(19, p.getIdleSize());
+		assertEquals(0, p.getLeasedSize());
+		assertTrue(p.evictIdle(s[1]));
+		assertFalse(p.evictIdle(s[1]));
+		assertEquals(18, p.getSize());
+		p.close();
+		assertTrue(p.isEmpty());
+	}
+
 	@Test
 	public void releaseAfterClose() {
 		
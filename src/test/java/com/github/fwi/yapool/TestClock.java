@@ -0,0 +1,86 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestClock {
+
+	@Test
+	public void virtualExpiry() {
+
+		VirtualClock clock = new VirtualClock(1000L);
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setClock(clock);
+		p.setPruneIntervalMs(0L);
+		p.setMinSize(0);
+		p.setMaxIdleTimeMs(100L);
+		p.setMaxLeaseTimeMs(200L);
+		p.setMaxLifeTimeMs(500L);
+		p.open(2);
+		Long l = p.acquire();
+		clock.advance(100L);
+		p.prune();
+		// idle time not yet passed
+		assertEquals(2, p.getSize());
+		clock.advance(1L);
+		p.prune();
+		assertEquals(1, p.getIdledCount());
+		assertEquals(1, p.getSize());
+		clock.advance(100L);
+		p.prune();
+		assertEquals(1, p.getExpiredCount());
+		assertEquals(0, p.getSize());
+		p.release(l);
+		// idle resource would be removed before the life time ends
+		p.setMaxIdleTimeMs(0L);
+		l = p.acquire();
+		p.release(l);
+		clock.advance(501L);
+		p.prune();
+		assertEquals(1, p.getLifeEndCount());
+		assertEquals(0, p.getSize());
+		p.close();
+	}
+
+	@Test
+	public void eventTimeStamp() {
+
+		VirtualClock clock = new VirtualClock(1234L);
+		Bound p = TestUtil.createPool();
+		p.setClock(clock);
+		assertEquals(1234L, new PoolEvent(p, PoolEvent.CREATED).getTimeStamp());
+		p.setClock(null);
+		assertSame(IPoolClock.SYSTEM, p.getClock());
+	}
+
+	@Test
+	public void cachedClock() {
+
+		CachedClock clock = new CachedClock(5L);
+		long start = clock.currentTimeMillis();
+		assertFalse(clock.isStarted());
+		clock.start();
+		try {
+			TestUtil.sleep(50L);
+			assertTrue(clock.currentTimeMillis() > start);
+		} finally {
+			clock.stop();
+		}
+		assertFalse(clock.isStarted());
+		assertTrue(CachedClock.getInstance().isStarted());
+	}
+
+	@Test
+	public void monotonicClock() {
+
+		MonotonicClock clock = MonotonicClock.getInstance();
+		long previous = clock.currentTimeMillis();
+		for (int i = 0; i < 1000; i++) {
+			long now = clock.currentTimeMillis();
+			assertTrue(now >= previous);
+			previous = now;
+		}
+	}
+
+}
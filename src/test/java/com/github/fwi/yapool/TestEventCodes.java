@@ -0,0 +1,154 @@
+package com.github.fwi.yapool;
+
+import static com.github.fwi.yapool.PoolEvent.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.listener.PoolEventQueue;
+
+public class TestEventCodes {
+
+	static class CodeCounter implements IPoolCodeListener {
+
+		final int wantEventCodes;
+		final AtomicIntegerArray counts = new AtomicIntegerArray(CODE_COUNT);
+		volatile long lastNanoTime;
+
+		CodeCounter(int wantEventCodes) {
+			this.wantEventCodes = wantEventCodes;
+		}
+
+		@Override
+		public int getWantEventCodes() {
+			return wantEventCodes;
+		}
+
+		@Override
+		public void onPoolEvent(Pool<?> pool, int code, Object resource, long nanoTime) {
+			counts.incrementAndGet(code);
+			lastNanoTime = nanoTime;
+		}
+	}
+
+	@Test
+	public void codes() {
+
+		for (int i = 0; i < CODE_COUNT; i++) {
+			assertEquals(i, codeOf(actionOf(i)));
+		}
+		assertEquals(-1, codeOf("CUSTOM"));
+		assertEquals(0, bit(codeOf("CUSTOM")));
+		assertEquals(MASK_ALL, mask(CODE_CREATED, CODE_DESTROYING, CODE_ACQUIRING, CODE_ACQUIRED, CODE_RELEASING,
+				CODE_OPENED, CODE_CLOSED, CODE_LEASE_EXPIRED, CODE_IDLE_EXPIRED, CODE_INVALID));
+		assertEquals(CODE_RELEASING, new PoolEvent(this, RELEASING).getCode());
+	}
+
+	@Test
+	public void noPoolEventObjects() {
+
+		BasicFirePool p = new BasicFirePool();
+		CodeCounter cc = new CodeCounter(mask(CODE_ACQUIRED, CODE_RELEASING));
+		p.getEvents().addCodeListener(cc);
+		assertTrue(p.getEvents().wantEvent(CODE_ACQUIRED));
+		assertTrue(p.getEvents().wantEventAction(ACQUIRED));
+		assertFalse(p.getEvents().wantPoolEvent(CODE_ACQUIRED));
+		assertFalse(p.getEvents().wantEvent(CODE_CREATED));
+		long start = System.nanoTime();
+		p.release(p.acquire());
+		assertEquals(1, cc.counts.get(CODE_ACQUIRED));
+		assertEquals(1, cc.counts.get(CODE_RELEASING));
+		assertEquals(0, cc.counts.get(CODE_CREATED));
+		assertTrue(cc.lastNanoTime - start >= 0L);
+		assertEquals("No pool-event objects created", 0, p.peq.queue.size());
+
+		// a pool listener receives pool-event objects, a code listener does not receive events twice.
+		PoolEventQueue events = new PoolEventQueue() {{ addWantEvent(ACQUIRED); register = true; }};
+		p.getEvents().addPoolListener(events);
+		assertTrue(p.getEvents().wantPoolEvent(CODE_ACQUIRED));
+		p.release(p.acquire());
+		assertEquals(2, cc.counts.get(CODE_ACQUIRED));
+		assertEquals(1, events.queue.size());
+		assertEquals(1, p.peq.getCount(ACQUIRED));
+
+		p.getEvents().removeCodeListener(cc);
+		p.getEvents().removePoolListener(events);
+		assertFalse(p.getEvents().wantEvent(CODE_ACQUIRED));
+		p.release(p.acquire());
+		assertEquals(2, cc.counts.get(CODE_ACQUIRED));
+		p.close();
+	}
+
+	@Test
+	public void listenerRegistration() {
+
+		Bound p = TestUtil.createPool();
+		class Both extends CodeCounter implements IPoolListener {
+			Both() { super(MASK_ALL); }
+			@Override public boolean wantAllEventActions() { return true; }
+			@Override public java.util.Collection<String> getWantEventActions() { return null; }
+			@Override public boolean wantsEventAction(String poolEventAction) { return true; }
+			@Override public void onPoolEvent(PoolEvent poolEvent) { fail("Code listener should not receive pool-event objects."); }
+		}
+		Both both = new Both();
+		p.getEvents().addPoolListener(both);
+		assertFalse(p.getEvents().wantPoolEvent(CODE_OPENED));
+		p.open();
+		p.release(p.acquire());
+		p.close();
+		assertEquals(1, both.counts.get(CODE_OPENED));
+		assertEquals(1, both.counts.get(CODE_CLOSED));
+		assertEquals(1, both.counts.get(CODE_ACQUIRING));
+	}
+
+	@Test
+	public void defaultCodeListener() {
+
+		// pool events that only implement the methods required by IPoolEvents
+		final List<IPoolListener> listeners = new CopyOnWriteArrayList<IPoolListener>();
+		IPoolEvents events = new IPoolEvents() {
+			@Override public boolean wantEventAction(String poolEvent) {
+				for (IPoolListener l : listeners) {
+					if (l.wantAllEventActions() || l.wantsEventAction(poolEvent)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			@Override public void addPoolListener(IPoolListener listener) { listeners.add(listener); }
+			@Override public void removePoolListener(IPoolListener listener) { listeners.remove(listener); }
+			@Override public void firePoolEvent(PoolEvent poolEvent) {
+				for (IPoolListener l : listeners) {
+					if (l.wantAllEventActions() || l.wantsEventAction(poolEvent.getAction())) {
+						l.onPoolEvent(poolEvent);
+					}
+				}
+			}
+			@Override public void clearListeners() { listeners.clear(); }
+		};
+		Bound p = TestUtil.createPool();
+		p.setEvents(events);
+		CodeCounter cc = new CodeCounter(mask(CODE_ACQUIRED, CODE_RELEASING));
+		events.addCodeListener(cc);
+		assertTrue(events.wantEvent(CODE_ACQUIRED));
+		assertFalse(events.wantEvent(CODE_CREATED));
+		p.open();
+		long start = System.nanoTime();
+		p.release(p.acquire());
+		assertEquals(1, cc.counts.get(CODE_ACQUIRED));
+		assertEquals(1, cc.counts.get(CODE_RELEASING));
+		assertEquals(0, cc.counts.get(CODE_CREATED));
+		assertTrue(cc.lastNanoTime - start >= 0L);
+
+		events.removeCodeListener(cc);
+		assertTrue(listeners.isEmpty());
+		p.release(p.acquire());
+		assertEquals(1, cc.counts.get(CODE_ACQUIRED));
+		p.close();
+	}
+
+}
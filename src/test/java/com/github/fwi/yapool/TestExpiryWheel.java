@@ -0,0 +1,83 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestExpiryWheel {
+
+	@Test
+	public void expireInOrder() {
+
+		// 8 slots of 10 ms, one rotation is 80 ms.
+		ExpiryWheel<String> w = new ExpiryWheel<String>(10L, 8, 1000L);
+		w.add("a", 1015L);
+		w.add("b", 1050L);
+		// beyond one rotation
+		w.add("c", 1215L);
+		ExpiryWheel.Expiry<String> d = w.add("d", 1020L);
+		assertEquals(4, w.size());
+		assertEquals(0, w.expire(1010L).size());
+		List<ExpiryWheel.Expiry<String>> expired = w.expire(1016L);
+		assertEquals(1, expired.size());
+		assertEquals("a", expired.get(0).getItem());
+		// cancelled expiries are not returned
+		d.cancel();
+		assertEquals(0, w.expire(1049L).size());
+		assertEquals(2, w.size());
+		expired = w.expire(1100L);
+		assertEquals(1, expired.size());
+		assertEquals("b", expired.get(0).getItem());
+		// item in next rotation is kept
+		assertEquals(0, w.expire(1200L).size());
+		assertEquals(1, w.size());
+		// an expiry with a passed deadline is returned on the next call
+		ExpiryWheel.Expiry<String> x = expired.get(0);
+		w.add(x);
+		expired = w.expire(1300L);
+		assertEquals(2, expired.size());
+		assertEquals(0, w.size());
+	}
+
+	@Test
+	public void slotsRoundedUp() {
+
+		ExpiryWheel<String> w = new ExpiryWheel<String>(1L, 1000, 0L);
+		assertEquals(1024, w.getSlots());
+		for (int i = 0; i < 5000; i++) {
+			w.add("i" + i, i);
+		}
+		// time passed is larger than one rotation, all slots are visited once.
+		assertEquals(4999, w.expire(4999L).size());
+		assertEquals(1, w.size());
+		assertEquals(1, w.expire(5000L).size());
+	}
+
+	@Test
+	public void renewedLease() {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setMaxLeaseTimeMs(100L);
+		p.setPruneIntervalMs(0L);
+		p.open(1);
+		Long l = p.acquire();
+		TestUtil.sleep(60L);
+		p.release(l);
+		// a new lease does not add the resource to the wheel again
+		assertEquals(l, p.acquire());
+		assertEquals(1, p.leaseWheel.size());
+		TestUtil.sleep(60L);
+		// first lease end passed, but the resource was leased again
+		assertEquals(0, p.checkLeaseTime());
+		assertEquals(1, p.leaseWheel.size());
+		TestUtil.sleep(60L);
+		assertEquals(1, p.checkLeaseTime());
+		assertEquals(0, p.getLeasedSize());
+		assertEquals(0, p.leaseWheel.size());
+		p.close();
+		assertEquals(0, p.lifeWheel.expire(Long.MAX_VALUE).size());
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestHandOff {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void fairInOrder() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(1);
+		p.setFair(true);
+		assertTrue(p.isHandOff());
+		p.open(1);
+		Long l = p.acquire();
+		final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+		Thread[] t = new Thread[3];
+		for (int i = 0; i < t.length; i++) {
+			final int waiter = i;
+			t[i] = new Thread(() -> {
+				Long r = p.acquire(1000L);
+				order.add(waiter);
+				p.release(r);
+			});
+			t[i].start();
+			// make sure threads wait in order
+			while (p.getWaitingSize() < i + 1) {
+				TestUtil.sleep(1L);
+			}
+		}
+		p.release(l);
+		for (Thread thread : t) {
+			thread.join();
+		}
+		assertEquals("[0, 1, 2]", order.toString());
+		assertEquals(0, p.getWaitingSize());
+		assertEquals(1, p.getIdleSize());
+		assertEquals(1, p.getFactory().createCount.get());
+		p.close();
+	}
+
+	@Test
+	public void handOffSkipsIdleStore() throws Exception {
+
+		Bound p = TestUtil.createPool(null);
+		p.setMaxSize(1);
+		p.setHandOff(true);
+		p.open(1);
+		Long l = p.acquire();
+		try {
+			p.acquire(10L);
+			fail("Acquire must time out.");
+		} catch (NoSuchElementException expected) {}
+		assertEquals(0, p.getWaitingSize());
+		final Long[] handedOff = new Long[1];
+		Thread t = new Thread(() -> handedOff[0] = p.acquire(1000L));
+		t.start();
+		while (p.getWaitingSize() < 1) {
+			TestUtil.sleep(1L);
+		}
+		p.release(l);
+		t.join();
+		assertEquals(l, handedOff[0]);
+		assertEquals(0, p.idleStore.size());
+		assertEquals(1, p.getLeasedSize());
+		p.release(l);
+		p.close();
+	}
+
+	@Test
+	public void handOffRunners() {
+
+		Bound p = TestUtil.createPool(null);
+		p.setHandOff(true);
+		p.setThreadCache(true);
+		p.setMaxSize(2);
+		p.setMaxAcquireTimeMs(1000L);
+		p.open();
+		PoolRunnerStopper stopper = new PoolRunnerStopper();
+		Thread[] t = new Thread[8];
+		CountDownLatch latch = new CountDownLatch(t.length);
+		for (int i = 0; i < t.length; i++) {
+			t[i] = TestUtil.start(new PoolRunner<Long>(p, stopper), latch);
+		}
+		TestUtil.await(latch);
+		TestUtil.sleep(100L);
+		stopper.setStop(true);
+		for (Thread thread : t) {
+			try { thread.join(); } catch (InterruptedException ignored) {}
+		}
+		assertEquals(2, p.getFactory().createCount.get());
+		assertEquals(0, p.getLeasedSize());
+		assertEquals(0, p.getWaitingSize());
+		assertEquals(2, p.getIdleSize());
+		p.close();
+	}
+
+	@Test
+	public void dequeStoreKeepsPermits() {
+
+		DequeIdleStore<Long> store = new DequeIdleStore<Long>();
+		store.addFirst(1L);
+		store.addFirst(2L);
+		store.setFair(true);
+		assertTrue(store.isFair());
+		assertEquals(2, store.size());
+		assertEquals(Long.valueOf(2L), store.poll());
+		assertEquals(Long.valueOf(1L), store.poll());
+		assertNull(store.poll());
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestIdleStore {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void dequeStore() throws Exception {
+		storeOperations(new DequeIdleStore<Long>());
+	}
+
+	@Test
+	public void dequeStoreFair() throws Exception {
+
+		DequeIdleStore<Long> store = new DequeIdleStore<Long>(true);
+		storeOperations(store);
+		final Long[] waited = new Long[2];
+		Thread[] t = new Thread[waited.length];
+		for (int i = 0; i < t.length; i++) {
+			final int index = i;
+			t[i] = new Thread(() -> {
+				try {
+					waited[index] = store.poll(1L, TimeUnit.SECONDS);
+				} catch (InterruptedException ignored) {}
+			});
+			t[i].start();
+			// waiting threads are served in the order they started waiting.
+			while (store.getWaitingSize() < i + 1) {
+				TestUtil.sleep(1L);
+			}
+		}
+		store.addFirst(1L);
+		// resource is handed to the waiting thread, a polling thread cannot overtake.
+		assertNull(store.poll());
+		assertEquals(0, store.size());
+		t[0].join();
+		assertEquals(Long.valueOf(1L), waited[0]);
+		store.addFirst(2L);
+		t[1].join();
+		assertEquals(Long.valueOf(2L), waited[1]);
+		assertEquals(0, store.getWaitingSize());
+		store.setFair(false);
+		assertFalse(store.isFair());
+	}
+
+	@Test
+	public void lockFreeStore() throws Exception {
+		storeOperations(new LockFreeIdleStore<Long>());
+	}
+
+	@Test
+	public void lockFreeStoreNotFair() {
+
+		LockFreeIdleStore<Long> store = new LockFreeIdleStore<Long>();
+		store.setFair(false);
+		try {
+			store.setFair(true);
+			fail("Lock-free store cannot be fair.");
+		} catch (UnsupportedOperationException expected) {
+			// expected
+		}
+		assertFalse(store.isFair());
+	}
+
+	protected void storeOperations(IIdleStore<Long> store) throws Exception {
+
+		assertNull(store.poll());
+		assertNull(store.poll(1L, TimeUnit.MILLISECONDS));
+		assertNull(store.pollLast());
+		for (long l = 1L; l < 6L; l++) {
+			store.addFirst(l);
+		}
+		assertEquals(5, store.size());
+		// LIFO
+		assertEquals(Long.valueOf(5L), store.poll());
+		// longest idle at the tail
+		assertEquals(Long.valueOf(1L), store.peekLast());
+		assertEquals(Long.valueOf(1L), store.pollLast());
+		assertTrue(store.remove(3L));
+		assertFalse(store.remove(3L));
+		assertEquals(2, store.size());
+		assertEquals(Long.valueOf(2L), store.pollLast());
+		assertEquals(Long.valueOf(4L), store.poll());
+		assertEquals(0, store.size());
+		assertNull(store.peekLast());
+
+		// a waiting thread gets the added resource
+		final Long[] waited = new Long[1];
+		final CountDownLatch latch = new CountDownLatch(1);
+		Thread t = new Thread(() -> {
+			latch.countDown();
+			try {
+				waited[0] = store.poll(1L, TimeUnit.SECONDS);
+			} catch (InterruptedException ignored) {}
+		});
+		t.start();
+		latch.await();
+		while (store.getWaitingSize() == 0) {
+			TestUtil.sleep(1L);
+		}
+		store.addFirst(6L);
+		t.join();
+		assertEquals(Long.valueOf(6L), waited[0]);
+		assertEquals(0, store.getWaitingSize());
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void lockFreeBoundPool() {
+
+		Bound p = TestUtil.createPool(null);
+		p.setIdleStore(new LockFreeIdleStore<PoolEntry<Long>>());
+		p.setMaxSize(2);
+		p.setMaxAcquireTimeMs(1000L);
+		p.open();
+		PoolRunnerStopper stopper = new PoolRunnerStopper();
+		Thread[] t = new Thread[8];
+		CountDownLatch latch = new CountDownLatch(t.length);
+		for (int i = 0; i < t.length; i++) {
+			t[i] = TestUtil.start(new PoolRunner<Long>(p, stopper), latch);
+		}
+		TestUtil.await(latch);
+		TestUtil.sleep(100L);
+		stopper.setStop(true);
+		for (Thread thread : t) {
+			try { thread.join(); } catch (InterruptedException ignored) {}
+		}
+		assertEquals(2, p.getFactory().createCount.get());
+		assertEquals(0, p.getLeasedSize());
+		assertEquals(2, p.getIdleSize());
+		p.close();
+		assertEquals(0, p.getIdleSize());
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.jmx.JmxRegistrar;
+import com.github.fwi.yapool.jmx.PoolJmx;
+import com.github.fwi.yapool.jmx.PoolsMapJmx;
+
+public class TestJmx {
+
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	@Test
+	public void prunedPool() throws Exception {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPoolName("jmx-test");
+		p.setRegistrar(new JmxRegistrar());
+		p.setMinSize(1);
+		p.setMaxSize(4);
+		ObjectName name = PoolJmx.getObjectName(p);
+		assertEquals("com.github.fwi.yapool:type=Pruned,name=\"jmx-test\"", name.toString());
+		assertFalse(server.isRegistered(name));
+		p.open();
+		assertTrue(server.isRegistered(name));
+		for (int i = 0; i < 10; i++) {
+			Long l = p.acquire();
+			TestUtil.sleep(1L);
+			p.release(l);
+		}
+		Long leased = p.acquire();
+		assertEquals(1, server.getAttribute(name, "LeasedSize"));
+		assertEquals(1, server.getAttribute(name, "Size"));
+		assertEquals(0, server.getAttribute(name, "WaitingSize"));
+		assertEquals(11L, server.getAttribute(name, "AcquireCount"));
+		assertEquals(0L, server.getAttribute(name, "ExpiredCount"));
+		long leaseP50 = (Long) server.getAttribute(name, "LeaseTimeMicrosP50");
+		assertTrue("Lease time: " + leaseP50, leaseP50 >= 1000L);
+		assertTrue((Long) server.getAttribute(name, "LeaseTimeMicrosP999") <= (Long) server.getAttribute(name, "LeaseTimeMicrosMax"));
+
+		server.invoke(name, "resize", new Object[] { 2, 8 }, new String[] { "int", "int" });
+		assertEquals(2, p.getMinSize());
+		assertEquals(8, p.getMaxSize());
+		assertEquals(2, p.getSize());
+		server.invoke(name, "prune", null, null);
+		assertEquals(2, server.invoke(name, "flush", null, null));
+		assertEquals(0, p.getSize());
+		p.release(leased);
+		server.invoke(name, "resetStats", null, null);
+		assertEquals(0L, server.getAttribute(name, "AcquireCount"));
+
+		p.close();
+		assertFalse("MBean is unregistered when the pool is closed.", server.isRegistered(name));
+	}
+
+	@Test
+	public void poolsMap() throws Exception {
+
+		PoolsMap<Long, String> pools = new PoolsMap<>(new TestPoolsMap.PoolsMapFactory());
+		pools.setPoolsName("jmx-map");
+		pools.setRegistrar(new JmxRegistrar());
+		pools.open();
+		ObjectName name = PoolsMapJmx.getObjectName(pools);
+		ObjectName child = new ObjectName("com.github.fwi.yapool:type=PoolsMap,name=\"jmx-map\",key=\"1000\"");
+		try {
+			assertTrue(server.isRegistered(name));
+			pools.release("1000", pools.acquire("1000"));
+			assertTrue(server.isRegistered(child));
+			assertEquals(1, server.getAttribute(name, "Size"));
+			assertArrayEquals(new String[] { "1000" }, (String[]) server.getAttribute(name, "PoolKeys"));
+			assertEquals(1L, server.getAttribute(child, "AcquireCount"));
+		} finally {
+			pools.close();
+		}
+		assertFalse(server.isRegistered(name));
+		assertFalse(server.isRegistered(child));
+	}
+
+	@Test
+	public void unregisterOnCloseWithReplacedEvents() throws Exception {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPoolName("jmx-replaced-events");
+		p.setRegistrar(new JmxRegistrar());
+		ObjectName name = PoolJmx.getObjectName(p);
+		p.open();
+		assertTrue(server.isRegistered(name));
+		// the MBean no longer receives the closed event
+		p.setEvents(new PoolEvents());
+		p.close();
+		assertFalse("MBean is unregistered when the pool is closed.", server.isRegistered(name));
+	}
+
+	@Test
+	public void registrationRolledBack() throws Exception {
+
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPoolName("jmx-no-events");
+		p.setEvents(new PoolEvents() {
+			@Override
+			public synchronized void addCodeListener(IPoolCodeListener listener) {
+				throw new IllegalStateException("No code listeners.");
+			}
+		});
+		p.setRegistrar(new JmxRegistrar());
+		ObjectName name = PoolJmx.getObjectName(p);
+		p.open();
+		assertFalse("MBean is not registered without pool events.", server.isRegistered(name));
+		p.close();
+	}
+
+}
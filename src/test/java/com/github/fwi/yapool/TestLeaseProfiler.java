@@ -0,0 +1,97 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.listener.LeaseProfiler;
+import com.github.fwi.yapool.listener.LeaseProfiler.CallSite;
+
+public class TestLeaseProfiler {
+
+	@Test
+	public void callSites() {
+
+		Bound p = TestUtil.createPool();
+		p.setMaxSize(8);
+		LeaseProfiler profiler = new LeaseProfiler(p);
+		p.getEvents().addPoolListener(profiler);
+		p.open();
+		try {
+			for (int i = 0; i < 5; i++) {
+				borrow(p);
+			}
+			List<Long> hoarded = hoard(p, 3);
+			List<CallSite> top = profiler.getTopCallSites(1);
+			assertEquals(1, top.size());
+			CallSite hoarder = top.get(0);
+			assertEquals("hoard", hoarder.getFrames().get(0).getMethodName());
+			assertEquals(3L, hoarder.getOutstanding());
+			assertEquals(3L, hoarder.getCount());
+			assertEquals(0L, hoarder.getHoldTimes().getCount());
+			String report = profiler.getReport(2);
+			assertTrue(report, report.contains("outstanding leases: 3"));
+			assertTrue(report, report.contains("longest outstanding hold time"));
+
+			CallSite borrower = profiler.getTopCallSites(2).get(1);
+			assertEquals("borrow", borrower.getFrames().get(0).getMethodName());
+			assertEquals(5L, borrower.getCount());
+			assertEquals(0L, borrower.getOutstanding());
+			assertEquals(5L, borrower.getHoldTimes().getCount());
+			assertEquals(LeaseProfiler.DEFAULT_CALL_SITE_DEPTH, borrower.getFrames().size());
+
+			TestUtil.sleep(30L);
+			for (Long l : hoarded) {
+				p.release(l);
+			}
+			assertEquals(0L, hoarder.getOutstanding());
+			assertEquals(3L, hoarder.getHoldTimes().getCount());
+			assertEquals(hoarder, profiler.getTopCallSites(1, LeaseProfiler.BY_TOTAL_HOLD_TIME).get(0));
+		} finally {
+			p.close();
+		}
+	}
+
+	@Test
+	public void boundedCallSites() {
+
+		Bound p = TestUtil.createPool();
+		LeaseProfiler profiler = new LeaseProfiler(p, new LeaserTraceSampler(2, LeaseProfiler.DEFAULT_MAX_DEPTH));
+		profiler.setMaxCallSites(1);
+		p.getEvents().addPoolListener(profiler);
+		p.open();
+		try {
+			for (int i = 0; i < 4; i++) {
+				borrow(p);
+			}
+			p.release(hoard(p, 1).get(0));
+			p.release(hoard(p, 1).get(0));
+			List<CallSite> callSites = profiler.getCallSites();
+			assertEquals(2, callSites.size());
+			assertEquals("Every other lease is sampled.", 2L, callSites.get(0).getCount());
+			assertEquals("other", callSites.get(1).getName());
+			assertEquals(1L, callSites.get(1).getCount());
+			profiler.clear();
+			assertTrue(profiler.getCallSites().isEmpty());
+		} finally {
+			p.close();
+		}
+	}
+
+	private static void borrow(Bound p) {
+		p.release(p.acquire());
+	}
+
+	private static List<Long> hoard(Bound p, int amount) {
+
+		List<Long> l = new ArrayList<Long>();
+		for (int i = 0; i < amount; i++) {
+			l.add(p.acquire());
+		}
+		return l;
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+public class TestLeaserTrace {
+
+	@Test
+	public void captureAndSample() {
+
+		LeaserTrace trace = LeaserTrace.capture(3);
+		StackTraceElement[] st = trace.getStackTrace();
+		assertEquals(3, st.length);
+		assertEquals(getClass().getName(), st[0].getClassName());
+		assertEquals("captureAndSample", st[0].getMethodName());
+		assertSame("Stack trace is rendered once.", st, trace.getStackTrace());
+		assertTrue(trace.getLeaser().contains(Thread.currentThread().getName()));
+		assertTrue(trace.toString(), trace.toString().contains("captureAndSample"));
+
+		LeaserTraceSampler sampler = new LeaserTraceSampler(3, 1);
+		int sampled = 0;
+		for (int i = 0; i < 9; i++) {
+			LeaserTrace t = sampler.sample();
+			if (t != null) {
+				sampled++;
+				assertEquals(1, t.getStackTrace().length);
+				assertEquals("captureAndSample", t.getStackTrace()[0].getMethodName());
+			}
+		}
+		assertEquals(3, sampled);
+		sampler.setSampleProbability(1.0);
+		assertNotNull(sampler.sample());
+		try {
+			sampler.setSampleInterval(0);
+			fail("Sample interval must be positive.");
+		} catch (IllegalArgumentException expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void expiredLeaseTrace() {
+
+		final List<LeaserTrace> acquiredTraces = new CopyOnWriteArrayList<LeaserTrace>();
+		Pruned p = new Pruned() {
+			@Override
+			protected void logExpiredTrace(Long t, Thread user, LeaserTrace acquiredTrace) {
+				acquiredTraces.add(acquiredTrace);
+				super.logExpiredTrace(t, user, acquiredTrace);
+			}
+		};
+		StartTraceTest st = new StartTraceTest(p);
+		st.setSampler(new LeaserTraceSampler(2, 8));
+		p.getEvents().addPoolListener(st);
+		p.setLeaserTraceSampler(new LeaserTraceSampler(2, 8));
+		p.setLogLeaseExpiredTrace(true);
+		p.setMaxLeaseTimeMs(20L);
+		p.open(0);
+		try {
+			p.acquire();
+			p.acquire();
+			assertEquals("Only one out of two leases is sampled.", 1, st.getSize());
+			TestUtil.sleep(50L);
+			p.prune();
+			assertEquals(2, acquiredTraces.size());
+			assertEquals(2, st.logAmount);
+			LeaserTrace sampled = (acquiredTraces.get(0) == null ? acquiredTraces.get(1) : acquiredTraces.get(0));
+			assertNotNull(sampled);
+			assertTrue(acquiredTraces.contains(null));
+			assertEquals(8, sampled.getStackTrace().length);
+		} finally {
+			p.close();
+		}
+	}
+
+	@Test
+	public void acquiredTraceSkipsPoolFrames() {
+
+		Pruned p = new Pruned();
+		StartTraceTest st = new StartTraceTest(p);
+		st.setSampler(new LeaserTraceSampler(1, 1));
+		p.getEvents().addPoolListener(st);
+		p.open(0);
+		try {
+			p.acquire();
+			assertEquals(1, st.getSize());
+			String trace = st.toString();
+			assertTrue(trace, trace.contains(getClass().getName() + ".acquiredTraceSkipsPoolFrames("));
+			assertFalse(trace, trace.contains(PoolEvents.class.getName()));
+		} finally {
+			p.close();
+		}
+	}
+
+}
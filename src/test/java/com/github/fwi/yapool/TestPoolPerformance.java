@@ -0,0 +1,121 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.listener.PoolPerformance;
+
+public class TestPoolPerformance {
+
+	@Test
+	public void evictDestroyed() {
+
+		Bound p = TestUtil.createPool();
+		PoolPerformance pp = new PoolPerformance(p);
+		p.getEvents().addPoolListener(pp);
+		p.setMaxSize(4);
+		p.open();
+		final int threads = 4, acquires = 1_000;
+		Thread[] t = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			t[i] = new Thread(() -> {
+				for (int j = 0; j < acquires; j++) {
+					p.release(p.acquire());
+				}
+			});
+			t[i].start();
+		}
+		for (Thread thread : t) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		long total = (long) threads * acquires;
+		assertEquals(total, pp.acquireCount.sum());
+		assertEquals(total, pp.getPoolStats().acquired.getCount());
+		assertEquals(total, pp.getPoolStats().leased.getCount());
+		assertEquals(total, pp.getPoolStats().acquireTimes.getTotalCount());
+		assertEquals(total, pp.getPoolStats().leaseTimes.getTotalCount());
+		assertNull("No histograms per resource", pp.getDestroyedStats().acquireTimes);
+		assertEquals(0L, pp.acquiring.sum());
+		assertTrue(pp.toString().contains("All resources:"));
+
+		p.close();
+		assertEquals(pp.created.sum(), pp.destroyed.sum());
+		assertEquals(total, pp.getDestroyedStats().acquireCount.sum());
+		assertEquals(total, pp.getDestroyedStats().acquired.getCount());
+		assertFalse("Destroyed resources are evicted", pp.toString().contains("Resource statistics for"));
+	}
+
+	@Test
+	public void acquireFailed() {
+
+		Bound p = TestUtil.createPool();
+		PoolPerformance pp = new PoolPerformance(p);
+		p.getEvents().addPoolListener(pp);
+		p.setMaxSize(1);
+		p.setMaxAcquireTimeMs(1L);
+		p.open();
+		Long l = p.acquire();
+		try {
+			p.acquire();
+			fail("Pool has no resource available.");
+		} catch (NoSuchElementException expected) {
+			// expected
+		}
+		assertEquals(1L, pp.acquireFailed.sum());
+		assertEquals(1L, pp.acquireCount.sum());
+		assertEquals(0L, pp.acquiring.sum());
+		p.release(l);
+		p.close();
+	}
+
+	/**
+	 * An asynchronous acquire completes on the releasing thread (or the scheduler's thread on time-out),
+	 * the acquire time must still be measured from the start of the acquire.
+	 */
+	@Test
+	public void acquireAsync() throws Exception {
+
+		Bound p = TestUtil.createPool();
+		PoolPerformance pp = new PoolPerformance(p);
+		p.getEvents().addPoolListener(pp);
+		p.setMaxSize(1);
+		p.open();
+		Long l = p.acquire();
+		CompletableFuture<Long> f = p.acquireAsync(1000L);
+		assertEquals(1L, pp.acquiring.sum());
+		Thread releaser = new Thread(() -> {
+			TestUtil.sleep(20L);
+			p.release(l);
+		});
+		releaser.start();
+		assertEquals(l, f.get(1, TimeUnit.SECONDS));
+		releaser.join();
+		assertEquals(2L, pp.acquireCount.sum());
+		assertEquals(0L, pp.acquiring.sum());
+		assertEquals(2L, pp.getPoolStats().acquireTimes.getTotalCount());
+		assertTrue(pp.getPoolStats().acquireTimes.getMax() >= 20_000L);
+		// time-out completes on the scheduler's thread
+		try {
+			p.acquireAsync(1L).get(1, TimeUnit.SECONDS);
+			fail("Pool has no resource available.");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof NoSuchElementException);
+		}
+		assertEquals(1L, pp.acquireFailed.sum());
+		assertEquals(0L, pp.acquiring.sum());
+		assertFalse(pp.toString().contains("Acquires stuck"));
+		p.release(l);
+		p.close();
+	}
+
+}
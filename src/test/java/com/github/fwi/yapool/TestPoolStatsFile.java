@@ -0,0 +1,90 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.stats.PoolStatsPublisher;
+import com.github.fwi.yapool.stats.PoolStatsReader;
+import com.github.fwi.yapool.stats.PoolStatsReader.PoolStats;
+
+public class TestPoolStatsFile {
+
+	@Test
+	public void publishAndRead() throws Exception {
+
+		Path file = Files.createTempFile("yapool", ".stats");
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPoolName("stats-test");
+		p.setMaxSize(2);
+		Bound b = TestUtil.createPool();
+		b.setPoolName("bound-test");
+		PoolStatsPublisher publisher = new PoolStatsPublisher(file, 2);
+		assertFalse(publisher.isAcquireWaitStats());
+		publisher.setAcquireWaitStats(true);
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		try (PoolStatsReader reader = new PoolStatsReader(file)) {
+			assertEquals(0, reader.getPoolCount());
+			publisher.addPool(p);
+			publisher.addPool(b);
+			try {
+				publisher.addPool(p);
+				fail("No room for a third pool.");
+			} catch (IllegalStateException expected) {
+				// expected
+			}
+			p.open();
+			b.open();
+			Long l = p.acquire();
+			p.release(p.acquire());
+			// asynchronous acquire completes on another thread
+			p.release(p.acquireAsync(100L).get());
+			publisher.setPublishIntervalMs(10L);
+			publisher.start(executor);
+			TestUtil.sleep(50L);
+			assertEquals(2, reader.getPoolCount());
+			assertEquals(10L, reader.getPublishIntervalMs());
+			PoolStats s = reader.read(0);
+			assertEquals("stats-test", s.name);
+			assertEquals(2L, s.size);
+			assertEquals(1L, s.leased);
+			assertEquals(1L, s.idle);
+			assertEquals(2L, s.created);
+			assertEquals(3L, s.acquireCount);
+			assertEquals(0L, s.acquireFailed);
+			assertTrue(s.getAcquireWaitPercentile(100.0) <= s.waitMax);
+			String report = s.getReport(null);
+			assertTrue(report, report.startsWith("stats-test size: 2, leased: 1, idle: 1, created: 2, acquired: 3"));
+			assertEquals("bound-test", reader.read(1).name);
+
+			p.release(l);
+			p.close();
+			publisher.close();
+			PoolStats closed = reader.read(0);
+			assertTrue(closed.closed);
+			assertEquals(0L, closed.size);
+			assertTrue(closed.getReport(s), closed.getReport(s).contains("closed"));
+		} finally {
+			b.close();
+			executor.shutdownNow();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notAStatsFile() throws Exception {
+
+		Path file = Files.createTempFile("yapool", ".txt");
+		try {
+			Files.write(file, new byte[128]);
+			new PoolStatsReader(file).close();
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
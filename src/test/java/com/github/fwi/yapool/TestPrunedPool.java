@@ -172,6 +172,24 @@ public class TestPrunedPool {
 		p.close();
 	}
 
+	@Test
+	public void idledThreadCache() {
+
+		Pruned p  = TestUtil.createPrunedPool(null);
+		p.setThreadCache(true);
+		p.setMaxIdleTimeMs(5L);
+		p.open(0);
+		Long l = p.acquire();
+		p.release(l);
+		assertEquals(1, p.getIdleSize());
+		TestUtil.sleep(10L);
+		p.prune();
+		assertEquals(1, p.getIdledCount());
+		assertEquals(0, p.getIdleSize());
+		assertTrue(p.isEmpty());
+		p.close();
+	}
+
 	@Test
 	public void interruptLeaser() {
 
@@ -217,4 +235,23 @@ public class TestPrunedPool {
 		assertEquals(1, p.getLifeEndCount());
 	}
 
+	@Test
+	public void shorterLeaseAfterRelease() {
+
+		VirtualClock clock = new VirtualClock();
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setClock(clock);
+		p.setMaxLeaseTimeMs(60_000L);
+		p.open(1);
+		p.release(p.acquire());
+		// the entry's lease end of the previous (long) lease is still in the lease wheel.
+		Long l = p.acquire(0L, 100L);
+		clock.advance(101L);
+		p.prune();
+		assertEquals("Shorter lease expires on time.", 1, p.getExpiredCount());
+		assertEquals(0, p.getLeasedSize());
+		p.release(l);
+		p.close();
+	}
+
 }
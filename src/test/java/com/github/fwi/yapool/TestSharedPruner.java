@@ -2,6 +2,8 @@ package com.github.fwi.yapool;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.github.fwi.yapool.PoolEvent;
 import com.github.fwi.yapool.PoolPruner;
 import com.github.fwi.yapool.listener.PoolEventLogger;
@@ -64,4 +66,32 @@ public class TestSharedPruner {
 		TestUtil.sleep(50L);
 		assertFalse(pruner.isRunning());
 	}
+
+	@Test
+	public void prunedPoolOverloads() {
+
+		final AtomicInteger added = new AtomicInteger();
+		final AtomicInteger removed = new AtomicInteger();
+		PoolPruner pruner = new PoolPruner() {
+			@Override
+			public boolean add(PrunedPool<?> pool) {
+				added.incrementAndGet();
+				return super.add(pool);
+			}
+			@Override
+			public boolean remove(PrunedPool<?> pool) {
+				removed.incrementAndGet();
+				return super.remove(pool);
+			}
+		};
+		Pruned p = TestUtil.createPrunedPool(null);
+		p.setPruneIntervalMs(10L);
+		p.open();
+		IPrunablePool prunable = p;
+		assertTrue(pruner.add(prunable));
+		assertEquals("Pruned pool is added via the pruned pool overload.", 1, added.get());
+		p.close();
+		assertEquals("Closed pool is removed via the pruned pool overload.", 1, removed.get());
+		assertFalse(pruner.isRunning());
+	}
 }
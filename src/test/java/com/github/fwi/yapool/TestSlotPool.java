@@ -0,0 +1,350 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.listener.PoolEventQueue;
+
+public class TestSlotPool {
+
+	@Test
+	public void acquireRelease() {
+
+		PoolEventQueue events = new PoolEventQueue();
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory());
+		p.getEvents().addPoolListener(events);
+		p.setMaxSize(2);
+		p.open(1);
+		assertEquals(1, p.getSize());
+		assertEquals(1, p.getIdleSize());
+		Long l1 = p.acquire();
+		assertEquals(1, p.getLeasedSize());
+		assertSame(l1, p.release(l1));
+		assertSame("Thread re-uses the slot it used last.", l1, p.acquire());
+		Long l2 = p.acquire();
+		assertEquals(2, p.getSize());
+		assertTrue(p.isFull());
+		try {
+			p.acquire(10L);
+			fail("Pool is full.");
+		} catch (NoSuchElementException expected) {
+			// expected
+		}
+		events.register = true;
+		assertNull("Foreign resource is not put back.", p.release(Long.valueOf(-1L)));
+		assertEquals(1, events.getCount(PoolEvent.DESTROYING));
+		p.release(l2);
+		p.close();
+		assertEquals(0, p.getSize());
+		assertEquals("Idle resource is destroyed on close.", 2, events.getCount(PoolEvent.DESTROYING));
+		assertNull(p.release(l1));
+		assertEquals("Leased resource is destroyed on release.", 3, events.getCount(PoolEvent.DESTROYING));
+		try {
+			p.acquire();
+			fail("Pool is closed.");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void waitForRelease() {
+
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory());
+		p.setMaxSize(1);
+		p.open();
+		final Long l = p.acquire();
+		Thread releaser = new Thread(() -> {
+			while (p.getWaitingSize() < 1) {
+				TestUtil.sleep(1L);
+			}
+			p.release(l);
+		});
+		releaser.start();
+		assertSame(l, p.acquire(5_000L));
+		p.close();
+	}
+
+	@Test
+	public void acquireAsync() throws Exception {
+
+		final AtomicReference<Thread> validator = new AtomicReference<Thread>();
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory() {
+			@Override
+			public boolean isValid(Long resource) {
+				validator.set(Thread.currentThread());
+				return super.isValid(resource);
+			}
+		});
+		p.setMaxSize(1);
+		p.open();
+		final Long l = p.acquire();
+		CompletableFuture<Long> f = p.acquireAsync(5_000L);
+		assertFalse(f.isDone());
+		assertEquals(1, p.getWaitingSize());
+		validator.set(null);
+		p.release(l);
+		assertSame("Releasing thread hands the slot to the waiter.", l, f.get());
+		assertNotNull(validator.get());
+		assertNotSame("Handed off resource is not validated by the releasing thread.", Thread.currentThread(), validator.get());
+		assertEquals(0, p.getWaitingSize());
+		assertEquals(1, p.getLeasedSize());
+		try {
+			p.acquireAsync(10L).get();
+			fail("Pool is full.");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof NoSuchElementException);
+		}
+		assertEquals(0, p.getWaitingSize());
+		f = p.acquireAsync(5_000L);
+		assertTrue(p.evictLeased(l, true));
+		assertEquals("Empty slot is handed to the waiter.", 2L, f.get().longValue());
+		CompletableFuture<Long> closed = p.acquireAsync(5_000L);
+		p.close();
+		try {
+			closed.get();
+			fail("Pool is closed.");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void unsupportedSettings() {
+
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFair(false);
+		p.setHandOff(false);
+		p.setThreadCache(false);
+		try {
+			p.setFair(true);
+			fail("Slot pool cannot be fair.");
+		} catch (UnsupportedOperationException expected) {
+			// expected
+		}
+		try {
+			p.setHandOff(true);
+			fail("Slot pool has no hand-off mode.");
+		} catch (UnsupportedOperationException expected) {
+			// expected
+		}
+		try {
+			p.setThreadCache(true);
+			fail("Slot pool has no thread cache.");
+		} catch (UnsupportedOperationException expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void createFailureWaits() {
+
+		final AtomicBoolean fail = new AtomicBoolean(true);
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory() {
+			@Override
+			public Long create() {
+				if (fail.get()) {
+					throw new IllegalStateException("Testing create failure.");
+				}
+				return super.create();
+			}
+		});
+		p.setMaxSize(1);
+		p.open();
+		try {
+			p.acquire(10L);
+			fail("Factory cannot create resources.");
+		} catch (IllegalStateException expected) {
+			// expected, thrown by the last try after the time-out.
+		}
+		assertEquals(0, p.getSize());
+		Thread t = new Thread(() -> {
+			while (p.getWaitingSize() < 1) {
+				TestUtil.sleep(1L);
+			}
+			fail.set(false);
+			p.setMinSize(1);
+			p.ensureMinSize();
+		});
+		t.start();
+		assertNotNull("Acquire waits for a resource after a failed create.", p.acquire(5_000L));
+		p.close();
+	}
+
+	@Test
+	public void prune() {
+
+		VirtualClock clock = new VirtualClock();
+		PoolEventQueue events = new PoolEventQueue();
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory());
+		p.getEvents().addPoolListener(events);
+		p.setClock(clock);
+		p.setMinSize(1);
+		p.setMaxSize(4);
+		p.setMaxIdleTimeMs(10L);
+		p.setMaxLeaseTimeMs(50L);
+		p.setMaxLifeTimeMs(1000L);
+		p.open(3);
+		Long leased = p.acquire();
+		events.register = true;
+		clock.advance(11L);
+		p.prune();
+		assertEquals(2, p.getIdledCount());
+		assertEquals(2, events.getCount(PoolEvent.IDLE_EXPIRED));
+		assertEquals(1, p.getSize());
+		assertEquals(1, p.getLeasedSize());
+
+		clock.advance(40L);
+		p.prune();
+		assertEquals(1, p.getExpiredCount());
+		assertEquals(1, events.getCount(PoolEvent.LEASE_EXPIRED));
+		assertEquals("Minimum size is restored.", 1, p.getIdleSize());
+		assertNull("Expired resource is destroyed on release.", p.release(leased));
+		assertEquals(3, events.getCount(PoolEvent.DESTROYING));
+
+		clock.advance(1000L);
+		p.prune();
+		assertEquals(1, p.getLifeEndCount());
+		assertEquals("Resource at end of life is replaced.", 1, p.getIdleSize());
+		assertEquals(5, p.getCreatedCount());
+		p.close();
+	}
+
+	@Test
+	public void pruner() {
+
+		SlotPool<Long> p = new SlotPool<Long>();
+		p.setFactory(new LongFactory());
+		p.setPruneIntervalMs(1L);
+		p.setMaxIdleTimeMs(1L);
+		p.open(2);
+		SharedTestPruner pruner = new SharedTestPruner();
+		assertTrue(pruner.add(p));
+		assertNotNull(p.getPruneTask());
+		long deadline = System.currentTimeMillis() + 5_000L;
+		while (p.getSize() > 0 && System.currentTimeMillis() < deadline) {
+			TestUtil.sleep(5L);
+		}
+		assertEquals(0, p.getSize());
+		p.close();
+		assertFalse(pruner.isRunning());
+	}
+
+	@Test
+	public void concurrentLeases() throws Exception {
+
+		final SlotPool<AtomicBoolean> p = new SlotPool<AtomicBoolean>();
+		final AtomicInteger created = new AtomicInteger();
+		p.setFactory(new IPoolFactory<AtomicBoolean>() {
+			@Override
+			public AtomicBoolean create() {
+				created.incrementAndGet();
+				return new AtomicBoolean();
+			}
+		});
+		p.setMaxSize(4);
+		p.open();
+		final int threads = 8;
+		final AtomicInteger errors = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(threads);
+		Thread[] leasers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			leasers[t] = TestUtil.start(() -> {
+				for (int i = 0; i < 20_000; i++) {
+					AtomicBoolean r = p.acquire(5_000L);
+					if (!r.compareAndSet(false, true)) {
+						errors.incrementAndGet();
+					}
+					r.set(false);
+					if (p.release(r) == null) {
+						errors.incrementAndGet();
+					}
+				}
+			}, start);
+		}
+		for (Thread t : leasers) {
+			t.join();
+		}
+		assertEquals("Resource leased by one thread at a time.", 0, errors.get());
+		assertEquals(4, created.get());
+		assertEquals(4, p.getIdleSize());
+		assertEquals(0, p.getWaitingSize());
+		p.close();
+	}
+
+	@Test
+	public void pruneWhileAcquiring() throws Exception {
+
+		final SlotPool<AtomicBoolean> p = new SlotPool<AtomicBoolean>();
+		final AtomicInteger created = new AtomicInteger();
+		final AtomicInteger destroyed = new AtomicInteger();
+		final AtomicInteger validated = new AtomicInteger();
+		p.setFactory(new IPoolFactory<AtomicBoolean>() {
+			@Override
+			public AtomicBoolean create() {
+				created.incrementAndGet();
+				return new AtomicBoolean();
+			}
+			@Override
+			public boolean isValid(AtomicBoolean resource) {
+				return (validated.incrementAndGet() % 7 != 0);
+			}
+			@Override
+			public void destroy(AtomicBoolean resource) {
+				destroyed.incrementAndGet();
+			}
+		});
+		p.setMaxSize(4);
+		p.setMaxIdleTimeMs(0L);
+		p.setMaxLeaseTimeMs(0L);
+		p.setMaxLifeTimeMs(1L);
+		p.open();
+		final int threads = 8;
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicBoolean stop = new AtomicBoolean();
+		final CountDownLatch start = new CountDownLatch(threads + 1);
+		Thread pruner = TestUtil.start(() -> {
+			while (!stop.get()) {
+				p.prune();
+			}
+		}, start);
+		Thread[] leasers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			leasers[t] = TestUtil.start(() -> {
+				for (int i = 0; i < 20_000; i++) {
+					AtomicBoolean r = p.acquire(5_000L);
+					if (r == null || !r.compareAndSet(false, true)) {
+						errors.incrementAndGet();
+						continue;
+					}
+					r.set(false);
+					p.release(r);
+				}
+			}, start);
+		}
+		for (Thread t : leasers) {
+			t.join();
+		}
+		stop.set(true);
+		pruner.join();
+		assertEquals("Acquired resource is not null and leased by one thread at a time.", 0, errors.get());
+		assertTrue(p.getLifeEndCount() > 0L);
+		p.close();
+		assertEquals("Invalid and pruned resources are destroyed.", created.get(), destroyed.get());
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.github.fwi.yapool;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+import com.github.fwi.yapool.listener.TimeDeltaStats.Snapshot;
+
+public class TestTimeDeltaStats {
+
+	@Test
+	public void buckets() {
+
+		int last = -1;
+		for (long v = 0L; v < 100_000L; v++) {
+			int i = TimeDeltaStats.bucketIndex(v);
+			assertTrue(i == last || i == last + 1);
+			assertTrue(TimeDeltaStats.lowestValue(i) <= v);
+			assertTrue(TimeDeltaStats.highestValue(i) >= v);
+			last = i;
+		}
+		assertEquals(TimeDeltaStats.BUCKETS - 1, TimeDeltaStats.bucketIndex(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, TimeDeltaStats.highestValue(TimeDeltaStats.BUCKETS - 1));
+	}
+
+	@Test
+	public void percentiles() {
+
+		TimeDeltaStats s = new TimeDeltaStats("test");
+		assertEquals(0L, s.getMin());
+		assertEquals(0L, s.getPercentile(99.0));
+		for (long v = 1L; v <= 1000L; v++) {
+			s.add(v);
+		}
+		assertEquals(1000L, s.getCount());
+		assertEquals(1L, s.getMin());
+		assertEquals(1000L, s.getMax());
+		assertEquals(500L, s.getAvg());
+		assertEquals(500.5, s.getMean(), 0.0001);
+		Snapshot snap = s.getSnapshot();
+		assertNear(500L, snap.getP50());
+		assertNear(900L, snap.getP90());
+		assertNear(990L, snap.getP99());
+		assertNear(999L, snap.getP999());
+		assertEquals(1000L, snap.getPercentile(100.0));
+		assertEquals(1L, snap.getPercentile(0.0));
+		for (double p : new double[] { 0.0, 50.0, 90.0, 99.0, 99.9, 100.0 }) {
+			assertEquals("Percentile " + p, snap.getPercentile(p), s.getPercentile(p));
+		}
+		assertEquals(1000L, s.getTotalCount());
+		assertTrue(s.toString().startsWith("test - count / min / avg / max: 1000 / 1 / 500 / 1000"));
+		s.add(-1L);
+		assertEquals(0L, s.getMin());
+	}
+
+	static void assertNear(long expected, long actual) {
+		assertTrue("Expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / TimeDeltaStats.SUB_BUCKETS + 1);
+	}
+
+	@Test
+	public void mergeAndInterval() {
+
+		TimeDeltaStats a = new TimeDeltaStats();
+		TimeDeltaStats b = new TimeDeltaStats();
+		for (int i = 0; i < 10; i++) {
+			a.add(10L);
+			b.add(1000L);
+		}
+		Snapshot merged = a.getSnapshot().merge(b.getSnapshot());
+		assertEquals(20L, merged.getCount());
+		assertEquals(10L, merged.getMin());
+		assertEquals(1000L, merged.getMax());
+		assertEquals(505L, merged.getAvg());
+		assertEquals(10L, merged.getP50());
+		assertNear(1000L, merged.getP90());
+
+		Snapshot interval = a.getIntervalSnapshot();
+		assertEquals(10L, interval.getCount());
+		assertEquals(0L, a.getCount());
+		assertEquals(0L, a.getMax());
+		assertEquals(0L, a.getSnapshot().getCount());
+		a.add(5L);
+		assertEquals(5L, a.getMin());
+		assertEquals(5L, a.getMax());
+		b.reset();
+		assertEquals(0L, b.getCount());
+	}
+
+	@Test
+	public void concurrentAdd() {
+
+		final TimeDeltaStats s = new TimeDeltaStats();
+		final int threads = 4, adds = 10_000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				for (int i = 0; i < adds; i++) {
+					s.add(i);
+				}
+				done.countDown();
+			}).start();
+		}
+		TestUtil.await(done);
+		assertEquals((long) threads * adds, s.getTotalCount());
+		assertEquals((long) threads * adds, s.getSnapshot().getCount());
+		assertEquals(adds - 1L, s.getMax());
+		assertEquals(0L, s.getMin());
+	}
+
+	@Test
+	public void concurrentIntervals() {
+
+		final TimeDeltaStats s = new TimeDeltaStats();
+		final int threads = 4, adds = 100_000;
+		final long delta = 7L;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				for (int i = 0; i < adds; i++) {
+					s.add(delta);
+				}
+				done.countDown();
+			}).start();
+		}
+		long count = 0L;
+		while (done.getCount() > 0L) {
+			Snapshot interval = s.getIntervalSnapshot();
+			// each delta is counted completely in one interval.
+			assertEquals(interval.getCount() * delta, interval.getTotal());
+			count += interval.getCount();
+		}
+		Snapshot last = s.getIntervalSnapshot();
+		assertEquals(last.getCount() * delta, last.getTotal());
+		assertEquals((long) threads * adds, count + last.getCount());
+		assertEquals(0L, s.getTotalCount());
+	}
+
+}
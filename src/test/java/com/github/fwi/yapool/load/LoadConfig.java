@@ -0,0 +1,162 @@
+package com.github.fwi.yapool.load;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Configuration for the {@link LoadGenerator},
+ * can be parsed from {@code key=value} arguments (see {@link #parse(String...)}).
+ * Times are in milliseconds.
+ * @author FWiers
+ *
+ */
+public class LoadConfig {
+
+	/** "bound", "pruned" or "poolsmap" */
+	public String poolType = "pruned";
+	/** Amount of pool keys for pool type "poolsmap", each acquire uses a random key. */
+	public int keys = 10;
+	public int minSize = 0;
+	public int maxSize = 10;
+	public boolean fair = false;
+	/** Max. lease time for pool type "pruned" and "poolsmap", 0 for no max. lease time. */
+	public long maxLeaseTimeMs = 0L;
+	public long maxIdleTimeMs = 60_000L;
+
+	/** Arrivals (acquires) per second. */
+	public double rate = 100.0;
+	/** "fixed" (constant interval) or "poisson" (exponential interval) arrivals. */
+	public String arrival = "poisson";
+	public long durationMs = 10_000L;
+	public long acquireTimeoutMs = 1_000L;
+	/** Maximum amount of arrivals in progress, arrivals above this maximum are dropped. */
+	public int maxInFlight = 10_000;
+	public long reportIntervalMs = 1_000L;
+
+	/** Lease (hold) time distribution, see {@link Distribution#parse(String)}. */
+	public Distribution leaseTime = Distribution.parse("exp:50");
+	public Distribution createTime = Distribution.parse("fixed:0");
+	public Distribution validateTime = Distribution.parse("fixed:0");
+	public Distribution destroyTime = Distribution.parse("fixed:0");
+	/** Fraction (0 to 1) of creates that fail with an exception. */
+	public double createFailureRate = 0.0;
+	/** Fraction (0 to 1) of validations that return false. */
+	public double validateFailureRate = 0.0;
+
+	/** CSV output file, empty for standard output. */
+	public String csv = "";
+
+	/**
+	 * A random distribution of times in milliseconds.
+	 */
+	public static class Distribution {
+
+		final String type;
+		final double a;
+		final double b;
+
+		Distribution(String type, double a, double b) {
+			this.type = type;
+			this.a = a;
+			this.b = b;
+		}
+
+		/**
+		 * @param spec "fixed:value", "uniform:min:max" or "exp:mean" (exponential distribution),
+		 * all values in milliseconds.
+		 */
+		public static Distribution parse(String spec) {
+
+			String[] s = spec.trim().split(":");
+			try {
+				switch (s[0]) {
+				case "fixed":
+					return new Distribution(s[0], Double.parseDouble(s[1]), 0.0);
+				case "uniform":
+					return new Distribution(s[0], Double.parseDouble(s[1]), Double.parseDouble(s[2]));
+				case "exp":
+					return new Distribution(s[0], Double.parseDouble(s[1]), 0.0);
+				default:
+				}
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid distribution: " + spec, e);
+			}
+			throw new IllegalArgumentException("Unknown distribution type: " + spec);
+		}
+
+		/** A random time in nanoseconds. */
+		public long nextNanos() {
+
+			double ms;
+			switch (type) {
+			case "uniform":
+				ms = a + ThreadLocalRandom.current().nextDouble() * (b - a);
+				break;
+			case "exp":
+				ms = -a * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+				break;
+			default:
+				ms = a;
+			}
+			return (long) (ms * 1_000_000.0);
+		}
+
+		@Override
+		public String toString() {
+			return type + ":" + a + ("uniform".equals(type) ? ":" + b : "");
+		}
+	}
+
+	/**
+	 * @param args {@code key=value} arguments, the keys are the field names of this class.
+	 */
+	public static LoadConfig parse(String... args) {
+
+		Properties p = new Properties();
+		for (String arg : args) {
+			int i = arg.indexOf('=');
+			if (i < 1) {
+				throw new IllegalArgumentException("Argument must be key=value: " + arg);
+			}
+			p.setProperty(arg.substring(0, i).trim(), arg.substring(i + 1).trim());
+		}
+		return parse(p);
+	}
+
+	public static LoadConfig parse(Properties p) {
+
+		LoadConfig c = new LoadConfig();
+		c.poolType = p.getProperty("poolType", c.poolType);
+		c.keys = Integer.parseInt(p.getProperty("keys", Integer.toString(c.keys)));
+		c.minSize = Integer.parseInt(p.getProperty("minSize", Integer.toString(c.minSize)));
+		c.maxSize = Integer.parseInt(p.getProperty("maxSize", Integer.toString(c.maxSize)));
+		c.fair = Boolean.parseBoolean(p.getProperty("fair", Boolean.toString(c.fair)));
+		c.maxLeaseTimeMs = Long.parseLong(p.getProperty("maxLeaseTimeMs", Long.toString(c.maxLeaseTimeMs)));
+		c.maxIdleTimeMs = Long.parseLong(p.getProperty("maxIdleTimeMs", Long.toString(c.maxIdleTimeMs)));
+		c.rate = Double.parseDouble(p.getProperty("rate", Double.toString(c.rate)));
+		c.arrival = p.getProperty("arrival", c.arrival);
+		c.durationMs = Long.parseLong(p.getProperty("durationMs", Long.toString(c.durationMs)));
+		c.acquireTimeoutMs = Long.parseLong(p.getProperty("acquireTimeoutMs", Long.toString(c.acquireTimeoutMs)));
+		c.maxInFlight = Integer.parseInt(p.getProperty("maxInFlight", Integer.toString(c.maxInFlight)));
+		c.reportIntervalMs = Long.parseLong(p.getProperty("reportIntervalMs", Long.toString(c.reportIntervalMs)));
+		c.leaseTime = Distribution.parse(p.getProperty("leaseTime", c.leaseTime.toString()));
+		c.createTime = Distribution.parse(p.getProperty("createTime", c.createTime.toString()));
+		c.validateTime = Distribution.parse(p.getProperty("validateTime", c.validateTime.toString()));
+		c.destroyTime = Distribution.parse(p.getProperty("destroyTime", c.destroyTime.toString()));
+		c.createFailureRate = Double.parseDouble(p.getProperty("createFailureRate", Double.toString(c.createFailureRate)));
+		c.validateFailureRate = Double.parseDouble(p.getProperty("validateFailureRate", Double.toString(c.validateFailureRate)));
+		c.csv = p.getProperty("csv", c.csv);
+		return c;
+	}
+
+	@Override
+	public String toString() {
+		return "poolType=" + poolType + (poolType.equals("poolsmap") ? " keys=" + keys : "")
+				+ " minSize=" + minSize + " maxSize=" + maxSize + " fair=" + fair
+				+ " maxLeaseTimeMs=" + maxLeaseTimeMs + " rate=" + rate + " arrival=" + arrival
+				+ " durationMs=" + durationMs + " acquireTimeoutMs=" + acquireTimeoutMs + " leaseTime=" + leaseTime
+				+ " createTime=" + createTime + " validateTime=" + validateTime + " destroyTime=" + destroyTime
+				+ " createFailureRate=" + createFailureRate + " validateFailureRate=" + validateFailureRate;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.github.fwi.yapool.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.fwi.yapool.IPoolFactory;
+
+/**
+ * A factory with configurable create/validate/destroy latency and failure rates (see {@link LoadConfig}).
+ * @author FWiers
+ *
+ */
+public class LoadFactory implements IPoolFactory<Long> {
+
+	private final LoadConfig config;
+	private final AtomicLong resourceId = new AtomicLong();
+
+	public final LongAdder created = new LongAdder();
+	public final LongAdder createFailed = new LongAdder();
+	public final LongAdder invalid = new LongAdder();
+	public final LongAdder destroyed = new LongAdder();
+
+	public LoadFactory(LoadConfig config) {
+		super();
+		this.config = config;
+	}
+
+	@Override
+	public Long create() {
+
+		sleepNanos(config.createTime.nextNanos());
+		if (isFailure(config.createFailureRate)) {
+			createFailed.increment();
+			throw new RuntimeException("Simulated create failure.");
+		}
+		created.increment();
+		return resourceId.incrementAndGet();
+	}
+
+	@Override
+	public boolean isValid(Long resource) {
+
+		sleepNanos(config.validateTime.nextNanos());
+		if (isFailure(config.validateFailureRate)) {
+			invalid.increment();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void destroy(Long resource) {
+
+		sleepNanos(config.destroyTime.nextNanos());
+		destroyed.increment();
+	}
+
+	static boolean isFailure(double rate) {
+		return (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+	}
+
+	static void sleepNanos(long nanos) {
+
+		if (nanos < 1L) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+package com.github.fwi.yapool.load;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.fwi.yapool.BoundPool;
+import com.github.fwi.yapool.IPoolsMapFactory;
+import com.github.fwi.yapool.PoolPruner;
+import com.github.fwi.yapool.PoolsMap;
+import com.github.fwi.yapool.PrunedPool;
+import com.github.fwi.yapool.listener.TimeDeltaStats;
+
+/**
+ * Open-loop load generator to size pools offline: acquires arrive at a configured rate
+ * regardless of how long previous acquires took, leases are held for a random time
+ * and the pool factory has configurable latencies and failure rates (see {@link LoadConfig}).
+ * <br>Acquire wait times are measured from the time the acquire was scheduled to arrive
+ * (not from the time the acquire started), so that delays in the load generator itself are not hidden
+ * (i.e. the measurements do not suffer from coordinated omission).
+ * Acquires that time out are included in the wait times.
+ * <br>Every report interval a CSV line is written with the amount of arrivals, completed leases, time-outs, errors,
+ * acquire wait percentiles (in microseconds), creates/destroys during the interval and the pool size at the end of the interval.
+ * <br>Run from the test classpath with {@code key=value} arguments, for example: <pre>{@literal
+ * java -cp target/classes:target/test-classes:<slf4j jars> com.github.fwi.yapool.load.LoadGenerator \
+ *   poolType=pruned maxSize=20 rate=500 leaseTime=exp:30 createTime=uniform:50:200 durationMs=60000 csv=load.csv
+ * }</pre>
+ * @author FWiers
+ *
+ */
+public class LoadGenerator {
+
+	public static final String CSV_HEADER = "elapsed_ms,arrivals,completed,timeouts,errors,dropped,in_flight,"
+			+ "wait_p50_us,wait_p90_us,wait_p99_us,wait_p999_us,wait_max_us,"
+			+ "created,create_failed,invalid,destroyed,size,leased,idle,waiting";
+
+	protected Logger log = LoggerFactory.getLogger(getClass());
+
+	private final LoadConfig config;
+	private final LoadFactory factory;
+	private BoundPool<Long> pool;
+	private PoolsMap<Long, String> pools;
+	private final Map<String, PrunedPool<Long>> mapPools = new ConcurrentHashMap<String, PrunedPool<Long>>();
+	private String[] poolKeys;
+
+	private final TimeDeltaStats acquireWait = new TimeDeltaStats("Acquire wait (micros)");
+	private final TimeDeltaStats totalAcquireWait = new TimeDeltaStats("Acquire wait (micros)");
+	public final LongAdder arrivals = new LongAdder();
+	public final LongAdder completed = new LongAdder();
+	public final LongAdder timeouts = new LongAdder();
+	public final LongAdder errors = new LongAdder();
+	public final LongAdder dropped = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong firstError = new AtomicLong();
+
+	private PrintWriter csv;
+	private long startNanos;
+	/** Counter values at the previous report. */
+	private final long[] previous = new long[9];
+
+	public LoadGenerator(LoadConfig config) {
+		super();
+		this.config = config;
+		this.factory = new LoadFactory(config);
+	}
+
+	public LoadFactory getFactory() {
+		return factory;
+	}
+
+	/** Acquire wait times (in microseconds) of all acquires. */
+	public TimeDeltaStats getTotalAcquireWait() {
+		return totalAcquireWait;
+	}
+
+	/**
+	 * Runs the load for the configured duration and waits for all leases to end.
+	 * @param csv CSV lines are written to this writer (header first).
+	 */
+	public void run(PrintWriter csv) {
+
+		this.csv = csv;
+		log.info("Starting load: " + config);
+		openPool();
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), r -> {
+			Thread t = new Thread(r, "load-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		ScheduledThreadPoolExecutor reporter = new ScheduledThreadPoolExecutor(1);
+		try {
+			csv.println(CSV_HEADER);
+			startNanos = System.nanoTime();
+			ScheduledFuture<?> reportTask = reporter.scheduleAtFixedRate(this::report,
+					config.reportIntervalMs, config.reportIntervalMs, TimeUnit.MILLISECONDS);
+			generate(workers);
+			workers.shutdown();
+			if (!workers.awaitTermination(config.acquireTimeoutMs + 60_000L, TimeUnit.MILLISECONDS)) {
+				log.warn("Leases did not end in time, in flight: " + inFlight.get());
+			}
+			reportTask.cancel(false);
+			report();
+			csv.flush();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			workers.shutdownNow();
+			reporter.shutdownNow();
+			closePool();
+		}
+		log.info(getSummary());
+	}
+
+	protected void generate(ThreadPoolExecutor workers) {
+
+		final long endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(config.durationMs);
+		final double intervalNanos = 1_000_000_000.0 / config.rate;
+		final boolean poisson = "poisson".equals(config.arrival);
+		double next = startNanos;
+		while (next < endNanos) {
+			final long arrival = (long) next;
+			long delay;
+			while ((delay = arrival - System.nanoTime()) > 0L) {
+				LockSupport.parkNanos(delay);
+			}
+			arrivals.increment();
+			if (inFlight.incrementAndGet() > config.maxInFlight) {
+				inFlight.decrementAndGet();
+				dropped.increment();
+			} else {
+				workers.execute(() -> lease(arrival));
+			}
+			next += (poisson ? -intervalNanos * Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) : intervalNanos);
+		}
+	}
+
+	/**
+	 * @param arrival the time the acquire was scheduled to arrive.
+	 */
+	protected void lease(long arrival) {
+
+		String key = (poolKeys == null ? null : poolKeys[ThreadLocalRandom.current().nextInt(poolKeys.length)]);
+		try {
+			Long r = null;
+			try {
+				r = (pools == null ? pool.acquire(config.acquireTimeoutMs) : pools.acquire(key, config.acquireTimeoutMs));
+			} catch (NoSuchElementException e) {
+				timeouts.increment();
+			} catch (Exception e) {
+				errors.increment();
+				if (firstError.compareAndSet(0L, 1L)) {
+					log.warn("First acquire error: " + e);
+				}
+			} finally {
+				acquireWait.add((System.nanoTime() - arrival) / 1000L);
+			}
+			if (r != null) {
+				LoadFactory.sleepNanos(config.leaseTime.nextNanos());
+				if (pools == null) {
+					pool.release(r);
+				} else {
+					pools.release(key, r);
+				}
+				completed.increment();
+			}
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	protected void openPool() {
+
+		switch (config.poolType) {
+		case "bound":
+			pool = new BoundPool<Long>();
+			configure(pool);
+			pool.open(config.minSize);
+			break;
+		case "pruned":
+			PrunedPool<Long> pp = new PrunedPool<Long>();
+			configure(pp);
+			PoolPruner.getInstance().add(pp);
+			pp.open(config.minSize);
+			pool = pp;
+			break;
+		case "poolsmap":
+			pools = new PoolsMap<Long, String>(new LoadPoolsFactory());
+			pools.setPoolsName("load");
+			pools.open();
+			poolKeys = new String[config.keys];
+			for (int i = 0; i < poolKeys.length; i++) {
+				poolKeys[i] = "load" + i;
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown pool type: " + config.poolType);
+		}
+	}
+
+	protected void configure(BoundPool<Long> p) {
+
+		p.setPoolName("load");
+		p.setFactory(factory);
+		p.setFair(config.fair);
+		p.setMinSize(config.minSize);
+		p.setMaxSize(config.maxSize);
+		if (p instanceof PrunedPool) {
+			PrunedPool<Long> pp = (PrunedPool<Long>) p;
+			pp.setMaxLeaseTimeMs(config.maxLeaseTimeMs);
+			pp.setMaxIdleTimeMs(config.maxIdleTimeMs);
+		}
+	}
+
+	protected class LoadPoolsFactory implements IPoolsMapFactory<Long, String> {
+
+		@Override
+		public PrunedPool<Long> create(String poolKey, PoolPruner poolPruner) {
+
+			PrunedPool<Long> p = new PrunedPool<Long>();
+			configure(p);
+			p.setPoolName(poolKey);
+			poolPruner.add(p);
+			p.open(config.minSize);
+			mapPools.put(poolKey, p);
+			return p;
+		}
+
+		@Override
+		public void destroy(String poolKey, Long t) {
+			factory.destroy(t);
+		}
+	}
+
+	protected void closePool() {
+
+		if (pool != null) {
+			pool.close();
+		}
+		if (pools != null) {
+			pools.close();
+		}
+	}
+
+	/**
+	 * Writes a CSV line with the statistics since the previous report.
+	 */
+	protected synchronized void report() {
+
+		TimeDeltaStats.Snapshot wait = acquireWait.getIntervalSnapshot();
+		totalAcquireWait.add(wait);
+		long[] current = new long[] { arrivals.sum(), completed.sum(), timeouts.sum(), errors.sum(), dropped.sum(),
+				factory.created.sum(), factory.createFailed.sum(), factory.invalid.sum(), factory.destroyed.sum() };
+		long size = 0L, leased = 0L, idle = 0L, waiting = 0L;
+		for (BoundPool<Long> p : getPools()) {
+			if (!p.isClosed()) {
+				size += p.getSize();
+				leased += p.getLeasedSize();
+				idle += p.getIdleSize();
+				waiting += p.getWaitingSize();
+			}
+		}
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		for (int i = 0; i < 5; i++) {
+			sb.append(',').append(current[i] - previous[i]);
+		}
+		sb.append(',').append(inFlight.get());
+		sb.append(',').append(wait.getP50()).append(',').append(wait.getP90()).append(',').append(wait.getP99())
+		.append(',').append(wait.getP999()).append(',').append(wait.getMax());
+		for (int i = 5; i < current.length; i++) {
+			sb.append(',').append(current[i] - previous[i]);
+		}
+		sb.append(',').append(size).append(',').append(leased).append(',').append(idle).append(',').append(waiting);
+		System.arraycopy(current, 0, previous, 0, current.length);
+		csv.println(sb.toString());
+		csv.flush();
+	}
+
+	protected Iterable<? extends BoundPool<Long>> getPools() {
+		return (pools == null ? Collections.singletonList(pool) : mapPools.values());
+	}
+
+	public String getSummary() {
+
+		TimeDeltaStats.Snapshot wait = totalAcquireWait.getSnapshot();
+		return "Load summary: arrivals: " + arrivals.sum() + ", completed: " + completed.sum()
+				+ ", timeouts: " + timeouts.sum() + ", errors: " + errors.sum() + ", dropped: " + dropped.sum()
+				+ ", created: " + factory.created.sum() + ", create failed: " + factory.createFailed.sum()
+				+ ", invalid: " + factory.invalid.sum() + ", destroyed: " + factory.destroyed.sum()
+				+ "\n" + wait.toString(totalAcquireWait.getName());
+	}
+
+	/**
+	 * @param args {@code key=value} arguments, see {@link LoadConfig}.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		LoadConfig config = LoadConfig.parse(args);
+		PrintWriter out = (config.csv.isEmpty() ? new PrintWriter(System.out) : new PrintWriter(new FileWriter(config.csv)));
+		LoadGenerator generator = new LoadGenerator(config);
+		try {
+			generator.run(out);
+		} finally {
+			if (!config.csv.isEmpty()) {
+				out.close();
+			}
+		}
+		System.err.println(generator.getSummary());
+	}
+
+}
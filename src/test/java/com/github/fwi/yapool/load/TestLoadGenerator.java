@@ -0,0 +1,47 @@
+package com.github.fwi.yapool.load;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TestLoadGenerator {
+
+	@Test
+	public void saturatedPool() {
+
+		// 200 acquires per second holding a resource for 20 ms need 4 resources on average, only 2 are available.
+		LoadConfig config = LoadConfig.parse("poolType=pruned", "maxSize=2", "rate=200", "arrival=fixed",
+				"leaseTime=fixed:20", "createTime=fixed:5", "acquireTimeoutMs=50", "durationMs=600", "reportIntervalMs=200");
+		StringWriter out = new StringWriter();
+		LoadGenerator generator = new LoadGenerator(config);
+		generator.run(new PrintWriter(out));
+		String[] lines = out.toString().split("\\R");
+		assertEquals(LoadGenerator.CSV_HEADER, lines[0]);
+		assertTrue(out.toString(), lines.length >= 4);
+		assertEquals(LoadGenerator.CSV_HEADER.split(",").length, lines[1].split(",").length);
+		long arrivals = generator.arrivals.sum();
+		assertTrue("Arrivals: " + arrivals, arrivals >= 110L && arrivals <= 121L);
+		assertTrue(generator.timeouts.sum() > 0L);
+		assertEquals(arrivals, generator.completed.sum() + generator.timeouts.sum() + generator.errors.sum());
+		assertEquals(2L, generator.getFactory().created.sum());
+		assertEquals(arrivals, generator.getTotalAcquireWait().getCount());
+		assertTrue(generator.getTotalAcquireWait().getMax() >= 50_000L);
+	}
+
+	@Test
+	public void poolsMapWithFailures() {
+
+		LoadConfig config = LoadConfig.parse("poolType=poolsmap", "keys=3", "maxSize=4", "rate=300",
+				"leaseTime=uniform:1:5", "createFailureRate=0.2", "validateFailureRate=0.1", "durationMs=300");
+		LoadGenerator generator = new LoadGenerator(config);
+		generator.run(new PrintWriter(new StringWriter()));
+		LoadFactory factory = generator.getFactory();
+		assertTrue(generator.completed.sum() > 0L);
+		assertEquals(generator.arrivals.sum(), generator.completed.sum() + generator.timeouts.sum() + generator.errors.sum());
+		assertEquals(factory.created.sum(), factory.destroyed.sum());
+	}
+
+}
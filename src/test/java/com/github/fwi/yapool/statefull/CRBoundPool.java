@@ -1,5 +1,7 @@
 package com.github.fwi.yapool.statefull;
 
+import java.util.List;
+
 import com.github.fwi.yapool.BoundPool;
 import com.github.fwi.yapool.IPoolFactory;
 
@@ -39,15 +41,18 @@ public class CRBoundPool<T> extends BoundPool<T> {
 	@Override
 	public void open() {
 		
-		if (getFactory().getRestore() != null) {
-			open(getFactory().getRestore().size());
+		// Restore list is removed from the factory when all resources are restored.
+		List<T> restore = getFactory().getRestore();
+		if (restore != null) {
+			open(restore.size());
 		} else {
 			super.open();
 		}
 		if (!getFactory().allRestored()) {
+			// Resources can still be restored in the background (see BoundPool.setOpenReadyAmount).
 			if (log.isDebugEnabled()) {
-				log.debug(getPoolName() + ": " + (getFactory().getRestore().size() - getFactory().getRestoreIndex()) 
-					+ " of " +	getFactory().getRestore().size() + " resources were not restored.");
+				log.debug(getPoolName() + ": " + (restore.size() - getFactory().getRestoreIndex()) 
+					+ " of " +	restore.size() + " resources were not restored.");
 			}
 		}
 	}
@@ -20,7 +20,7 @@ public abstract class CaptureRestoreFactory<T> implements IPoolFactory<T> {
 	protected Logger log = LoggerFactory.getLogger(getClass());
 
 	private AtomicInteger restoreIndex = new AtomicInteger();
-	private List<T> restore;
+	private volatile List<T> restore;
 	/** 
 	 * Size of restore-list. Since the list can be nullified, 
 	 * size must be kept separately to prevent null-pointer exceptions.
@@ -69,12 +69,15 @@ public abstract class CaptureRestoreFactory<T> implements IPoolFactory<T> {
 	public T create() {
 		
 		T resource = null;
-		if (allRestored()) {
+		// Resources can be restored by multiple threads at the same time (see BoundPool.setOpenParallelism),
+		// the list reference is set to null by the thread restoring the last resource.
+		List<T> toRestore = restore;
+		if (toRestore == null || allRestored()) {
 			resource =  createNew();
 		} else {
 			int i = restoreIndex.getAndIncrement();
 			if (i < maxRestore) {
-				resource = restore.get(i);
+				resource = toRestore.get(i);
 				if (log.isTraceEnabled()) {
 					log.trace(getClass().getSimpleName() + " restoring resource " + i);
 				}
@@ -59,4 +59,24 @@ public class TestCRPool {
 		log.debug("Capture test completed: " + captured);
 	}
 
+	@Test
+	public void parallelRestore() {
+		
+		CRBoundPool<Long> p = new CRBoundPool<Long>();
+		p.setFactory(new CRLongFactory());
+		List<Long> restore = Arrays.asList(new Long[] { 42L, 43L, 44L, 45L, 46L });
+		p.getFactory().setRestore(restore);
+		p.setMaxSize(restore.size());
+		p.setOpenParallelism(3);
+		p.open();
+		assertTrue(p.getFactory().allRestored());
+		assertEquals(restore.size(), p.getIdleSize());
+		List<Long> pooled = new LinkedList<Long>();
+		for (int i = 0; i < restore.size(); i++) {
+			pooled.add(p.acquire());
+		}
+		assertTrue(pooled.containsAll(restore));
+		p.close();
+	}
+
 }